@@ -63,3 +63,32 @@ CREATE TABLE IF NOT EXISTS productSummaryProperty (
 	FOREIGN KEY (productSummaryIndexId) REFERENCES productSummary(id) ON DELETE CASCADE,
 	KEY productIdNameIndex (productSummaryIndexId, name)
 ) ENGINE=INNODB;
+
+-- maintained by JDBCProductIndex when eventSummary=true
+CREATE TABLE IF NOT EXISTS eventSummary (
+	eventId BIGINT PRIMARY KEY,
+	updated BIGINT,
+	source VARCHAR(255),
+	sourceCode VARCHAR(255),
+	eventTime BIGINT,
+	latitude DOUBLE,
+	longitude DOUBLE,
+	depth DOUBLE,
+	magnitude DOUBLE,
+	status VARCHAR(255),
+	productTypes TEXT,
+	eventCodes TEXT,
+
+	KEY eventSummaryTimeIdx (eventTime, latitude, longitude),
+	KEY eventSummaryMagnitudeIdx (magnitude)
+) ENGINE=INNODB;
+
+CREATE TABLE IF NOT EXISTS eventSummaryCode (
+	eventId BIGINT,
+	source VARCHAR(255),
+	code VARCHAR(255),
+	preferred INTEGER,
+
+	KEY eventSummaryCodeIdx (source, code),
+	KEY eventSummaryCodeEventIdx (eventId)
+) ENGINE=INNODB;
@@ -53,6 +53,31 @@ CREATE TABLE productSummaryProperty (
 	FOREIGN KEY (productSummaryIndexId) REFERENCES productSummary(id) ON DELETE CASCADE
 );
 
+-- maintained by JDBCProductIndex when eventSummary=true
+DROP TABLE IF EXISTS eventSummary;
+CREATE TABLE eventSummary (
+	eventId BIGINT PRIMARY KEY,
+	updated BIGINT,
+	source VARCHAR(255),
+	sourceCode VARCHAR(255),
+	eventTime BIGINT,
+	latitude DOUBLE PRECISION,
+	longitude DOUBLE PRECISION,
+	depth DOUBLE PRECISION,
+	magnitude DOUBLE PRECISION,
+	status VARCHAR(255),
+	productTypes TEXT,
+	eventCodes TEXT
+);
+
+DROP TABLE IF EXISTS eventSummaryCode;
+CREATE TABLE eventSummaryCode (
+	eventId BIGINT,
+	source VARCHAR(255),
+	code VARCHAR(255),
+	preferred INTEGER
+);
+
 
 CREATE UNIQUE INDEX summaryIdIndex
  ON productSummary (source, type, code, updateTime);
@@ -83,5 +108,18 @@ CREATE INDEX eventTimeLatLonIdx
 CREATE UNIQUE INDEX propertyIdNameIndex
  ON productSummaryProperty (productSummaryIndexId, name);
 
+
+CREATE INDEX eventSummaryTimeIdx
+ ON eventSummary (eventTime, latitude, longitude);
+
+CREATE INDEX eventSummaryMagnitudeIdx
+ ON eventSummary (magnitude);
+
+CREATE INDEX eventSummaryCodeIdx
+ ON eventSummaryCode (source, code);
+
+CREATE INDEX eventSummaryCodeEventIdx
+ ON eventSummaryCode (eventId);
+
 -- Indexes commonly used by user queries have been omitted (affects processing speed)
 -- Please see create-index steps found in productIndexSchemaMysql.sql
@@ -49,6 +49,29 @@ CREATE TABLE productSummaryProperty (
 	value TEXT
 );
 
+-- maintained by JDBCProductIndex when eventSummary=true
+CREATE TABLE eventSummary (
+	eventId INTEGER PRIMARY KEY,
+	updated INTEGER,
+	source TEXT,
+	sourceCode TEXT,
+	eventTime INTEGER,
+	latitude REAL,
+	longitude REAL,
+	depth REAL,
+	magnitude REAL,
+	status TEXT,
+	productTypes TEXT,
+	eventCodes TEXT
+);
+
+CREATE TABLE eventSummaryCode (
+	eventId INTEGER,
+	source TEXT,
+	code TEXT,
+	preferred INTEGER
+);
+
 
 
 
@@ -81,5 +104,18 @@ CREATE INDEX eventTimeLatLonIdx
 CREATE UNIQUE INDEX propertyIdNameIndex
 	ON productSummaryProperty (productSummaryIndexId, name);
 
+
+CREATE INDEX eventSummaryTimeIdx
+	ON eventSummary (eventTime, latitude, longitude);
+
+CREATE INDEX eventSummaryMagnitudeIdx
+	ON eventSummary (magnitude);
+
+CREATE INDEX eventSummaryCodeIdx
+	ON eventSummaryCode (source, code);
+
+CREATE INDEX eventSummaryCodeEventIdx
+	ON eventSummaryCode (eventId);
+
 -- Indexes commonly used by user queries have been omitted (affects processing speed)
 -- Please see create-index steps found in productIndexSchemaMysql.sql
@@ -0,0 +1,101 @@
+package gov.usgs.earthquake.benchmark;
+
+import gov.usgs.earthquake.indexer.JDBCProductIndex;
+import gov.usgs.util.FileUtils;
+import gov.usgs.util.JDBCUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+/**
+ * SQLite product indexes used by benchmarks.
+ */
+public class BenchmarkIndexes {
+
+	/** Index stored in memory. */
+	public static final String MEMORY = "memory";
+	/** Index stored in a temporary directory. */
+	public static final String FILE = "file";
+
+	/** Schema copied into new indexes. */
+	public static final String SCHEMA = "etc/schema/productIndex.db";
+
+	/**
+	 * Create a product index.
+	 *
+	 * @param type
+	 *            MEMORY or FILE.
+	 * @param directory
+	 *            temporary directory for FILE indexes.
+	 * @return product index, not started.
+	 * @throws Exception if error occurs
+	 */
+	public static JDBCProductIndex createProductIndex(final String type,
+			final File directory) throws Exception {
+		if (MEMORY.equals(type)) {
+			return new InMemoryProductIndex();
+		}
+		return new JDBCProductIndex(
+				new File(directory, "productIndex.db").getCanonicalPath());
+	}
+
+	/**
+	 * Create a temporary directory.
+	 *
+	 * @param prefix
+	 *            directory name prefix.
+	 * @return new directory.
+	 * @throws Exception if error occurs
+	 */
+	public static File createTempDirectory(final String prefix)
+			throws Exception {
+		return Files.createTempDirectory(prefix).toFile();
+	}
+
+	/**
+	 * Delete a temporary directory.
+	 *
+	 * @param directory
+	 *            directory to delete.
+	 */
+	public static void deleteTempDirectory(final File directory) {
+		if (directory != null) {
+			FileUtils.deleteTree(directory);
+		}
+	}
+
+	/**
+	 * JDBCProductIndex using an in-memory SQLite database, restored from the
+	 * default schema.
+	 */
+	public static class InMemoryProductIndex extends JDBCProductIndex {
+
+		/**
+		 * Construct an in-memory index.
+		 *
+		 * @throws Exception if error occurs
+		 */
+		public InMemoryProductIndex() throws Exception {
+			super();
+			setDriver(JDBCUtils.SQLITE_DRIVER_CLASSNAME);
+			setUrl("jdbc:sqlite::memory:");
+		}
+
+		@Override
+		public Connection connect() throws Exception {
+			Class.forName(getDriver());
+			Connection connection = DriverManager.getConnection(getUrl());
+			try (Statement statement = connection.createStatement()) {
+				// sqlite-jdbc specific command
+				statement.executeUpdate("restore from "
+						+ new File(SCHEMA).getCanonicalPath());
+			}
+			return connection;
+		}
+
+	}
+
+}
@@ -0,0 +1,168 @@
+package gov.usgs.earthquake.benchmark;
+
+import gov.usgs.earthquake.indexer.Event;
+import gov.usgs.earthquake.indexer.ProductSummary;
+import gov.usgs.earthquake.product.ByteContent;
+import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.ProductId;
+import gov.usgs.earthquake.product.io.BinaryProductSource;
+import gov.usgs.earthquake.product.io.ObjectProductHandler;
+import gov.usgs.earthquake.product.io.XmlProductSource;
+import gov.usgs.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Products used by benchmarks.
+ *
+ * Test products are read from etc/test_products, relative to the project
+ * directory, which is the working directory of the gradle "jmh" task.
+ *
+ * Synthetic aftershock sequences use a fixed random seed so runs are
+ * comparable.
+ */
+public class BenchmarkProducts {
+
+	/** Directory with test products. */
+	public static final File TEST_PRODUCTS = new File("etc/test_products");
+
+	/** Seed used for synthetic sequences. */
+	public static final long SEED = 1234L;
+
+	/** Mainshock time used for synthetic sequences. */
+	public static final long MAINSHOCK_TIME = 1500000000000L;
+
+	/**
+	 * Read a test product.
+	 *
+	 * @param path
+	 *            path relative to etc/test_products, ending in .xml or .bin.
+	 * @return parsed product.
+	 * @throws Exception if error occurs
+	 */
+	public static Product readTestProduct(final String path) throws Exception {
+		byte[] bytes = readTestProductBytes(path);
+		if (path.endsWith(".bin")) {
+			return ObjectProductHandler.getProduct(new BinaryProductSource(
+					new ByteArrayInputStream(bytes)));
+		}
+		return ObjectProductHandler.getProduct(new XmlProductSource(
+				new ByteArrayInputStream(bytes)));
+	}
+
+	/**
+	 * Read test product bytes into memory.
+	 *
+	 * @param path
+	 *            path relative to etc/test_products.
+	 * @return file content.
+	 * @throws Exception if error occurs
+	 */
+	public static byte[] readTestProductBytes(final String path)
+			throws Exception {
+		return StreamUtils.readStream(new File(TEST_PRODUCTS, path));
+	}
+
+	/**
+	 * Create a synthetic aftershock sequence.
+	 *
+	 * Each event has an origin, and versions of phase-data and dyfi products.
+	 * Aftershocks are within 50km and 10 days of the mainshock.
+	 *
+	 * @param events
+	 *            number of events, including the mainshock.
+	 * @param versions
+	 *            number of phase-data and dyfi versions per event.
+	 * @return products, in the order they would be sent.
+	 */
+	public static List<Product> createAftershockSequence(final int events,
+			final int versions) {
+		Random random = new Random(SEED);
+		List<Product> products = new ArrayList<Product>();
+		for (int i = 0; i < events; i++) {
+			String code = String.format("%08d", i);
+			long eventTime = MAINSHOCK_TIME
+					+ (i == 0 ? 0 : (long) (random.nextDouble() * 864000000L));
+			BigDecimal latitude = decimal(34.2 + random.nextGaussian() * 0.2);
+			BigDecimal longitude = decimal(-118.5 + random.nextGaussian() * 0.2);
+			BigDecimal magnitude = decimal(i == 0 ? 7.1
+					: 2.5 + random.nextDouble() * 3);
+			long updateTime = eventTime + 60000L;
+			products.add(createProduct("ci", "origin", code, updateTime,
+					eventTime, latitude, longitude, magnitude));
+			for (int v = 0; v < versions; v++) {
+				updateTime += 60000L;
+				products.add(createProduct("ci", "phase-data", code,
+						updateTime, eventTime, latitude, longitude, magnitude));
+				Product dyfi = createProduct("us", "dyfi", "ci" + code,
+						updateTime, eventTime, latitude, longitude, magnitude);
+				dyfi.setEventId("ci", code);
+				products.add(dyfi);
+			}
+		}
+		return products;
+	}
+
+	/**
+	 * Create a small product with event properties.
+	 *
+	 * @param source product source.
+	 * @param type product type.
+	 * @param code product code.
+	 * @param updateTime product update time.
+	 * @param eventTime event time.
+	 * @param latitude event latitude.
+	 * @param longitude event longitude.
+	 * @param magnitude event magnitude.
+	 * @return product.
+	 */
+	public static Product createProduct(final String source,
+			final String type, final String code, final long updateTime,
+			final long eventTime, final BigDecimal latitude,
+			final BigDecimal longitude, final BigDecimal magnitude) {
+		Product product = new Product(new ProductId(source, type, code,
+				new Date(updateTime)));
+		try {
+			product.setTrackerURL(new URL("http://localhost/tracker/"));
+		} catch (Exception e) {
+			// ignore
+		}
+		product.setEventId("ci", code);
+		product.setEventTime(new Date(eventTime));
+		product.setLatitude(latitude);
+		product.setLongitude(longitude);
+		product.setDepth(new BigDecimal("10.0"));
+		product.setMagnitude(magnitude);
+		product.getContents().put("contents.xml",
+				new ByteContent(("<" + type + " code=\"" + code + "\"/>")
+						.getBytes()));
+		return product;
+	}
+
+	/**
+	 * Create an event containing summaries of products.
+	 *
+	 * @param products products to summarize.
+	 * @return event with one summary per product.
+	 */
+	public static Event createEvent(final List<Product> products) {
+		Event event = new Event();
+		for (Product product : products) {
+			event.addProduct(new ProductSummary(product));
+		}
+		return event;
+	}
+
+	private static BigDecimal decimal(final double value) {
+		return new BigDecimal(value).setScale(3, RoundingMode.HALF_UP);
+	}
+
+}
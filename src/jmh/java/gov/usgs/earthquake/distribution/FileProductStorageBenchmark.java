@@ -0,0 +1,91 @@
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.benchmark.BenchmarkIndexes;
+import gov.usgs.earthquake.benchmark.BenchmarkProducts;
+import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.ProductId;
+import gov.usgs.earthquake.product.io.ObjectProductHandler;
+import gov.usgs.earthquake.product.io.ObjectProductSource;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time storing, reading, and removing a test product in FileProductStorage.
+ *
+ * Storage uses a temporary directory, so results depend on the filesystem
+ * where java.io.tmpdir is located.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FileProductStorageBenchmark {
+
+	/** Test product, relative to etc/test_products. */
+	@Param({ "usa00040xz/us_shakemap_usa00040xz_1287260900624.xml",
+			"usa00040xz/us_losspager_usa00040xz_1287260989064.xml" })
+	public String file;
+
+	private File directory;
+	private FileProductStorage storage;
+	private Product product;
+
+	/**
+	 * Create storage and read product.
+	 *
+	 * @throws Exception if error occurs
+	 */
+	@Setup
+	public void createStorage() throws Exception {
+		directory = BenchmarkIndexes.createTempDirectory("storage-benchmark");
+		storage = new FileProductStorage(directory);
+		storage.startup();
+		product = BenchmarkProducts.readTestProduct(file);
+	}
+
+	/**
+	 * Remove storage.
+	 *
+	 * @throws Exception if error occurs
+	 */
+	@TearDown
+	public void removeStorage() throws Exception {
+		storage.shutdown();
+		BenchmarkIndexes.deleteTempDirectory(directory);
+	}
+
+	/**
+	 * Store, read, then remove product.
+	 *
+	 * @return product read from storage.
+	 * @throws Exception if error occurs
+	 */
+	@Benchmark
+	public Product storeAndRemove() throws Exception {
+		ProductId id = storage.storeProductSource(new ObjectProductSource(
+				product));
+		try {
+			return ObjectProductHandler.getProduct(storage
+					.getProductSource(id));
+		} finally {
+			storage.removeProduct(id);
+		}
+	}
+
+}
@@ -0,0 +1,115 @@
+package gov.usgs.earthquake.indexer;
+
+import gov.usgs.earthquake.benchmark.BenchmarkProducts;
+import gov.usgs.earthquake.product.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time DefaultAssociator.chooseEvent when many candidate events are near the
+ * product being associated, as happens during aftershock sequences.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DefaultAssociatorBenchmark {
+
+	/** Number of candidate events. */
+	@Param({ "10", "100", "1000" })
+	public int candidates;
+
+	private DefaultAssociator associator;
+	private List<Event> events;
+	private ProductSummary byEventId;
+	private ProductSummary byLocation;
+
+	/**
+	 * Create candidate events and summaries to associate.
+	 *
+	 * @throws Exception if error occurs
+	 */
+	@Setup
+	public void createEvents() throws Exception {
+		// chooseEvent warns about potential merges with nearby events
+		Logger.getLogger(DefaultAssociator.class.getName()).setLevel(
+				Level.SEVERE);
+		associator = new DefaultAssociator();
+
+		Map<String, List<Product>> eventProducts = new LinkedHashMap<String, List<Product>>();
+		for (Product product : BenchmarkProducts.createAftershockSequence(
+				candidates, 1)) {
+			String eventId = product.getEventId();
+			List<Product> products = eventProducts.get(eventId);
+			if (products == null) {
+				products = new ArrayList<Product>();
+				eventProducts.put(eventId, products);
+			}
+			products.add(product);
+		}
+		events = new ArrayList<Event>();
+		long indexId = 1;
+		for (List<Product> products : eventProducts.values()) {
+			Event event = BenchmarkProducts.createEvent(products);
+			event.setIndexId(indexId++);
+			events.add(event);
+		}
+
+		// associates by event id, to the last candidate
+		Product last = eventProducts.get(events.get(events.size() - 1)
+				.getEventId()).get(0);
+		byEventId = new ProductSummary(BenchmarkProducts.createProduct("ci",
+				"shakemap", last.getId().getCode(), last.getId()
+						.getUpdateTime().getTime(), last.getEventTime()
+						.getTime(), last.getLatitude(), last.getLongitude(),
+				last.getMagnitude()));
+
+		// different network, associates by location to the mainshock
+		Product mainshock = eventProducts.values().iterator().next().get(0);
+		byLocation = new ProductSummary(BenchmarkProducts.createProduct("us",
+				"origin", "us1234", BenchmarkProducts.MAINSHOCK_TIME,
+				BenchmarkProducts.MAINSHOCK_TIME + 1000L,
+				mainshock.getLatitude().add(new BigDecimal("0.01")),
+				mainshock.getLongitude(), mainshock.getMagnitude()));
+		byLocation.setEventSource("us");
+		byLocation.setEventSourceCode("1234");
+	}
+
+	/**
+	 * @return event chosen by event id.
+	 */
+	@Benchmark
+	public Event chooseEventByEventId() {
+		return associator.chooseEvent(events, byEventId);
+	}
+
+	/**
+	 * @return event chosen by location.
+	 */
+	@Benchmark
+	public Event chooseEventByLocation() {
+		return associator.chooseEvent(events, byLocation);
+	}
+
+}
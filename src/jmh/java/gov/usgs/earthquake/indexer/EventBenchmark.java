@@ -0,0 +1,81 @@
+package gov.usgs.earthquake.indexer;
+
+import gov.usgs.earthquake.benchmark.BenchmarkProducts;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Time derived Event views for an event with many product versions.
+ *
+ * The "cleared" benchmarks clear cached views before each request, to
+ * measure the cost of computing them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventBenchmark {
+
+	/** Number of phase-data and dyfi versions in event. */
+	@Param({ "10", "100", "1000" })
+	public int versions;
+
+	private Event event;
+
+	/**
+	 * Create event.
+	 */
+	@Setup
+	public void createEvent() {
+		event = BenchmarkProducts.createEvent(BenchmarkProducts
+				.createAftershockSequence(1, versions));
+	}
+
+	/**
+	 * Request views used when indexing and searching.
+	 *
+	 * @param blackhole
+	 *            consumes views.
+	 */
+	@Benchmark
+	public void cachedViews(final Blackhole blackhole) {
+		requestViews(blackhole);
+	}
+
+	/**
+	 * Clear cache, then request views used when indexing and searching.
+	 *
+	 * @param blackhole
+	 *            consumes views.
+	 */
+	@Benchmark
+	public void clearedViews(final Blackhole blackhole) {
+		event.clearCache();
+		requestViews(blackhole);
+	}
+
+	private void requestViews(final Blackhole blackhole) {
+		blackhole.consume(event.getEventId());
+		blackhole.consume(event.getTime());
+		blackhole.consume(event.getMagnitude());
+		blackhole.consume(event.getPreferredProducts());
+		blackhole.consume(event.getEventCodes());
+		blackhole.consume(event.getProductList());
+	}
+
+}
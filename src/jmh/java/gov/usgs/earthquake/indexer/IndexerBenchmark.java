@@ -0,0 +1,104 @@
+package gov.usgs.earthquake.indexer;
+
+import gov.usgs.earthquake.benchmark.BenchmarkIndexes;
+import gov.usgs.earthquake.benchmark.BenchmarkProducts;
+import gov.usgs.earthquake.distribution.FileProductStorage;
+import gov.usgs.earthquake.product.Product;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to index a synthetic aftershock sequence with Indexer.onProduct.
+ *
+ * Each iteration starts with an empty storage and index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class IndexerBenchmark {
+
+	/** Where the product index is stored. */
+	@Param({ BenchmarkIndexes.MEMORY, BenchmarkIndexes.FILE })
+	public String index;
+
+	/** Number of events in sequence. */
+	@Param({ "10", "50" })
+	public int events;
+
+	/** Number of phase-data and dyfi versions per event. */
+	@Param({ "5" })
+	public int versions;
+
+	private List<Product> products;
+	private File directory;
+	private Indexer indexer;
+
+	/**
+	 * Create products.
+	 */
+	@Setup
+	public void createProducts() {
+		Logger.getLogger("").setLevel(Level.WARNING);
+		products = BenchmarkProducts.createAftershockSequence(events, versions);
+	}
+
+	/**
+	 * Create an empty indexer.
+	 *
+	 * @throws Exception if error occurs
+	 */
+	@Setup(org.openjdk.jmh.annotations.Level.Iteration)
+	public void startIndexer() throws Exception {
+		directory = BenchmarkIndexes.createTempDirectory("indexer-benchmark");
+		indexer = new Indexer();
+		indexer.setProductStorage(new FileProductStorage(new File(directory,
+				"storage")));
+		indexer.setProductIndex(BenchmarkIndexes.createProductIndex(index,
+				directory));
+		indexer.startup();
+	}
+
+	/**
+	 * Remove indexer.
+	 *
+	 * @throws Exception if error occurs
+	 */
+	@TearDown(org.openjdk.jmh.annotations.Level.Iteration)
+	public void stopIndexer() throws Exception {
+		indexer.shutdown();
+		BenchmarkIndexes.deleteTempDirectory(directory);
+	}
+
+	/**
+	 * Index all products in sequence.
+	 *
+	 * @throws Exception if error occurs
+	 */
+	@Benchmark
+	public void onProduct() throws Exception {
+		for (Product product : products) {
+			indexer.onProduct(product);
+		}
+	}
+
+}
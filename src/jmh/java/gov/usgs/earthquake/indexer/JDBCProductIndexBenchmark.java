@@ -0,0 +1,117 @@
+package gov.usgs.earthquake.indexer;
+
+import gov.usgs.earthquake.benchmark.BenchmarkIndexes;
+import gov.usgs.earthquake.benchmark.BenchmarkProducts;
+import gov.usgs.earthquake.distribution.FileProductStorage;
+import gov.usgs.earthquake.product.Product;
+
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time JDBCProductIndex.getEvents queries used by association and search,
+ * against an index loaded with a synthetic aftershock sequence.
+ *
+ * Queries are built by DefaultAssociator, the same way they are built when
+ * associating products.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class JDBCProductIndexBenchmark {
+
+	/** Where the product index is stored. */
+	@Param({ BenchmarkIndexes.MEMORY, BenchmarkIndexes.FILE })
+	public String index;
+
+	/** Number of events in sequence. */
+	@Param({ "100" })
+	public int events;
+
+	private File directory;
+	private Indexer indexer;
+	private JDBCProductIndex productIndex;
+	private ProductIndexQuery locationQuery;
+	private ProductIndexQuery eventIdQuery;
+
+	/**
+	 * Load sequence into index.
+	 *
+	 * @throws Exception if error occurs
+	 */
+	@Setup
+	public void loadIndex() throws Exception {
+		Logger.getLogger("").setLevel(Level.WARNING);
+		directory = BenchmarkIndexes.createTempDirectory("index-benchmark");
+		productIndex = BenchmarkIndexes.createProductIndex(index, directory);
+		indexer = new Indexer();
+		indexer.setProductStorage(new FileProductStorage(new File(directory,
+				"storage")));
+		indexer.setProductIndex(productIndex);
+		indexer.startup();
+
+		List<Product> products = BenchmarkProducts.createAftershockSequence(
+				events, 2);
+		for (Product product : products) {
+			indexer.onProduct(product);
+		}
+
+		Product mainshock = products.get(0);
+		DefaultAssociator associator = new DefaultAssociator();
+		locationQuery = associator.getLocationQuery(new Date(
+				BenchmarkProducts.MAINSHOCK_TIME), mainshock.getLatitude(),
+				mainshock.getLongitude());
+		eventIdQuery = associator.getEventIdQuery(
+				mainshock.getEventSource(), mainshock.getEventSourceCode());
+	}
+
+	/**
+	 * Shutdown index.
+	 *
+	 * @throws Exception if error occurs
+	 */
+	@TearDown
+	public void shutdown() throws Exception {
+		indexer.shutdown();
+		BenchmarkIndexes.deleteTempDirectory(directory);
+	}
+
+	/**
+	 * @return events near the mainshock.
+	 * @throws Exception if error occurs
+	 */
+	@Benchmark
+	public List<Event> getEventsByLocation() throws Exception {
+		return productIndex.getEvents(locationQuery);
+	}
+
+	/**
+	 * @return mainshock event.
+	 * @throws Exception if error occurs
+	 */
+	@Benchmark
+	public List<Event> getEventsByEventId() throws Exception {
+		return productIndex.getEvents(eventIdQuery);
+	}
+
+}
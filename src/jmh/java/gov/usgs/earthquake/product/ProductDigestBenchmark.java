@@ -0,0 +1,63 @@
+package gov.usgs.earthquake.product;
+
+import gov.usgs.earthquake.benchmark.BenchmarkProducts;
+import gov.usgs.util.CryptoUtils.Version;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time ProductDigest for each signature version.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductDigestBenchmark {
+
+	/** Test product, relative to etc/test_products. */
+	@Param({ "usa00040xz/us_shakemap_usa00040xz_1287260900624.xml",
+			"usa00040xz/us_losspager_usa00040xz_1287260989064.xml" })
+	public String file;
+
+	/** Signature version. */
+	@Param({ "v1", "v2" })
+	public String version;
+
+	private Product product;
+	private Version digestVersion;
+
+	/**
+	 * Read test product.
+	 *
+	 * @throws Exception if error occurs
+	 */
+	@Setup
+	public void readProduct() throws Exception {
+		product = BenchmarkProducts.readTestProduct(file);
+		digestVersion = Version.fromString(version);
+	}
+
+	/**
+	 * @return product digest.
+	 * @throws Exception if error occurs
+	 */
+	@Benchmark
+	public byte[] digestProduct() throws Exception {
+		return ProductDigest.digestProduct(product, digestVersion);
+	}
+
+}
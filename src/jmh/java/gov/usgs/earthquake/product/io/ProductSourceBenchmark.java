@@ -0,0 +1,85 @@
+package gov.usgs.earthquake.product.io;
+
+import gov.usgs.earthquake.benchmark.BenchmarkProducts;
+import gov.usgs.earthquake.product.Product;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time parsing and serializing test products in xml and binary formats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductSourceBenchmark {
+
+	/** Test product, relative to etc/test_products. */
+	@Param({
+			"usa00040xz/us_shakemap_usa00040xz_1287260900624.xml",
+			"usa00040xz/us_shakemap_usa00040xz_1287260900624.bin",
+			"usa00040xz/us_losspager_usa00040xz_1287260989064.xml",
+			"usa00040xz/us_losspager_usa00040xz_1287260989064.bin" })
+	public String file;
+
+	private byte[] bytes;
+	private Product product;
+
+	/**
+	 * Read test product.
+	 *
+	 * @throws Exception if error occurs
+	 */
+	@Setup
+	public void readProduct() throws Exception {
+		bytes = BenchmarkProducts.readTestProductBytes(file);
+		product = BenchmarkProducts.readTestProduct(file);
+	}
+
+	/**
+	 * @return parsed product.
+	 * @throws Exception if error occurs
+	 */
+	@Benchmark
+	public Product parse() throws Exception {
+		ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+		if (file.endsWith(".bin")) {
+			return ObjectProductHandler.getProduct(new BinaryProductSource(in));
+		}
+		return ObjectProductHandler.getProduct(new XmlProductSource(in));
+	}
+
+	/**
+	 * @return serialized product.
+	 * @throws Exception if error occurs
+	 */
+	@Benchmark
+	public byte[] serialize() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ProductHandler handler;
+		if (file.endsWith(".bin")) {
+			handler = new BinaryProductHandler(out);
+		} else {
+			handler = new XmlProductHandler(out);
+		}
+		new ObjectProductSource(product).streamTo(handler);
+		return out.toByteArray();
+	}
+
+}
@@ -8,8 +8,15 @@ import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -20,6 +27,7 @@ import javax.json.JsonReader;
 
 import gov.usgs.earthquake.distribution.Bootstrappable;
 import gov.usgs.earthquake.indexer.Indexer;
+import gov.usgs.earthquake.indexer.ProductSummary;
 import gov.usgs.earthquake.product.Product;
 import gov.usgs.earthquake.product.ProductId;
 import gov.usgs.earthquake.util.JDBCConnection;
@@ -35,6 +43,12 @@ import gov.usgs.util.XmlUtils;
  *
  * For each product, fetch product information from the get_product AWS endpoint
  * and call indexer.onProduct.
+ *
+ * In bulk mode (--bulk), products are read in groups of bulkSize. Each group
+ * is fetched, stored, and summarized in parallel, and then indexed in one
+ * transaction in the order products were read. The index is the same as
+ * indexing products one at a time in that order, without committing after
+ * every product. Listeners are only notified with --bulkNotify.
  */
 public class AwsBatchIndexer implements Bootstrappable {
   /** Force reindex argument */
@@ -55,6 +69,15 @@ public class AwsBatchIndexer implements Bootstrappable {
   /** Default database for indexer */
   public static final String INDEXER_DATABASE_DEFAULT = "indexer";
 
+  /** Argument to enable bulk mode */
+  public static final String BULK_ARGUMENT = "--bulk";
+  /** Argument for number of products indexed per transaction in bulk mode */
+  public static final String BULK_SIZE_ARGUMENT = "--bulkSize=";
+  /** Default number of products indexed per transaction in bulk mode */
+  public static final int BULK_SIZE_DEFAULT = 1000;
+  /** Argument to notify indexer listeners in bulk mode */
+  public static final String BULK_NOTIFY_ARGUMENT = "--bulkNotify";
+
   /** Logging object. */
   private static final Logger LOGGER = Logger.getLogger(AwsBatchIndexer.class.getName());
 
@@ -71,6 +94,18 @@ public class AwsBatchIndexer implements Bootstrappable {
   /** Indexer to process products. */
   private Indexer indexer;
 
+  /** Whether to index in bulk. */
+  private boolean bulk = false;
+
+  /** Number of products indexed per transaction in bulk mode. */
+  private int bulkSize = BULK_SIZE_DEFAULT;
+
+  /** Whether to notify indexer listeners in bulk mode. */
+  private boolean bulkNotify = false;
+
+  /** Products waiting to be indexed in bulk mode. */
+  private Set<ProductId> bulkIds = new LinkedHashSet<ProductId>();
+
 
   @Override
   public void run(String[] args) throws Exception {
@@ -89,6 +124,12 @@ public class AwsBatchIndexer implements Bootstrappable {
         getProductUrlTemplate = arg.replace(GET_PRODUCT_URL_ARGUMENT, "");
       } else if (arg.startsWith(INDEXER_CONFIG_NAME_ARGUMENT)) {
         indexerConfigName = arg.replace(INDEXER_CONFIG_NAME_ARGUMENT, "");
+      } else if (arg.equals(BULK_ARGUMENT)) {
+        bulk = true;
+      } else if (arg.startsWith(BULK_SIZE_ARGUMENT)) {
+        bulkSize = Integer.parseInt(arg.replace(BULK_SIZE_ARGUMENT, ""));
+      } else if (arg.equals(BULK_NOTIFY_ARGUMENT)) {
+        bulkNotify = true;
       }
     }
 
@@ -104,6 +145,10 @@ public class AwsBatchIndexer implements Bootstrappable {
         LOGGER.info("Reading product ids from stdin");
         readProductIdsFromStdin();
       }
+      if (bulk) {
+        // index remaining products
+        indexBulk();
+      }
     } finally {
       indexer.shutdown();
     }
@@ -178,6 +223,85 @@ public class AwsBatchIndexer implements Bootstrappable {
     }
   }
 
+  /**
+   * Fetch, store, and summarize a product.
+   *
+   * Called from executor service in bulk mode.
+   *
+   * @param id
+   *     which product
+   * @return summary of product, or null if product was already indexed.
+   * @throws Exception Exception
+   */
+  public ProductSummary summarizeProductId(final ProductId id) throws Exception {
+    final Product product = getProduct(id);
+    if (indexer.storeProduct(product, force) == null) {
+      return null;
+    }
+    return indexer.summarizeProduct(product);
+  }
+
+  /**
+   * Index products queued in bulk mode.
+   *
+   * Products are summarized in parallel using the executor, and then indexed
+   * in one transaction in the order they were queued. If the transaction
+   * fails, products are indexed one at a time so one bad product does not
+   * prevent the others from being indexed.
+   *
+   * @throws InterruptedException InterruptedException
+   */
+  public void indexBulk() throws InterruptedException {
+    final List<ProductId> ids = new ArrayList<ProductId>(bulkIds);
+    bulkIds = new LinkedHashSet<ProductId>();
+    if (ids.size() == 0) {
+      return;
+    }
+
+    final long start = new Date().getTime();
+    final List<Future<ProductSummary>> futures = new ArrayList<Future<ProductSummary>>();
+    for (final ProductId id : ids) {
+      futures.add(executor.submit(() -> summarizeProductId(id)));
+    }
+    final List<ProductSummary> summaries = new ArrayList<ProductSummary>();
+    for (int i = 0; i < ids.size(); i++) {
+      try {
+        final ProductSummary summary = futures.get(i).get();
+        if (summary != null) {
+          summaries.add(summary);
+        }
+      } catch (ExecutionException e) {
+        LOGGER.log(
+            Level.WARNING,
+            "Error summarizing " + ids.get(i).toString(),
+            e.getCause());
+      }
+    }
+    final long afterSummarize = new Date().getTime();
+
+    try {
+      indexer.indexProducts(summaries, bulkNotify);
+    } catch (Exception e) {
+      LOGGER.log(
+          Level.WARNING,
+          "Error indexing " + summaries.size() + " products, indexing individually",
+          e);
+      for (final ProductSummary summary : summaries) {
+        try {
+          indexer.indexProducts(Collections.singletonList(summary), bulkNotify);
+        } catch (Exception e2) {
+          LOGGER.log(
+              Level.WARNING,
+              "Error indexing " + summary.getId().toString(),
+              e2);
+        }
+      }
+    }
+    LOGGER.info("Indexed " + summaries.size() + " of " + ids.size() + " products"
+        + " (summarized in " + (afterSummarize - start) + " ms"
+        + ", indexed in " + (new Date().getTime() - afterSummarize) + " ms)");
+  }
+
   /**
    * Read product ids (as urns) from database and submit to executor for processing.
    *
@@ -274,11 +398,22 @@ public class AwsBatchIndexer implements Bootstrappable {
    *
    * If queue is too large (500 ids), blocks until queue is smaller (100 ids).
    *
+   * In bulk mode, queues product and indexes queued products once there are
+   * bulkSize of them.
+   *
    * @param id
    *     which product
    * @throws InterruptedException InterruptedException
    */
   public void submitProductId(final ProductId id) throws InterruptedException {
+    if (bulk) {
+      bulkIds.add(id);
+      if (bulkIds.size() >= bulkSize) {
+        indexBulk();
+      }
+      return;
+    }
+
     // queue for processing
     executor.submit(() -> processProductId(id));
 
@@ -27,6 +27,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.json.Json;
 import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
 
 /** Send using AWS Hub API. */
 public class AwsProductSender extends DefaultConfigurable implements ProductSender {
@@ -40,6 +41,13 @@ public class AwsProductSender extends DefaultConfigurable implements ProductSend
   public static final String PRIVATE_KEY_PROPERTY = "privateKey";
   /** Whether to sign products using private key. */
   public static final String SIGN_PRODUCTS_PROPERTY = "signProducts";
+  /**
+   * Whether to ask the hub to only return upload urls for contents it does not
+   * already have.
+   */
+  public static final String DELTA_TRANSFER_PROPERTY = "deltaTransfer";
+  /** Delta transfer is off by default, hubs must support it first. */
+  public static final String DEFAULT_DELTA_TRANSFER = "false";
 
   /**url where products are sent */
   protected URL hubUrl;
@@ -47,6 +55,8 @@ public class AwsProductSender extends DefaultConfigurable implements ProductSend
   protected PrivateKey privateKey;
   /** wheter to sign products */
   protected boolean signProducts = false;
+  /** whether to request delta transfer */
+  protected boolean deltaTransfer = false;
 
   /** Connection timeout. 5s seems excessive, but be cautious for now */
   protected int connectTimeout = 5000;
@@ -73,6 +83,10 @@ public class AwsProductSender extends DefaultConfigurable implements ProductSend
     }
     LOGGER.config("[" + getName() + "] sign products=" + signProducts);
 
+    deltaTransfer = Boolean.valueOf(config.getProperty(
+        DELTA_TRANSFER_PROPERTY, DEFAULT_DELTA_TRANSFER));
+    LOGGER.config("[" + getName() + "] delta transfer=" + deltaTransfer);
+
     final String key = config.getProperty(PRIVATE_KEY_PROPERTY);
     if (key != null) {
       privateKey = CryptoUtils.readOpenSSHPrivateKey(
@@ -207,13 +221,19 @@ public class AwsProductSender extends DefaultConfigurable implements ProductSend
   /**
    * Get content upload urls.
    *
+   * When deltaTransfer is enabled, the request includes a "delta" property.
+   * Hubs that support delta transfer compare content sha256 values to stored
+   * versions of the same source, type, and code, and only return upload urls
+   * for contents they do not already have. Hubs that do not support delta
+   * transfer ignore the property, and return urls for all contents.
+   *
    * @param json product in json format.
    * @return product with content urls set to upload URLs.
    * @throws Exception Exception
    */
   protected Product getUploadUrls(final JsonObject json) throws Exception {
     final URL url = new URL(hubUrl, "get_upload_urls");
-    final HttpResponse result = postProductJson(url, json);
+    final HttpResponse result = postProductJson(url, json, deltaTransfer);
     final int responseCode = result.connection.getResponseCode();
 
     // check for errors
@@ -245,8 +265,26 @@ public class AwsProductSender extends DefaultConfigurable implements ProductSend
    * @throws Exception Exception
    */
   protected HttpResponse postProductJson(final URL url, final JsonObject product) throws Exception {
+    return postProductJson(url, product, false);
+  }
+
+  /**
+   * Post product json to a hub url.
+   *
+   * @param url url of connection
+   * @param product product in json format
+   * @param delta whether to include "delta" property
+   * @return new HTTP POST response
+   * @throws Exception Exception
+   */
+  protected HttpResponse postProductJson(final URL url, final JsonObject product,
+      final boolean delta) throws Exception {
     // send as attribute, for extensibility
-    final JsonObject json = Json.createObjectBuilder().add("product", product).build();
+    final JsonObjectBuilder builder = Json.createObjectBuilder().add("product", product);
+    if (delta) {
+      builder.add("delta", true);
+    }
+    final JsonObject json = builder.build();
     HttpURLConnection connection = (HttpURLConnection) url.openConnection();
     connection.setConnectTimeout(connectTimeout);
     connection.setReadTimeout(readTimeout);
@@ -388,6 +426,22 @@ public class AwsProductSender extends DefaultConfigurable implements ProductSend
                 uploadExceptions.put(path, e);
               }
             });
+    if (deltaTransfer) {
+      // contents without upload urls are already on hub
+      long skippedBytes = 0L;
+      int skipped = 0;
+      for (final String path : product.getContents().keySet()) {
+        if (!"".equals(path) && !uploadProduct.getContents().containsKey(path)) {
+          skipped++;
+          final Long length = product.getContents().get(path).getLength();
+          if (length != null) {
+            skippedBytes += length;
+          }
+        }
+      }
+      LOGGER.fine("[" + getName() + "] delta transfer skipped " + skipped
+          + " contents (" + skippedBytes + " bytes) " + product.getId().toString());
+    }
     if (uploadExceptions.size() > 0) {
       Exception e = null;
       // log all
@@ -414,6 +468,20 @@ public class AwsProductSender extends DefaultConfigurable implements ProductSend
     this.signProducts = sign;
   }
 
+  /** Getter for deltaTransfer
+   * @return boolean
+   */
+  public boolean getDeltaTransfer() {
+    return deltaTransfer;
+  }
+
+  /** Setter for deltaTransfer
+   * @param deltaTransfer boolean
+   */
+  public void setDeltaTransfer(final boolean deltaTransfer) {
+    this.deltaTransfer = deltaTransfer;
+  }
+
   /** getter for privateKey
    * @return privateKey
    */
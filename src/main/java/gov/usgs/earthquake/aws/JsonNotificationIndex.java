@@ -18,9 +18,9 @@ import java.util.logging.Level;
 import javax.json.Json;
 
 
+import gov.usgs.earthquake.distribution.BatchNotificationIndex;
 import gov.usgs.earthquake.distribution.DefaultNotification;
 import gov.usgs.earthquake.distribution.Notification;
-import gov.usgs.earthquake.distribution.NotificationIndex;
 import gov.usgs.earthquake.distribution.URLNotification;
 import gov.usgs.earthquake.product.Product;
 import gov.usgs.earthquake.product.ProductId;
@@ -56,7 +56,7 @@ import gov.usgs.util.StringUtils;
  */
 public class JsonNotificationIndex
     extends JDBCConnection
-    implements NotificationIndex {
+    implements BatchNotificationIndex {
 
   private static final Logger LOGGER = Logger.getLogger(
       JsonNotificationIndex.class.getName());
@@ -273,42 +273,14 @@ public class JsonNotificationIndex
    */
   @Override
   public synchronized void removeNotification(Notification notification) throws Exception {
-    // all notifications
-    Instant expires = notification.getExpirationDate().toInstant();
-    ProductId id = notification.getProductId();
-    // json only
-    Instant created = null;
-    Product product = null;
-    // url only
-    URL url = null;
-    if (notification instanceof JsonNotification) {
-      JsonNotification jsonNotification = (JsonNotification) notification;
-      created = jsonNotification.created;
-      product = jsonNotification.product;
-    } else if (notification instanceof URLNotification) {
-      url = ((URLNotification) notification).getProductURL();
-    }
     // prepare statement
-    final String sql = "DELETE FROM " + this.table
-          + " WHERE created=? AND expires=? AND source=? AND type=? AND code=?"
-          + " AND updatetime=? AND url=? AND data"
-          + (product == null ? " IS NULL" : "=?");
+    final String sql = getRemoveSql(getProduct(notification) != null);
     beginTransaction();
     try (final PreparedStatement statement = getConnection().prepareStatement(sql)) {
       try {
         statement.setQueryTimeout(60);
         // set parameters
-        statement.setString(1, created != null ? created.toString() : "");
-        statement.setString(2, expires.toString());
-        statement.setString(3, id.getSource());
-        statement.setString(4, id.getType());
-        statement.setString(5, id.getCode());
-        statement.setLong(6, id.getUpdateTime().getTime());
-        statement.setString(7, url != null ? url.toString() : "");
-        if (product != null) {
-          statement.setString(8,
-              new JsonProduct().getJsonObject(product).toString());
-        }
+        setRemoveParameters(statement, notification);
         // execute
         statement.executeUpdate();
         commitTransaction();
@@ -325,64 +297,180 @@ public class JsonNotificationIndex
   }
 
   /**
-   * Search index for notifications.
+   * Remove notifications from index using batched statements in one
+   * transaction.
    *
-   * @param source
-   *     source, or null for all sources.
-   * @param type
-   *     type, or null for all types.
-   * @param code
-   *     code, or null for all codes.
-   * @return list with matching notifications, empty if not found.
-   * @throws Exception if error occurs
+   * Tracker URLs are ignored.
+   * @param notifications to be removed from index
+   * @throws Exception if error occurs, after rolling back
    */
   @Override
-  public synchronized List<Notification> findNotifications(
-      String source, String type, String code) throws Exception {
-    final ArrayList<Object> where = new ArrayList<Object>();
-    final ArrayList<String> values = new ArrayList<String>();
-    if (source != null) {
-      where.add("source=?");
-      values.add(source);
-    }
-    if (type != null) {
-      where.add("type=?");
-      values.add(type);
-    }
-    if (code != null) {
-      where.add("code=?");
-      values.add(code);
-    }
-    String sql = "SELECT * FROM " + this.table;
-    if (where.size() > 0) {
-      sql += " WHERE " + StringUtils.join(where, " AND ");
-    }
-    // prepare statement
+  public synchronized void removeNotifications(final List<Notification> notifications)
+      throws Exception {
     beginTransaction();
-    try (final PreparedStatement statement = getConnection().prepareStatement(sql)) {
+    try (
+      final PreparedStatement withoutData = getConnection().prepareStatement(
+          getRemoveSql(false));
+      final PreparedStatement withData = getConnection().prepareStatement(
+          getRemoveSql(true));
+    ) {
       try {
-        statement.setQueryTimeout(1800);
-
-        // set parameters
-        for (int i = 0, len=values.size(); i < len; i++) {
-          statement.setString(i+1, values.get(i));
+        withoutData.setQueryTimeout(60);
+        withData.setQueryTimeout(60);
+        int withoutDataCount = 0;
+        int withDataCount = 0;
+        for (final Notification notification : notifications) {
+          if (getProduct(notification) == null) {
+            setRemoveParameters(withoutData, notification);
+            withoutData.addBatch();
+            withoutDataCount++;
+          } else {
+            setRemoveParameters(withData, notification);
+            withData.addBatch();
+            withDataCount++;
+          }
         }
-
         // execute
-        final List<Notification> notifications = getNotifications(statement);
+        if (withoutDataCount > 0) {
+          withoutData.executeBatch();
+        }
+        if (withDataCount > 0) {
+          withData.executeBatch();
+        }
         commitTransaction();
-        return notifications;
       } catch (SQLException e) {
-        LOGGER.log(Level.WARNING, "Exception finding notifications", e);
+        LOGGER.log(Level.WARNING, "Exception removing notifications", e);
         try {
           // otherwise roll back
           rollbackTransaction();
         } catch (SQLException e2) {
           // ignore
         }
+        throw e;
       }
     }
-    return new ArrayList<Notification>();
+  }
+
+  /**
+   * Build statement to remove one notification.
+   *
+   * @param hasData whether notification is a JsonNotification with a product.
+   * @return sql with parameters for setRemoveParameters.
+   */
+  protected String getRemoveSql(final boolean hasData) {
+    return "DELETE FROM " + this.table
+        + " WHERE created=? AND expires=? AND source=? AND type=? AND code=?"
+        + " AND updatetime=? AND url=? AND data"
+        + (hasData ? "=?" : " IS NULL");
+  }
+
+  /**
+   * Set parameters of a statement from getRemoveSql.
+   *
+   * @param statement statement to update.
+   * @param notification notification to remove.
+   * @throws Exception if error occurs
+   */
+  protected void setRemoveParameters(final PreparedStatement statement,
+      final Notification notification) throws Exception {
+    // all notifications
+    Instant expires = notification.getExpirationDate().toInstant();
+    ProductId id = notification.getProductId();
+    // json only
+    Instant created = null;
+    Product product = getProduct(notification);
+    // url only
+    URL url = null;
+    if (notification instanceof JsonNotification) {
+      created = ((JsonNotification) notification).created;
+    } else if (notification instanceof URLNotification) {
+      url = ((URLNotification) notification).getProductURL();
+    }
+    statement.setString(1, created != null ? created.toString() : "");
+    statement.setString(2, expires.toString());
+    statement.setString(3, id.getSource());
+    statement.setString(4, id.getType());
+    statement.setString(5, id.getCode());
+    statement.setLong(6, id.getUpdateTime().getTime());
+    statement.setString(7, url != null ? url.toString() : "");
+    if (product != null) {
+      statement.setString(8,
+          new JsonProduct().getJsonObject(product).toString());
+    }
+  }
+
+  /**
+   * @param notification notification
+   * @return product for JsonNotifications, otherwise null.
+   */
+  private static Product getProduct(final Notification notification) {
+    if (notification instanceof JsonNotification) {
+      return ((JsonNotification) notification).product;
+    }
+    return null;
+  }
+
+  /**
+   * Search index for notifications.
+   *
+   * @param source
+   *     source, or null for all sources.
+   * @param type
+   *     type, or null for all types.
+   * @param code
+   *     code, or null for all codes.
+   * @return list with matching notifications, empty if not found.
+   * @throws Exception if error occurs
+   */
+  @Override
+  public List<Notification> findNotifications(
+      String source, String type, String code) throws Exception {
+    return read(() -> {
+      final ArrayList<Object> where = new ArrayList<Object>();
+      final ArrayList<String> values = new ArrayList<String>();
+      if (source != null) {
+        where.add("source=?");
+        values.add(source);
+      }
+      if (type != null) {
+        where.add("type=?");
+        values.add(type);
+      }
+      if (code != null) {
+        where.add("code=?");
+        values.add(code);
+      }
+      String sql = "SELECT * FROM " + this.table;
+      if (where.size() > 0) {
+        sql += " WHERE " + StringUtils.join(where, " AND ");
+      }
+      // prepare statement
+      beginTransaction();
+      try (final PreparedStatement statement = getConnection().prepareStatement(sql)) {
+        try {
+          statement.setQueryTimeout(1800);
+
+          // set parameters
+          for (int i = 0, len=values.size(); i < len; i++) {
+            statement.setString(i+1, values.get(i));
+          }
+
+          // execute
+          final List<Notification> notifications = getNotifications(statement);
+          commitTransaction();
+          return notifications;
+        } catch (SQLException e) {
+          LOGGER.log(Level.WARNING, "Exception finding notifications", e);
+          try {
+            // otherwise roll back
+            rollbackTransaction();
+          } catch (SQLException e2) {
+            // ignore
+          }
+        }
+      }
+      return new ArrayList<Notification>();
+    });
   }
 
   /**
@@ -398,112 +486,134 @@ public class JsonNotificationIndex
    * @throws Exception if error occurs
    */
   @Override
-  public synchronized List<Notification> findNotifications(
+  public List<Notification> findNotifications(
       List<String> sources, List<String> types, List<String> codes)
       throws Exception {
-    final ArrayList<Object> where = new ArrayList<Object>();
-    final ArrayList<String> values = new ArrayList<String>();
-    if (sources != null && sources.size() > 0) {
-      where.add("source IN (" +
-          StringUtils.join(
-              Collections.nCopies(sources.size(), (Object)"?"),
-              ",")
-          + ")");
-      values.addAll(sources);
-    }
-    if (types != null && types.size() > 0) {
-      where.add("type IN (" +
-          StringUtils.join(
-              Collections.nCopies(types.size(), (Object)"?"),
-              ",")
-          + ")");
-      values.addAll(types);
-    }
-    if (codes != null && codes.size() > 0) {
-      where.add("code IN (" +
-          StringUtils.join(
-              Collections.nCopies(codes.size(), (Object)"?"),
-              ",")
-          + ")");
-      values.addAll(codes);
-    }
-    String sql = "SELECT * FROM " + this.table;
-    if (where.size() > 0) {
-      sql += " WHERE " + StringUtils.join(where, " AND ");
-    } else {
-      // searching for all notifications
-
-      // this is typically done to requeue a notification index.
-      // run query in a way that returns list of default notifications,
-      // (by returning empty created, data, and url)
-      // since full details are not needed during requeue
-      sql = "SELECT DISTINCT"
-          + " '' as created, expires, source, type, code, updateTime"
-          + ", '' as url, null as data"
-          + " FROM " + this.table;
-    }
-    // prepare statement
-    beginTransaction();
-    try (final PreparedStatement statement = getConnection().prepareStatement(sql)) {
-      try {
-        statement.setQueryTimeout(1800);
-
-        // set parameters
-        for (int i = 0, len=values.size(); i < len; i++) {
-          statement.setString(i+1, values.get(i));
-        }
-
-        // execute
-        final List<Notification> notifications = getNotifications(statement);
-        commitTransaction();
-        return notifications;
-      } catch (SQLException e) {
-        LOGGER.log(Level.WARNING, "Exception finding notifications", e);
+    return read(() -> {
+      final ArrayList<Object> where = new ArrayList<Object>();
+      final ArrayList<String> values = new ArrayList<String>();
+      if (sources != null && sources.size() > 0) {
+        where.add("source IN (" +
+            StringUtils.join(
+                Collections.nCopies(sources.size(), (Object)"?"),
+                ",")
+            + ")");
+        values.addAll(sources);
+      }
+      if (types != null && types.size() > 0) {
+        where.add("type IN (" +
+            StringUtils.join(
+                Collections.nCopies(types.size(), (Object)"?"),
+                ",")
+            + ")");
+        values.addAll(types);
+      }
+      if (codes != null && codes.size() > 0) {
+        where.add("code IN (" +
+            StringUtils.join(
+                Collections.nCopies(codes.size(), (Object)"?"),
+                ",")
+            + ")");
+        values.addAll(codes);
+      }
+      String sql = "SELECT * FROM " + this.table;
+      if (where.size() > 0) {
+        sql += " WHERE " + StringUtils.join(where, " AND ");
+      } else {
+        // searching for all notifications
+
+        // this is typically done to requeue a notification index.
+        // run query in a way that returns list of default notifications,
+        // (by returning empty created, data, and url)
+        // since full details are not needed during requeue
+        sql = "SELECT DISTINCT"
+            + " '' as created, expires, source, type, code, updateTime"
+            + ", '' as url, null as data"
+            + " FROM " + this.table;
+      }
+      // prepare statement
+      beginTransaction();
+      try (final PreparedStatement statement = getConnection().prepareStatement(sql)) {
         try {
-          // otherwise roll back
-          rollbackTransaction();
-        } catch (SQLException e2) {
-          // ignore
+          statement.setQueryTimeout(1800);
+
+          // set parameters
+          for (int i = 0, len=values.size(); i < len; i++) {
+            statement.setString(i+1, values.get(i));
+          }
+
+          // execute
+          final List<Notification> notifications = getNotifications(statement);
+          commitTransaction();
+          return notifications;
+        } catch (SQLException e) {
+          LOGGER.log(Level.WARNING, "Exception finding notifications", e);
+          try {
+            // otherwise roll back
+            rollbackTransaction();
+          } catch (SQLException e2) {
+            // ignore
+          }
         }
       }
-    }
-    return new ArrayList<Notification>();
+      return new ArrayList<Notification>();
+    });
   }
 
   /**
    * Find notifications with expires time before or equal to current time.
    *
+   * Returns at most 1000 notifications.
+   *
    * @return list with matching notifications, empty if not found.
    * @throws Exception if error occurs
    */
   @Override
-  public synchronized List<Notification> findExpiredNotifications() throws Exception {
-    final String sql = "SELECT * FROM " + this.table + " WHERE expires <= ? LIMIT 1000";
-    // prepare statement
-    beginTransaction();
-    try (final PreparedStatement statement = getConnection().prepareStatement(sql)) {
-      try {
-        statement.setQueryTimeout(1800);
-
-        // set parameters
-        statement.setString(1, Instant.now().toString());
+  public List<Notification> findExpiredNotifications() throws Exception {
+    return findExpiredNotifications(1000);
+  }
 
-        // execute
-        final List<Notification> notifications = getNotifications(statement);
-        commitTransaction();
-        return notifications;
-      } catch (SQLException e) {
-        LOGGER.log(Level.WARNING, "Exception finding notifications", e);
+  /**
+   * Find notifications with expires time before or equal to current time.
+   *
+   * Notifications that expired first are returned first.
+   *
+   * @param limit maximum number of notifications to return.
+   * @return list with matching notifications, empty if not found.
+   * @throws Exception if error occurs
+   */
+  @Override
+  public List<Notification> findExpiredNotifications(final int limit)
+      throws Exception {
+    return read(() -> {
+      final String sql = "SELECT * FROM " + this.table
+          + " WHERE expires <= ? ORDER BY expires LIMIT ?";
+      // prepare statement
+      beginTransaction();
+      try (final PreparedStatement statement = getConnection().prepareStatement(sql)) {
         try {
-          // otherwise roll back
-          rollbackTransaction();
-        } catch (SQLException e2) {
-          // ignore
+          statement.setQueryTimeout(1800);
+
+          // set parameters
+          statement.setString(1, Instant.now().toString());
+          statement.setInt(2, limit);
+
+          // execute
+          final List<Notification> notifications = getNotifications(statement);
+          commitTransaction();
+          return notifications;
+        } catch (SQLException e) {
+          LOGGER.log(Level.WARNING, "Exception finding notifications", e);
+          try {
+            // otherwise roll back
+            rollbackTransaction();
+          } catch (SQLException e2) {
+            // ignore
+          }
         }
       }
-    }
-    return new ArrayList<Notification>();
-
+      return new ArrayList<Notification>();
+    });
   }
 
   /**
@@ -515,35 +625,37 @@ public class JsonNotificationIndex
    * @throws Exception if error occurs
    */
   @Override
-  public synchronized List<Notification> findNotifications(ProductId id) throws Exception {
-    final String sql = "SELECT * FROM " + this.table
-        + " WHERE source=? AND type=? AND code=? AND updatetime=?";
-    // prepare statement
-    beginTransaction();
-    try (final PreparedStatement statement = getConnection().prepareStatement(sql)) {
-      try {
-        statement.setQueryTimeout(30);
-        // set parameters
-        statement.setString(1, id.getSource());
-        statement.setString(2, id.getType());
-        statement.setString(3, id.getCode());
-        statement.setLong(4, id.getUpdateTime().getTime());
-
-        // executes and commit ifsuccessful
-        final List<Notification> notifications = getNotifications(statement);
-        commitTransaction();
-        return notifications;
-      } catch (SQLException e) {
-        LOGGER.log(Level.WARNING, "Exception finding notifications", e);
+  public List<Notification> findNotifications(ProductId id) throws Exception {
+    return read(() -> {
+      final String sql = "SELECT * FROM " + this.table
+          + " WHERE source=? AND type=? AND code=? AND updatetime=?";
+      // prepare statement
+      beginTransaction();
+      try (final PreparedStatement statement = getConnection().prepareStatement(sql)) {
         try {
-          // otherwise roll back
-          rollbackTransaction();
-        } catch (SQLException e2) {
-          // ignore
+          statement.setQueryTimeout(30);
+          // set parameters
+          statement.setString(1, id.getSource());
+          statement.setString(2, id.getType());
+          statement.setString(3, id.getCode());
+          statement.setLong(4, id.getUpdateTime().getTime());
+
+          // executes and commit ifsuccessful
+          final List<Notification> notifications = getNotifications(statement);
+          commitTransaction();
+          return notifications;
+        } catch (SQLException e) {
+          LOGGER.log(Level.WARNING, "Exception finding notifications", e);
+          try {
+            // otherwise roll back
+            rollbackTransaction();
+          } catch (SQLException e2) {
+            // ignore
+          }
         }
       }
-    }
-    return new ArrayList<Notification>();
+      return new ArrayList<Notification>();
+    });
   }
 
   /**
@@ -562,41 +674,43 @@ public class JsonNotificationIndex
    *     other table.
    * @throws Exception if error occurs
    */
-  public synchronized List<Notification> getMissingNotifications(
+  public List<Notification> getMissingNotifications(
       final String otherTable) throws Exception {
-    // this is used to requeue a notification index.
-    // run query in a way that returns list of default notifications,
-    // (by returning empty created, data, and url)
-    // since full details are not needed during requeue
-    final String sql = "SELECT DISTINCT"
-        + " '' as created, t.expires, t.source, t.type, t.code, t.updateTime"
-        + ", '' as url, null as data"
-        + " FROM " + this.table + " t"
-        + " WHERE NOT EXISTS ("
-          + "SELECT * FROM " + otherTable
-            + " WHERE source=t.source AND type=t.type"
-            + " AND code=t.code AND updatetime=t.updateTime"
-        + ")";
-    // prepare statement
-    beginTransaction();
-    try (final PreparedStatement statement = getConnection().prepareStatement(sql)) {
-      try {
-        statement.setQueryTimeout(1800);
-        // execute and commit if successful
-        final List<Notification> notifications = getNotifications(statement);
-        commitTransaction();
-        return notifications;
-      } catch (SQLException e) {
-        LOGGER.log(Level.WARNING, "Exception finding notifications", e);
+    return read(() -> {
+      // this is used to requeue a notification index.
+      // run query in a way that returns list of default notifications,
+      // (by returning empty created, data, and url)
+      // since full details are not needed during requeue
+      final String sql = "SELECT DISTINCT"
+          + " '' as created, t.expires, t.source, t.type, t.code, t.updateTime"
+          + ", '' as url, null as data"
+          + " FROM " + this.table + " t"
+          + " WHERE NOT EXISTS ("
+            + "SELECT * FROM " + otherTable
+              + " WHERE source=t.source AND type=t.type"
+              + " AND code=t.code AND updatetime=t.updateTime"
+          + ")";
+      // prepare statement
+      beginTransaction();
+      try (final PreparedStatement statement = getConnection().prepareStatement(sql)) {
         try {
-          // otherwise roll back
-          rollbackTransaction();
-        } catch (SQLException e2) {
-          // ignore
+          statement.setQueryTimeout(1800);
+          // execute and commit if successful
+          final List<Notification> notifications = getNotifications(statement);
+          commitTransaction();
+          return notifications;
+        } catch (SQLException e) {
+          LOGGER.log(Level.WARNING, "Exception finding notifications", e);
+          try {
+            // otherwise roll back
+            rollbackTransaction();
+          } catch (SQLException e2) {
+            // ignore
+          }
         }
       }
-    }
-    return new ArrayList<Notification>();
+      return new ArrayList<Notification>();
+    });
   }
 
   /**
@@ -605,7 +719,7 @@ public class JsonNotificationIndex
    * @return List of notifications
    * @throws Exception if error occurs
    */
-  protected synchronized List<Notification> getNotifications(PreparedStatement ps)
+  protected List<Notification> getNotifications(PreparedStatement ps)
       throws Exception {
     final List<Notification> n = new ArrayList<Notification>();
     try (final ResultSet rs = ps.executeQuery()) {
@@ -4,6 +4,7 @@ import gov.usgs.util.DefaultConfigurable;
 import gov.usgs.util.SocketAcceptor;
 import gov.usgs.util.SocketListenerInterface;
 import gov.usgs.util.StreamUtils;
+import gov.usgs.util.metrics.MetricsRegistry;
 
 import java.io.BufferedReader;
 import java.io.InputStream;
@@ -32,6 +33,8 @@ public class AdminSocketServer extends DefaultConfigurable implements
 	private static final int DEFAULT_THREAD_POOL_SIZE = 10;
 	/** Variable for default admin port */
 	private static final int DEFAULT_ADMIN_PORT = 11111;
+	/** Default number of traces shown by traces command */
+	private static final int DEFAULT_TRACES = 10;
 
 	private int port = -1;
 	private int threads = -1;
@@ -98,6 +101,28 @@ public class AdminSocketServer extends DefaultConfigurable implements
 		String s = line.trim();
 		if (s.equals("status")) {
 			out.write(getStatus().getBytes());
+		} else if (s.equals("metrics")) {
+			out.write(client.getMetrics().getBytes());
+		} else if (s.equals("traces") || s.startsWith("traces ")) {
+			String count = s.replace("traces", "").trim();
+			int traces = DEFAULT_TRACES;
+			if (!count.equals("")) {
+				try {
+					traces = Integer.parseInt(count);
+				} catch (NumberFormatException e) {
+					traces = -1;
+				}
+				if (traces < 0) {
+					out.write(("Invalid trace count '" + count + "'\n")
+							.getBytes());
+					return;
+				}
+			}
+			out.write(ProductTracer.getDefault().getSlowestSummary(traces)
+					.getBytes());
+		} else if (s.equals("metrics reset")) {
+			MetricsRegistry.getDefault().reset();
+			out.write(("Metrics reset\n").getBytes());
 		} else if (s.startsWith("reprocess")) {
 			out.write(("Reprocess not yet supported").getBytes());
 			// reprocess(out, s.replace("reprocess", "").split(" "));
@@ -108,6 +133,9 @@ public class AdminSocketServer extends DefaultConfigurable implements
 			throw new Exception("Bye");
 		} else {
 			out.write(("Help:\n" + "status - show server status\n"
+					+ "metrics - show counters, gauges, and latencies\n"
+					+ "metrics reset - reset counters and latencies\n"
+					+ "traces [COUNT] - show slowest recent products by stage\n"
 					+ "SOON search [source=SOURCE] [type=TYPE] [code=CODE]\n"
 					+ "SOON reprocess listener=LISTENER id=PRODUCTID")
 					.getBytes());
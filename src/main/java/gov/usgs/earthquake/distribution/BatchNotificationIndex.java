@@ -0,0 +1,44 @@
+/*
+ * BatchNotificationIndex
+ */
+package gov.usgs.earthquake.distribution;
+
+import java.util.List;
+
+/**
+ * A NotificationIndex that finds and removes expired notifications in
+ * batches.
+ *
+ * Used by ExpiredNotificationCleanup so cleanup holds the index for one
+ * statement or transaction per batch, instead of one per notification.
+ */
+public interface BatchNotificationIndex extends NotificationIndex {
+
+	/**
+	 * Search the index for expired notifications.
+	 *
+	 * @param limit
+	 *            maximum number of notifications to return.
+	 * @return a list of at most limit expired notifications, earliest
+	 *         expiration first.
+	 * @throws Exception
+	 *             if an error occurs while searching the index.
+	 */
+	public List<Notification> findExpiredNotifications(final int limit)
+			throws Exception;
+
+	/**
+	 * Remove notifications from the index.
+	 *
+	 * Same as calling removeNotification for each notification, but all
+	 * removals succeed or fail together.
+	 *
+	 * @param notifications
+	 *            the notifications to remove.
+	 * @throws Exception
+	 *             if an error occurs while removing the notifications.
+	 */
+	public void removeNotifications(final List<Notification> notifications)
+			throws Exception;
+
+}
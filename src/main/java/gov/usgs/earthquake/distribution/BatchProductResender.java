@@ -0,0 +1,430 @@
+/*
+ * BatchProductResender
+ */
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.io.IOUtil;
+import gov.usgs.earthquake.product.io.ObjectProductHandler;
+import gov.usgs.earthquake.product.io.ProductSource;
+import gov.usgs.util.DefaultConfigurable;
+import gov.usgs.util.RateLimiter;
+import gov.usgs.util.StreamUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Resends a batch of products, used by ProductResender --batch.
+ *
+ * Products are parsed and sent in a pipeline: parseThreads threads read
+ * product files while sendThreads threads send already parsed products. At
+ * most maxInFlight products are parsed but not yet sent, which limits
+ * memory use when sending is slower than parsing.
+ *
+ * When a checkpoint file is configured, the path of each product that every
+ * sender accepted is appended to the file, and paths already in the file are
+ * skipped. Rerunning an interrupted batch with the same checkpoint only
+ * sends the remaining products, and products that failed for any sender.
+ */
+public class BatchProductResender {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(BatchProductResender.class.getName());
+
+	/** Default number of threads parsing products. */
+	public static final int DEFAULT_PARSE_THREADS = 2;
+
+	/** Default number of threads sending products. */
+	public static final int DEFAULT_SEND_THREADS = 4;
+
+	/** Default number of products parsed and waiting to send. */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 32;
+
+	/** Default milliseconds between progress messages. */
+	public static final long DEFAULT_PROGRESS_INTERVAL = 30000L;
+
+	private final ProductBuilder builder;
+	private final String inFormat;
+
+	private int parseThreads = DEFAULT_PARSE_THREADS;
+	private int sendThreads = DEFAULT_SEND_THREADS;
+	private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+	private long progressInterval = DEFAULT_PROGRESS_INTERVAL;
+	/** Products per second per sender, or 0 for no limit. */
+	private double sendRate = 0;
+	private File checkpointFile = null;
+
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong partial = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private long skipped = 0L;
+	private long total = 0L;
+	private long startTime = 0L;
+	private long lastProgress = 0L;
+	private Writer checkpoint = null;
+
+	/**
+	 * Create a new BatchProductResender.
+	 *
+	 * @param builder
+	 *            builder used to send products, should already be started.
+	 * @param inFormat
+	 *            format of product files.
+	 */
+	public BatchProductResender(final ProductBuilder builder,
+			final String inFormat) {
+		this.builder = builder;
+		this.inFormat = inFormat;
+	}
+
+	/**
+	 * Send products.
+	 *
+	 * @param paths
+	 *            product file paths.
+	 * @throws Exception
+	 *             if unable to read or write the checkpoint file, or
+	 *             interrupted.
+	 */
+	public void run(final List<String> paths) throws Exception {
+		if (sendRate > 0) {
+			List<ProductSender> senders = builder.getProductSenders();
+			for (int i = 0; i < senders.size(); i++) {
+				if (!(senders.get(i) instanceof RateLimitedProductSender)) {
+					senders.set(i, new RateLimitedProductSender(senders.get(i),
+							sendRate));
+				}
+			}
+		}
+
+		Set<String> completed = readCheckpoint();
+		List<String> pending = new ArrayList<String>();
+		for (String path : paths) {
+			if (completed.contains(path)) {
+				skipped++;
+			} else {
+				pending.add(path);
+			}
+		}
+		total = pending.size();
+		if (skipped > 0) {
+			LOGGER.info("Skipping " + skipped
+					+ " products already sent according to checkpoint "
+					+ checkpointFile);
+		}
+
+		final ExecutorService parseExecutor = Executors
+				.newFixedThreadPool(parseThreads);
+		final ExecutorService sendExecutor = Executors
+				.newFixedThreadPool(sendThreads);
+		final Semaphore window = new Semaphore(maxInFlight);
+		startTime = System.currentTimeMillis();
+		lastProgress = startTime;
+		try {
+			if (checkpointFile != null) {
+				checkpoint = new OutputStreamWriter(new FileOutputStream(
+						checkpointFile, true), StandardCharsets.UTF_8);
+			}
+			for (final String path : pending) {
+				window.acquire();
+				try {
+					parseExecutor.submit(() -> parse(path, sendExecutor, window));
+				} catch (Exception e) {
+					window.release();
+					throw e;
+				}
+			}
+			// wait for all products to be sent
+			window.acquire(maxInFlight);
+		} finally {
+			parseExecutor.shutdownNow();
+			sendExecutor.shutdownNow();
+			StreamUtils.closeStream(checkpoint);
+			checkpoint = null;
+		}
+		logSummary();
+	}
+
+	/**
+	 * Parse a product and queue it to send.
+	 *
+	 * Releases one window permit when the product has been sent, or could
+	 * not be parsed.
+	 */
+	private void parse(final String path, final ExecutorService sendExecutor,
+			final Semaphore window) {
+		boolean queued = false;
+		try {
+			File file = new File(path);
+			Product product = null;
+			try {
+				ProductSource source = IOUtil.getProductSource(inFormat, file);
+				if (source != null) {
+					product = ObjectProductHandler.getProduct(source);
+				}
+			} catch (Exception e) {
+				LOGGER.log(Level.FINE, "Exception parsing product " + path, e);
+			}
+			if (product == null) {
+				System.err.println("ERROR: unable to load product from '"
+						+ file.getAbsolutePath() + "'");
+				failed.incrementAndGet();
+				return;
+			}
+			final Product parsed = product;
+			sendExecutor.submit(() -> send(path, parsed, window));
+			queued = true;
+		} finally {
+			if (!queued) {
+				window.release();
+				logProgress();
+			}
+		}
+	}
+
+	/**
+	 * Send a product, and release one window permit.
+	 */
+	private void send(final String path, final Product product,
+			final Semaphore window) {
+		try {
+			Map<ProductSender, Exception> errors = ProductResender.sendProduct(
+					builder, product, true);
+			if (errors.size() == 0) {
+				sent.incrementAndGet();
+				writeCheckpoint(path);
+			} else if (errors.size() < builder.getProductSenders().size()) {
+				partial.incrementAndGet();
+			} else {
+				failed.incrementAndGet();
+			}
+		} catch (Exception e) {
+			LOGGER.log(Level.WARNING, "Exception sending product " + path, e);
+			failed.incrementAndGet();
+		} finally {
+			window.release();
+			logProgress();
+		}
+	}
+
+	private Set<String> readCheckpoint() throws IOException {
+		Set<String> completed = new HashSet<String>();
+		if (checkpointFile == null || !checkpointFile.exists()) {
+			return completed;
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(checkpointFile), StandardCharsets.UTF_8));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				completed.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		return completed;
+	}
+
+	private synchronized void writeCheckpoint(final String path)
+			throws IOException {
+		if (checkpoint != null) {
+			checkpoint.write(path + "\n");
+			checkpoint.flush();
+		}
+	}
+
+	private void logProgress() {
+		long now = System.currentTimeMillis();
+		synchronized (this) {
+			if (now - lastProgress < progressInterval) {
+				return;
+			}
+			lastProgress = now;
+		}
+		long done = getProcessedCount();
+		double rate = done * 1000.0 / Math.max(1L, now - startTime);
+		String eta = rate > 0 ? ((long) ((total - done) / rate)) + "s" : "unknown";
+		LOGGER.info(String.format("Processed %d of %d products"
+				+ " (%.1f products/s, ETA %s)", done, total, rate, eta));
+	}
+
+	private void logSummary() {
+		long elapsed = Math.max(1L, System.currentTimeMillis() - startTime);
+		LOGGER.info(String.format("Batch complete: sent=%d, partial=%d,"
+				+ " failed=%d, skipped=%d in %.1fs (%.1f products/s)",
+				sent.get(), partial.get(), failed.get(), skipped,
+				elapsed / 1000.0, getProcessedCount() * 1000.0 / elapsed));
+	}
+
+	/** @return number of products every sender accepted. */
+	public long getSentCount() {
+		return sent.get();
+	}
+
+	/** @return number of products some, but not all, senders accepted. */
+	public long getPartialCount() {
+		return partial.get();
+	}
+
+	/** @return number of products that could not be parsed or sent. */
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	/** @return number of products skipped because of checkpoint. */
+	public long getSkippedCount() {
+		return skipped;
+	}
+
+	private long getProcessedCount() {
+		return sent.get() + partial.get() + failed.get();
+	}
+
+	/** @return number of threads parsing products. */
+	public int getParseThreads() {
+		return parseThreads;
+	}
+
+	/** @param parseThreads number of threads parsing products. */
+	public void setParseThreads(final int parseThreads) {
+		this.parseThreads = parseThreads;
+	}
+
+	/** @return number of threads sending products. */
+	public int getSendThreads() {
+		return sendThreads;
+	}
+
+	/** @param sendThreads number of threads sending products. */
+	public void setSendThreads(final int sendThreads) {
+		this.sendThreads = sendThreads;
+	}
+
+	/** @return number of products parsed and waiting to send. */
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/** @param maxInFlight number of products parsed and waiting to send. */
+	public void setMaxInFlight(final int maxInFlight) {
+		this.maxInFlight = maxInFlight;
+	}
+
+	/** @return products per second per sender, 0 for no limit. */
+	public double getSendRate() {
+		return sendRate;
+	}
+
+	/** @param sendRate products per second per sender, 0 for no limit. */
+	public void setSendRate(final double sendRate) {
+		this.sendRate = sendRate;
+	}
+
+	/** @return file listing sent product paths, or null. */
+	public File getCheckpointFile() {
+		return checkpointFile;
+	}
+
+	/** @param checkpointFile file listing sent product paths, or null. */
+	public void setCheckpointFile(final File checkpointFile) {
+		this.checkpointFile = checkpointFile;
+	}
+
+	/** @return milliseconds between progress messages. */
+	public long getProgressInterval() {
+		return progressInterval;
+	}
+
+	/** @param progressInterval milliseconds between progress messages. */
+	public void setProgressInterval(final long progressInterval) {
+		this.progressInterval = progressInterval;
+	}
+
+	/**
+	 * Limits how often products are sent to a sender.
+	 */
+	public static class RateLimitedProductSender extends DefaultConfigurable
+			implements ProductSender {
+
+		private final ProductSender sender;
+		private final RateLimiter limiter;
+
+		/**
+		 * @param sender
+		 *            sender to limit.
+		 * @param sendRate
+		 *            products per second.
+		 */
+		public RateLimitedProductSender(final ProductSender sender,
+				final double sendRate) {
+			this.sender = sender;
+			this.limiter = new RateLimiter(sendRate);
+		}
+
+		/** @return the limited sender. */
+		public ProductSender getSender() {
+			return sender;
+		}
+
+		@Override
+		public void sendProduct(final Product product) throws Exception {
+			sendProduct(product, null);
+		}
+
+		/**
+		 * Send a product that may already be serialized.
+		 *
+		 * @param product
+		 *            product to send.
+		 * @param serialized
+		 *            shared serialized product, or null.
+		 * @throws Exception
+		 *             if sender throws an exception.
+		 * @see ProductBuilder#sendProduct(ProductSender, Product,
+		 *      SerializedProduct)
+		 */
+		public void sendProduct(final Product product,
+				final SerializedProduct serialized) throws Exception {
+			limiter.acquire();
+			ProductBuilder.sendProduct(sender, product, serialized);
+		}
+
+		@Override
+		public String getName() {
+			return sender.getName();
+		}
+
+		/** Start the limited sender. */
+		@Override
+		public void startup() throws Exception {
+			sender.startup();
+		}
+
+		/** Shutdown the limited sender. */
+		@Override
+		public void shutdown() throws Exception {
+			sender.shutdown();
+		}
+
+	}
+
+}
@@ -14,13 +14,16 @@ import gov.usgs.earthquake.product.io.ProductSource;
 import gov.usgs.earthquake.util.SizeLimitInputStream;
 import gov.usgs.util.Config;
 import gov.usgs.util.DefaultConfigurable;
+import gov.usgs.util.FileUtils;
 import gov.usgs.util.StreamUtils;
 import gov.usgs.util.ObjectLock;
+import gov.usgs.util.metrics.MetricsRegistry;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Files;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -86,6 +89,27 @@ public class DefaultNotificationReceiver extends DefaultConfigurable implements
 	 */
 	public static final String DEFAULT_RECEIVER_CLEANUP = "900000";
 
+	/** Property for maximum expired notifications removed per batch. */
+	public static final String CLEANUP_BATCH_SIZE_PROPERTY = "cleanupBatchSize";
+	/** Default maximum expired notifications removed per batch. */
+	public static final String DEFAULT_CLEANUP_BATCH_SIZE = "500";
+	/** Property for number of threads removing expired products. */
+	public static final String CLEANUP_THREADS_PROPERTY = "cleanupThreads";
+	/** Default number of threads removing expired products. */
+	public static final String DEFAULT_CLEANUP_THREADS = "4";
+	/** Property for expired products removed per second, 0 for no limit. */
+	public static final String CLEANUP_RATE_PROPERTY = "cleanupRate";
+	/** Default expired products removed per second, no limit. */
+	public static final String DEFAULT_CLEANUP_RATE = "0";
+	/** Property for milliseconds of cleanup before pausing. */
+	public static final String CLEANUP_TIME_SLICE_PROPERTY = "cleanupTimeSlice";
+	/** Default milliseconds of cleanup before pausing. 5 seconds */
+	public static final String DEFAULT_CLEANUP_TIME_SLICE = "5000";
+	/** Property for milliseconds to pause between cleanup time slices. */
+	public static final String CLEANUP_PAUSE_PROPERTY = "cleanupPause";
+	/** Default milliseconds to pause between cleanup time slices. 1 second */
+	public static final String DEFAULT_CLEANUP_PAUSE = "1000";
+
 	/** Property for connection Timeout */
 	public static final String CONNECT_TIMEOUT_PROPERTY = "connectTimeout";
 	/** Default connection timeout. 15 seconds */
@@ -95,6 +119,15 @@ public class DefaultNotificationReceiver extends DefaultConfigurable implements
 	/** default read timeout. 15 seconds */
 	public static final String DEFAULT_READ_TIMEOUT = "15000";
 
+	/** Property for number of contents downloaded at the same time */
+	public static final String DOWNLOAD_THREADS_PROPERTY = "downloadThreads";
+	/** Default number of contents downloaded at the same time */
+	public static final String DEFAULT_DOWNLOAD_THREADS = "4";
+	/** Property for number of times an interrupted download is resumed */
+	public static final String MAX_RESUMES_PROPERTY = "maxResumes";
+	/** Default number of times an interrupted download is resumed */
+	public static final String DEFAULT_MAX_RESUMES = "3";
+
 	/** Property for listener notifier */
 	public static final String LISTENER_NOTIFIER_PROPERTY = "listenerNotifier";
 	/** Property for listener notifier to set to executor*/
@@ -119,14 +152,33 @@ public class DefaultNotificationReceiver extends DefaultConfigurable implements
 	/** Timer that schedules receiver cleanup task. */
 	private Timer receiverCleanupTimer = new Timer();
 
+	/** Removes expired notifications and products, created when first used. */
+	private ExpiredNotificationCleanup cleanup;
+
+	private int cleanupBatchSize = Integer.parseInt(DEFAULT_CLEANUP_BATCH_SIZE);
+	private int cleanupThreads = Integer.parseInt(DEFAULT_CLEANUP_THREADS);
+	private double cleanupRate = Double.parseDouble(DEFAULT_CLEANUP_RATE);
+	private long cleanupTimeSlice = Long.parseLong(DEFAULT_CLEANUP_TIME_SLICE);
+	private long cleanupPause = Long.parseLong(DEFAULT_CLEANUP_PAUSE);
+
 	private int connectTimeout = Integer.parseInt(DEFAULT_CONNECT_TIMEOUT);
 	private int readTimeout = Integer.parseInt(DEFAULT_READ_TIMEOUT);
 
+	/** Downloads products, resuming interrupted transfers. */
+	private final ProductDownloader downloader = new ProductDownloader();
+
 	private ListenerNotifier notifier;
 
 	/** A lock that is acquired when a product is being retrieved. */
 	private ObjectLock<ProductId> retrieveLocks = new ObjectLock<ProductId>();
 
+	/** Avoids downloading products other receivers are downloading. */
+	private ProductDownloadCoordinator downloadCoordinator = ProductDownloadCoordinator
+			.getDefault();
+
+	/** Receive, lock wait, and download metrics. */
+	private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+
 	/** Creates new ExecutorListenerNotifier to var notifier */
 	public DefaultNotificationReceiver() {
 		notifier = new ExecutorListenerNotifier(this);
@@ -175,8 +227,10 @@ public class DefaultNotificationReceiver extends DefaultConfigurable implements
 		// notification processed
 		new ProductTracker(notification.getTrackerURL()).notificationReceived(
 				this.getName(), notification);
+		metrics.increment(getName(), "notifications");
 
 		if (notification.getExpirationDate().before(new Date())) {
+			metrics.increment(getName(), "notifications.expired");
 			LOGGER.finer("[" + getName()
 					+ "] skipping already expired notification for product id="
 					+ notification.getProductId().toString() + ", expiration="
@@ -221,6 +275,8 @@ public class DefaultNotificationReceiver extends DefaultConfigurable implements
 
 		// queue notification for listeners
 		NotificationEvent event = new NotificationEvent(this, notification);
+		event.setTrace(ProductTracer.getDefault().startTrace(
+				notification.getProductId()));
 		notifier.notifyListeners(event);
 	}
 	/** @return "Using notifier" */
@@ -234,33 +290,35 @@ public class DefaultNotificationReceiver extends DefaultConfigurable implements
 	 * URLNotification, it represents a product in storage that will also be
 	 * removed.
 	 *
+	 * Removal is done in batches and time slices by an
+	 * ExpiredNotificationCleanup.
+	 *
 	 * @throws Exception
 	 *             if productStorage or notificationIndex throw an Exception.
 	 */
 	public void removeExpiredNotifications() throws Exception {
 		LOGGER.fine("[" + getName() + "] running receiver cleanup");
-		Iterator<Notification> iter = notificationIndex
-				.findExpiredNotifications().iterator();
-		while (iter.hasNext()) {
-			Notification notification = iter.next();
-			if (!(notification instanceof URLNotification)) {
-				// if it isn't a url notification, it's also in storage
-				productStorage.removeProduct(notification.getProductId());
-				if (LOGGER.isLoggable(Level.FINEST)) {
-					LOGGER.finest("[" + getName()
-							+ "] removed expired product from receiver cache "
-							+ notification.getProductId().toString());
-				}
-			}
+		long removed = getCleanup().removeExpired();
+		if (removed > 0) {
+			LOGGER.fine("[" + getName() + "] removed " + removed
+					+ " expired notifications");
+		}
+	}
 
-			// remove expired notification from index
-			notificationIndex.removeNotification(notification);
-			if (LOGGER.isLoggable(Level.FINEST)) {
-				LOGGER.finest("[" + getName()
-						+ "] removed expired notification from receiver index "
-						+ notification.getProductId().toString());
-			}
+	/**
+	 * @return cleanup for the current index and storage.
+	 */
+	protected synchronized ExpiredNotificationCleanup getCleanup() {
+		if (cleanup == null) {
+			cleanup = new ExpiredNotificationCleanup(getName(),
+					notificationIndex, productStorage);
+			cleanup.setBatchSize(cleanupBatchSize);
+			cleanup.setStorageThreads(cleanupThreads);
+			cleanup.setStorageRate(cleanupRate);
+			cleanup.setTimeSlice(cleanupTimeSlice);
+			cleanup.setSlicePause(cleanupPause);
 		}
+		return cleanup;
 	}
 
 	/**
@@ -281,7 +339,12 @@ public class DefaultNotificationReceiver extends DefaultConfigurable implements
 
 		LOGGER.finest("[" + getName() + "] acquiring retrieve lock id="
 				+ productIdString);
+		final long beginLockWait = metrics.startTimer();
+		final long beginLockWaitMillis = System.currentTimeMillis();
 		retrieveLocks.acquireLock(id);
+		metrics.recordSince(getName(), "retrieve.lockWait", beginLockWait);
+		ProductTrace.addCurrentStage(getName(), "retrieve.lockWait",
+				beginLockWaitMillis);
 		LOGGER.finest("[" + getName() + "] retrieve lock acquired id="
 				+ productIdString);
 		try {
@@ -304,126 +367,17 @@ public class DefaultNotificationReceiver extends DefaultConfigurable implements
 			}
 
 			if (product == null) {
-				LOGGER.finer("[" + getName()
-						+ "] don't have product yet, searching notifications");
-				// don't have product yet, search notifications
-				Iterator<Notification> iter = notificationIndex
-						.findNotifications(id).iterator();
-				while (product == null && iter.hasNext()) {
-					Notification notification = iter.next();
-					if (!(notification instanceof URLNotification)) {
-						// only URL notifications include location info
-						continue;
-					}
-
-					InputStream in = null;
-					try {
-						URL productURL = ((URLNotification) notification)
-								.getProductURL();
-
-						ProductSource productSource = null;
-						SizeLimitInputStream sizeIn = null;
-
-						final Date beginConnect = new Date();
-						Date beginDownload = new Date();
-						if (productURL.getProtocol().equals("data")) {
-							product = new JsonProduct().getProduct(Json.createReader(
-									StreamUtils.getInputStream(productURL)).readObject());
-							// JSON notification with embedded product
-							LOGGER.finer("[" + getName() + "] parsed json notification for "
-									+ product.getId().toString());
-							productSource = new ObjectProductSource(product);
-						} else {
-							// URL notification
-							LOGGER.finer("[" + getName() + "] notification url "
-									+ productURL.toString());
-
-							in = StreamUtils.getURLInputStream(productURL,
-									connectTimeout, readTimeout);
-							beginDownload = new Date();
-							// use size limit with negative limit to count transfer size
-							sizeIn = new SizeLimitInputStream(in, -1);
-							productSource = IOUtil.autoDetectProductSource(sizeIn);
-						}
-
-						Notification storedNotification = storeProductSource(productSource);
-
-						final Date endDownload = new Date();
-						final long connectTime = beginDownload.getTime() - beginConnect.getTime();
-						final long downloadTime = endDownload.getTime() - beginDownload.getTime();
-						final long downloadSize = sizeIn != null ? sizeIn.getRead() : 0;
-						final long downloadRate = Math.round(downloadSize /
-								(Math.max(downloadTime, 1L) / 1000.0));
-
-						LOGGER.fine("[" + getName() + "] receiver retrieved product"
-								+ " id=" + id.toString()
-								+ " (connect = " + connectTime + " ms)"
-								+ " (rate = " + downloadRate +  " bytes/s)"
-								+ " (size = " + downloadSize + " bytes)"
-								+ " (time = " + downloadTime + " ms)"
-								+ " from "
-								+ (productURL.getProtocol().equals("data")
-										? "data url"
-										: productURL.toString()));
+				product = downloadCoordinator.retrieve(id, productStorage,
+						new ProductDownloadCoordinator.Retriever() {
+							public Product download() throws Exception {
+								return downloadProduct(id);
+							}
 
-						LOGGER.finest("[" + getName()
-								+ "] after store product, notification="
-								+ storedNotification);
-
-						if (productStorage.hasProduct(id)) {
-							LOGGER.finer("[" + getName()
-									+ "] getting product from storage");
-							product = productStorage.getProduct(id);
-							LOGGER.finest("[" + getName()
-									+ "] after getProduct, product=" + product);
-
-							try {
-								new ProductTracker(notification.getTrackerURL())
-										.productDownloaded(this.getName(), id);
-								LOGGER.fine("[" + getName()
-										+ "] product downloaded from "
-										+ (productURL.getProtocol().equals("data")
-												? "data url"
-												: productURL.toString()));
-							} catch (Exception e) {
-								LOGGER.log(
-										Level.WARNING,
-										"["
-												+ getName()
-												+ "] exception notifying tracker about downloaded product",
-										e);
+							public Product reuse(final ProductStorage storage,
+									final boolean sameStorage) throws Exception {
+								return reuseProduct(id, storage, sameStorage);
 							}
-						} else {
-							LOGGER.finer("[" + getName()
-									+ "] product not in storage id="
-									+ productIdString);
-						}
-					} catch (Exception e) {
-						if (e instanceof ProductAlreadyInStorageException
-								|| e.getCause() instanceof ProductAlreadyInStorageException) {
-							LOGGER.finer("[" + getName()
-									+ "] product already in storage id="
-									+ productIdString);
-							product = productStorage.getProduct(id);
-							continue;
-						}
-
-						// log any exception that happened while retrieving
-						// product
-						if (e instanceof FileNotFoundException) {
-							LOGGER.warning("["
-									+ getName()
-									+ "] exception while retrieving product, file not found");
-						} else {
-							LOGGER.log(Level.WARNING, "[" + getName()
-									+ "] exception while retrieving product", e);
-							new ProductTracker(notification.getTrackerURL())
-									.exception(this.getName(), id, e);
-						}
-					} finally {
-						StreamUtils.closeStream(in);
-					}
-				}
+						});
 			}
 		} finally {
 			LOGGER.finest("[" + getName() + "] releasing retrieve lock id="
@@ -437,6 +391,204 @@ public class DefaultNotificationReceiver extends DefaultConfigurable implements
 		return product;
 	}
 
+	/**
+	 * Search notifications for a product, and download it into storage.
+	 *
+	 * Called by retrieveProduct while holding the retrieve lock, when no
+	 * other receiver is downloading the same product.
+	 *
+	 * @param id
+	 *            the product to download.
+	 * @return the downloaded product, or null if not available.
+	 * @throws Exception exception
+	 */
+	protected Product downloadProduct(final ProductId id) throws Exception {
+		Product product = null;
+		String productIdString = id.toString();
+		LOGGER.finer("[" + getName()
+				+ "] don't have product yet, searching notifications");
+		// don't have product yet, search notifications
+		Iterator<Notification> iter = notificationIndex
+				.findNotifications(id).iterator();
+		while (product == null && iter.hasNext()) {
+			Notification notification = iter.next();
+			if (!(notification instanceof URLNotification)) {
+				// only URL notifications include location info
+				continue;
+			}
+
+			InputStream in = null;
+			File contentDirectory = null;
+			try {
+				URL productURL = ((URLNotification) notification)
+						.getProductURL();
+
+				ProductSource productSource = null;
+				SizeLimitInputStream sizeIn = null;
+				long contentSize = 0L;
+
+				final long beginRetrieve = metrics.startTimer();
+				final Date beginConnect = new Date();
+				Date beginDownload = new Date();
+				if (productURL.getProtocol().equals("data")) {
+					// not assigned to product until stored, so a failed
+					// download tries the next notification
+					final Product jsonProduct = new JsonProduct().getProduct(
+							Json.createReader(StreamUtils.getInputStream(
+									productURL)).readObject());
+					// JSON notification with embedded product
+					LOGGER.finer("[" + getName() + "] parsed json notification for "
+							+ jsonProduct.getId().toString());
+					// download contents referenced by url in parallel
+					contentDirectory = Files.createTempDirectory("pdl-download")
+							.toFile();
+					contentSize = downloader.downloadContents(jsonProduct,
+							contentDirectory);
+					productSource = new ObjectProductSource(jsonProduct);
+				} else {
+					// URL notification
+					LOGGER.finer("[" + getName() + "] notification url "
+							+ productURL.toString());
+
+					in = downloader.openStream(productURL);
+					beginDownload = new Date();
+					// use size limit with negative limit to count transfer size
+					sizeIn = new SizeLimitInputStream(in, -1);
+					productSource = IOUtil.autoDetectProductSource(sizeIn);
+				}
+
+				Notification storedNotification = storeProductSource(productSource);
+
+				final Date endDownload = new Date();
+				final long connectTime = beginDownload.getTime() - beginConnect.getTime();
+				final long downloadTime = endDownload.getTime() - beginDownload.getTime();
+				final long downloadSize = (sizeIn != null ? sizeIn.getRead() : 0)
+						+ contentSize;
+				final long downloadRate = Math.round(downloadSize /
+						(Math.max(downloadTime, 1L) / 1000.0));
+				metrics.recordSince(getName(), "download", beginRetrieve);
+				ProductTrace.addCurrentStage(getName(), "download",
+						beginConnect.getTime());
+				metrics.add(getName(), "download.bytes", downloadSize);
+
+				LOGGER.fine("[" + getName() + "] receiver retrieved product"
+						+ " id=" + id.toString()
+						+ " (connect = " + connectTime + " ms)"
+						+ " (rate = " + downloadRate +  " bytes/s)"
+						+ " (size = " + downloadSize + " bytes)"
+						+ " (time = " + downloadTime + " ms)"
+						+ " from "
+						+ (productURL.getProtocol().equals("data")
+								? "data url"
+								: productURL.toString()));
+
+				LOGGER.finest("[" + getName()
+						+ "] after store product, notification="
+						+ storedNotification);
+
+				if (productStorage.hasProduct(id)) {
+					LOGGER.finer("[" + getName()
+							+ "] getting product from storage");
+					product = productStorage.getProduct(id);
+					LOGGER.finest("[" + getName()
+							+ "] after getProduct, product=" + product);
+
+					try {
+						new ProductTracker(notification.getTrackerURL())
+								.productDownloaded(this.getName(), id);
+						LOGGER.fine("[" + getName()
+								+ "] product downloaded from "
+								+ (productURL.getProtocol().equals("data")
+										? "data url"
+										: productURL.toString()));
+					} catch (Exception e) {
+						LOGGER.log(
+								Level.WARNING,
+								"["
+										+ getName()
+										+ "] exception notifying tracker about downloaded product",
+								e);
+					}
+				} else {
+					LOGGER.finer("[" + getName()
+							+ "] product not in storage id="
+							+ productIdString);
+				}
+			} catch (Exception e) {
+				if (e instanceof ProductAlreadyInStorageException
+						|| e.getCause() instanceof ProductAlreadyInStorageException) {
+					LOGGER.finer("[" + getName()
+							+ "] product already in storage id="
+							+ productIdString);
+					product = productStorage.getProduct(id);
+					continue;
+				}
+
+				// log any exception that happened while retrieving
+				// product
+				metrics.increment(getName(), "download.errors");
+				if (e instanceof FileNotFoundException) {
+					LOGGER.warning("["
+							+ getName()
+							+ "] exception while retrieving product, file not found");
+				} else {
+					LOGGER.log(Level.WARNING, "[" + getName()
+							+ "] exception while retrieving product", e);
+					new ProductTracker(notification.getTrackerURL())
+							.exception(this.getName(), id, e);
+				}
+			} finally {
+				StreamUtils.closeStream(in);
+				if (contentDirectory != null) {
+					FileUtils.deleteTree(contentDirectory);
+				}
+			}
+		}
+
+		return product;
+	}
+
+	/**
+	 * Use a product that another receiver downloaded.
+	 *
+	 * If the other receiver uses the same storage directory, the product is
+	 * already stored and only the notification index is updated. Otherwise
+	 * the product is copied from the other storage.
+	 *
+	 * @param id
+	 *            the product to reuse.
+	 * @param storage
+	 *            storage where another receiver stored the product.
+	 * @param sameStorage
+	 *            whether storage stores products in the same place as
+	 *            productStorage.
+	 * @return the product, or null if not available.
+	 * @throws Exception exception
+	 */
+	protected Product reuseProduct(final ProductId id,
+			final ProductStorage storage, final boolean sameStorage)
+			throws Exception {
+		Notification storedNotification;
+		if (sameStorage) {
+			storedNotification = addStoredNotification(id);
+		} else {
+			try {
+				storedNotification = storeProductSource(storage
+						.getProductSource(id));
+			} catch (ProductAlreadyInStorageException paise) {
+				storedNotification = addStoredNotification(id);
+			}
+		}
+		if (storedNotification == null) {
+			return null;
+		}
+		metrics.increment(getName(), "download.shared");
+		LOGGER.fine("[" + getName() + "] reused product id=" + id.toString()
+				+ (sameStorage ? " already in storage" : " copied from "
+						+ storage.getName()));
+		return productStorage.getProduct(id);
+	}
+
 	/**
 	 * Calls the current <code>ProductStorage.storeProductSource</code> method.
 	 *
@@ -456,18 +608,35 @@ public class DefaultNotificationReceiver extends DefaultConfigurable implements
 
 		// check if stored
 		if (productStorage.hasProduct(id)) {
-			Product product = productStorage.getProduct(id);
+			notification = addStoredNotification(id);
+		}
 
-			// calculate storage expiration date
-			Date expirationDate = new Date(new Date().getTime()
-					+ productStorageMaxAge);
+		return notification;
+	}
 
-			// update notification index
-			notification = new DefaultNotification(id, expirationDate,
-					product.getTrackerURL());
-			notificationIndex.addNotification(notification);
+	/**
+	 * Add a notification for a product in storage to the notification index.
+	 *
+	 * @param id
+	 *            product in storage.
+	 * @return the added notification, or null if product is not in storage.
+	 * @throws Exception exception
+	 */
+	protected Notification addStoredNotification(final ProductId id)
+			throws Exception {
+		Product product = productStorage.getProduct(id);
+		if (product == null) {
+			return null;
 		}
 
+		// calculate storage expiration date
+		Date expirationDate = new Date(new Date().getTime()
+				+ productStorageMaxAge);
+
+		// update notification index
+		Notification notification = new DefaultNotification(id,
+				expirationDate, product.getTrackerURL());
+		notificationIndex.addNotification(notification);
 		return notification;
 	}
 
@@ -562,6 +731,21 @@ public class DefaultNotificationReceiver extends DefaultConfigurable implements
 		LOGGER.config("[" + getName() + "] receiver cleanup interval "
 				+ receiverCleanupInterval + " ms");
 
+		cleanupBatchSize = Integer.parseInt(config.getProperty(
+				CLEANUP_BATCH_SIZE_PROPERTY, DEFAULT_CLEANUP_BATCH_SIZE));
+		cleanupThreads = Integer.parseInt(config.getProperty(
+				CLEANUP_THREADS_PROPERTY, DEFAULT_CLEANUP_THREADS));
+		cleanupRate = Double.parseDouble(config.getProperty(
+				CLEANUP_RATE_PROPERTY, DEFAULT_CLEANUP_RATE));
+		cleanupTimeSlice = Long.parseLong(config.getProperty(
+				CLEANUP_TIME_SLICE_PROPERTY, DEFAULT_CLEANUP_TIME_SLICE));
+		cleanupPause = Long.parseLong(config.getProperty(
+				CLEANUP_PAUSE_PROPERTY, DEFAULT_CLEANUP_PAUSE));
+		LOGGER.config("[" + getName() + "] receiver cleanup batch size "
+				+ cleanupBatchSize + ", threads " + cleanupThreads
+				+ ", rate " + cleanupRate + "/s, time slice "
+				+ cleanupTimeSlice + " ms, pause " + cleanupPause + " ms");
+
 		connectTimeout = Integer.parseInt(config.getProperty(
 				CONNECT_TIMEOUT_PROPERTY, DEFAULT_CONNECT_TIMEOUT));
 		LOGGER.config("[" + getName() + "] receiver connect timeout "
@@ -572,6 +756,16 @@ public class DefaultNotificationReceiver extends DefaultConfigurable implements
 		LOGGER.config("[" + getName() + "] receiver read timeout "
 				+ readTimeout + " ms");
 
+		downloader.setConnectTimeout(connectTimeout);
+		downloader.setReadTimeout(readTimeout);
+		downloader.setDownloadThreads(Integer.parseInt(config.getProperty(
+				DOWNLOAD_THREADS_PROPERTY, DEFAULT_DOWNLOAD_THREADS)));
+		downloader.setMaxResumes(Integer.parseInt(config.getProperty(
+				MAX_RESUMES_PROPERTY, DEFAULT_MAX_RESUMES)));
+		LOGGER.config("[" + getName() + "] receiver download threads "
+				+ downloader.getDownloadThreads() + ", max resumes "
+				+ downloader.getMaxResumes());
+
 		String notifierType = config.getProperty(LISTENER_NOTIFIER_PROPERTY);
 		if (notifierType != null) {
 			if (notifierType.equals(EXECUTOR_LISTENER_NOTIFIER)) {
@@ -593,6 +787,13 @@ public class DefaultNotificationReceiver extends DefaultConfigurable implements
 
 	public void shutdown() throws Exception {
 		receiverCleanupTimer.cancel();
+		synchronized (this) {
+			if (cleanup != null) {
+				cleanup.shutdown();
+				cleanup = null;
+			}
+		}
+		downloader.shutdown();
 
 		try {
 			notifier.shutdown();
@@ -675,6 +876,23 @@ public class DefaultNotificationReceiver extends DefaultConfigurable implements
 		this.productStorage = productStorage;
 	}
 
+	/**
+	 * @return the downloadCoordinator
+	 */
+	public ProductDownloadCoordinator getDownloadCoordinator() {
+		return downloadCoordinator;
+	}
+
+	/**
+	 * @param downloadCoordinator
+	 *            the downloadCoordinator to set, or a new coordinator to
+	 *            download independently of other receivers
+	 */
+	public void setDownloadCoordinator(
+			ProductDownloadCoordinator downloadCoordinator) {
+		this.downloadCoordinator = downloadCoordinator;
+	}
+
 	/**
 	 * @return the productStorageMaxAge
 	 */
@@ -736,6 +954,7 @@ public class DefaultNotificationReceiver extends DefaultConfigurable implements
 	 */
 	public void setConnectTimeout(int connectTimeout) {
 		this.connectTimeout = connectTimeout;
+		downloader.setConnectTimeout(connectTimeout);
 	}
 
 	/**
@@ -764,6 +983,7 @@ public class DefaultNotificationReceiver extends DefaultConfigurable implements
 	 */
 	public void setReadTimeout(int readTimeout) {
 		this.readTimeout = readTimeout;
+		downloader.setReadTimeout(readTimeout);
 	}
 
 }
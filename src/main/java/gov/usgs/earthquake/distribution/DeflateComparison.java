@@ -4,6 +4,10 @@ import gov.usgs.earthquake.product.FileContent;
 import gov.usgs.earthquake.product.Product;
 import gov.usgs.earthquake.product.ProductId;
 import gov.usgs.earthquake.product.io.BinaryProductHandler;
+import gov.usgs.earthquake.product.io.BinaryProductSource;
+import gov.usgs.earthquake.product.io.ContentCodec;
+import gov.usgs.earthquake.product.io.ContentCodecs;
+import gov.usgs.earthquake.product.io.ObjectProductHandler;
 import gov.usgs.earthquake.product.io.ObjectProductSource;
 import gov.usgs.util.StreamUtils;
 
@@ -122,6 +126,50 @@ public class DeflateComparison {
 				deflateBestCompressionTime);
 	}
 
+	/**
+	 * Compare whole stream deflate to per content codecs for a product.
+	 *
+	 * Whole stream deflate compresses every content, including content that
+	 * is already compressed. Content codecs skip content that is already
+	 * compressed, see ContentCodecs.isCompressed.
+	 *
+	 * @param name
+	 *            given name
+	 * @param product
+	 *            product to test, contents should be in memory to avoid io
+	 *            overhead.
+	 * @throws Exception if error occurs
+	 */
+	public void testContentCodecs(final String name, final Product product)
+			throws Exception {
+		Date start;
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		new ObjectProductSource(product)
+				.streamTo(new BinaryProductHandler(baos));
+		byte[] raw = baos.toByteArray();
+		long totalBytes = raw.length;
+
+		System.err.println(name + ", length = " + totalBytes + " bytes");
+
+		System.err.println("whole stream, best speed (1)");
+		start = new Date();
+		long deflateBestSpeed = deflateStream(Deflater.BEST_SPEED,
+				new ByteArrayInputStream(raw));
+		long deflateBestSpeedTime = new Date().getTime() - start.getTime();
+		formatResult(totalBytes, deflateBestSpeed, deflateBestSpeedTime);
+
+		for (ContentCodec codec : new ContentCodec[] { ContentCodecs.LZ4,
+				ContentCodecs.DEFLATE }) {
+			System.err.println("per content, " + codec.getName());
+			start = new Date();
+			CountingOutputStream cos = new CountingOutputStream();
+			new ObjectProductSource(product).streamTo(new BinaryProductHandler(
+					cos, codec));
+			long codecTime = new Date().getTime() - start.getTime();
+			formatResult(totalBytes, cos.getTotalBytes(), codecTime);
+		}
+	}
+
 	/**
 	 * For calculating for properly formatting the results
 	 *
@@ -213,6 +261,9 @@ public class DeflateComparison {
 				.streamTo(new BinaryProductHandler(baos));
 		new DeflateComparison().testByteArray("product contents",
 				baos.toByteArray());
+		new DeflateComparison().testContentCodecs("product contents",
+				ObjectProductHandler.getProduct(new BinaryProductSource(
+						new ByteArrayInputStream(baos.toByteArray()))));
 	}
 
 }
@@ -4,6 +4,7 @@ import gov.usgs.earthquake.aws.JsonNotificationIndex;
 import gov.usgs.earthquake.product.AbstractListener;
 import gov.usgs.util.DefaultConfigurable;
 import gov.usgs.util.ExecutorTask;
+import gov.usgs.util.metrics.MetricsRegistry;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -85,6 +86,12 @@ public class ExecutorListenerNotifier extends DefaultConfigurable implements
 			ExecutorService listenerExecutor = Executors.newFixedThreadPool(
 					concurrentProducts);
 			notificationListeners.put(listener, listenerExecutor);
+			if (listenerExecutor instanceof ThreadPoolExecutor) {
+				final BlockingQueue<Runnable> queue =
+						((ThreadPoolExecutor) listenerExecutor).getQueue();
+				MetricsRegistry.getDefault().setGauge(
+						getQueueGaugeName(listener), () -> queue.size());
+			}
 		}
 	}
 
@@ -103,6 +110,7 @@ public class ExecutorListenerNotifier extends DefaultConfigurable implements
 		// remove listener from map
 		ExecutorService listenerExecutor = notificationListeners
 				.remove(listener);
+		MetricsRegistry.getDefault().removeGauge(getQueueGaugeName(listener));
 
 		// shutdown executor thread
 		listenerExecutor.shutdown();
@@ -113,6 +121,16 @@ public class ExecutorListenerNotifier extends DefaultConfigurable implements
 		// quickly. Also, see DefaultNotificationReceiver.shutdown().
 	}
 
+	/**
+	 * @param listener
+	 *            listener with queue.
+	 * @return name of gauge for listener queue size.
+	 */
+	private String getQueueGaugeName(final NotificationListener listener) {
+		return (receiver == null ? "" : receiver.getName() + ".")
+				+ listener.getName() + ".queue";
+	}
+
 	/**
 	 * Send a notification to all registered NotificationListeners.
 	 *
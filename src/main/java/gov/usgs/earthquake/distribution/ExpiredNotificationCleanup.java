@@ -0,0 +1,323 @@
+/*
+ * ExpiredNotificationCleanup
+ */
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.product.ProductId;
+import gov.usgs.util.RateLimiter;
+import gov.usgs.util.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Removes expired notifications from a notification index, and the products
+ * they reference from product storage.
+ *
+ * Work is done in batches: storage directories for a batch are removed in
+ * parallel, at a bounded rate, then the batch is removed from the index with
+ * {@link BatchNotificationIndex#removeNotifications(List)} when supported.
+ * Batches run in time slices separated by a pause, so a large backlog (for
+ * example after an outage) does not hold the index away from receiving for
+ * long periods.
+ *
+ * Notifications whose product could not be removed from storage stay in the
+ * index, are skipped for the rest of the cleanup, and are retried during the
+ * next cleanup.
+ */
+public class ExpiredNotificationCleanup {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(ExpiredNotificationCleanup.class.getName());
+
+	/** Name used for logging and metrics. */
+	private final String name;
+	/** Index with expired notifications. */
+	private final NotificationIndex notificationIndex;
+	/** Storage with products referenced by notifications. */
+	private final ProductStorage productStorage;
+
+	/** Maximum notifications per batch. */
+	private int batchSize = 500;
+	/** Threads removing products from storage. */
+	private int storageThreads = 4;
+	/** Maximum products removed from storage per second, 0 for no limit. */
+	private double storageRate = 0;
+	/** Milliseconds of work before pausing. */
+	private long timeSlice = 5000L;
+	/** Milliseconds to pause between time slices. */
+	private long slicePause = 1000L;
+
+	private ExecutorService storageExecutor;
+	private RateLimiter storageLimiter;
+	private volatile boolean stopped = false;
+
+	private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+	/**
+	 * Create a cleanup.
+	 *
+	 * @param name
+	 *            name used for logging and metrics.
+	 * @param notificationIndex
+	 *            index with expired notifications.
+	 * @param productStorage
+	 *            storage with products referenced by notifications.
+	 */
+	public ExpiredNotificationCleanup(final String name,
+			final NotificationIndex notificationIndex,
+			final ProductStorage productStorage) {
+		this.name = name;
+		this.notificationIndex = notificationIndex;
+		this.productStorage = productStorage;
+	}
+
+	/**
+	 * Remove all expired notifications, one time slice at a time.
+	 *
+	 * @return number of notifications removed.
+	 * @throws Exception
+	 *             if the index cannot be searched or updated.
+	 */
+	public long removeExpired() throws Exception {
+		final AtomicLong removed = new AtomicLong();
+		final Set<ProductId> failed = new HashSet<ProductId>();
+		stopped = false;
+		boolean more = true;
+		while (more && !stopped) {
+			final long start = System.currentTimeMillis();
+			final long before = removed.get();
+			more = runSlice(removed, failed);
+			LOGGER.fine("[" + name + "] cleanup slice removed "
+					+ (removed.get() - before) + " notifications in "
+					+ (System.currentTimeMillis() - start) + "ms, "
+					+ removed.get() + " total");
+			if (more && slicePause > 0) {
+				Thread.sleep(slicePause);
+			}
+		}
+		return removed.get();
+	}
+
+	/**
+	 * Remove batches of expired notifications until none remain or the time
+	 * slice is used.
+	 *
+	 * @param removed
+	 *            incremented by the number of notifications removed.
+	 * @param failed
+	 *            products that could not be removed from storage during this
+	 *            cleanup, skipped in later batches and added to.
+	 * @return true when the time slice ended with more to remove.
+	 * @throws Exception
+	 *             if the index cannot be searched or updated.
+	 */
+	protected boolean runSlice(final AtomicLong removed,
+			final Set<ProductId> failed) throws Exception {
+		final long start = metrics.startTimer();
+		final long end = System.currentTimeMillis() + timeSlice;
+		try {
+			while (!stopped) {
+				// failed notifications are still in the index, and expired
+				// first, so read past them
+				final int limit = batchSize + failed.size();
+				final List<Notification> expired = findBatch(limit);
+				final List<Notification> batch = new ArrayList<Notification>(
+						batchSize);
+				for (final Notification notification : expired) {
+					if (batch.size() < batchSize
+							&& !failed.contains(notification.getProductId())) {
+						batch.add(notification);
+					}
+				}
+				if (batch.size() == 0) {
+					return false;
+				}
+				final List<Notification> cleaned = removeProducts(batch);
+				removeNotifications(cleaned);
+				removed.addAndGet(cleaned.size());
+				metrics.add(name, "cleanup.notifications", cleaned.size());
+				if (cleaned.size() < batch.size()) {
+					final Set<Notification> removedNotifications = Collections
+							.newSetFromMap(new IdentityHashMap<Notification, Boolean>());
+					removedNotifications.addAll(cleaned);
+					for (final Notification notification : batch) {
+						if (!removedNotifications.contains(notification)) {
+							failed.add(notification.getProductId());
+						}
+					}
+				}
+				if (expired.size() < limit) {
+					// no more expired notifications
+					return false;
+				}
+				if (System.currentTimeMillis() >= end) {
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			metrics.recordSince(name, "cleanup.slice", start);
+		}
+	}
+
+	/**
+	 * @param limit
+	 *            maximum number of notifications.
+	 * @return expired notifications, earliest expiration first.
+	 * @throws Exception
+	 *             if the index cannot be searched.
+	 */
+	protected List<Notification> findBatch(final int limit) throws Exception {
+		if (notificationIndex instanceof BatchNotificationIndex) {
+			return ((BatchNotificationIndex) notificationIndex)
+					.findExpiredNotifications(limit);
+		}
+		final List<Notification> expired = notificationIndex
+				.findExpiredNotifications();
+		if (expired.size() > limit) {
+			return new ArrayList<Notification>(expired.subList(0, limit));
+		}
+		return expired;
+	}
+
+	/**
+	 * Remove products referenced by notifications from storage.
+	 *
+	 * URL notifications are not in storage.
+	 *
+	 * @param batch
+	 *            expired notifications.
+	 * @return notifications whose products were removed, or were not in
+	 *         storage.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting.
+	 */
+	protected List<Notification> removeProducts(final List<Notification> batch)
+			throws InterruptedException {
+		final List<Notification> cleaned = new ArrayList<Notification>(
+				batch.size());
+		final List<Notification> stored = new ArrayList<Notification>();
+		final List<Future<?>> futures = new ArrayList<Future<?>>();
+		final ExecutorService executor = getStorageExecutor();
+		for (final Notification notification : batch) {
+			if (notification instanceof URLNotification) {
+				cleaned.add(notification);
+				continue;
+			}
+			stored.add(notification);
+			futures.add(executor.submit(() -> {
+				if (storageLimiter != null) {
+					storageLimiter.acquire();
+				}
+				productStorage.removeProduct(notification.getProductId());
+				return null;
+			}));
+		}
+		for (int i = 0; i < futures.size(); i++) {
+			final Notification notification = stored.get(i);
+			try {
+				futures.get(i).get();
+				cleaned.add(notification);
+				metrics.increment(name, "cleanup.products");
+				if (LOGGER.isLoggable(Level.FINEST)) {
+					LOGGER.finest("[" + name
+							+ "] removed expired product from receiver cache "
+							+ notification.getProductId().toString());
+				}
+			} catch (Exception e) {
+				metrics.increment(name, "cleanup.errors");
+				LOGGER.log(Level.WARNING, "[" + name
+						+ "] exception removing expired product "
+						+ notification.getProductId().toString(), e);
+			}
+		}
+		return cleaned;
+	}
+
+	/**
+	 * Remove notifications from the index.
+	 *
+	 * @param notifications
+	 *            notifications to remove.
+	 * @throws Exception
+	 *             if the index cannot be updated.
+	 */
+	protected void removeNotifications(final List<Notification> notifications)
+			throws Exception {
+		if (notifications.size() == 0) {
+			return;
+		}
+		if (notificationIndex instanceof BatchNotificationIndex) {
+			((BatchNotificationIndex) notificationIndex)
+					.removeNotifications(notifications);
+		} else {
+			for (final Notification notification : notifications) {
+				notificationIndex.removeNotification(notification);
+			}
+		}
+	}
+
+	private synchronized ExecutorService getStorageExecutor() {
+		if (storageExecutor == null) {
+			storageExecutor = Executors.newFixedThreadPool(
+					Math.max(1, storageThreads), runnable -> {
+						final Thread thread = new Thread(runnable, name
+								+ "-cleanup");
+						thread.setDaemon(true);
+						return thread;
+					});
+		}
+		return storageExecutor;
+	}
+
+	/**
+	 * Stop after the current batch, and stop storage threads.
+	 */
+	public synchronized void shutdown() {
+		stopped = true;
+		if (storageExecutor != null) {
+			storageExecutor.shutdown();
+			storageExecutor = null;
+		}
+	}
+
+	/** @return maximum notifications per batch */
+	public int getBatchSize() { return batchSize; }
+	/** @param batchSize maximum notifications per batch */
+	public void setBatchSize(final int batchSize) { this.batchSize = batchSize; }
+
+	/** @return threads removing products from storage */
+	public int getStorageThreads() { return storageThreads; }
+	/** @param storageThreads threads removing products from storage */
+	public void setStorageThreads(final int storageThreads) { this.storageThreads = storageThreads; }
+
+	/** @return maximum products removed per second, 0 for no limit */
+	public double getStorageRate() { return storageRate; }
+	/** @param storageRate maximum products removed per second, 0 for no limit */
+	public void setStorageRate(final double storageRate) {
+		this.storageRate = storageRate;
+		this.storageLimiter = storageRate > 0 ? new RateLimiter(storageRate) : null;
+	}
+
+	/** @return milliseconds of work before pausing */
+	public long getTimeSlice() { return timeSlice; }
+	/** @param timeSlice milliseconds of work before pausing */
+	public void setTimeSlice(final long timeSlice) { this.timeSlice = timeSlice; }
+
+	/** @return milliseconds to pause between time slices */
+	public long getSlicePause() { return slicePause; }
+	/** @param slicePause milliseconds to pause between time slices */
+	public void setSlicePause(final long slicePause) { this.slicePause = slicePause; }
+
+}
@@ -292,6 +292,7 @@ public class ExternalNotificationListener extends DefaultNotificationListener {
 		String productCommand = null;
 		Process process = null;
 		int exitValue = -1;
+		final long beginCommand = System.currentTimeMillis();
 
 		try {
 			productCommand = getProductCommand(product);
@@ -312,6 +313,7 @@ public class ExternalNotificationListener extends DefaultNotificationListener {
 			// or switch to "Command"
 
 			exitValue = process.waitFor();
+			ProductTrace.addCurrentStage(getName(), "command", beginCommand);
 		} catch (Exception e) {
 			if (process != null) {
 				// make sure to kill zombies
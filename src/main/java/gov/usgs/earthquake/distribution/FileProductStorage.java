@@ -17,13 +17,16 @@ import gov.usgs.earthquake.product.io.ProductSource;
 import gov.usgs.util.Config;
 import gov.usgs.util.DefaultConfigurable;
 import gov.usgs.util.FileUtils;
+import gov.usgs.earthquake.util.ProductPresenceFilter;
 import gov.usgs.util.ObjectLock;
 import gov.usgs.util.StringUtils;
+import gov.usgs.util.metrics.MetricsRegistry;
 
 import java.io.File;
 import java.net.URL;
 import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -63,6 +66,16 @@ import java.util.logging.Logger;
  *
  * <dt>keychain</dt>
  * <dd>(Optional) List of key section names to load for signature verification.</dd>
+ *
+ * <dt>presenceFilter</dt>
+ * <dd>(Optional, default = true) Keep the ids of stored products in memory,
+ * so hasProduct does not check the file system for products that are not
+ * stored. Products the filter reports present are still confirmed on the
+ * file system. The directory is scanned in
+ * the background at startup, and the file system is checked until the scan
+ * completes. Storages in the same process with the same directory share
+ * one filter. Only used with the default directory structure; disable when
+ * another process stores products in the same directory.</dd>
  * </dl>
  *
  * An attempt is made to make storage operations atomic by using read and write
@@ -105,6 +118,11 @@ public class FileProductStorage extends DefaultConfigurable implements
 	/** Property for legacyStorages. */
 	public static final String LEGACY_STORAGES_PROPERTY = "legacyStorages";
 
+	/** Property for presenceFilter. */
+	public static final String PRESENCE_FILTER_PROPERTY = "presenceFilter";
+	/** Default presenceFilter. */
+	public static final boolean DEFAULT_PRESENCE_FILTER = true;
+
 	/** Base directory for product storage. */
 	private File baseDirectory;
 
@@ -115,6 +133,23 @@ public class FileProductStorage extends DefaultConfigurable implements
 
 	private SignatureVerifier verifier = new SignatureVerifier();
 
+	/** Store, lock wait, and verify metrics. */
+	private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+	private boolean presenceFilterEnabled = DEFAULT_PRESENCE_FILTER;
+
+	/** Ids of products in baseDirectory, once loaded. */
+	private volatile ProductPresenceFilter presenceFilter = new ProductPresenceFilter();
+
+	/** Shared filter used after startup. */
+	private SharedPresenceFilter sharedPresenceFilter;
+
+	/**
+	 * Presence filters by canonical base directory, so storages that share a
+	 * directory see each other's changes.
+	 */
+	private static final Map<File, SharedPresenceFilter> SHARED_PRESENCE_FILTERS = new HashMap<File, SharedPresenceFilter>();
+
 	/**
 	 * @return the storageLocks
 	 */
@@ -181,6 +216,12 @@ public class FileProductStorage extends DefaultConfigurable implements
 		LOGGER.config("[" + getName() + "] using storage directory "
 				+ baseDirectory.getCanonicalPath());
 
+		presenceFilterEnabled = Boolean.valueOf(config.getProperty(
+				PRESENCE_FILTER_PROPERTY,
+				Boolean.toString(DEFAULT_PRESENCE_FILTER)));
+		LOGGER.config("[" + getName() + "] presenceFilter = "
+				+ presenceFilterEnabled);
+
 		// Configure verifier
 		verifier.configure(config);
 
@@ -519,8 +560,16 @@ public class FileProductStorage extends DefaultConfigurable implements
 				+ id.toString());
 		try {
 			File productDirectory = getProductFile(id);
-			hasProduct = productDirectory.exists();
-			if (hasProduct) {
+			// filter answers are "maybe present" or "not present",
+			// only not present skips the file system check
+			boolean maybePresent = true;
+			if (presenceFilter.isLoaded()) {
+				maybePresent = presenceFilter.contains(id);
+				metrics.increment(getName(), maybePresent ? "presenceFilter.present"
+						: "presenceFilter.absent");
+			}
+			if (maybePresent && productDirectory.exists()) {
+				hasProduct = true;
 				// be a little more detailed...
 				ProductSource source = getProductSource(id);
 				if (source == null) {
@@ -579,6 +628,7 @@ public class FileProductStorage extends DefaultConfigurable implements
 		LOGGER.finest("[" + getName() + "] acquired write lock for product id="
 				+ idString);
 		try {
+			presenceFilter.remove(id);
 			File productFile = getProductFile(id);
 			if (productFile.exists()) {
 				// recursively delete the product directory
@@ -637,18 +687,29 @@ public class FileProductStorage extends DefaultConfigurable implements
 	 */
 	public ProductId storeProductSource(ProductSource source) throws Exception {
 		StorageProductOutput output = new StorageProductOutput();
+		final long beginStore = metrics.startTimer();
+		final long beginStoreMillis = System.currentTimeMillis();
 		// output acquires the storageLock during onBeginProduct, once the
 		// product id is known.
 		try {
 			source.streamTo(output);
 			// close output so file(s) are written
 			output.close();
+			metrics.recordSince(getName(), "store", beginStore);
+			ProductTrace.addCurrentStage(getName(), "store", beginStoreMillis);
 
 			ProductId id = output.getProductId();
 			LOGGER.finer("[" + getName() + "] product stored id=" + id
 					+ ", status=" + output.getStatus());
 
+			final long beginVerify = metrics.startTimer();
+			final long beginVerifyMillis = System.currentTimeMillis();
 			verifier.verifySignature(getProduct(id));
+			metrics.recordSince(getName(), "verify", beginVerify);
+			ProductTrace.addCurrentStage(getName(), "verify", beginVerifyMillis);
+
+			// still holding write lock
+			presenceFilter.add(id);
 
 		} catch (Exception e) {
 			if (!(e instanceof ProductAlreadyInStorageException)
@@ -763,7 +824,12 @@ public class FileProductStorage extends DefaultConfigurable implements
 			// acquire write lock for product
 			LOGGER.finest("[" + getName()
 					+ "] acquiring write lock for product id=" + id.toString());
+			final long beginLockWait = metrics.startTimer();
+			final long beginLockWaitMillis = System.currentTimeMillis();
 			storageLocks.acquireWriteLock(id);
+			metrics.recordSince(getName(), "store.lockWait", beginLockWait);
+			ProductTrace.addCurrentStage(getName(), "store.lockWait",
+					beginLockWaitMillis);
 			// keep track that we have write lock
 			LOGGER.finest("[" + getName()
 					+ "] acquired write lock for product id=" + id.toString());
@@ -802,6 +868,17 @@ public class FileProductStorage extends DefaultConfigurable implements
 	 * Called at client shutdown to free resources.
 	 */
 	public void shutdown() throws Exception {
+		synchronized (SHARED_PRESENCE_FILTERS) {
+			if (sharedPresenceFilter != null
+					&& --sharedPresenceFilter.references == 0) {
+				sharedPresenceFilter.loader.interrupt();
+				sharedPresenceFilter.filter.clear();
+				SHARED_PRESENCE_FILTERS.values().remove(sharedPresenceFilter);
+			}
+			sharedPresenceFilter = null;
+			presenceFilter = new ProductPresenceFilter();
+		}
+
 		// Remove all our listeners. Doing this will also shut down the
 		// ExecutorServices
 		Iterator<StorageListener> listenerIter = listeners.keySet().iterator();
@@ -838,6 +915,125 @@ public class FileProductStorage extends DefaultConfigurable implements
 						+ "] legacy storage startup exception ", e);
 			}
 		}
+
+		// ids can only be read from the default directory structure
+		ProductId sample = new ProductId("source", "type", "code", new Date(0));
+		if (presenceFilterEnabled && sharedPresenceFilter == null
+				&& getProductPath(sample).equals(getNormalProductPath(sample))) {
+			File directory = baseDirectory.getCanonicalFile();
+			synchronized (SHARED_PRESENCE_FILTERS) {
+				SharedPresenceFilter shared = SHARED_PRESENCE_FILTERS
+						.get(directory);
+				if (shared == null) {
+					final ProductPresenceFilter filter = new ProductPresenceFilter();
+					filter.beginLoad();
+					shared = new SharedPresenceFilter(filter, new Thread(
+							new Runnable() {
+								public void run() {
+									loadPresenceFilter(filter);
+								}
+							}, getName() + "-presenceFilter"));
+					SHARED_PRESENCE_FILTERS.put(directory, shared);
+					shared.loader.setDaemon(true);
+					shared.loader.start();
+				}
+				shared.references++;
+				sharedPresenceFilter = shared;
+				presenceFilter = shared.filter;
+			}
+		}
+	}
+
+	/**
+	 * A presence filter shared by storages with the same base directory.
+	 */
+	private static class SharedPresenceFilter {
+		final ProductPresenceFilter filter;
+		final Thread loader;
+		int references = 0;
+
+		SharedPresenceFilter(final ProductPresenceFilter filter,
+				final Thread loader) {
+			this.filter = filter;
+			this.loader = loader;
+		}
+	}
+
+	/**
+	 * Scan baseDirectory for stored products, and load a presence filter.
+	 *
+	 * Expects the default type/code/source/updateTime directory structure,
+	 * and only loads product directories with a product.xml file.
+	 *
+	 * @param presenceFilter
+	 *            filter to load, beginLoad has already been called.
+	 */
+	protected void loadPresenceFilter(final ProductPresenceFilter presenceFilter) {
+		final long start = System.currentTimeMillis();
+		try {
+			File[] types = listDirectories(baseDirectory);
+			for (File type : types) {
+				for (File code : listDirectories(type)) {
+					for (File source : listDirectories(code)) {
+						for (File updateTime : listDirectories(source)) {
+							if (Thread.currentThread().isInterrupted()) {
+								presenceFilter.clear();
+								return;
+							}
+							ProductId id;
+							try {
+								id = new ProductId(source.getName(),
+										type.getName(), code.getName(), new Date(
+												Long.parseLong(updateTime.getName())));
+							} catch (NumberFormatException nfe) {
+								continue;
+							}
+							if (getProductFile(id).equals(updateTime)
+									&& new File(updateTime,
+											DirectoryProductHandler.PRODUCT_XML_FILENAME)
+											.exists()) {
+								presenceFilter.addLoaded(id);
+							}
+						}
+					}
+				}
+			}
+			presenceFilter.endLoad();
+			LOGGER.info("[" + getName() + "] loaded presence filter with "
+					+ presenceFilter.size() + " products in "
+					+ (System.currentTimeMillis() - start) + " ms");
+		} catch (Exception e) {
+			LOGGER.log(Level.WARNING, "[" + getName()
+					+ "] exception loading presence filter", e);
+			presenceFilter.clear();
+		}
+	}
+
+	private static File[] listDirectories(final File directory) {
+		File[] directories = directory.listFiles(File::isDirectory);
+		return directories == null ? new File[0] : directories;
+	}
+
+	/**
+	 * @return the presenceFilter, for tests and monitoring
+	 */
+	public ProductPresenceFilter getPresenceFilter() {
+		return presenceFilter;
+	}
+
+	/**
+	 * @return whether presenceFilter is enabled
+	 */
+	public boolean isPresenceFilterEnabled() {
+		return presenceFilterEnabled;
+	}
+
+	/**
+	 * @param presenceFilterEnabled
+	 *            whether to load presenceFilter during startup
+	 */
+	public void setPresenceFilterEnabled(boolean presenceFilterEnabled) {
+		this.presenceFilterEnabled = presenceFilterEnabled;
 	}
 
 	/**
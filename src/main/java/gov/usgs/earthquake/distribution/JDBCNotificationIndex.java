@@ -12,7 +12,6 @@ import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -34,7 +33,7 @@ import java.util.logging.Logger;
  * @see gov.usgs.earthquake.distribution.NotificationIndex
  */
 public class JDBCNotificationIndex extends JDBCConnection implements
-		NotificationIndex {
+		BatchNotificationIndex {
 
 	private static final Logger LOGGER = Logger
 			.getLogger(JDBCNotificationIndex.class.getName());
@@ -122,6 +121,10 @@ public class JDBCNotificationIndex extends JDBCConnection implements
 					TRACKER_URL_COLUMN, PRODUCT_URL_COLUMN, TABLE_NAME,
 					EXPIRATION_DATE_COLUMN);
 
+	/** SQL stub for finding a limited number of expired notifications. */
+	private static final String QUERY_FIND_EXPIRED_NOTIFICATIONS_LIMIT = QUERY_FIND_EXPIRED_NOTIFICATIONS
+			+ " ORDER BY " + EXPIRATION_DATE_COLUMN + " LIMIT ?";
+
 	/** SQL stub for finding notifications about a particular productId */
 	private static final String QUERY_FIND_NOTIFICATIONS_BY_ID = String.format(
 			"SELECT %s, %s, %s, %s, %s, %s, %s, %s FROM %s "
@@ -160,6 +163,7 @@ public class JDBCNotificationIndex extends JDBCConnection implements
 	private PreparedStatement _dml_removeNotification = null;
 
 	private PreparedStatement _query_findExpiredNotifications = null;
+	private PreparedStatement _query_findExpiredNotificationsLimit = null;
 	private PreparedStatement _query_findNotificationsById = null;
 	private PreparedStatement _query_findNotificationsByData = null;
 
@@ -234,13 +238,12 @@ public class JDBCNotificationIndex extends JDBCConnection implements
 			PRODUCT_TYPE_COLUMN, PRODUCT_CODE_COLUMN, PRODUCT_UPDATE_COLUMN,
 			EXPIRATION_DATE_COLUMN, TRACKER_URL_COLUMN, PRODUCT_URL_COLUMN,
 			TABLE_NAME, PRODUCT_CODE_COLUMN, PRODUCT_CODE_COLUMN, TMP_TABLE);
-	/*
-	 * private static final String QUERY_ALL_NOTIFICATIONS = String.format(
-	 * "SELECT %s, %s, %s, %s, %s, %s, %s FROM %s", PRODUCT_SOURCE_COLUMN,
-	 * PRODUCT_TYPE_COLUMN, PRODUCT_CODE_COLUMN, PRODUCT_UPDATE_COLUMN,
-	 * EXPIRATION_DATE_COLUMN, TRACKER_URL_COLUMN, PRODUCT_URL_COLUMN,
-	 * TABLE_NAME);
-	 */
+	/** SQL stub for every row, including duplicates, in insert order. */
+	private static final String QUERY_ALL_NOTIFICATIONS = String.format(
+			"SELECT %s, %s, %s, %s, %s, %s, %s, %s FROM %s ORDER BY %s",
+			ID_COLUMN, PRODUCT_SOURCE_COLUMN, PRODUCT_TYPE_COLUMN,
+			PRODUCT_CODE_COLUMN, PRODUCT_UPDATE_COLUMN, EXPIRATION_DATE_COLUMN,
+			TRACKER_URL_COLUMN, PRODUCT_URL_COLUMN, TABLE_NAME, ID_COLUMN);
 
 	private static final String QUERY_LATEST_NOTIFICATIONS = String.format(
 			"SELECT n.%s, n.%s, n.%s, n.%s, n.%s, n.%s, n.%s FROM %s n, "
@@ -290,6 +293,7 @@ public class JDBCNotificationIndex extends JDBCConnection implements
 	 */
 	public JDBCNotificationIndex(final String filename) throws Exception {
 		Class.forName(JDBC_DRIVER_CLASS);
+		setDriver(JDBC_DRIVER_CLASS);
 		_jdbc_index_file = filename;
 		if (_jdbc_index_file == null) {
 			_jdbc_index_file = JDBC_DEFAULT_FILE;
@@ -329,6 +333,8 @@ public class JDBCNotificationIndex extends JDBCConnection implements
 		LOGGER.config("Notification index database is '" + _jdbc_index_file
 				+ "'");
 		_jdbc_connect_url = JDBC_CONNECT_URL + _jdbc_index_file;
+		getSqliteProfile().setName(getName());
+		getSqliteProfile().configure(config);
 	}
 
 	@Override
@@ -345,7 +351,7 @@ public class JDBCNotificationIndex extends JDBCConnection implements
 			StreamUtils.transferStream(schemaURL, indexFile);
 		}
 
-		return DriverManager.getConnection(_jdbc_connect_url);
+		return connect(_jdbc_connect_url);
 	}
 
 	/**
@@ -367,6 +373,8 @@ public class JDBCNotificationIndex extends JDBCConnection implements
 
 		_query_findExpiredNotifications = conn
 				.prepareStatement(QUERY_FIND_EXPIRED_NOTIFICATIONS);
+		_query_findExpiredNotificationsLimit = conn
+				.prepareStatement(QUERY_FIND_EXPIRED_NOTIFICATIONS_LIMIT);
 		_query_findNotificationsById = conn
 				.prepareStatement(QUERY_FIND_NOTIFICATIONS_BY_ID);
 		_query_findNotificationsByData = conn
@@ -444,6 +452,12 @@ public class JDBCNotificationIndex extends JDBCConnection implements
 		} finally {
 			_query_findExpiredNotifications = null;
 		}
+		try {
+			_query_findExpiredNotificationsLimit.close();
+		} catch (Exception e) {
+		} finally {
+			_query_findExpiredNotificationsLimit = null;
+		}
 		try {
 			_query_findNotificationsById.close();
 		} catch (Exception e) {
@@ -600,6 +614,82 @@ public class JDBCNotificationIndex extends JDBCConnection implements
 		// verify connection
 		this.verifyConnection();
 
+		setRemoveParameters(notification);
+
+		// already verified above
+		Connection conn = getConnection();
+		try {
+			// Begin a transaction
+			conn.setAutoCommit(false);
+			// Execute the query
+			_dml_removeNotification.executeUpdate();
+			// Commit the changes
+			conn.setAutoCommit(true);
+		} catch (SQLException sqx) {
+			// Undo any changes that may be in an unknown state. Ignore
+			// exceptions that occur in this call since we're already throwing
+			// an exception
+			try {
+				conn.rollback();
+			} catch (SQLException ex) {
+			}
+			// Re-throw this exception
+			throw sqx;
+		} finally {
+			conn.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * Remove notifications from the index, using one batch in one
+	 * transaction.
+	 *
+	 * @param notifications
+	 *            the notifications to remove.
+	 * @throws Exception
+	 *             if an error occurs while removing the notifications.
+	 * @see gov.usgs.earthquake.distribution.BatchNotificationIndex
+	 */
+	public synchronized void removeNotifications(
+			List<Notification> notifications) throws Exception {
+		// verify connection
+		this.verifyConnection();
+
+		Connection conn = getConnection();
+		try {
+			// Begin a transaction
+			conn.setAutoCommit(false);
+			for (Notification notification : notifications) {
+				setRemoveParameters(notification);
+				_dml_removeNotification.addBatch();
+			}
+			// Execute the batch
+			_dml_removeNotification.executeBatch();
+			// Commit the changes
+			conn.setAutoCommit(true);
+		} catch (SQLException sqx) {
+			try {
+				_dml_removeNotification.clearBatch();
+				conn.rollback();
+			} catch (SQLException ex) {
+			}
+			// Re-throw this exception
+			throw sqx;
+		} finally {
+			conn.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * Set the parameters of the remove statement.
+	 *
+	 * @param notification
+	 *            the notification to remove.
+	 * @throws SQLException
+	 *             if an error occurs setting parameters.
+	 */
+	private void setRemoveParameters(Notification notification)
+			throws SQLException {
 		// Read the product id from the notification
 		ProductId productId = notification.getProductId();
 		// Parse the update date from the product id
@@ -630,29 +720,6 @@ public class JDBCNotificationIndex extends JDBCConnection implements
 			// _dml_removeNotification.setNull(7, java.sql.Types.VARCHAR);
 			_dml_removeNotification.setString(7, "");
 		}
-
-		// already verified above
-		Connection conn = getConnection();
-		try {
-			// Begin a transaction
-			conn.setAutoCommit(false);
-			// Execute the query
-			_dml_removeNotification.executeUpdate();
-			// Commit the changes
-			conn.setAutoCommit(true);
-		} catch (SQLException sqx) {
-			// Undo any changes that may be in an unknown state. Ignore
-			// exceptions that occur in this call since we're already throwing
-			// an exception
-			try {
-				conn.rollback();
-			} catch (SQLException ex) {
-			}
-			// Re-throw this exception
-			throw sqx;
-		} finally {
-			conn.setAutoCommit(true);
-		}
 	}
 
 	/**
@@ -807,6 +874,30 @@ public class JDBCNotificationIndex extends JDBCConnection implements
 		return n;
 	}
 
+	/**
+	 * Read every notification in the index.
+	 *
+	 * Unlike findNotifications, duplicate notifications for the same product
+	 * are all returned. Used to migrate to another index.
+	 *
+	 * @return a list of all notifications.
+	 * @throws Exception
+	 *             if an error occurs while reading the index.
+	 */
+	public synchronized List<Notification> getAllNotifications()
+			throws Exception {
+		// verify connection
+		this.verifyConnection();
+
+		PreparedStatement ps = getConnection().prepareStatement(
+				QUERY_ALL_NOTIFICATIONS);
+		try {
+			return getNotifications(ps);
+		} finally {
+			ps.close();
+		}
+	}
+
 	/**
 	 * Search the index for expired notifications.
 	 *
@@ -831,6 +922,29 @@ public class JDBCNotificationIndex extends JDBCConnection implements
 		return getNotifications(_query_findExpiredNotifications);
 	}
 
+	/**
+	 * Search the index for a limited number of expired notifications.
+	 *
+	 * @param limit
+	 *            maximum number of notifications to return.
+	 * @return a list of at most limit expired notifications, earliest
+	 *         expiration first.
+	 * @throws Exception
+	 *             if an error occurs while searching the index.
+	 * @see gov.usgs.earthquake.distribution.BatchNotificationIndex
+	 */
+	public synchronized List<Notification> findExpiredNotifications(int limit)
+			throws Exception {
+		// verify connection
+		this.verifyConnection();
+
+		java.sql.Date curDate = new java.sql.Date((new Date()).getTime());
+		_query_findExpiredNotificationsLimit.setDate(1, curDate);
+		_query_findExpiredNotificationsLimit.setInt(2, limit);
+
+		return getNotifications(_query_findExpiredNotificationsLimit);
+	}
+
 	/**
 	 * Executes a prepared statement and parses the result set into a list of
 	 * notifications. The prepared statement can have any set of criteria and
@@ -0,0 +1,894 @@
+/*
+ * MemoryNotificationIndex
+ */
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.product.ProductId;
+import gov.usgs.earthquake.product.io.BinaryIO;
+import gov.usgs.util.Config;
+import gov.usgs.util.DefaultConfigurable;
+import gov.usgs.util.StreamUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Stores Notifications in memory.
+ *
+ * Notifications are indexed by product id, by source, type and code, and in
+ * an expiration queue, so lookups do not touch the disk and do not block
+ * each other. Changes are serialized and appended to a journal before they
+ * are applied, and a snapshot of the whole index is written periodically so
+ * the journal stays short.
+ *
+ * On startup the latest snapshot is loaded and newer journals are replayed.
+ * When neither exists and indexfile references an existing
+ * JDBCNotificationIndex database, notifications are imported from it.
+ *
+ * Configurable properties:
+ * <dl>
+ * <dt>directory</dt>
+ * <dd>directory for snapshot and journal files, default
+ * "notification_index"</dd>
+ * <dt>indexfile</dt>
+ * <dd>optional JDBCNotificationIndex sqlite file to import on first
+ * start</dd>
+ * <dt>snapshotInterval</dt>
+ * <dd>milliseconds between snapshots, default 600000</dd>
+ * </dl>
+ */
+public class MemoryNotificationIndex extends DefaultConfigurable implements
+		BatchNotificationIndex {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(MemoryNotificationIndex.class.getName());
+
+	/** Property for directory with snapshot and journal files. */
+	public static final String DIRECTORY_PROPERTY = "directory";
+	/** Default directory. */
+	public static final String DEFAULT_DIRECTORY = "notification_index";
+	/** Property for JDBCNotificationIndex file to import. */
+	public static final String IMPORT_FILE_PROPERTY = JDBCNotificationIndex.JDBC_FILE_PROPERTY;
+	/** Property for snapshot interval. */
+	public static final String SNAPSHOT_INTERVAL_PROPERTY = "snapshotInterval";
+	/** Default snapshot interval, 10 minutes. */
+	public static final String DEFAULT_SNAPSHOT_INTERVAL = "600000";
+
+	/** Name of snapshot file. */
+	public static final String SNAPSHOT_FILE = "snapshot";
+	/** Prefix of journal files, followed by generation. */
+	public static final String JOURNAL_FILE_PREFIX = "journal.";
+
+	/** Record that starts a snapshot, id is the first journal generation. */
+	private static final int SNAPSHOT_RECORD = 0;
+	/** Record that adds a notification. */
+	private static final int ADD_RECORD = 1;
+	/** Record that removes matching notifications. */
+	private static final int REMOVE_RECORD = 2;
+
+	private static final BinaryIO IO = new BinaryIO();
+
+	/**
+	 * A notification and the order it was added.
+	 */
+	private static class Entry {
+		final long id;
+		final Notification notification;
+
+		Entry(final long id, final Notification notification) {
+			this.id = id;
+			this.notification = notification;
+		}
+	}
+
+	/** Orders entries by expiration, then id. */
+	private static final Comparator<Entry> EXPIRATION_ORDER = new Comparator<Entry>() {
+		@Override
+		public int compare(final Entry a, final Entry b) {
+			int compare = a.notification.getExpirationDate().compareTo(
+					b.notification.getExpirationDate());
+			if (compare == 0) {
+				compare = Long.compare(a.id, b.id);
+			}
+			return compare;
+		}
+	};
+
+	private File directory = new File(DEFAULT_DIRECTORY);
+	private File importFile = null;
+	private long snapshotInterval = Long.valueOf(DEFAULT_SNAPSHOT_INTERVAL);
+
+	/** Entries for each product id, lists are replaced and never modified. */
+	private final Map<ProductId, List<Entry>> byProductId = new ConcurrentHashMap<ProductId, List<Entry>>();
+	/** Product ids by upper case source. */
+	private final Map<String, Set<ProductId>> bySource = new ConcurrentHashMap<String, Set<ProductId>>();
+	/** Product ids by upper case type. */
+	private final Map<String, Set<ProductId>> byType = new ConcurrentHashMap<String, Set<ProductId>>();
+	/** Product ids by upper case code. */
+	private final Map<String, Set<ProductId>> byCode = new ConcurrentHashMap<String, Set<ProductId>>();
+	/** Entries by expiration. */
+	private final ConcurrentSkipListSet<Entry> byExpiration = new ConcurrentSkipListSet<Entry>(
+			EXPIRATION_ORDER);
+
+	/** Id of next entry. */
+	private final AtomicLong nextId = new AtomicLong(1);
+
+	/** Serializes changes and journal writes. */
+	private final Object writeLock = new Object();
+	/** Serializes snapshots, held while writing without writeLock. */
+	private final Object snapshotLock = new Object();
+	/** Current journal generation. */
+	private long generation = 0;
+	/** Current journal. */
+	private DataOutputStream journal = null;
+	/** Number of records written to current journal. */
+	private long journalRecords = 0;
+
+	private Timer snapshotTimer = null;
+
+	@Override
+	public void configure(final Config config) throws Exception {
+		directory = new File(config.getProperty(DIRECTORY_PROPERTY,
+				DEFAULT_DIRECTORY));
+		LOGGER.config("[" + getName() + "] directory = " + directory);
+
+		String importFileName = config.getProperty(IMPORT_FILE_PROPERTY);
+		if (importFileName != null && !"".equals(importFileName)) {
+			importFile = new File(importFileName);
+			LOGGER.config("[" + getName() + "] import from " + importFile);
+		}
+
+		snapshotInterval = Long.valueOf(config.getProperty(
+				SNAPSHOT_INTERVAL_PROPERTY, DEFAULT_SNAPSHOT_INTERVAL));
+		LOGGER.config("[" + getName() + "] snapshot interval = "
+				+ snapshotInterval + "ms");
+	}
+
+	/**
+	 * Load snapshot and journals, or import from a JDBCNotificationIndex.
+	 */
+	@Override
+	public void startup() throws Exception {
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Unable to create directory " + directory);
+		}
+		boolean loaded = load();
+		synchronized (writeLock) {
+			// never append after a partial record
+			openJournal(generation + 1);
+		}
+		if (!loaded && importFile != null && importFile.exists()) {
+			importIndex(importFile);
+		}
+		// snapshot removes replayed journals, and any partial record
+		snapshot();
+
+		if (snapshotInterval > 0) {
+			snapshotTimer = new Timer(true);
+			snapshotTimer.schedule(new TimerTask() {
+				public void run() {
+					try {
+						if (getJournalRecords() > 0) {
+							snapshot();
+						}
+					} catch (Exception e) {
+						LOGGER.log(Level.WARNING, "[" + getName()
+								+ "] exception writing snapshot", e);
+					}
+				}
+			}, snapshotInterval, snapshotInterval);
+		}
+	}
+
+	/**
+	 * Write a snapshot and close the journal.
+	 */
+	@Override
+	public void shutdown() throws Exception {
+		if (snapshotTimer != null) {
+			snapshotTimer.cancel();
+			snapshotTimer = null;
+		}
+		// wait for a timer snapshot in progress
+		synchronized (snapshotLock) {
+			writeSnapshot();
+			synchronized (writeLock) {
+				StreamUtils.closeStream(journal);
+				journal = null;
+			}
+		}
+	}
+
+	@Override
+	public void addNotification(final Notification notification)
+			throws Exception {
+		synchronized (writeLock) {
+			final Entry entry = new Entry(nextId.getAndIncrement(), notification);
+			writeJournal(ADD_RECORD, entry.id, notification);
+			add(entry);
+		}
+	}
+
+	@Override
+	public void removeNotification(final Notification notification)
+			throws Exception {
+		synchronized (writeLock) {
+			writeJournal(REMOVE_RECORD, 0L, notification);
+			remove(notification);
+		}
+	}
+
+	/**
+	 * Remove notifications, writing and flushing the journal once.
+	 */
+	@Override
+	public void removeNotifications(final List<Notification> notifications)
+			throws Exception {
+		synchronized (writeLock) {
+			for (final Notification notification : notifications) {
+				appendJournal(REMOVE_RECORD, 0L, notification);
+			}
+			journal.flush();
+			for (final Notification notification : notifications) {
+				remove(notification);
+			}
+		}
+	}
+
+	@Override
+	public List<Notification> findNotifications(final ProductId id)
+			throws Exception {
+		final List<Notification> notifications = new ArrayList<Notification>();
+		final List<Entry> entries = byProductId.get(id);
+		if (entries != null) {
+			for (final Entry entry : entries) {
+				notifications.add(entry.notification);
+			}
+		}
+		return notifications;
+	}
+
+	/**
+	 * Search for notifications, ignoring case.
+	 *
+	 * @param source
+	 *            source, or null for all sources.
+	 * @param type
+	 *            type, or null for all types.
+	 * @param code
+	 *            code, or null for all codes.
+	 * @return list of matching notifications.
+	 */
+	@Override
+	public List<Notification> findNotifications(final String source,
+			final String type, final String code) throws Exception {
+		final List<Set<ProductId>> candidates = new ArrayList<Set<ProductId>>();
+		if (source != null) {
+			candidates.add(getIds(bySource, source));
+		}
+		if (type != null) {
+			candidates.add(getIds(byType, type));
+		}
+		if (code != null) {
+			candidates.add(getIds(byCode, code));
+		}
+		final List<Notification> notifications = new ArrayList<Notification>();
+		for (final ProductId id : intersect(candidates)) {
+			final List<Entry> entries = byProductId.get(id);
+			if (entries != null) {
+				for (final Entry entry : entries) {
+					notifications.add(entry.notification);
+				}
+			}
+		}
+		return notifications;
+	}
+
+	/**
+	 * Search for notifications.
+	 *
+	 * When all arguments are null, only the most recently added notification
+	 * for each product id is returned, ordered by product update time.
+	 *
+	 * @param sources
+	 *            sources, or null for all sources.
+	 * @param types
+	 *            types, or null for all types.
+	 * @param codes
+	 *            codes, or null for all codes.
+	 * @return list of matching notifications.
+	 */
+	@Override
+	public List<Notification> findNotifications(final List<String> sources,
+			final List<String> types, final List<String> codes)
+			throws Exception {
+		final List<Notification> notifications = new ArrayList<Notification>();
+		if (sources == null && types == null && codes == null) {
+			final List<Entry> latest = new ArrayList<Entry>();
+			for (final List<Entry> entries : byProductId.values()) {
+				latest.add(entries.get(entries.size() - 1));
+			}
+			Collections.sort(latest, new Comparator<Entry>() {
+				@Override
+				public int compare(final Entry a, final Entry b) {
+					return a.notification.getProductId().getUpdateTime()
+							.compareTo(b.notification.getProductId()
+									.getUpdateTime());
+				}
+			});
+			for (final Entry entry : latest) {
+				notifications.add(entry.notification);
+			}
+			return notifications;
+		}
+
+		final List<Set<ProductId>> candidates = new ArrayList<Set<ProductId>>();
+		if (sources != null) {
+			candidates.add(getIds(bySource, sources));
+		}
+		if (types != null) {
+			candidates.add(getIds(byType, types));
+		}
+		if (codes != null) {
+			candidates.add(getIds(byCode, codes));
+		}
+		for (final ProductId id : intersect(candidates)) {
+			// indexes ignore case, lists do not
+			if ((sources == null || sources.contains(id.getSource()))
+					&& (types == null || types.contains(id.getType()))
+					&& (codes == null || codes.contains(id.getCode()))) {
+				final List<Entry> entries = byProductId.get(id);
+				if (entries != null) {
+					for (final Entry entry : entries) {
+						notifications.add(entry.notification);
+					}
+				}
+			}
+		}
+		return notifications;
+	}
+
+	@Override
+	public List<Notification> findExpiredNotifications() throws Exception {
+		return findExpiredNotifications(Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<Notification> findExpiredNotifications(final int limit)
+			throws Exception {
+		final Date now = new Date();
+		final List<Notification> notifications = new ArrayList<Notification>();
+		for (final Entry entry : byExpiration) {
+			if (notifications.size() >= limit
+					|| entry.notification.getExpirationDate().after(now)) {
+				break;
+			}
+			notifications.add(entry.notification);
+		}
+		return notifications;
+	}
+
+	/**
+	 * @return number of notifications in index.
+	 */
+	public int size() {
+		return byExpiration.size();
+	}
+
+	/**
+	 * Write a snapshot of the index, and remove journals it replaces.
+	 *
+	 * The index is copied and a new journal started while holding the write
+	 * lock, the snapshot itself is written without blocking changes. Only one
+	 * snapshot is written at a time, and nothing is written when the index is
+	 * not started.
+	 *
+	 * @throws Exception
+	 *             if unable to write snapshot.
+	 */
+	public void snapshot() throws Exception {
+		synchronized (snapshotLock) {
+			writeSnapshot();
+		}
+	}
+
+	/**
+	 * Write a snapshot, caller must hold snapshotLock.
+	 *
+	 * @throws Exception
+	 *             if unable to write snapshot.
+	 */
+	private void writeSnapshot() throws Exception {
+		final List<Entry> entries;
+		final long snapshotGeneration;
+		synchronized (writeLock) {
+			if (journal == null) {
+				// not started, or shut down
+				return;
+			}
+			entries = new ArrayList<Entry>(byExpiration);
+			snapshotGeneration = generation + 1;
+			openJournal(snapshotGeneration);
+		}
+		Collections.sort(entries, new Comparator<Entry>() {
+			@Override
+			public int compare(final Entry a, final Entry b) {
+				return Long.compare(a.id, b.id);
+			}
+		});
+
+		final File snapshotFile = new File(directory, SNAPSHOT_FILE);
+		final File tempFile = new File(directory, SNAPSHOT_FILE + ".tmp");
+		final FileOutputStream fileOut = new FileOutputStream(tempFile);
+		try {
+			final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(fileOut));
+			writeRecord(out, SNAPSHOT_RECORD, snapshotGeneration, null);
+			for (final Entry entry : entries) {
+				writeRecord(out, ADD_RECORD, entry.id, entry.notification);
+			}
+			out.flush();
+			fileOut.getFD().sync();
+		} finally {
+			StreamUtils.closeStream(fileOut);
+		}
+		Files.move(tempFile.toPath(), snapshotFile.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+
+		// journals before this generation are in snapshot
+		for (final Map.Entry<Long, File> journalFile : getJournalFiles()
+				.entrySet()) {
+			if (journalFile.getKey() < snapshotGeneration) {
+				journalFile.getValue().delete();
+			}
+		}
+		LOGGER.fine("[" + getName() + "] wrote snapshot with " + entries.size()
+				+ " notifications");
+	}
+
+	/**
+	 * Load the snapshot and replay journals.
+	 *
+	 * @return true if a snapshot or journal was found.
+	 * @throws Exception
+	 *             if unable to read files.
+	 */
+	protected boolean load() throws Exception {
+		long firstGeneration = 0;
+		boolean loaded = false;
+		final File snapshotFile = new File(directory, SNAPSHOT_FILE);
+		if (snapshotFile.exists()) {
+			firstGeneration = readFile(snapshotFile, true);
+			loaded = true;
+		}
+		long lastGeneration = firstGeneration;
+		for (final Map.Entry<Long, File> journalFile : getJournalFiles()
+				.entrySet()) {
+			if (journalFile.getKey() >= firstGeneration) {
+				readFile(journalFile.getValue(), false);
+				lastGeneration = journalFile.getKey();
+				loaded = true;
+			}
+		}
+		synchronized (writeLock) {
+			generation = lastGeneration;
+		}
+		if (loaded) {
+			LOGGER.info("[" + getName() + "] loaded " + size()
+					+ " notifications");
+		}
+		return loaded;
+	}
+
+	/**
+	 * Import notifications from a JDBCNotificationIndex.
+	 *
+	 * @param indexFile
+	 *            sqlite file.
+	 * @throws Exception
+	 *             if unable to read index.
+	 */
+	protected void importIndex(final File indexFile) throws Exception {
+		final JDBCNotificationIndex jdbcIndex = new JDBCNotificationIndex(
+				indexFile.getPath());
+		jdbcIndex.setName(getName() + "-import");
+		jdbcIndex.startup();
+		try {
+			final List<Notification> notifications = jdbcIndex
+					.getAllNotifications();
+			for (final Notification notification : notifications) {
+				addNotification(notification);
+			}
+			LOGGER.info("[" + getName() + "] imported " + notifications.size()
+					+ " notifications from " + indexFile);
+		} finally {
+			jdbcIndex.shutdown();
+		}
+	}
+
+	/**
+	 * @return number of records in current journal.
+	 */
+	protected long getJournalRecords() {
+		synchronized (writeLock) {
+			return journalRecords;
+		}
+	}
+
+	/**
+	 * @return journal files by generation.
+	 */
+	protected TreeMap<Long, File> getJournalFiles() {
+		final TreeMap<Long, File> journals = new TreeMap<Long, File>();
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (final File file : files) {
+				final String name = file.getName();
+				if (name.startsWith(JOURNAL_FILE_PREFIX)) {
+					try {
+						journals.put(Long.valueOf(name
+								.substring(JOURNAL_FILE_PREFIX.length())), file);
+					} catch (NumberFormatException e) {
+						// not a journal
+					}
+				}
+			}
+		}
+		return journals;
+	}
+
+	/**
+	 * Close the current journal and start a new one.
+	 *
+	 * Caller must hold writeLock.
+	 */
+	private void openJournal(final long newGeneration) throws IOException {
+		StreamUtils.closeStream(journal);
+		journal = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(new File(directory, JOURNAL_FILE_PREFIX
+						+ newGeneration), true)));
+		generation = newGeneration;
+		journalRecords = 0;
+	}
+
+	/**
+	 * Append a record to the journal.
+	 *
+	 * Caller must hold writeLock.
+	 */
+	private void writeJournal(final int type, final long id,
+			final Notification notification) throws IOException {
+		appendJournal(type, id, notification);
+		journal.flush();
+	}
+
+	/**
+	 * Buffer a record for the journal, without flushing.
+	 *
+	 * Caller must hold writeLock.
+	 */
+	private void appendJournal(final int type, final long id,
+			final Notification notification) throws IOException {
+		if (journal == null) {
+			throw new IOException("[" + getName() + "] index is not started");
+		}
+		writeRecord(journal, type, id, notification);
+		journalRecords++;
+	}
+
+	/**
+	 * Read a snapshot or journal.
+	 *
+	 * Reading stops at the first incomplete or corrupt record, which is
+	 * expected at the end of a journal after a crash.
+	 *
+	 * @return first journal generation not in snapshot, or 0 for journals.
+	 */
+	private long readFile(final File file, final boolean isSnapshot)
+			throws Exception {
+		long journalGeneration = 0;
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			while (true) {
+				final byte[] record;
+				try {
+					final int length = in.readInt();
+					if (length <= 0 || length > 1048576) {
+						throw new IOException("invalid record length " + length);
+					}
+					record = new byte[length];
+					in.readFully(record);
+					final CRC32 crc = new CRC32();
+					crc.update(record);
+					if (crc.getValue() != in.readLong()) {
+						throw new IOException("invalid record checksum");
+					}
+				} catch (EOFException e) {
+					break;
+				} catch (IOException e) {
+					LOGGER.warning("[" + getName() + "] " + e.getMessage()
+							+ " in " + file + ", ignoring remainder");
+					break;
+				}
+
+				final InputStream recordIn = new ByteArrayInputStream(record);
+				final int type = IO.readInt(recordIn);
+				final long id = IO.readLong(recordIn);
+				if (type == SNAPSHOT_RECORD) {
+					journalGeneration = id;
+					continue;
+				}
+				final Notification notification = readNotification(recordIn);
+				if (type == ADD_RECORD) {
+					add(new Entry(id, notification));
+					if (id >= nextId.get()) {
+						nextId.set(id + 1);
+					}
+				} else if (type == REMOVE_RECORD) {
+					remove(notification);
+				}
+			}
+		} finally {
+			StreamUtils.closeStream(in);
+		}
+		if (isSnapshot && journalGeneration == 0) {
+			throw new IOException("[" + getName() + "] snapshot " + file
+					+ " is missing header");
+		}
+		return journalGeneration;
+	}
+
+	/**
+	 * Write one length and checksum framed record.
+	 */
+	private static void writeRecord(final DataOutputStream out,
+			final int type, final long id, final Notification notification)
+			throws IOException {
+		final ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+		IO.writeInt(type, record);
+		IO.writeLong(id, record);
+		if (notification != null) {
+			final ProductId productId = notification.getProductId();
+			IO.writeString(productId.getSource(), record);
+			IO.writeString(productId.getType(), record);
+			IO.writeString(productId.getCode(), record);
+			IO.writeDate(productId.getUpdateTime(), record);
+			IO.writeDate(notification.getExpirationDate(), record);
+			IO.writeString(getTrackerURL(notification), record);
+			IO.writeString(getProductURL(notification), record);
+		}
+		final byte[] bytes = record.toByteArray();
+		final CRC32 crc = new CRC32();
+		crc.update(bytes);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+		out.writeLong(crc.getValue());
+	}
+
+	/**
+	 * Read a notification written by writeRecord.
+	 */
+	private static Notification readNotification(final InputStream in)
+			throws IOException {
+		final ProductId productId = new ProductId(IO.readString(in),
+				IO.readString(in), IO.readString(in), IO.readDate(in));
+		final Date expires = IO.readDate(in);
+		final String tracker = IO.readString(in);
+		final String download = IO.readString(in);
+		final URL trackerURL = !"".equals(tracker) ? new URL(tracker) : null;
+		if (!"".equals(download)) {
+			try {
+				return new URLNotification(productId, expires, trackerURL,
+						new URL(download));
+			} catch (MalformedURLException e) {
+				// use default notification
+			}
+		}
+		return new DefaultNotification(productId, expires, trackerURL);
+	}
+
+	/**
+	 * Add an entry to all indexes.
+	 *
+	 * Caller must hold writeLock, or be loading.
+	 */
+	private void add(final Entry entry) {
+		final ProductId id = entry.notification.getProductId();
+		final List<Entry> entries = byProductId.get(id);
+		final List<Entry> updated;
+		if (entries == null) {
+			updated = Collections.singletonList(entry);
+			addId(bySource, id.getSource(), id);
+			addId(byType, id.getType(), id);
+			addId(byCode, id.getCode(), id);
+		} else {
+			updated = new ArrayList<Entry>(entries.size() + 1);
+			updated.addAll(entries);
+			updated.add(entry);
+		}
+		byProductId.put(id, Collections.unmodifiableList(updated));
+		byExpiration.add(entry);
+	}
+
+	/**
+	 * Remove entries matching a notification from all indexes.
+	 *
+	 * Caller must hold writeLock, or be loading.
+	 */
+	private void remove(final Notification notification) {
+		final ProductId id = notification.getProductId();
+		final List<Entry> entries = byProductId.get(id);
+		if (entries == null) {
+			return;
+		}
+		final List<Entry> updated = new ArrayList<Entry>(entries.size());
+		for (final Entry entry : entries) {
+			if (matches(entry.notification, notification)) {
+				byExpiration.remove(entry);
+			} else {
+				updated.add(entry);
+			}
+		}
+		if (updated.size() == entries.size()) {
+			return;
+		}
+		if (updated.size() > 0) {
+			byProductId.put(id, Collections.unmodifiableList(updated));
+		} else {
+			byProductId.remove(id);
+			removeId(bySource, id.getSource(), id);
+			removeId(byType, id.getType(), id);
+			removeId(byCode, id.getCode(), id);
+		}
+	}
+
+	/**
+	 * Compare the stored fields of two notifications.
+	 *
+	 * Compares urls as strings, URL.equals may resolve hostnames.
+	 */
+	private static boolean matches(final Notification a, final Notification b) {
+		return a.getProductId().equals(b.getProductId())
+				&& a.getExpirationDate().getTime() == b.getExpirationDate()
+						.getTime()
+				&& getTrackerURL(a).equals(getTrackerURL(b))
+				&& getProductURL(a).equals(getProductURL(b));
+	}
+
+	private static String getTrackerURL(final Notification notification) {
+		final URL url = notification.getTrackerURL();
+		return url == null ? "" : url.toString();
+	}
+
+	private static String getProductURL(final Notification notification) {
+		if (notification instanceof URLNotification) {
+			final URL url = ((URLNotification) notification).getProductURL();
+			return url == null ? "" : url.toString();
+		}
+		return "";
+	}
+
+	private static String key(final String value) {
+		return value.toUpperCase(Locale.ROOT);
+	}
+
+	private static void addId(final Map<String, Set<ProductId>> index,
+			final String value, final ProductId id) {
+		Set<ProductId> ids = index.get(key(value));
+		if (ids == null) {
+			ids = ConcurrentHashMap.newKeySet();
+			index.put(key(value), ids);
+		}
+		ids.add(id);
+	}
+
+	private static void removeId(final Map<String, Set<ProductId>> index,
+			final String value, final ProductId id) {
+		final Set<ProductId> ids = index.get(key(value));
+		if (ids != null) {
+			ids.remove(id);
+			if (ids.isEmpty()) {
+				index.remove(key(value));
+			}
+		}
+	}
+
+	private static Set<ProductId> getIds(
+			final Map<String, Set<ProductId>> index, final String value) {
+		final Set<ProductId> ids = index.get(key(value));
+		return ids == null ? Collections.<ProductId> emptySet() : ids;
+	}
+
+	private static Set<ProductId> getIds(
+			final Map<String, Set<ProductId>> index, final List<String> values) {
+		final Set<ProductId> ids = new HashSet<ProductId>();
+		final Set<String> keys = new HashSet<String>();
+		for (final String value : values) {
+			if (keys.add(key(value))) {
+				ids.addAll(getIds(index, value));
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Intersect candidate sets, starting from the smallest.
+	 *
+	 * @return matching ids, or all ids when there are no candidates.
+	 */
+	private List<ProductId> intersect(final List<Set<ProductId>> candidates) {
+		if (candidates.size() == 0) {
+			return new ArrayList<ProductId>(byProductId.keySet());
+		}
+		Set<ProductId> smallest = candidates.get(0);
+		for (final Set<ProductId> candidate : candidates) {
+			if (candidate.size() < smallest.size()) {
+				smallest = candidate;
+			}
+		}
+		final List<ProductId> ids = new ArrayList<ProductId>();
+		for (final ProductId id : smallest) {
+			boolean all = true;
+			for (final Set<ProductId> candidate : candidates) {
+				if (candidate != smallest && !candidate.contains(id)) {
+					all = false;
+					break;
+				}
+			}
+			if (all) {
+				ids.add(id);
+			}
+		}
+		return ids;
+	}
+
+	/** @return directory for snapshot and journal files */
+	public File getDirectory() { return directory; }
+	/** @param directory directory for snapshot and journal files */
+	public void setDirectory(final File directory) { this.directory = directory; }
+
+	/** @return JDBCNotificationIndex file to import, or null */
+	public File getImportFile() { return importFile; }
+	/** @param importFile JDBCNotificationIndex file to import, or null */
+	public void setImportFile(final File importFile) { this.importFile = importFile; }
+
+	/** @return milliseconds between snapshots */
+	public long getSnapshotInterval() { return snapshotInterval; }
+	/** @param snapshotInterval milliseconds between snapshots, 0 to disable */
+	public void setSnapshotInterval(final long snapshotInterval) { this.snapshotInterval = snapshotInterval; }
+
+}
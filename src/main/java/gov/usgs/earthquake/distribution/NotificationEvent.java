@@ -22,6 +22,9 @@ public class NotificationEvent extends EventObject {
 	/** The notification that generated this event. */
 	private final Notification notification;
 
+	/** Trace for notification product, or null if not traced. */
+	private transient ProductTrace trace = null;
+
 	/**
 	 * Construct a new NotificationEvent.
 	 * 
@@ -45,6 +48,21 @@ public class NotificationEvent extends EventObject {
 		return notification;
 	}
 
+	/**
+	 * @return trace for notification product, or null if not traced.
+	 */
+	public ProductTrace getTrace() {
+		return trace;
+	}
+
+	/**
+	 * @param trace
+	 *            trace for notification product, or null if not traced.
+	 */
+	public void setTrace(final ProductTrace trace) {
+		this.trace = trace;
+	}
+
 	/**
 	 * A convenience method that casts event source into a NotificationReceiver.
 	 * 
@@ -1,5 +1,7 @@
 package gov.usgs.earthquake.distribution;
 
+import gov.usgs.util.metrics.MetricsRegistry;
+
 import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -15,6 +17,9 @@ public class NotificationListenerCallable implements Callable<Void> {
 	private final NotificationListener listener;
 	private final NotificationEvent event;
 
+	/** When this callable was created, usually when it was queued. */
+	private final long queued = System.currentTimeMillis();
+
 	/**
 	 * Create an ExecutorListenerNotifierCallable.
 	 *
@@ -30,10 +35,26 @@ public class NotificationListenerCallable implements Callable<Void> {
 	}
 
 	public Void call() throws Exception {
+		final MetricsRegistry metrics = MetricsRegistry.getDefault();
+		final long beginDelivery = metrics.startTimer();
+		final ProductTrace trace = event.getTrace();
+		final long beginDeliveryMillis = System.currentTimeMillis();
+		if (trace != null) {
+			trace.addStage(listener.getName(), "queue", queued,
+					beginDeliveryMillis);
+			ProductTrace.setCurrent(trace);
+		}
 		try {
 			listener.onNotification(event);
+			metrics.recordSince(listener.getName(), "deliver", beginDelivery);
+			if (trace != null) {
+				trace.addStage(listener.getName(), "deliver",
+						beginDeliveryMillis, System.currentTimeMillis());
+				ProductTracer.getDefault().complete(trace, listener.getName());
+			}
 			return null;
 		} catch (Exception e) {
+			metrics.increment(listener.getName(), "deliver.errors");
 			LOGGER.log(Level.WARNING, "["
 					+ event.getNotificationReceiver().getName()
 					+ "] listener (" + listener.getName()
@@ -48,6 +69,8 @@ public class NotificationListenerCallable implements Callable<Void> {
 
 			// but rethrow for outside handling
 			throw e;
+		} finally {
+			ProductTrace.setCurrent(null);
 		}
 	}
 
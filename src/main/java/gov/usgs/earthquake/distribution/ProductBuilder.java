@@ -41,6 +41,12 @@ import java.util.logging.Logger;
  * one.</dd>
  * <dt>privateKeyFile</dt>
  * <dd>Path to a private key that can be used to sign products.</dd>
+ * <dt>serializeOnce</dt>
+ * <dd>(Default true) Serialize and compress each product once, and share the
+ * bytes with all socket senders that use the same format.</dd>
+ * <dt>spoolMemoryLimit</dt>
+ * <dd>(Default 1048576) Serialized products larger than this many bytes are
+ * spooled to a temporary file instead of memory.</dd>
  * </dl>
  */
 public class ProductBuilder extends DefaultConfigurable {
@@ -69,6 +75,24 @@ public class ProductBuilder extends DefaultConfigurable {
 	/** time in ms for parallel send timemout */
 	public static final String DEFAULT_PARALLEL_SEND_TIMEOUT = "300";
 
+	/** Whether to serialize products once for all senders. */
+	public static final String SERIALIZE_ONCE_PROPERTY = "serializeOnce";
+	/** Default serialize once */
+	public static final String DEFAULT_SERIALIZE_ONCE = "true";
+
+	/** Bytes of a serialized product kept in memory. */
+	public static final String SPOOL_MEMORY_LIMIT_PROPERTY = "spoolMemoryLimit";
+	/** Default spool memory limit, 1MB */
+	public static final String DEFAULT_SPOOL_MEMORY_LIMIT = "1048576";
+
+	/** Shared pool used for parallel sends, threads exit when idle. */
+	private static final ExecutorService SEND_EXECUTOR = Executors
+			.newCachedThreadPool((runnable) -> {
+				Thread thread = new Thread(runnable, "ProductBuilder-send");
+				thread.setDaemon(true);
+				return thread;
+			});
+
 	/** Default tracker url. */
 	public static final URL DEFAULT_TRACKER_URL;
 	static {
@@ -100,6 +124,12 @@ public class ProductBuilder extends DefaultConfigurable {
 	/** How long to wait before parallel send timeout. */
 	protected long parallelSendTimeout = 300L;
 
+	/** Whether to serialize products once for all senders. */
+	protected boolean serializeOnce = true;
+
+	/** Bytes of a serialized product kept in memory. */
+	protected long spoolMemoryLimit = 1048576L;
+
 	/** Default product builder constructor */
 	public ProductBuilder() {
 		trackerURL = DEFAULT_TRACKER_URL;
@@ -134,30 +164,62 @@ public class ProductBuilder extends DefaultConfigurable {
 		// send tracker update
 		new ProductTracker(product.getTrackerURL()).productCreated(this.getName(), product.getId());
 
-		// send product using all product senders.
-		if (parallelSend) {
-			return parallelSendProduct(senders, product, parallelSendTimeout);
+		// serialize once when multiple senders can share bytes
+		SerializedProduct serialized = null;
+		if (serializeOnce && senders.size() > 1) {
+			serialized = new SerializedProduct(product, spoolMemoryLimit);
 		}
+		try {
+			// send product using all product senders.
+			if (parallelSend) {
+				return parallelSendProduct(senders, product, serialized, parallelSendTimeout);
+			}
 
-		// send sequentially if not parallel
-		Map<ProductSender, Exception> errors = new HashMap<ProductSender, Exception>();
-		Iterator<ProductSender> iter = new LinkedList<ProductSender>(senders).iterator();
-		while (iter.hasNext()) {
-			ProductSender sender = iter.next();
-			try {
-				sender.sendProduct(product);
-			} catch (Exception e) {
-				if (e instanceof ProductAlreadyInStorageException) {
-					// condense this message...
-					LOGGER.info("Product already in storage, id=" + product.getId().toString());
-				} else {
-					LOGGER.log(Level.WARNING, "[" + sender.getName() + "] error sending product", e);
-					errors.put(sender, e);
+			// send sequentially if not parallel
+			Map<ProductSender, Exception> errors = new HashMap<ProductSender, Exception>();
+			Iterator<ProductSender> iter = new LinkedList<ProductSender>(senders).iterator();
+			while (iter.hasNext()) {
+				ProductSender sender = iter.next();
+				try {
+					sendProduct(sender, product, serialized);
+				} catch (Exception e) {
+					if (e instanceof ProductAlreadyInStorageException) {
+						// condense this message...
+						LOGGER.info("Product already in storage, id=" + product.getId().toString());
+					} else {
+						LOGGER.log(Level.WARNING, "[" + sender.getName() + "] error sending product", e);
+						errors.put(sender, e);
+					}
 				}
 			}
+
+			return errors;
+		} finally {
+			if (serialized != null) {
+				serialized.close();
+			}
 		}
+	}
 
-		return errors;
+	/**
+	 * Send a product using one sender.
+	 *
+	 * @param sender     sender to use.
+	 * @param product    product to send.
+	 * @param serialized shared serialized product, or null.
+	 * @throws Exception if sender throws an exception.
+	 */
+	protected static void sendProduct(final ProductSender sender, final Product product,
+			final SerializedProduct serialized) throws Exception {
+		if (sender instanceof BatchProductResender.RateLimitedProductSender) {
+			// limit, then send using the wrapped sender
+			((BatchProductResender.RateLimitedProductSender) sender)
+					.sendProduct(product, serialized);
+		} else if (serialized != null && sender instanceof SocketProductSender) {
+			((SocketProductSender) sender).sendProduct(serialized);
+		} else {
+			sender.sendProduct(product);
+		}
 	}
 
 	/**
@@ -251,6 +313,12 @@ public class ProductBuilder extends DefaultConfigurable {
 		parallelSendTimeout = Long
 				.valueOf(config.getProperty(PARALLEL_SEND_TIMEOUT_PROPERTY, DEFAULT_PARALLEL_SEND_TIMEOUT));
 		LOGGER.config("[" + getName() + "] parallel send enabled=" + parallelSend + ", timeout=" + parallelSendTimeout);
+
+		serializeOnce = Boolean.valueOf(config.getProperty(SERIALIZE_ONCE_PROPERTY, DEFAULT_SERIALIZE_ONCE));
+		spoolMemoryLimit = Long
+				.valueOf(config.getProperty(SPOOL_MEMORY_LIMIT_PROPERTY, DEFAULT_SPOOL_MEMORY_LIMIT));
+		LOGGER.config("[" + getName() + "] serialize once=" + serializeOnce + ", spool memory limit="
+				+ spoolMemoryLimit);
 	}
 
 	@Override
@@ -281,6 +349,23 @@ public class ProductBuilder extends DefaultConfigurable {
 	 */
 	public static Map<ProductSender, Exception> parallelSendProduct(final List<ProductSender> senders,
 			final Product product, final long timeoutSeconds) {
+		return parallelSendProduct(senders, product, null, timeoutSeconds);
+	}
+
+	/**
+	 * Send a product to all ProductSenders concurrently, using a shared thread
+	 * pool.
+	 *
+	 * @param senders        the senders to receive product.
+	 * @param product        the product to send.
+	 * @param serialized     product serialized once for socket senders, or null.
+	 * @param timeoutSeconds number of seconds before timing out, interrupting any
+	 *                       pending send.
+	 * @return exceptions that occured while sending. If map is empty, there were no
+	 *         exceptions.
+	 */
+	public static Map<ProductSender, Exception> parallelSendProduct(final List<ProductSender> senders,
+			final Product product, final SerializedProduct serialized, final long timeoutSeconds) {
 		final Map<ProductSender, Boolean> sendComplete = Collections.synchronizedMap(new HashMap<ProductSender, Boolean>());
 		final Map<ProductSender, Exception> sendExceptions = Collections
 				.synchronizedMap(new HashMap<ProductSender, Exception>());
@@ -292,7 +377,7 @@ public class ProductBuilder extends DefaultConfigurable {
 			sendComplete.put(sender, false);
 			sendTasks.add(() -> {
 				try {
-					sender.sendProduct(product);
+					sendProduct(sender, product, serialized);
 					sendComplete.put(sender, true);
 				} catch (Exception e) {
 					if (e instanceof ProductAlreadyInStorageException) {
@@ -306,14 +391,12 @@ public class ProductBuilder extends DefaultConfigurable {
 			});
 		}
 		// run in parallel
-		ExecutorService sendExecutor = Executors.newFixedThreadPool(senders.size());
 		try {
-			sendExecutor.invokeAll(sendTasks, timeoutSeconds, TimeUnit.SECONDS);
+			SEND_EXECUTOR.invokeAll(sendTasks, timeoutSeconds, TimeUnit.SECONDS);
 		} catch (Exception e) {
 			// this may be Interupted, NullPointer, or RejectedExecution
 			// in any case, this part is done and move on to checking send status
 		}
-		sendExecutor.shutdown();
 		// check whether send completed or was interrupted
 		for (ProductSender sender : sendComplete.keySet()) {
 			if (!sendComplete.get(sender) && sendExceptions.get(sender) == null) {
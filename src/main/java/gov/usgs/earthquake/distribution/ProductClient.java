@@ -8,6 +8,8 @@ import gov.usgs.earthquake.indexer.SearchCLI;
 import gov.usgs.util.Config;
 import gov.usgs.util.DefaultConfigurable;
 import gov.usgs.util.StringUtils;
+import gov.usgs.util.metrics.MetricsRegistry;
+import java.io.File;
 
 import java.lang.management.ManagementFactory;
 
@@ -53,6 +55,21 @@ import javax.management.ObjectName;
  * <dt>redirectconsole</dt> <dd>(Optional) Default is false. Whether or not to
  * redirect console output to the log file.</dd>
  *
+ * <dt>enableMetrics</dt> <dd>(Optional) Default is false. Whether or not to
+ * record receive, download, store, verify, index, and listener metrics.
+ * Metrics are available using JMX and the admin socket "metrics" command.</dd>
+ *
+ * <dt>enableTracing</dt> <dd>(Optional) Default is false. Whether or not to
+ * record when each product enters and leaves each stage of processing. The
+ * slowest recent products are available using the admin socket "traces"
+ * command.</dd>
+ *
+ * <dt>traceSampleRate</dt> <dd>(Optional) Default is 1. Fraction of products
+ * traced when tracing is enabled, between 0 and 1.</dd>
+ *
+ * <dt>traceDirectory</dt> <dd>(Optional) Directory where completed traces are
+ * written, one file per day. Default is not to write traces.</dd>
+ *
  * </dl>
  *
  * <p>
@@ -144,6 +161,22 @@ public class ProductClient extends DefaultConfigurable implements
 	/** Default bool for admin socket property */
 	public static final String DEFAULT_ENABLE_ADMIN_SOCKET = "false";
 
+	/** Property used to enable metrics. */
+	public static final String ENABLE_METRICS = "enableMetrics";
+	/** Default bool for metrics property */
+	public static final String DEFAULT_ENABLE_METRICS = "false";
+
+	/** Property used to enable tracing. */
+	public static final String ENABLE_TRACING = "enableTracing";
+	/** Default bool for tracing property */
+	public static final String DEFAULT_ENABLE_TRACING = "false";
+	/** Property for fraction of products traced. */
+	public static final String TRACE_SAMPLE_RATE = "traceSampleRate";
+	/** Default fraction of products traced. */
+	public static final String DEFAULT_TRACE_SAMPLE_RATE = "1";
+	/** Property for directory where traces are written. */
+	public static final String TRACE_DIRECTORY = "traceDirectory";
+
 	/** List of receivers that generate notifications. */
 	private List<NotificationReceiver> receivers = new LinkedList<NotificationReceiver>();
 
@@ -156,6 +189,11 @@ public class ProductClient extends DefaultConfigurable implements
 	private AdminSocketServer adminSocketServer = null;
 
 	public void configure(Config config) throws Exception {
+		// enable before listeners and receivers are loaded
+		MetricsRegistry.getDefault().setEnabled(Boolean.valueOf(
+				config.getProperty(ENABLE_METRICS, DEFAULT_ENABLE_METRICS)));
+		configureTracing(config);
+
 		loadListeners(config);
 		loadReceivers(config);
 
@@ -174,6 +212,33 @@ public class ProductClient extends DefaultConfigurable implements
 				ENABLE_ADMIN_SOCKET, DEFAULT_ENABLE_ADMIN_SOCKET));
 	}
 
+	/**
+	 * Configure the default ProductTracer.
+	 *
+	 * @param config
+	 *            the configuration.
+	 * @throws Exception if error occurs
+	 */
+	protected void configureTracing(final Config config) throws Exception {
+		ProductTracer tracer = ProductTracer.getDefault();
+		tracer.setEnabled(Boolean.valueOf(config.getProperty(ENABLE_TRACING,
+				DEFAULT_ENABLE_TRACING)));
+		tracer.setSampleRate(Double.parseDouble(config.getProperty(
+				TRACE_SAMPLE_RATE, DEFAULT_TRACE_SAMPLE_RATE)));
+		String traceDirectory = config.getProperty(TRACE_DIRECTORY);
+		if (tracer.isEnabled() && traceDirectory != null) {
+			File directory = new File(traceDirectory);
+			directory.mkdirs();
+			tracer.setTraceDirectory(directory);
+		}
+		if (tracer.isEnabled()) {
+			LOGGER.config("Tracing " + (tracer.getSampleRate() * 100)
+					+ "% of products"
+					+ (traceDirectory != null ? ", writing to " + traceDirectory
+							: ""));
+		}
+	}
+
 	/**
 	 * Load listeners from a Config object.
 	 *
@@ -460,6 +525,11 @@ public class ProductClient extends DefaultConfigurable implements
 		return buf.toString();
 	}
 
+	@Override
+	public String getMetrics() {
+		return MetricsRegistry.getDefault().getSummary();
+	}
+
 	@Override
 	public String getVersion() {
 		return RELEASE_VERSION;
@@ -33,6 +33,11 @@ public interface ProductClientMBean {
 	 */
 	public String getListenerQueueStatus();
 
+	/**
+	 * @return A string with one line per counter, gauge, and latency.
+	 */
+	public String getMetrics();
+
 	/**
 	 * @return client version
 	 */
@@ -0,0 +1,208 @@
+/*
+ * ProductDownloadCoordinator
+ */
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.ProductId;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Makes sure only one receiver at a time downloads a product.
+ *
+ * Hubs usually run several receivers (EIDS, AWS, socket) that are notified
+ * about the same product within seconds. Each receiver only locks its own
+ * retrievals, so without coordination every receiver downloads the product.
+ *
+ * The first receiver to retrieve a product downloads it. Other receivers wait
+ * for that download, and then reuse the product from the first receiver's
+ * storage: when both receivers use the same storage directory the product is
+ * already stored, otherwise it is copied between storages without using the
+ * network. If the first download fails, waiting receivers download the
+ * product themselves.
+ */
+public class ProductDownloadCoordinator {
+
+	/** Logging object. */
+	private static final Logger LOGGER = Logger
+			.getLogger(ProductDownloadCoordinator.class.getName());
+
+	/** Coordinator shared by receivers in this process. */
+	private static final ProductDownloadCoordinator DEFAULT = new ProductDownloadCoordinator();
+
+	/** Downloads in progress. */
+	private final Map<ProductId, Download> downloads = new HashMap<ProductId, Download>();
+
+	/**
+	 * @return coordinator shared by receivers in this process.
+	 */
+	public static ProductDownloadCoordinator getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Retrieve a product, downloading it only if no other caller is already
+	 * downloading it.
+	 *
+	 * @param id
+	 *            product to retrieve.
+	 * @param storage
+	 *            storage where caller stores the product.
+	 * @param retriever
+	 *            downloads or reuses the product.
+	 * @return the product, or null if not available.
+	 * @throws Exception
+	 *             if the download throws an exception.
+	 */
+	public Product retrieve(final ProductId id, final ProductStorage storage,
+			final Retriever retriever) throws Exception {
+		Download download;
+		boolean leader = false;
+		synchronized (downloads) {
+			download = downloads.get(id);
+			if (download == null) {
+				download = new Download(storage);
+				downloads.put(id, download);
+				leader = true;
+			}
+		}
+
+		if (leader) {
+			Product product = null;
+			try {
+				product = retriever.download();
+				return product;
+			} finally {
+				synchronized (downloads) {
+					downloads.remove(id);
+				}
+				download.complete(product);
+			}
+		}
+
+		Product shared = download.await();
+		if (shared != null) {
+			try {
+				Product product = retriever.reuse(download.storage,
+						isSameStorage(download.storage, storage));
+				if (product != null) {
+					return product;
+				}
+			} catch (Exception e) {
+				LOGGER.log(Level.FINE, "exception reusing product " + id
+						+ ", downloading", e);
+			}
+		}
+		// first download failed, or unable to reuse
+		return retriever.download();
+	}
+
+	/**
+	 * @return number of downloads in progress.
+	 */
+	public int getDownloadCount() {
+		synchronized (downloads) {
+			return downloads.size();
+		}
+	}
+
+	/**
+	 * Check whether two storages store products in the same place.
+	 *
+	 * @param storage1
+	 *            first storage.
+	 * @param storage2
+	 *            second storage.
+	 * @return true if the same object, or FileProductStorages with the same
+	 *         base directory.
+	 */
+	public static boolean isSameStorage(final ProductStorage storage1,
+			final ProductStorage storage2) {
+		if (storage1 == storage2) {
+			return true;
+		}
+		if (storage1 instanceof FileProductStorage
+				&& storage2 instanceof FileProductStorage) {
+			return getCanonicalFile(
+					((FileProductStorage) storage1).getBaseDirectory()).equals(
+					getCanonicalFile(((FileProductStorage) storage2)
+							.getBaseDirectory()));
+		}
+		return false;
+	}
+
+	private static File getCanonicalFile(final File file) {
+		try {
+			return file.getCanonicalFile();
+		} catch (IOException e) {
+			return file.getAbsoluteFile();
+		}
+	}
+
+	/**
+	 * Callbacks used by {@link ProductDownloadCoordinator#retrieve}.
+	 */
+	public interface Retriever {
+
+		/**
+		 * Download and store a product.
+		 *
+		 * @return the product, or null if not available.
+		 * @throws Exception
+		 *             if error occurs.
+		 */
+		Product download() throws Exception;
+
+		/**
+		 * Use a product another caller downloaded.
+		 *
+		 * @param storage
+		 *            storage where the other caller stored the product.
+		 * @param sameStorage
+		 *            whether storage stores products in the same place as
+		 *            the caller's storage, so the product is already stored.
+		 * @return the product, or null to download instead.
+		 * @throws Exception
+		 *             if error occurs, product is downloaded instead.
+		 */
+		Product reuse(ProductStorage storage, boolean sameStorage)
+				throws Exception;
+
+	}
+
+	/**
+	 * A download in progress.
+	 */
+	private static class Download {
+
+		/** Storage of caller that is downloading. */
+		private final ProductStorage storage;
+		/** Signaled when download completes. */
+		private final CountDownLatch done = new CountDownLatch(1);
+		/** Downloaded product, or null if download failed. */
+		private volatile Product product;
+
+		Download(final ProductStorage storage) {
+			this.storage = storage;
+		}
+
+		void complete(final Product product) {
+			this.product = product;
+			done.countDown();
+		}
+
+		Product await() throws InterruptedException {
+			done.await();
+			return product;
+		}
+
+	}
+
+}
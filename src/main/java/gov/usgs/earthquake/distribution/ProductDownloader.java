@@ -0,0 +1,386 @@
+/*
+ * ProductDownloader
+ */
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.product.Content;
+import gov.usgs.earthquake.product.FileContent;
+import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.URLContent;
+import gov.usgs.util.StreamUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Downloads products and product contents over HTTP.
+ *
+ * HTTP downloads resume with a Range request when a connection drops, as
+ * long as the server accepts byte ranges and the resource has not changed,
+ * so a dropped connection near the end of a large product does not start
+ * over. Contents referenced by URL, from JSON notifications, are downloaded
+ * in parallel into files before the product is stored.
+ *
+ * Connections are read to the end and closed, not disconnected, so
+ * HttpURLConnection can reuse keep-alive connections to the same server.
+ */
+public class ProductDownloader {
+
+	/** Logging object. */
+	private static final Logger LOGGER = Logger
+			.getLogger(ProductDownloader.class.getName());
+
+	/** Default number of contents downloaded at the same time. */
+	public static final int DEFAULT_DOWNLOAD_THREADS = 4;
+
+	/** Default number of times a download is resumed. */
+	public static final int DEFAULT_MAX_RESUMES = 3;
+
+	private int connectTimeout = StreamUtils.DEFAULT_URL_CONNECT_TIMEOUT;
+	private int readTimeout = StreamUtils.DEFAULT_URL_READ_TIMEOUT;
+	private int downloadThreads = DEFAULT_DOWNLOAD_THREADS;
+	private int maxResumes = DEFAULT_MAX_RESUMES;
+
+	/** Downloads contents, created when first needed. */
+	private ExecutorService executor;
+
+	/** Number of resumed downloads. */
+	private final AtomicLong resumes = new AtomicLong();
+
+	/**
+	 * Open a stream to a URL.
+	 *
+	 * HTTP streams resume interrupted transfers, other URLs use
+	 * StreamUtils.getURLInputStream.
+	 *
+	 * @param url
+	 *            url to open.
+	 * @return stream of url content, decompressed if gzip encoded.
+	 * @throws IOException
+	 *             if unable to connect.
+	 */
+	public InputStream openStream(final URL url) throws IOException {
+		String protocol = url.getProtocol();
+		if (!"http".equals(protocol) && !"https".equals(protocol)) {
+			return StreamUtils.getURLInputStream(url, connectTimeout,
+					readTimeout);
+		}
+		ResumableInputStream in = new ResumableInputStream(url);
+		if ("gzip".equals(in.contentEncoding)) {
+			return new GZIPInputStream(in);
+		}
+		return in;
+	}
+
+	/**
+	 * Download contents referenced by URL into files.
+	 *
+	 * Each URLContent in the product is replaced by a FileContent in
+	 * directory, with the same metadata. Contents are downloaded in parallel
+	 * using downloadThreads threads.
+	 *
+	 * @param product
+	 *            product with contents to download.
+	 * @param directory
+	 *            directory where contents are written.
+	 * @return number of bytes downloaded.
+	 * @throws Exception
+	 *             if any content cannot be downloaded.
+	 */
+	public long downloadContents(final Product product, final File directory)
+			throws Exception {
+		final Map<String, Content> contents = product.getContents();
+		List<String> paths = new ArrayList<String>();
+		for (String path : contents.keySet()) {
+			if (contents.get(path) instanceof URLContent) {
+				paths.add(path);
+			}
+		}
+		if (paths.size() == 0) {
+			return 0L;
+		}
+
+		List<Future<FileContent>> futures = new ArrayList<Future<FileContent>>();
+		ExecutorService service = getExecutor();
+		for (int i = 0; i < paths.size(); i++) {
+			final URLContent content = (URLContent) contents.get(paths.get(i));
+			final File file = new File(directory, "content" + i);
+			futures.add(service.submit(new Callable<FileContent>() {
+				public FileContent call() throws Exception {
+					return downloadContent(content, file);
+				}
+			}));
+		}
+
+		long bytes = 0L;
+		try {
+			for (int i = 0; i < paths.size(); i++) {
+				FileContent downloaded;
+				try {
+					downloaded = futures.get(i).get();
+				} catch (ExecutionException ee) {
+					Throwable cause = ee.getCause();
+					if (cause instanceof Exception) {
+						throw (Exception) cause;
+					}
+					throw ee;
+				}
+				contents.put(paths.get(i), downloaded);
+				bytes += downloaded.getLength();
+			}
+		} finally {
+			for (Future<FileContent> future : futures) {
+				future.cancel(true);
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Download one content into a file.
+	 *
+	 * @param content
+	 *            content to download.
+	 * @param file
+	 *            file where content is written.
+	 * @return file content with metadata from content.
+	 * @throws Exception
+	 *             if download fails, or length does not match.
+	 */
+	protected FileContent downloadContent(final URLContent content,
+			final File file) throws Exception {
+		InputStream in = null;
+		OutputStream out = null;
+		try {
+			in = openStream(content.getURL());
+			out = new BufferedOutputStream(new FileOutputStream(file));
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		} finally {
+			StreamUtils.closeStream(in);
+			StreamUtils.closeStream(out);
+		}
+		Long length = content.getLength();
+		if (length != null && length > 0 && length != file.length()) {
+			throw new IOException("Downloaded length (" + file.length()
+					+ ") does not match content length (" + length + ") from "
+					+ content.getURL());
+		}
+		FileContent downloaded = new FileContent(file);
+		downloaded.setContentType(content.getContentType());
+		downloaded.setLastModified(content.getLastModified());
+		downloaded.setSha256(content.getSha256(false));
+		return downloaded;
+	}
+
+	/**
+	 * Stop content download threads.
+	 */
+	public synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(downloadThreads);
+		}
+		return executor;
+	}
+
+	/** @return number of downloads that were resumed. */
+	public long getResumeCount() {
+		return resumes.get();
+	}
+
+	/** @return the connectTimeout */
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	/** @param connectTimeout the connectTimeout to set */
+	public void setConnectTimeout(final int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	/** @return the readTimeout */
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	/** @param readTimeout the readTimeout to set */
+	public void setReadTimeout(final int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	/** @return the downloadThreads */
+	public int getDownloadThreads() {
+		return downloadThreads;
+	}
+
+	/** @param downloadThreads the downloadThreads to set */
+	public synchronized void setDownloadThreads(final int downloadThreads) {
+		this.downloadThreads = downloadThreads;
+	}
+
+	/** @return the maxResumes */
+	public int getMaxResumes() {
+		return maxResumes;
+	}
+
+	/** @param maxResumes the maxResumes to set */
+	public void setMaxResumes(final int maxResumes) {
+		this.maxResumes = maxResumes;
+	}
+
+	/**
+	 * InputStream of an HTTP response that reconnects with a Range request
+	 * when reading fails.
+	 *
+	 * Reads the response as sent, before gzip decoding, so ranges refer to
+	 * the same bytes. Resumes only when the first response included
+	 * "Accept-Ranges: bytes", and uses If-Range with the ETag or
+	 * Last-Modified so a changed resource is not mixed with the original.
+	 */
+	private class ResumableInputStream extends InputStream {
+
+		private final URL url;
+		private HttpURLConnection connection;
+		private InputStream in;
+		/** Bytes read so far. */
+		private long position = 0L;
+		/** Length of response, or -1 if unknown. */
+		private long length = -1L;
+		private boolean acceptRanges = false;
+		private String validator = null;
+		private String contentEncoding = null;
+		private int resumeCount = 0;
+
+		ResumableInputStream(final URL url) throws IOException {
+			this.url = url;
+			connection = connect(null);
+			int code = connection.getResponseCode();
+			if (code != HttpURLConnection.HTTP_OK) {
+				// throws FileNotFoundException for 404, IOException otherwise
+				connection.getInputStream();
+				throw new IOException("Unexpected response " + code + " from "
+						+ url);
+			}
+			in = connection.getInputStream();
+			length = connection.getContentLengthLong();
+			contentEncoding = connection.getContentEncoding();
+			acceptRanges = "bytes".equalsIgnoreCase(connection
+					.getHeaderField("Accept-Ranges"));
+			validator = connection.getHeaderField("ETag");
+			if (validator == null || validator.startsWith("W/")) {
+				// weak etags cannot be used with If-Range
+				validator = connection.getHeaderField("Last-Modified");
+			}
+		}
+
+		private HttpURLConnection connect(final String range) throws IOException {
+			URLConnection conn = url.openConnection();
+			conn.setRequestProperty("Accept-Encoding", "gzip");
+			conn.setConnectTimeout(connectTimeout);
+			conn.setReadTimeout(readTimeout);
+			if (range != null) {
+				conn.setRequestProperty("Range", range);
+				conn.setRequestProperty("If-Range", validator);
+			}
+			conn.connect();
+			return (HttpURLConnection) conn;
+		}
+
+		/**
+		 * Reconnect and continue at position.
+		 *
+		 * @param cause
+		 *            the reason for resuming, thrown if unable to resume.
+		 */
+		private void resume(final IOException cause) throws IOException {
+			if (!acceptRanges || validator == null
+					|| resumeCount >= maxResumes) {
+				throw cause;
+			}
+			resumeCount++;
+			resumes.incrementAndGet();
+			LOGGER.info("resuming download at byte " + position + " of "
+					+ length + " from " + url + " (" + cause.getMessage() + ")");
+			StreamUtils.closeStream(in);
+			connection.disconnect();
+			connection = connect("bytes=" + position + "-");
+			String contentRange = connection.getHeaderField("Content-Range");
+			String encoding = connection.getContentEncoding();
+			if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL
+					|| contentRange == null
+					|| !contentRange.startsWith("bytes " + position + "-")
+					|| (encoding == null ? contentEncoding != null
+							: !encoding.equals(contentEncoding))) {
+				// resource changed, or range not honored
+				connection.disconnect();
+				throw cause;
+			}
+			in = connection.getInputStream();
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int read = read(b, 0, 1);
+			return read == -1 ? -1 : (b[0] & 0xFF);
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+				throws IOException {
+			while (true) {
+				int read;
+				try {
+					read = in.read(b, off, len);
+					if (read == -1 && length != -1 && position < length) {
+						throw new IOException("Connection closed after "
+								+ position + " of " + length + " bytes");
+					}
+				} catch (IOException e) {
+					resume(e);
+					continue;
+				}
+				if (read > 0) {
+					position += read;
+				}
+				return read;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			// close, do not disconnect, so connection can be reused
+			in.close();
+		}
+
+	}
+
+}
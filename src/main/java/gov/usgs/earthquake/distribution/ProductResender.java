@@ -4,7 +4,9 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
 import java.security.PrivateKey;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -34,6 +36,16 @@ public class ProductResender {
 	public static final String BATCH_ARGUMENT = "--batch";
 	/** Private Key Argument */
 	public static final String PRIVATE_KEY_ARGUMENT = "--privateKey=";
+	/** Batch parse threads argument */
+	public static final String PARSE_THREADS_ARGUMENT = "--parseThreads=";
+	/** Batch send threads argument */
+	public static final String SEND_THREADS_ARGUMENT = "--sendThreads=";
+	/** Batch maximum parsed products waiting to send argument */
+	public static final String MAX_IN_FLIGHT_ARGUMENT = "--maxInFlight=";
+	/** Batch products per second per server argument */
+	public static final String SEND_RATE_ARGUMENT = "--sendRate=";
+	/** Batch checkpoint file argument */
+	public static final String CHECKPOINT_ARGUMENT = "--checkpoint=";
 
 	/**
 	 * Command Line Interface to ProductResender.
@@ -52,6 +64,11 @@ public class ProductResender {
 		boolean enableDeflate = true;
 		boolean batchMode = false;
 		PrivateKey privateKey = null;
+		int parseThreads = BatchProductResender.DEFAULT_PARSE_THREADS;
+		int sendThreads = BatchProductResender.DEFAULT_SEND_THREADS;
+		int maxInFlight = BatchProductResender.DEFAULT_MAX_IN_FLIGHT;
+		double sendRate = 0;
+		File checkpointFile = null;
 
 		for (String arg : args) {
 			if (arg.startsWith(IOUtil.INFILE_ARGUMENT)) {
@@ -74,6 +91,16 @@ public class ProductResender {
 					LOGGER.warning("Unable to parse private key " + arg);
 					System.exit(1);
 				}
+			} else if (arg.startsWith(PARSE_THREADS_ARGUMENT)) {
+				parseThreads = Integer.parseInt(arg.replace(PARSE_THREADS_ARGUMENT, ""));
+			} else if (arg.startsWith(SEND_THREADS_ARGUMENT)) {
+				sendThreads = Integer.parseInt(arg.replace(SEND_THREADS_ARGUMENT, ""));
+			} else if (arg.startsWith(MAX_IN_FLIGHT_ARGUMENT)) {
+				maxInFlight = Integer.parseInt(arg.replace(MAX_IN_FLIGHT_ARGUMENT, ""));
+			} else if (arg.startsWith(SEND_RATE_ARGUMENT)) {
+				sendRate = Double.parseDouble(arg.replace(SEND_RATE_ARGUMENT, ""));
+			} else if (arg.startsWith(CHECKPOINT_ARGUMENT)) {
+				checkpointFile = new File(arg.replace(CHECKPOINT_ARGUMENT, ""));
 			}
 		}
 
@@ -104,9 +131,14 @@ public class ProductResender {
 		if ((!batchMode && product == null) || builder.getProductSenders().size() == 0) {
 			System.err.println("Usage: ProductResender --servers=SERVERLIST"
 					+ " --informat=(zip|directory|xml) --infile=FILE"
-					+ " [--binaryFormat] [--disableDeflate] [--batch]");
+					+ " [--binaryFormat] [--disableDeflate] [--batch]"
+					+ " [--parseThreads=N] [--sendThreads=N] [--maxInFlight=N]"
+					+ " [--sendRate=PERSECOND] [--checkpoint=FILE]");
 			System.err.println("When using batch mode (--batch), the --infile argument is ignored.");
 			System.err.println("Files to send are read one per line from stdin.");
+			System.err.println("Batch files are parsed by parseThreads and sent by sendThreads,"
+					+ " sendRate limits products per second per server,"
+					+ " and files listed in the checkpoint file are skipped.");
 			System.exit(CLIProductBuilder.EXIT_INVALID_ARGUMENTS);
 		}
 
@@ -117,19 +149,20 @@ public class ProductResender {
 		} else {
 			// send batch
 			BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
+			List<String> paths = new ArrayList<String>();
 			String line = null;
 			while ((line = br.readLine()) != null) {
-				inFile = new File(line);
-				ProductSource source = IOUtil.getProductSource(inFormat, inFile);
-				if (source != null) {
-					product = ObjectProductHandler.getProduct(source);
-				} else {
-					System.err.println("ERROR: unable to load product from '" +
-							inFile.getCanonicalPath() + "'");
-					continue;
+				if (!line.trim().isEmpty()) {
+					paths.add(line);
 				}
-				sendProduct(builder, product, batchMode);
 			}
+			BatchProductResender batch = new BatchProductResender(builder, inFormat);
+			batch.setParseThreads(parseThreads);
+			batch.setSendThreads(sendThreads);
+			batch.setMaxInFlight(maxInFlight);
+			batch.setSendRate(sendRate);
+			batch.setCheckpointFile(checkpointFile);
+			batch.run(paths);
 		}
 
 		// normal exit
@@ -142,9 +175,10 @@ public class ProductResender {
 	 * @param builder ProductBuilder
 	 * @param product Product
 	 * @param batchMode bool
+	 * @return map of send exceptions, empty if all senders accepted product
 	 * @throws Exception if error occurs
 	 */
-	protected static void sendProduct(final ProductBuilder builder,
+	protected static Map<ProductSender, Exception> sendProduct(final ProductBuilder builder,
 			final Product product, final boolean batchMode) throws Exception {
 		// extracted from CLIProductBuilder
 
@@ -159,9 +193,13 @@ public class ProductResender {
 			// log the exceptions
 			while (senders.hasNext()) {
 				ProductSender sender = senders.next();
-				if (sender instanceof SocketProductSender) {
+				ProductSender logSender = sender;
+				if (logSender instanceof BatchProductResender.RateLimitedProductSender) {
+					logSender = ((BatchProductResender.RateLimitedProductSender) logSender).getSender();
+				}
+				if (logSender instanceof SocketProductSender) {
 					// put more specific information about socket senders
-					SocketProductSender socketSender = (SocketProductSender) sender;
+					SocketProductSender socketSender = (SocketProductSender) logSender;
 					LOGGER.log(
 							Level.WARNING,
 							"Exception sending product to "
@@ -182,7 +220,7 @@ public class ProductResender {
 				System.out.println(product.getId().toString());
 				if (batchMode) {
 					// don't interrupt the batch
-					return;
+					return sendExceptions;
 				}
 				// but exit with partial failure
 				System.exit(CLIProductBuilder.EXIT_PARTIALLY_SENT);
@@ -192,7 +230,7 @@ public class ProductResender {
 				System.err.println("ERROR: " + product.getId().toString());
 				if (batchMode) {
 					// don't interrupt the batch
-					return;
+					return sendExceptions;
 				}
 				System.exit(CLIProductBuilder.EXIT_UNABLE_TO_SEND);
 			}
@@ -201,6 +239,7 @@ public class ProductResender {
 
 		// otherwise output built product id
 		System.out.println(product.getId().toString());
+		return sendExceptions;
 	}
 
 }
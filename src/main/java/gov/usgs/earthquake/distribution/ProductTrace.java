@@ -0,0 +1,241 @@
+/*
+ * ProductTrace
+ */
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.product.ProductId;
+import gov.usgs.util.XmlUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Timestamps for each stage of processing one product.
+ *
+ * A trace is created when a receiver notifies listeners, and travels with the
+ * NotificationEvent and IndexerEvent for that product. Code that runs while a
+ * listener is processing an event uses the current thread's trace, so stages
+ * can be added without passing the trace through every method:
+ *
+ * <pre>
+ * final long begin = System.currentTimeMillis();
+ * ...
+ * ProductTrace.addCurrentStage(getName(), "download", begin);
+ * </pre>
+ *
+ * Stages are added by multiple listener threads, and are synchronized.
+ */
+public class ProductTrace {
+
+	/** Trace for product being processed by current thread. */
+	private static final ThreadLocal<ProductTrace> CURRENT = new ThreadLocal<ProductTrace>();
+
+	/** Product being traced. */
+	private final ProductId id;
+
+	/** When trace started. */
+	private final long start;
+
+	/** Stages, in the order they completed. */
+	private final List<Stage> stages;
+
+	/** Name of component that completed this copy of trace. */
+	private final String completedBy;
+
+	/** When completed, or 0 if not completed. */
+	private final long end;
+
+	/**
+	 * Start a trace.
+	 *
+	 * @param id
+	 *            product being traced.
+	 */
+	public ProductTrace(final ProductId id) {
+		this(id, System.currentTimeMillis(), new ArrayList<Stage>(), null, 0L);
+	}
+
+	private ProductTrace(final ProductId id, final long start,
+			final List<Stage> stages, final String completedBy, final long end) {
+		this.id = id;
+		this.start = start;
+		this.stages = stages;
+		this.completedBy = completedBy;
+		this.end = end;
+	}
+
+	/**
+	 * @return trace for product being processed by current thread, or null.
+	 */
+	public static ProductTrace getCurrent() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * @param trace
+	 *            trace for product being processed by current thread, or null
+	 *            to clear.
+	 */
+	public static void setCurrent(final ProductTrace trace) {
+		if (trace == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(trace);
+		}
+	}
+
+	/**
+	 * Add a stage to the current thread's trace, if any, ending now.
+	 *
+	 * @param component
+	 *            component name.
+	 * @param stage
+	 *            stage name within component.
+	 * @param begin
+	 *            when stage started, in milliseconds.
+	 */
+	public static void addCurrentStage(final String component,
+			final String stage, final long begin) {
+		ProductTrace trace = CURRENT.get();
+		if (trace != null) {
+			trace.addStage(component, stage, begin, System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Add a stage.
+	 *
+	 * @param component
+	 *            component name.
+	 * @param stage
+	 *            stage name within component.
+	 * @param begin
+	 *            when stage started, in milliseconds.
+	 * @param end
+	 *            when stage ended, in milliseconds.
+	 */
+	public void addStage(final String component, final String stage,
+			final long begin, final long end) {
+		String name = component == null ? stage : component + "." + stage;
+		synchronized (stages) {
+			stages.add(new Stage(name, begin, end));
+		}
+	}
+
+	/**
+	 * Copy this trace, marking the copy completed.
+	 *
+	 * Processing may continue in other components after one completes, so
+	 * each component that completes gets its own copy.
+	 *
+	 * @param component
+	 *            component that completed.
+	 * @return completed copy.
+	 */
+	public ProductTrace complete(final String component) {
+		return new ProductTrace(id, start, getStages(), component,
+				System.currentTimeMillis());
+	}
+
+	/** @return product being traced. */
+	public ProductId getId() {
+		return id;
+	}
+
+	/** @return when trace started, in milliseconds. */
+	public long getStart() {
+		return start;
+	}
+
+	/** @return when trace completed, in milliseconds, or 0. */
+	public long getEnd() {
+		return end;
+	}
+
+	/** @return component that completed trace, or null. */
+	public String getCompletedBy() {
+		return completedBy;
+	}
+
+	/** @return milliseconds between start and end, or until now. */
+	public long getDuration() {
+		return (end == 0L ? System.currentTimeMillis() : end) - start;
+	}
+
+	/** @return copy of stages. */
+	public List<Stage> getStages() {
+		synchronized (stages) {
+			return new ArrayList<Stage>(stages);
+		}
+	}
+
+	/**
+	 * Format as one line.
+	 *
+	 * Each stage is formatted as name=offset+duration, where offset is
+	 * milliseconds since the trace started.
+	 *
+	 * @return formatted trace.
+	 */
+	@Override
+	public String toString() {
+		StringBuffer buf = new StringBuffer();
+		buf.append(XmlUtils.formatDate(new Date(start)))
+				.append(" ").append(id)
+				.append(" completedBy=").append(completedBy)
+				.append(" total=").append(getDuration());
+		for (Stage stage : getStages()) {
+			buf.append(" ").append(stage.getName())
+					.append("=").append(stage.getBegin() - start)
+					.append("+").append(stage.getDuration());
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * A named interval.
+	 */
+	public static class Stage {
+
+		private final String name;
+		private final long begin;
+		private final long end;
+
+		/**
+		 * @param name
+		 *            stage name.
+		 * @param begin
+		 *            when stage started, in milliseconds.
+		 * @param end
+		 *            when stage ended, in milliseconds.
+		 */
+		public Stage(final String name, final long begin, final long end) {
+			this.name = name;
+			this.begin = begin;
+			this.end = end;
+		}
+
+		/** @return stage name. */
+		public String getName() {
+			return name;
+		}
+
+		/** @return when stage started, in milliseconds. */
+		public long getBegin() {
+			return begin;
+		}
+
+		/** @return when stage ended, in milliseconds. */
+		public long getEnd() {
+			return end;
+		}
+
+		/** @return stage duration, in milliseconds. */
+		public long getDuration() {
+			return end - begin;
+		}
+
+	}
+
+}
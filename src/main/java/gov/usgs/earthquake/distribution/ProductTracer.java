@@ -0,0 +1,207 @@
+/*
+ * ProductTracer
+ */
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.product.ProductId;
+import gov.usgs.util.logging.SimpleLogFileHandler;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Starts ProductTraces and keeps recently completed traces.
+ *
+ * Tracing is disabled by default. When enabled, a fraction of products
+ * (sampleRate) are traced. Completed traces are kept in memory to list the
+ * slowest recent products, and optionally written one per line to a daily
+ * trace file.
+ */
+public class ProductTracer {
+
+	/** Default number of completed traces to keep. */
+	public static final int DEFAULT_MAX_RECENT = 1000;
+
+	/** Trace file name format. */
+	public static final String TRACE_FILENAME_FORMAT = "'traces_'yyyyMMdd'.log'";
+
+	/** Tracer used by PDL components. */
+	private static final ProductTracer DEFAULT = new ProductTracer();
+
+	/** Whether products are traced. */
+	private volatile boolean enabled = false;
+
+	/** Fraction of products to trace, between 0 and 1. */
+	private volatile double sampleRate = 1.0;
+
+	/** Number of completed traces to keep. */
+	private int maxRecent = DEFAULT_MAX_RECENT;
+
+	/** Recently completed traces, oldest first. */
+	private final LinkedList<ProductTrace> recent = new LinkedList<ProductTrace>();
+
+	/** Writes completed traces, or null. */
+	private SimpleLogFileHandler traceFile = null;
+
+	/**
+	 * @return tracer used by PDL components.
+	 */
+	public static ProductTracer getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Start tracing a product.
+	 *
+	 * @param id
+	 *            product to trace.
+	 * @return new trace, or null if disabled or not sampled.
+	 */
+	public ProductTrace startTrace(final ProductId id) {
+		if (!enabled || (sampleRate < 1.0
+				&& ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+			return null;
+		}
+		return new ProductTrace(id);
+	}
+
+	/**
+	 * Complete a trace.
+	 *
+	 * @param trace
+	 *            trace to complete, may be null.
+	 * @param component
+	 *            name of component that completed processing.
+	 */
+	public void complete(final ProductTrace trace, final String component) {
+		if (trace == null) {
+			return;
+		}
+		ProductTrace completed = trace.complete(component);
+		synchronized (recent) {
+			recent.add(completed);
+			while (recent.size() > maxRecent) {
+				recent.removeFirst();
+			}
+			if (traceFile != null) {
+				traceFile.publish(new LogRecord(Level.INFO,
+						completed.toString()));
+			}
+		}
+	}
+
+	/**
+	 * Get the slowest recently completed traces.
+	 *
+	 * @param count
+	 *            maximum number of traces.
+	 * @return traces, slowest first.
+	 */
+	public List<ProductTrace> getSlowest(final int count) {
+		List<ProductTrace> traces;
+		synchronized (recent) {
+			traces = new ArrayList<ProductTrace>(recent);
+		}
+		Collections.sort(traces, new Comparator<ProductTrace>() {
+			@Override
+			public int compare(final ProductTrace a, final ProductTrace b) {
+				return Long.compare(b.getDuration(), a.getDuration());
+			}
+		});
+		return traces.subList(0, Math.min(count, traces.size()));
+	}
+
+	/**
+	 * Format the slowest recently completed traces, with one line per stage.
+	 *
+	 * @param count
+	 *            maximum number of traces.
+	 * @return formatted traces.
+	 */
+	public String getSlowestSummary(final int count) {
+		StringBuffer buf = new StringBuffer();
+		if (!enabled) {
+			buf.append("tracing disabled\n");
+		}
+		for (ProductTrace trace : getSlowest(count)) {
+			buf.append(trace.getId()).append(" ").append(trace.getDuration())
+					.append(" ms (completed by ")
+					.append(trace.getCompletedBy()).append(")\n");
+			for (ProductTrace.Stage stage : trace.getStages()) {
+				buf.append("\t").append(stage.getName())
+						.append(" start=+")
+						.append(stage.getBegin() - trace.getStart())
+						.append(" ms, took ").append(stage.getDuration())
+						.append(" ms\n");
+			}
+		}
+		return buf.toString();
+	}
+
+	/** @return whether products are traced. */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/** @param enabled whether products are traced. */
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/** @return fraction of products traced. */
+	public double getSampleRate() {
+		return sampleRate;
+	}
+
+	/** @param sampleRate fraction of products traced, between 0 and 1. */
+	public void setSampleRate(final double sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+
+	/** @return number of completed traces kept. */
+	public int getMaxRecent() {
+		return maxRecent;
+	}
+
+	/** @param maxRecent number of completed traces kept. */
+	public void setMaxRecent(final int maxRecent) {
+		synchronized (recent) {
+			this.maxRecent = maxRecent;
+		}
+	}
+
+	/**
+	 * Set where completed traces are written.
+	 *
+	 * @param directory
+	 *            directory for daily trace files, or null to stop writing.
+	 */
+	public void setTraceDirectory(final File directory) {
+		synchronized (recent) {
+			if (traceFile != null) {
+				traceFile.close();
+				traceFile = null;
+			}
+			if (directory != null) {
+				traceFile = new SimpleLogFileHandler(directory,
+						new SimpleDateFormat(TRACE_FILENAME_FORMAT));
+				traceFile.setFormatter(new Formatter() {
+					@Override
+					public String format(final LogRecord record) {
+						return record.getMessage() + "\n";
+					}
+				});
+			}
+		}
+	}
+
+}
@@ -0,0 +1,1335 @@
+/*
+ * SegmentProductStorage
+ */
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.product.Content;
+import gov.usgs.earthquake.product.FileRegionContent;
+import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.ProductId;
+import gov.usgs.earthquake.product.io.BinaryIO;
+import gov.usgs.earthquake.product.io.BinaryProductHandler;
+import gov.usgs.earthquake.product.io.FilterProductHandler;
+import gov.usgs.earthquake.product.io.ObjectProductHandler;
+import gov.usgs.earthquake.product.io.ObjectProductSource;
+import gov.usgs.earthquake.product.io.ProductHandler;
+import gov.usgs.earthquake.product.io.ProductSource;
+import gov.usgs.util.Config;
+import gov.usgs.util.CryptoUtils.Version;
+import gov.usgs.util.DefaultConfigurable;
+import gov.usgs.util.ObjectLock;
+import gov.usgs.util.StringUtils;
+import gov.usgs.util.metrics.MetricsRegistry;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Store products by appending them to large segment files.
+ *
+ * FileProductStorage uses one directory per product and one file per
+ * content, which means millions of files for busy hubs. This storage appends
+ * each product as one record to the active segment file, and keeps an index
+ * in memory of where each product record starts. Removing a product appends a
+ * small removal record. Segments where most records have been removed are
+ * compacted in the background, by copying remaining products to the active
+ * segment and deleting the old segment.
+ *
+ * Segment records are:
+ * <ol>
+ * <li>RECORD_MAGIC (Integer)</li>
+ * <li>type (Integer), STORE_RECORD or REMOVE_RECORD</li>
+ * <li>ProductId (String)</li>
+ * <li>payload length (Long)</li>
+ * <li>payload, for STORE_RECORD the product in BinaryProductHandler
+ * format</li>
+ * </ol>
+ * The index is rebuilt at startup by reading record headers. Incomplete
+ * records at the end of the last segment, from a crash during a write, are
+ * truncated.
+ *
+ * Products returned by getProductSource and getProduct have
+ * FileRegionContent that reads directly from segment files. Closing content
+ * when done allows compacted segments to be deleted sooner. Listeners that
+ * need products as directories, like ExternalNotificationListener, require
+ * FileProductStorage.
+ *
+ * The SegmentProductStorage implements the Configurable interface and can use
+ * the following configuration parameters:
+ *
+ * <dl>
+ * <dt>directory</dt>
+ * <dd>(Optional, default = storage) The directory where segments are
+ * stored.</dd>
+ *
+ * <dt>segmentSize</dt>
+ * <dd>(Optional, default = 268435456) A new segment is started once the
+ * active segment is larger than this many bytes.</dd>
+ *
+ * <dt>compactInterval</dt>
+ * <dd>(Optional, default = 300000) Milliseconds between checks for segments
+ * to compact. Compacted segments are deleted once no product source or
+ * content that reads the segment is still open, or reachable, so readers can
+ * finish reading. 0 disables compaction.</dd>
+ *
+ * <dt>compactRatio</dt>
+ * <dd>(Optional, default = 0.5) Segments are compacted when less than this
+ * fraction of their bytes are products still in storage.</dd>
+ *
+ * <dt>fsync</dt>
+ * <dd>(Optional, default = false) Whether to force each record to disk
+ * before returning.</dd>
+ *
+ * <dt>verifySignatures, keychain, listeners, legacyStorages</dt>
+ * <dd>Same as FileProductStorage.</dd>
+ * </dl>
+ */
+public class SegmentProductStorage extends DefaultConfigurable implements
+		ProductStorage {
+
+	/** Logging object. */
+	private static final Logger LOGGER = Logger
+			.getLogger(SegmentProductStorage.class.getName());
+
+	/** Property for segmentSize. */
+	public static final String SEGMENT_SIZE_PROPERTY = "segmentSize";
+	/** Default segmentSize, 256MB. */
+	public static final long DEFAULT_SEGMENT_SIZE = 256L * 1024L * 1024L;
+
+	/** Property for compactInterval. */
+	public static final String COMPACT_INTERVAL_PROPERTY = "compactInterval";
+	/** Default compactInterval, 5 minutes. */
+	public static final long DEFAULT_COMPACT_INTERVAL = 300000L;
+
+	/** Property for compactRatio. */
+	public static final String COMPACT_RATIO_PROPERTY = "compactRatio";
+	/** Default compactRatio. */
+	public static final double DEFAULT_COMPACT_RATIO = 0.5;
+
+	/** Property for fsync. */
+	public static final String FSYNC_PROPERTY = "fsync";
+	/** Default fsync. */
+	public static final boolean DEFAULT_FSYNC = false;
+
+	/** First bytes of every record, "PDLS". */
+	public static final int RECORD_MAGIC = 0x50444c53;
+	/** Record containing a stored product. */
+	public static final int STORE_RECORD = 1;
+	/** Record marking a product as removed. */
+	public static final int REMOVE_RECORD = 2;
+
+	/** Segment file name suffix. */
+	public static final String SEGMENT_SUFFIX = ".segment";
+	/** Directory, within storage directory, for products being received. */
+	public static final String SPOOL_DIRECTORY = "spool";
+
+	/** Maximum length of a product id in a record header. */
+	private static final int MAX_ID_LENGTH = 4096;
+
+	/** Directory where segments are stored. */
+	private File baseDirectory;
+	private long segmentSize = DEFAULT_SEGMENT_SIZE;
+	private long compactInterval = DEFAULT_COMPACT_INTERVAL;
+	private double compactRatio = DEFAULT_COMPACT_RATIO;
+	private boolean fsync = DEFAULT_FSYNC;
+
+	/** Where each product record is stored. */
+	private final Map<ProductId, Location> index = new HashMap<ProductId, Location>();
+
+	/** Segments by number. */
+	private final TreeMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+
+	/** Segment where records are appended. */
+	private Segment activeSegment;
+
+	/** Compacted segments, deleted once they have no readers. */
+	private final List<Segment> retiredSegments = new ArrayList<Segment>();
+
+	/** Held while appending, and while reading or updating index. */
+	private final Object appendLock = new Object();
+
+	/** Locks used to make storage operations atomic. */
+	private final ObjectLock<ProductId> storageLocks = new ObjectLock<ProductId>();
+
+	private final SignatureVerifier verifier = new SignatureVerifier();
+
+	/** Store, verify, and compact metrics. */
+	private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+	private final Map<StorageListener, ExecutorService> listeners = new HashMap<StorageListener, ExecutorService>();
+
+	/** Storages used only for retrieving products, never for storing. */
+	private final ArrayList<ProductStorage> legacyStorages = new ArrayList<ProductStorage>();
+
+	/** Timer for compaction. */
+	private Timer compactTimer;
+
+	private final BinaryIO io = new BinaryIO();
+
+	/**
+	 * Create a new SegmentProductStorage using the default directory.
+	 */
+	public SegmentProductStorage() {
+		this(new File(FileProductStorage.DEFAULT_DIRECTORY));
+	}
+
+	/**
+	 * Create a new SegmentProductStorage.
+	 *
+	 * @param baseDirectory
+	 *            directory where segments are stored.
+	 */
+	public SegmentProductStorage(final File baseDirectory) {
+		this.baseDirectory = baseDirectory;
+	}
+
+	@Override
+	public void configure(Config config) throws Exception {
+		baseDirectory = new File(config.getProperty(
+				FileProductStorage.DIRECTORY_PROPERTY_NAME,
+				FileProductStorage.DEFAULT_DIRECTORY));
+		LOGGER.config("[" + getName() + "] using storage directory "
+				+ baseDirectory.getCanonicalPath());
+
+		segmentSize = Long.parseLong(config.getProperty(SEGMENT_SIZE_PROPERTY,
+				Long.toString(DEFAULT_SEGMENT_SIZE)));
+		LOGGER.config("[" + getName() + "] segmentSize = " + segmentSize);
+
+		compactInterval = Long.parseLong(config.getProperty(
+				COMPACT_INTERVAL_PROPERTY,
+				Long.toString(DEFAULT_COMPACT_INTERVAL)));
+		LOGGER.config("[" + getName() + "] compactInterval = "
+				+ compactInterval);
+
+		compactRatio = Double.parseDouble(config.getProperty(
+				COMPACT_RATIO_PROPERTY, Double.toString(DEFAULT_COMPACT_RATIO)));
+		LOGGER.config("[" + getName() + "] compactRatio = " + compactRatio);
+
+		fsync = Boolean.valueOf(config.getProperty(FSYNC_PROPERTY,
+				Boolean.toString(DEFAULT_FSYNC)));
+		LOGGER.config("[" + getName() + "] fsync = " + fsync);
+
+		verifier.configure(config);
+
+		for (String listenerName : StringUtils.split(
+				config.getProperty(FileProductStorage.STORAGE_LISTENER_PROPERTY),
+				",")) {
+			try {
+				addStorageListener((StorageListener) Config.getConfig()
+						.getObject(listenerName));
+			} catch (Exception e) {
+				throw new ConfigurationException("[" + getName()
+						+ "] listener \"" + listenerName
+						+ "\" was not properly configured. " + e.getMessage());
+			}
+		}
+
+		for (String legacyName : StringUtils.split(
+				config.getProperty(FileProductStorage.LEGACY_STORAGES_PROPERTY),
+				",")) {
+			try {
+				legacyStorages.add((ProductStorage) Config.getConfig()
+						.getObject(legacyName));
+			} catch (Exception e) {
+				throw new ConfigurationException("[" + getName()
+						+ "] legacy storage '" + legacyName
+						+ "' not properly configured. " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Open segments and rebuild index.
+	 */
+	@Override
+	public void startup() throws Exception {
+		for (ProductStorage legacy : legacyStorages) {
+			try {
+				legacy.startup();
+			} catch (Exception e) {
+				LOGGER.log(Level.FINE, "[" + getName()
+						+ "] legacy storage startup exception ", e);
+			}
+		}
+
+		File spool = new File(baseDirectory, SPOOL_DIRECTORY);
+		spool.mkdirs();
+		// incomplete products from previous run
+		File[] spooled = spool.listFiles();
+		if (spooled != null) {
+			for (File file : spooled) {
+				file.delete();
+			}
+		}
+
+		synchronized (appendLock) {
+			index.clear();
+			segments.clear();
+			File[] files = baseDirectory.listFiles();
+			if (files != null) {
+				for (File file : files) {
+					String name = file.getName();
+					if (name.endsWith(SEGMENT_SUFFIX)) {
+						int number = Integer.parseInt(name.substring(0,
+								name.length() - SEGMENT_SUFFIX.length()));
+						segments.put(number, new Segment(number, file));
+					}
+				}
+			}
+			final long start = System.currentTimeMillis();
+			for (Segment segment : segments.values()) {
+				loadSegment(segment, segment == segments.lastEntry().getValue());
+			}
+			LOGGER.info("[" + getName() + "] loaded " + index.size()
+					+ " products from " + segments.size() + " segments in "
+					+ (System.currentTimeMillis() - start) + " ms");
+			if (segments.size() == 0) {
+				startSegment();
+			} else {
+				activeSegment = segments.lastEntry().getValue();
+				activeSegment.open();
+			}
+		}
+
+		if (compactInterval > 0) {
+			compactTimer = new Timer(getName() + "-compact", true);
+			compactTimer.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					try {
+						compact();
+					} catch (Exception e) {
+						LOGGER.log(Level.WARNING, "[" + getName()
+								+ "] exception compacting segments", e);
+					}
+				}
+			}, compactInterval, compactInterval);
+		}
+	}
+
+	/**
+	 * Stop compaction and close segments.
+	 */
+	@Override
+	public void shutdown() throws Exception {
+		if (compactTimer != null) {
+			compactTimer.cancel();
+			compactTimer = null;
+		}
+		synchronized (appendLock) {
+			if (activeSegment != null) {
+				activeSegment.close();
+				activeSegment = null;
+			}
+		}
+		for (StorageListener listener : new ArrayList<StorageListener>(
+				listeners.keySet())) {
+			removeStorageListener(listener);
+		}
+		for (ProductStorage legacy : legacyStorages) {
+			try {
+				legacy.shutdown();
+			} catch (Exception e) {
+				LOGGER.log(Level.FINE, "[" + getName()
+						+ "] legacy storage shutdown exception ", e);
+			}
+		}
+	}
+
+	@Override
+	public boolean hasProduct(final ProductId id) throws Exception {
+		synchronized (appendLock) {
+			if (index.containsKey(id)) {
+				return true;
+			}
+		}
+		for (ProductStorage legacy : legacyStorages) {
+			try {
+				if (legacy.hasProduct(id)) {
+					return true;
+				}
+			} catch (Exception e) {
+				LOGGER.log(Level.FINE, "[" + getName()
+						+ "] legacy storage hasProduct exception ", e);
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Product getProduct(final ProductId id) throws Exception {
+		ProductSource source = getProductSource(id);
+		if (source == null) {
+			return null;
+		}
+		return ObjectProductHandler.getProduct(source);
+	}
+
+	/**
+	 * Get a ProductSource from storage.
+	 *
+	 * Contents are FileRegionContent, and are read from the segment when
+	 * needed.
+	 *
+	 * @param id
+	 *            the product to retrieve.
+	 * @return a ProductSource for the product, or null if not in this storage.
+	 */
+	@Override
+	public ProductSource getProductSource(final ProductId id) throws Exception {
+		storageLocks.acquireReadLock(id);
+		try {
+			synchronized (appendLock) {
+				Location location = index.get(id);
+				if (location != null) {
+					// created while locked, so segment is not deleted first
+					return new SegmentProductSource(location);
+				}
+			}
+		} finally {
+			storageLocks.releaseReadLock(id);
+		}
+		for (ProductStorage legacy : legacyStorages) {
+			try {
+				ProductSource source = legacy.getProductSource(id);
+				if (source != null) {
+					return source;
+				}
+			} catch (Exception e) {
+				LOGGER.log(Level.FINE, "[" + getName()
+						+ "] legacy storage getProductSource exception ", e);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public ProductId storeProduct(final Product product) throws Exception {
+		return storeProductSource(new ObjectProductSource(product));
+	}
+
+	/**
+	 * Store a ProductSource.
+	 *
+	 * The product is first written to a spool file, so slow sources do not
+	 * block other stores, and then appended to the active segment.
+	 *
+	 * @param source
+	 *            the ProductSource to store.
+	 * @return the id of the stored product.
+	 */
+	@Override
+	public ProductId storeProductSource(final ProductSource source)
+			throws Exception {
+		final SpoolProductHandler output = new SpoolProductHandler();
+		final long beginStore = metrics.startTimer();
+		final long beginStoreMillis = System.currentTimeMillis();
+		try {
+			source.streamTo(output);
+			output.close();
+			append(STORE_RECORD, output.getProductId(), output.getSpoolFile());
+			metrics.recordSince(getName(), "store", beginStore);
+			ProductTrace.addCurrentStage(getName(), "store", beginStoreMillis);
+
+			final long beginVerify = metrics.startTimer();
+			final long beginVerifyMillis = System.currentTimeMillis();
+			Product stored = getProduct(output.getProductId());
+			try {
+				verifier.verifySignature(stored);
+			} finally {
+				// release segment readers
+				for (Content content : stored.getContents().values()) {
+					content.close();
+				}
+			}
+			metrics.recordSince(getName(), "verify", beginVerify);
+			ProductTrace.addCurrentStage(getName(), "verify", beginVerifyMillis);
+		} catch (Exception e) {
+			if (!(e instanceof ProductAlreadyInStorageException)
+					&& !(e.getCause() instanceof ProductAlreadyInStorageException)) {
+				if (e instanceof InvalidSignatureException) {
+					LOGGER.warning(e.getMessage()
+							+ ", removing incomplete product");
+				} else {
+					LOGGER.log(Level.WARNING, "[" + getName()
+							+ "] exception while storing product,"
+							+ " removing incomplete product", e);
+				}
+				if (output.getProductId() != null) {
+					try {
+						removeRecord(output.getProductId());
+					} catch (Exception e2) {
+						LOGGER.log(Level.WARNING, "[" + getName()
+								+ "] exception while removing incomplete product",
+								e2);
+					}
+				}
+			}
+			throw e;
+		} finally {
+			ProductId id = output.getProductId();
+			if (id != null && output.hasWriteLock()) {
+				storageLocks.releaseWriteLock(id);
+			}
+			output.close();
+			output.deleteSpoolFile();
+			source.close();
+		}
+
+		ProductId id = output.getProductId();
+		notifyListeners(new StorageEvent(this, id, StorageEvent.PRODUCT_STORED));
+		return id;
+	}
+
+	@Override
+	public void removeProduct(final ProductId id) throws Exception {
+		storageLocks.acquireWriteLock(id);
+		try {
+			removeRecord(id);
+			for (ProductStorage legacy : legacyStorages) {
+				try {
+					legacy.removeProduct(id);
+				} catch (Exception e) {
+					LOGGER.log(Level.FINE, "[" + getName()
+							+ "] legacy storage remove exception ", e);
+				}
+			}
+		} finally {
+			storageLocks.releaseWriteLock(id);
+		}
+		notifyListeners(new StorageEvent(this, id, StorageEvent.PRODUCT_REMOVED));
+	}
+
+	/**
+	 * Append a removal record, if product is in index.
+	 *
+	 * Caller should hold write lock for id.
+	 *
+	 * @param id
+	 *            product to remove.
+	 * @throws IOException
+	 *             if unable to write record.
+	 */
+	protected void removeRecord(final ProductId id) throws IOException {
+		synchronized (appendLock) {
+			if (index.containsKey(id)) {
+				append(REMOVE_RECORD, id, null);
+			}
+		}
+	}
+
+	/**
+	 * Append a record to the active segment and update index.
+	 *
+	 * @param type
+	 *            STORE_RECORD or REMOVE_RECORD.
+	 * @param id
+	 *            product id.
+	 * @param payload
+	 *            file with payload, or null.
+	 * @throws IOException
+	 *             if unable to write record.
+	 */
+	protected void append(final int type, final ProductId id, final File payload)
+			throws IOException {
+		synchronized (appendLock) {
+			if (activeSegment == null) {
+				throw new IOException("[" + getName() + "] storage not started");
+			}
+			if (activeSegment.size >= segmentSize) {
+				startSegment();
+			}
+			long payloadLength = (payload == null ? 0L : payload.length());
+			byte[] header = getRecordHeader(type, id, payloadLength);
+			Segment segment = activeSegment;
+			long offset = segment.size;
+			FileChannel channel = segment.channel;
+			try {
+				writeFully(channel, ByteBuffer.wrap(header), offset);
+				if (payload != null) {
+					try (RandomAccessFile in = new RandomAccessFile(payload, "r")) {
+						transferFully(in.getChannel(), 0L, payloadLength,
+								channel, offset + header.length);
+					}
+				}
+				if (fsync) {
+					channel.force(false);
+				}
+			} catch (IOException e) {
+				// discard partial record
+				channel.truncate(offset);
+				throw e;
+			}
+			long length = header.length + payloadLength;
+			segment.size += length;
+			updateIndex(type, id, new Location(segment, offset, length,
+					offset + header.length));
+		}
+	}
+
+	/**
+	 * Update index after a record is written or loaded.
+	 *
+	 * @param type
+	 *            record type.
+	 * @param id
+	 *            product id.
+	 * @param location
+	 *            where record is stored.
+	 */
+	private void updateIndex(final int type, final ProductId id,
+			final Location location) {
+		Location previous;
+		if (type == STORE_RECORD) {
+			previous = index.put(id, location);
+			location.segment.liveBytes += location.length;
+		} else {
+			previous = index.remove(id);
+		}
+		if (previous != null) {
+			previous.segment.liveBytes -= previous.length;
+		}
+	}
+
+	/**
+	 * Serialize a record header.
+	 *
+	 * @param type
+	 *            record type.
+	 * @param id
+	 *            product id.
+	 * @param payloadLength
+	 *            length of payload.
+	 * @return header bytes.
+	 * @throws IOException
+	 *             never.
+	 */
+	private byte[] getRecordHeader(final int type, final ProductId id,
+			final long payloadLength) throws IOException {
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		io.writeInt(RECORD_MAGIC, header);
+		io.writeInt(type, header);
+		io.writeString(id.toString(), header);
+		io.writeLong(payloadLength, header);
+		return header.toByteArray();
+	}
+
+	/**
+	 * Close active segment and start a new one.
+	 *
+	 * Caller must hold appendLock.
+	 *
+	 * @throws IOException
+	 *             if unable to create segment.
+	 */
+	private void startSegment() throws IOException {
+		int number = segments.size() == 0 ? 1 : segments.lastKey() + 1;
+		Segment segment = new Segment(number, new File(baseDirectory,
+				String.format("%08d", number) + SEGMENT_SUFFIX));
+		baseDirectory.mkdirs();
+		segment.open();
+		if (activeSegment != null) {
+			activeSegment.close();
+		}
+		segments.put(number, segment);
+		activeSegment = segment;
+		LOGGER.fine("[" + getName() + "] started segment " + segment.file);
+	}
+
+	/**
+	 * Read record headers from a segment and update index.
+	 *
+	 * Caller must hold appendLock.
+	 *
+	 * @param segment
+	 *            segment to load.
+	 * @param last
+	 *            whether this is the last segment, which is truncated after
+	 *            the last complete record.
+	 * @throws IOException
+	 *             if a segment other than the last is corrupt.
+	 */
+	private void loadSegment(final Segment segment, final boolean last)
+			throws IOException {
+		long fileLength = segment.file.length();
+		long offset = 0L;
+		try (RandomAccessFile raf = new RandomAccessFile(segment.file, "r")) {
+			PositionInputStream in = new PositionInputStream(raf.getChannel(),
+					0L, fileLength);
+			while (offset < fileLength) {
+				RecordHeader header;
+				try {
+					header = readRecordHeader(in);
+				} catch (IOException e) {
+					if (!last) {
+						throw new IOException("[" + getName() + "] corrupt segment "
+								+ segment.file + " at offset " + offset, e);
+					}
+					break;
+				}
+				long payloadOffset = in.getPosition();
+				long end = payloadOffset + header.payloadLength;
+				if (end > fileLength) {
+					// incomplete record
+					break;
+				}
+				updateIndex(header.type, header.id, new Location(segment,
+						offset, end - offset, payloadOffset));
+				in.seek(end);
+				offset = end;
+			}
+		}
+		if (offset < fileLength) {
+			LOGGER.warning("[" + getName() + "] truncating incomplete record in "
+					+ segment.file + " at offset " + offset);
+			try (RandomAccessFile raf = new RandomAccessFile(segment.file, "rw")) {
+				raf.getChannel().truncate(offset);
+			}
+		}
+		segment.size = offset;
+	}
+
+	/**
+	 * Read a record header.
+	 *
+	 * @param in
+	 *            stream positioned at start of record.
+	 * @return header.
+	 * @throws IOException
+	 *             if header is invalid or incomplete.
+	 */
+	private RecordHeader readRecordHeader(final InputStream in)
+			throws IOException {
+		if (io.readInt(in) != RECORD_MAGIC) {
+			throw new IOException("invalid record magic");
+		}
+		RecordHeader header = new RecordHeader();
+		header.type = io.readInt(in);
+		if (header.type != STORE_RECORD && header.type != REMOVE_RECORD) {
+			throw new IOException("invalid record type " + header.type);
+		}
+		header.id = ProductId.parse(io.readString(in, MAX_ID_LENGTH));
+		header.payloadLength = io.readLong(in);
+		if (header.payloadLength < 0) {
+			throw new IOException("invalid payload length");
+		}
+		return header;
+	}
+
+	/**
+	 * Compact segments where few bytes are still in use.
+	 *
+	 * Segments compacted during the previous call are deleted first.
+	 *
+	 * @throws Exception
+	 *             if error occurs.
+	 */
+	public void compact() throws Exception {
+		List<Segment> toCompact = new ArrayList<Segment>();
+		synchronized (appendLock) {
+			Iterator<Segment> iter = retiredSegments.iterator();
+			while (iter.hasNext()) {
+				Segment retired = iter.next();
+				if (!retired.readers.isEmpty()) {
+					// sources or contents still read segment
+					continue;
+				}
+				if (retired.file.delete()) {
+					iter.remove();
+				} else {
+					LOGGER.warning("[" + getName() + "] unable to delete "
+							+ retired.file);
+				}
+			}
+			for (Segment segment : segments.values()) {
+				if (segment != activeSegment
+						&& segment.liveBytes < segment.size * compactRatio) {
+					toCompact.add(segment);
+				}
+			}
+		}
+		for (Segment segment : toCompact) {
+			final long start = metrics.startTimer();
+			compactSegment(segment);
+			metrics.recordSince(getName(), "compact", start);
+		}
+	}
+
+	/**
+	 * Copy records still in use to the active segment, then retire segment.
+	 *
+	 * @param segment
+	 *            segment to compact.
+	 * @throws Exception
+	 *             if error occurs.
+	 */
+	protected void compactSegment(final Segment segment) throws Exception {
+		long copied = 0L;
+		boolean oldest;
+		synchronized (appendLock) {
+			// removals can only be dropped when no older segment file exists,
+			// including retired segments that are not deleted yet
+			oldest = (segments.firstEntry().getValue() == segment);
+			for (Segment retired : retiredSegments) {
+				if (retired.number < segment.number) {
+					oldest = false;
+				}
+			}
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(segment.file, "r")) {
+			FileChannel channel = raf.getChannel();
+			PositionInputStream in = new PositionInputStream(channel, 0L,
+					segment.size);
+			long offset = 0L;
+			while (offset < segment.size) {
+				RecordHeader header = readRecordHeader(in);
+				long end = in.getPosition() + header.payloadLength;
+				storageLocks.acquireWriteLock(header.id);
+				try {
+					synchronized (appendLock) {
+						Location location = index.get(header.id);
+						if (header.type == STORE_RECORD) {
+							if (location != null && location.segment == segment
+									&& location.offset == offset) {
+								copyRecord(channel, header.id, offset, end
+										- offset, in.getPosition() - offset);
+								copied += end - offset;
+							}
+						} else if (location == null && !oldest) {
+							// keep removal, older segments may store product
+							copyRecord(channel, header.id, offset, end - offset,
+									end - offset);
+						}
+					}
+				} finally {
+					storageLocks.releaseWriteLock(header.id);
+				}
+				in.seek(end);
+				offset = end;
+			}
+		}
+		synchronized (appendLock) {
+			segments.remove(segment.number);
+			retiredSegments.add(segment);
+		}
+		LOGGER.info("[" + getName() + "] compacted " + segment.file + ", copied "
+				+ copied + " of " + segment.size + " bytes");
+	}
+
+	/**
+	 * Copy a record to the active segment.
+	 *
+	 * Caller must hold appendLock.
+	 */
+	private void copyRecord(final FileChannel from, final ProductId id,
+			final long offset, final long length, final long headerLength)
+			throws IOException {
+		if (activeSegment.size >= segmentSize) {
+			startSegment();
+		}
+		Segment segment = activeSegment;
+		long newOffset = segment.size;
+		try {
+			transferFully(from, offset, length, segment.channel, newOffset);
+			if (fsync) {
+				segment.channel.force(false);
+			}
+		} catch (IOException e) {
+			segment.channel.truncate(newOffset);
+			throw e;
+		}
+		segment.size += length;
+		Location location = new Location(segment, newOffset, length, newOffset
+				+ headerLength);
+		if (headerLength < length) {
+			updateIndex(STORE_RECORD, id, location);
+		}
+	}
+
+	private static void writeFully(final FileChannel channel,
+			final ByteBuffer buffer, final long position) throws IOException {
+		long written = 0L;
+		while (buffer.hasRemaining()) {
+			written += channel.write(buffer, position + written);
+		}
+	}
+
+	/**
+	 * Copy bytes between channels.
+	 *
+	 * Uses FileChannel.transferTo, which may avoid copying through java
+	 * buffers. Caller must hold appendLock, since the target position is
+	 * changed.
+	 */
+	private static void transferFully(final FileChannel from,
+			final long position, final long length, final FileChannel to,
+			final long toPosition) throws IOException {
+		to.position(toPosition);
+		long transferred = 0L;
+		while (transferred < length) {
+			long count = from.transferTo(position + transferred, length
+					- transferred, to);
+			if (count <= 0) {
+				throw new EOFException("unable to copy record");
+			}
+			transferred += count;
+		}
+	}
+
+	@Override
+	public synchronized void notifyListeners(final StorageEvent event) {
+		for (final StorageListener listener : listeners.keySet()) {
+			listeners.get(listener).submit(new Runnable() {
+				public void run() {
+					listener.onStorageEvent(event);
+				}
+			});
+		}
+	}
+
+	@Override
+	public synchronized void addStorageListener(final StorageListener listener) {
+		if (!listeners.containsKey(listener)) {
+			listeners.put(listener, Executors.newSingleThreadExecutor());
+		}
+	}
+
+	@Override
+	public synchronized void removeStorageListener(final StorageListener listener) {
+		ExecutorService service = listeners.remove(listener);
+		if (service != null) {
+			service.shutdown();
+		}
+	}
+
+	/**
+	 * @return number of products in index.
+	 */
+	public int getProductCount() {
+		synchronized (appendLock) {
+			return index.size();
+		}
+	}
+
+	/**
+	 * @return number of segments, not including retired segments.
+	 */
+	public int getSegmentCount() {
+		synchronized (appendLock) {
+			return segments.size();
+		}
+	}
+
+	/** @return the storageLocks */
+	public ObjectLock<ProductId> getStorageLocks() {
+		return storageLocks;
+	}
+
+	/** @return the baseDirectory */
+	public File getBaseDirectory() {
+		return baseDirectory;
+	}
+
+	/** @param baseDirectory the baseDirectory to set */
+	public void setBaseDirectory(final File baseDirectory) {
+		this.baseDirectory = baseDirectory;
+	}
+
+	/** @return the segmentSize */
+	public long getSegmentSize() {
+		return segmentSize;
+	}
+
+	/** @param segmentSize the segmentSize to set */
+	public void setSegmentSize(final long segmentSize) {
+		this.segmentSize = segmentSize;
+	}
+
+	/** @return the compactInterval */
+	public long getCompactInterval() {
+		return compactInterval;
+	}
+
+	/** @param compactInterval the compactInterval to set */
+	public void setCompactInterval(final long compactInterval) {
+		this.compactInterval = compactInterval;
+	}
+
+	/** @return the compactRatio */
+	public double getCompactRatio() {
+		return compactRatio;
+	}
+
+	/** @param compactRatio the compactRatio to set */
+	public void setCompactRatio(final double compactRatio) {
+		this.compactRatio = compactRatio;
+	}
+
+	/** @return the fsync */
+	public boolean isFsync() {
+		return fsync;
+	}
+
+	/** @param fsync the fsync to set */
+	public void setFsync(final boolean fsync) {
+		this.fsync = fsync;
+	}
+
+	/** @return the legacyStorages */
+	public List<ProductStorage> getLegacyStorages() {
+		return legacyStorages;
+	}
+
+	/**
+	 * A segment file.
+	 */
+	protected static class Segment {
+		/** Segment number, from file name. */
+		public final int number;
+		/** Segment file. */
+		public final File file;
+		/** Bytes of complete records. */
+		public long size = 0L;
+		/** Bytes of store records still in index. */
+		public long liveBytes = 0L;
+		/**
+		 * Open sources and contents that read segment, guarded by appendLock.
+		 * Weak, so readers that are never closed do not keep segment forever.
+		 */
+		private final Set<Object> readers = Collections
+				.newSetFromMap(new WeakHashMap<Object, Boolean>());
+		/** Open file, only for active segment. */
+		private RandomAccessFile raf;
+		/** Channel used to append, only for active segment. */
+		private FileChannel channel;
+
+		Segment(final int number, final File file) {
+			this.number = number;
+			this.file = file;
+		}
+
+		void open() throws IOException {
+			raf = new RandomAccessFile(file, "rw");
+			channel = raf.getChannel();
+		}
+
+		void close() {
+			try {
+				if (raf != null) {
+					raf.close();
+				}
+			} catch (IOException e) {
+				// ignore
+			}
+			raf = null;
+			channel = null;
+		}
+	}
+
+	/**
+	 * Where a product record is stored.
+	 */
+	protected static class Location {
+		/** Segment containing record. */
+		public final Segment segment;
+		/** Offset of record in segment. */
+		public final long offset;
+		/** Length of record, including header. */
+		public final long length;
+		/** Offset of payload in segment. */
+		public final long payloadOffset;
+
+		Location(final Segment segment, final long offset, final long length,
+				final long payloadOffset) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+			this.payloadOffset = payloadOffset;
+		}
+	}
+
+	/**
+	 * Parsed record header.
+	 */
+	private static class RecordHeader {
+		int type;
+		ProductId id;
+		long payloadLength;
+	}
+
+	/**
+	 * Writes products being stored to a spool file, and acquires the write
+	 * lock once the product id is known.
+	 */
+	private class SpoolProductHandler extends FilterProductHandler {
+
+		private ProductId id;
+		private File spoolFile;
+		private boolean haveWriteLock = false;
+
+		public ProductId getProductId() {
+			return id;
+		}
+
+		public File getSpoolFile() {
+			return spoolFile;
+		}
+
+		public boolean hasWriteLock() {
+			return haveWriteLock;
+		}
+
+		public void deleteSpoolFile() {
+			if (spoolFile != null) {
+				spoolFile.delete();
+				spoolFile = null;
+			}
+		}
+
+		@Override
+		public void onBeginProduct(ProductId id, String status, URL trackerURL)
+				throws Exception {
+			this.id = id;
+			final long beginLockWait = metrics.startTimer();
+			final long beginLockWaitMillis = System.currentTimeMillis();
+			storageLocks.acquireWriteLock(id);
+			haveWriteLock = true;
+			metrics.recordSince(getName(), "store.lockWait", beginLockWait);
+			ProductTrace.addCurrentStage(getName(), "store.lockWait",
+					beginLockWaitMillis);
+			if (hasProduct(id)) {
+				throw new ProductAlreadyInStorageException("[" + getName()
+						+ "] product already in storage");
+			}
+			File spool = new File(baseDirectory, SPOOL_DIRECTORY);
+			spool.mkdirs();
+			spoolFile = File.createTempFile("product", ".bin", spool);
+			setProductOutput(new BinaryProductHandler(new BufferedOutputStream(
+					new FileOutputStream(spoolFile))));
+			super.onBeginProduct(id, status, trackerURL);
+		}
+
+	}
+
+	/**
+	 * Reads a stored product record.
+	 *
+	 * Content bytes are not read, content is delivered as FileRegionContent.
+	 */
+	private class SegmentProductSource implements ProductSource {
+
+		private final Segment segment;
+		private final File file;
+		private final long payloadOffset;
+		private final long end;
+		private RandomAccessFile raf;
+
+		/**
+		 * Caller must hold appendLock.
+		 */
+		SegmentProductSource(final Location location) {
+			this.segment = location.segment;
+			this.file = location.segment.file;
+			this.payloadOffset = location.payloadOffset;
+			this.end = location.offset + location.length;
+			segment.readers.add(this);
+		}
+
+		@Override
+		public void streamTo(final ProductHandler out) throws Exception {
+			raf = new RandomAccessFile(file, "r");
+			try {
+				PositionInputStream in = new PositionInputStream(
+						raf.getChannel(), payloadOffset, end);
+				ProductId id = null;
+				while (true) {
+					String next = io.readString(in);
+					if (next.equals(BinaryProductHandler.HEADER)) {
+						id = ProductId.parse(io.readString(in));
+						String status = io.readString(in);
+						String trackerURL = io.readString(in);
+						out.onBeginProduct(id, status, "null"
+								.equalsIgnoreCase(trackerURL) ? null : new URL(
+								trackerURL));
+					} else if (next.equals(BinaryProductHandler.PROPERTY)) {
+						String name = io.readString(in);
+						out.onProperty(id, name, io.readString(in));
+					} else if (next.equals(BinaryProductHandler.LINK)) {
+						String relation = io.readString(in);
+						out.onLink(id, relation, new URI(io.readString(in)));
+					} else if (next.equals(BinaryProductHandler.CONTENT)) {
+						String path = io.readString(in);
+						String contentType = io.readString(in);
+						Date lastModified = io.readDate(in);
+						long length = io.readLong(in);
+						FileRegionContent content = new SegmentContent(segment,
+								in.getPosition(), length);
+						content.setContentType(contentType);
+						content.setLastModified(lastModified);
+						in.seek(in.getPosition() + length);
+						out.onContent(id, path, content);
+					} else if (next.equals(BinaryProductHandler.SIGNATUREVERSION)) {
+						out.onSignatureVersion(id,
+								Version.fromString(io.readString(in)));
+					} else if (next.equals(BinaryProductHandler.SIGNATURE)) {
+						out.onSignature(id, io.readString(in));
+					} else if (next.equals(BinaryProductHandler.FOOTER)) {
+						out.onEndProduct(id);
+						break;
+					} else {
+						throw new IOException("unexpected record '" + next
+								+ "' in " + file);
+					}
+				}
+			} finally {
+				close();
+			}
+		}
+
+		@Override
+		public void close() {
+			if (raf != null) {
+				try {
+					raf.close();
+				} catch (IOException e) {
+					// ignore
+				}
+				raf = null;
+			}
+			synchronized (appendLock) {
+				segment.readers.remove(this);
+			}
+		}
+
+	}
+
+	/**
+	 * Content read from a segment.
+	 *
+	 * Registered as a segment reader until closed, so a compacted segment is
+	 * not deleted while content may still be read.
+	 */
+	private class SegmentContent extends FileRegionContent {
+
+		private final Segment segment;
+
+		SegmentContent(final Segment segment, final long offset,
+				final long length) {
+			super(segment.file, offset, length);
+			this.segment = segment;
+			synchronized (appendLock) {
+				segment.readers.add(this);
+			}
+		}
+
+		@Override
+		public void close() {
+			synchronized (appendLock) {
+				segment.readers.remove(this);
+			}
+		}
+
+	}
+
+	/**
+	 * Buffered InputStream over part of a FileChannel, using positional reads
+	 * so the channel can be shared, and tracking position so records can be
+	 * located.
+	 */
+	private static class PositionInputStream extends InputStream {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+		/** Position of first byte in buffer. */
+		private long bufferPosition;
+		private final long end;
+
+		PositionInputStream(final FileChannel channel, final long start,
+				final long end) {
+			this.channel = channel;
+			this.bufferPosition = start;
+			this.end = end;
+			buffer.limit(0);
+		}
+
+		long getPosition() {
+			return bufferPosition + buffer.position();
+		}
+
+		void seek(final long position) {
+			bufferPosition = position;
+			buffer.clear();
+			buffer.limit(0);
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!buffer.hasRemaining() && !fill()) {
+				return -1;
+			}
+			return buffer.get() & 0xFF;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+				throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining() && !fill()) {
+				return -1;
+			}
+			int count = Math.min(len, buffer.remaining());
+			buffer.get(b, off, count);
+			return count;
+		}
+
+		private boolean fill() throws IOException {
+			long position = getPosition();
+			if (position >= end) {
+				return false;
+			}
+			bufferPosition = position;
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), end - position));
+			int read = 0;
+			while (buffer.hasRemaining()) {
+				int count = channel.read(buffer, position + read);
+				if (count == -1) {
+					break;
+				}
+				read += count;
+			}
+			buffer.flip();
+			return read > 0;
+		}
+
+	}
+
+}
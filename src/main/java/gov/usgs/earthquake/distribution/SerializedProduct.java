@@ -0,0 +1,199 @@
+/*
+ * SerializedProduct
+ */
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.io.BinaryProductHandler;
+import gov.usgs.earthquake.product.io.ObjectProductSource;
+import gov.usgs.earthquake.product.io.XmlProductHandler;
+import gov.usgs.earthquake.util.SpooledOutputStream;
+import gov.usgs.util.StreamUtils;
+
+import java.io.Closeable;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * A product that is serialized once and shared by multiple senders.
+ *
+ * Each combination of format and deflate level is serialized the first time
+ * it is requested, into a SpooledOutputStream that stays in memory for small
+ * products and uses a temporary file for large products. Concurrent requests
+ * for the same combination wait for the first serialization and reuse it.
+ *
+ * Call {@link #close()} when all senders are done to release buffers. After
+ * close, {@link #getPayload(boolean, int)} throws an IllegalStateException,
+ * and payloads still being serialized are deleted when they finish.
+ */
+public class SerializedProduct implements Closeable {
+
+	/** Deflate level that means do not deflate. */
+	public static final int NO_DEFLATE = -1;
+
+	/** Product being serialized. */
+	private final Product product;
+
+	/** Maximum bytes of each payload kept in memory. */
+	private final long memoryLimit;
+
+	/** Serialized payloads, by format and deflate level. */
+	private final Map<String, Payload> payloads = new HashMap<String, Payload>();
+
+	/** Whether close was called, guarded by payloads. */
+	private boolean closed = false;
+
+	/**
+	 * One serialized form of a product.
+	 */
+	private static class Payload {
+		SpooledOutputStream buffer;
+		Exception error;
+	}
+
+	/**
+	 * Create a new SerializedProduct.
+	 *
+	 * @param product
+	 *            product to serialize.
+	 * @param memoryLimit
+	 *            payloads larger than this many bytes are spooled to a
+	 *            temporary file.
+	 */
+	public SerializedProduct(final Product product, final long memoryLimit) {
+		this.product = product;
+		this.memoryLimit = memoryLimit;
+	}
+
+	/**
+	 * @return the product.
+	 */
+	public Product getProduct() {
+		return product;
+	}
+
+	/**
+	 * Get a serialized form of the product, serializing if needed.
+	 *
+	 * @param binaryFormat
+	 *            true for binary format, false for xml format.
+	 * @param deflateLevel
+	 *            deflate compression level, or NO_DEFLATE.
+	 * @return closed buffer containing serialized product.
+	 * @throws Exception
+	 *             if product could not be serialized.
+	 * @throws IllegalStateException
+	 *             if this object is closed.
+	 */
+	public SpooledOutputStream getPayload(final boolean binaryFormat,
+			final int deflateLevel) throws Exception {
+		String key = (binaryFormat ? "binary" : "xml") + "/" + deflateLevel;
+		Payload payload;
+		synchronized (payloads) {
+			checkNotClosed();
+			payload = payloads.get(key);
+			if (payload == null) {
+				payload = new Payload();
+				payloads.put(key, payload);
+			}
+		}
+		synchronized (payload) {
+			if (payload.buffer == null && payload.error == null) {
+				SpooledOutputStream buffer = null;
+				try {
+					buffer = serialize(binaryFormat, deflateLevel);
+				} catch (Exception e) {
+					payload.error = e;
+				}
+				if (buffer != null) {
+					synchronized (payloads) {
+						if (closed) {
+							// closed while serializing, nobody will delete it
+							buffer.delete();
+						}
+						checkNotClosed();
+						payload.buffer = buffer;
+					}
+				}
+			}
+			if (payload.error != null) {
+				throw payload.error;
+			}
+			return payload.buffer;
+		}
+	}
+
+	/**
+	 * Called while holding the payloads lock.
+	 *
+	 * @throws IllegalStateException
+	 *             if this object is closed.
+	 */
+	private void checkNotClosed() {
+		if (closed) {
+			throw new IllegalStateException("Serialized product "
+					+ product.getId().toString() + " is closed");
+		}
+	}
+
+	/**
+	 * Serialize the product.
+	 *
+	 * @param binaryFormat
+	 *            true for binary format, false for xml format.
+	 * @param deflateLevel
+	 *            deflate compression level, or NO_DEFLATE.
+	 * @return closed buffer containing serialized product.
+	 * @throws Exception
+	 *             if product could not be serialized.
+	 */
+	protected SpooledOutputStream serialize(final boolean binaryFormat,
+			final int deflateLevel) throws Exception {
+		SpooledOutputStream buffer = new SpooledOutputStream(memoryLimit);
+		Deflater deflater = null;
+		try {
+			OutputStream out = buffer;
+			if (deflateLevel != NO_DEFLATE) {
+				deflater = new Deflater(deflateLevel);
+				out = new DeflaterOutputStream(buffer, deflater);
+			}
+			// make sure product handler doesn't close stream before done
+			OutputStream productOut = new StreamUtils.UnclosableOutputStream(out);
+			ObjectProductSource source = new ObjectProductSource(product);
+			if (binaryFormat) {
+				source.streamTo(new BinaryProductHandler(productOut));
+			} else {
+				source.streamTo(new XmlProductHandler(productOut));
+			}
+			out.close();
+		} catch (Exception e) {
+			buffer.delete();
+			throw e;
+		} finally {
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * Release memory and delete temporary files.
+	 */
+	@Override
+	public void close() {
+		synchronized (payloads) {
+			closed = true;
+			for (Payload payload : payloads.values()) {
+				if (payload.buffer != null) {
+					payload.buffer.delete();
+				}
+			}
+			payloads.clear();
+		}
+	}
+
+}
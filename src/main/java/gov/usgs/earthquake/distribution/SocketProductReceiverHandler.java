@@ -5,12 +5,24 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import gov.usgs.earthquake.product.Content;
+import gov.usgs.earthquake.product.Product;
 import gov.usgs.earthquake.product.ProductId;
 import gov.usgs.earthquake.product.io.BinaryIO;
+import gov.usgs.earthquake.product.io.BinaryProductSource;
+import gov.usgs.earthquake.product.io.ContentCodecs;
 import gov.usgs.earthquake.product.io.IOUtil;
+import gov.usgs.earthquake.product.io.ProductSource;
 import gov.usgs.earthquake.util.SizeLimitInputStream;
 import gov.usgs.util.ObjectLock;
 import gov.usgs.util.StreamUtils;
@@ -22,6 +34,9 @@ public class SocketProductReceiverHandler implements Runnable {
 	/** buffer for PDL protocol. Set to 1024 */
 	public static final int PDL_PROTOCOL_BUFFER = 1024;
 
+	/** Number of stored versions searched for offered contents. */
+	public static final int MAX_DELTA_VERSIONS = 3;
+
 	/** Protected Variable for BinaryIO */
 	protected final BinaryIO io = new BinaryIO();
 	/** Protected Variable for SocketProductReceiver */
@@ -108,6 +123,7 @@ public class SocketProductReceiverHandler implements Runnable {
 		InputStream productIn = null;
 		OutputStream out = null;
 		ProductId productId = null;
+		Map<String, Content> knownContents = null;
 
 		try {
 			socket.setSoTimeout(receiver.getReadTimeout());
@@ -126,7 +142,13 @@ public class SocketProductReceiverHandler implements Runnable {
 						+ protocolVersion + "' " + socket);
 
 				// got a version, see if it's supported
-				if (SocketProductSender.PROTOCOL_VERSION_0_1.equals(protocolVersion)) {
+				boolean negotiateContents = SocketProductSender.PROTOCOL_VERSION_0_3
+						.equals(protocolVersion);
+				boolean negotiate = negotiateContents
+						|| SocketProductSender.PROTOCOL_VERSION_0_2
+								.equals(protocolVersion);
+				if (negotiate || SocketProductSender.PROTOCOL_VERSION_0_1
+						.equals(protocolVersion)) {
 					// product id is only message
 					String productIdString;
 					try {
@@ -139,6 +161,17 @@ public class SocketProductReceiverHandler implements Runnable {
 						}
 					}
 					productId = ProductId.parse(productIdString);
+					// v0.2 also offers content codecs
+					String offeredCodecs = null;
+					if (negotiate) {
+						offeredCodecs = io.readString(in, PDL_PROTOCOL_BUFFER);
+					}
+					// v0.3 also offers content hashes
+					Set<String> offeredContents = null;
+					if (negotiateContents) {
+						offeredContents = SocketProductSender.readContentHashes(
+								io, in);
+					}
 
 					acquireWriteLock(productId);
 					if (receiver.getProductStorage().hasProduct(productId)) {
@@ -148,10 +181,22 @@ public class SocketProductReceiverHandler implements Runnable {
 					} else {
 						// don't have product
 						sendString(out, SocketProductSender.UNKNOWN_PRODUCT);
+						if (negotiate) {
+							sendString(out, ContentCodecs.negotiate(offeredCodecs));
+						}
+						if (negotiateContents) {
+							knownContents = findKnownContents(productId,
+									offeredContents);
+							io.writeInt(knownContents.size(), out);
+							for (String hash : knownContents.keySet()) {
+								io.writeString(hash, out);
+							}
+						}
 						out.flush();
 					}
 				} else {
-					throw new IOException("unsupported protocol version");
+					throw new IOException(
+							SocketProductSender.UNSUPPORTED_PROTOCOL_VERSION);
 				}
 			}
 
@@ -160,9 +205,17 @@ public class SocketProductReceiverHandler implements Runnable {
 			if (receiver.getSizeLimit() > 0) {
 				productIn = new SizeLimitInputStream(in, receiver.getSizeLimit());
 			}
-			String status = receiver.storeAndNotify(IOUtil
-					.autoDetectProductSource(new StreamUtils.UnclosableInputStream(
-							productIn)));
+			ProductSource source;
+			if (knownContents != null && knownContents.size() > 0) {
+				// only binary format may reference contents
+				source = new BinaryProductSource(IOUtil.autoDetectDeflate(
+						new StreamUtils.UnclosableInputStream(productIn)),
+						knownContents);
+			} else {
+				source = IOUtil.autoDetectProductSource(
+						new StreamUtils.UnclosableInputStream(productIn));
+			}
+			String status = receiver.storeAndNotify(source);
 			LOGGER.info(status + " from " + socket.toString());
 
 			try {
@@ -187,6 +240,67 @@ public class SocketProductReceiverHandler implements Runnable {
 		}
 	}
 
+	/**
+	 * Find offered contents that are already in storage.
+	 *
+	 * Searches stored versions of the same source, type, and code, starting
+	 * with the most recent, and stops once all offered contents are found or
+	 * MAX_DELTA_VERSIONS have been searched.
+	 *
+	 * @param id product being sent.
+	 * @param offered sha256 values offered by sender.
+	 * @return stored content by sha256, may be empty.
+	 */
+	public Map<String, Content> findKnownContents(final ProductId id,
+			final Set<String> offered) {
+		Map<String, Content> known = new HashMap<String, Content>();
+		if (offered == null || offered.size() == 0) {
+			return known;
+		}
+		try {
+			List<Notification> notifications = receiver.getNotificationIndex()
+					.findNotifications(id.getSource(), id.getType(),
+							id.getCode());
+			// most recent first
+			List<ProductId> ids = new ArrayList<ProductId>();
+			for (Notification notification : notifications) {
+				if (!ids.contains(notification.getProductId())) {
+					ids.add(notification.getProductId());
+				}
+			}
+			Collections.sort(ids, new Comparator<ProductId>() {
+				@Override
+				public int compare(final ProductId a, final ProductId b) {
+					return b.getUpdateTime().compareTo(a.getUpdateTime());
+				}
+			});
+			ProductStorage storage = receiver.getProductStorage();
+			int searched = 0;
+			for (ProductId storedId : ids) {
+				if (searched >= MAX_DELTA_VERSIONS
+						|| known.size() == offered.size()) {
+					break;
+				}
+				if (storedId.equals(id) || !storage.hasProduct(storedId)) {
+					continue;
+				}
+				searched++;
+				Product stored = storage.getProduct(storedId);
+				for (Content content : stored.getContents().values()) {
+					String sha256 = content.getSha256();
+					if (offered.contains(sha256)) {
+						known.put(sha256, content);
+					}
+				}
+			}
+		} catch (Exception e) {
+			// contents are sent instead
+			LOGGER.log(Level.FINE, "[" + receiver.getName()
+					+ "] exception finding stored contents", e);
+		}
+		return known;
+	}
+
 	/**
 	 * Send an exception to the user.
 	 *
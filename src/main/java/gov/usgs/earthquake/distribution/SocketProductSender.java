@@ -3,9 +3,12 @@
  */
 package gov.usgs.earthquake.distribution;
 
+import gov.usgs.earthquake.product.Content;
 import gov.usgs.earthquake.product.Product;
 import gov.usgs.earthquake.product.io.BinaryIO;
 import gov.usgs.earthquake.product.io.BinaryProductHandler;
+import gov.usgs.earthquake.product.io.ContentCodec;
+import gov.usgs.earthquake.product.io.ContentCodecs;
 import gov.usgs.earthquake.product.io.ObjectProductSource;
 import gov.usgs.earthquake.product.io.XmlProductHandler;
 import gov.usgs.earthquake.util.TimeoutOutputStream;
@@ -25,6 +28,11 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
@@ -41,6 +49,20 @@ import java.util.zip.DeflaterOutputStream;
  *
  * <dt>port</dt>
  * <dd>(Optional, default=11235) The port on host of a SocketProductReceiver</dd>
+ *
+ * <dt>contentCodecs</dt>
+ * <dd>(Optional, default none) Comma separated list of content codecs
+ * offered to the receiver, in order of preference, e.g. "pdl-lz4block,deflate".
+ * Requires binaryFormat and enablePdlProtocol. The receiver chooses a codec
+ * using protocol version v0.2, and content that is already compressed is sent
+ * without encoding. Receivers that do not support v0.2 are sent products
+ * using v0.1.</dd>
+ *
+ * <dt>enableDeltaTransfer</dt>
+ * <dd>(Optional, default false) Whether to offer content sha256 hashes to the
+ * receiver, using protocol version v0.3. Contents the receiver already has,
+ * from any stored version of the same product, are sent as references
+ * instead of bytes. Requires binaryFormat and enablePdlProtocol.</dd>
  * </dl>
  *
  * @author jmfee
@@ -96,10 +118,32 @@ public class SocketProductSender extends DefaultConfigurable implements
 	/** Default for enable pdl protocol */
 	public static final String DEFAULT_ENABLE_PDL_PROTOCOL = "true";
 
+	/** Property for contentCodecs */
+	public static final String CONTENT_CODECS_PROPERTY = "contentCodecs";
+	/** Default content codecs, none */
+	public static final String DEFAULT_CONTENT_CODECS = "";
+
+	/** Property for enableDeltaTransfer */
+	public static final String ENABLE_DELTA_TRANSFER_PROPERTY = "enableDeltaTransfer";
+	/** Default for enableDeltaTransfer */
+	public static final String DEFAULT_ENABLE_DELTA_TRANSFER = "false";
+	/** Contents smaller than this are always sent. */
+	public static final long DELTA_MIN_LENGTH = 1024L;
+	/** Maximum number of content hashes in one message. */
+	public static final int MAX_CONTENT_HASHES = 100000;
+	/** Maximum length of one content hash. */
+	public static final int CONTENT_HASH_MAX_LENGTH = 128;
+
 	/** Byte array for protocl header */
 	public static final byte[] PROTOCOL_HEADER = { 'P', 'D', 'L' };
 	/** Static var for v0.1 protocol */
 	public static final String PROTOCOL_VERSION_0_1 = "v0.1";
+	/** Static var for v0.2 protocol, v0.1 with content codec negotiation */
+	public static final String PROTOCOL_VERSION_0_2 = "v0.2";
+	/** Static var for v0.3 protocol, v0.2 with content hash negotiation */
+	public static final String PROTOCOL_VERSION_0_3 = "v0.3";
+	/** Error message from receivers that do not support a protocol version */
+	public static final String UNSUPPORTED_PROTOCOL_VERSION = "unsupported protocol version";
 	/** Static var for unknown product */
 	public static final String UNKNOWN_PRODUCT = "Unknown product";
 	/** Static var for alreadying having the product */
@@ -118,6 +162,15 @@ public class SocketProductSender extends DefaultConfigurable implements
 
 	private boolean enablePdlProtocol = true;
 
+	/** Content codecs offered to receiver, or null to not encode content. */
+	private String contentCodecs = null;
+
+	/** Whether to skip contents the receiver already has. */
+	private boolean enableDeltaTransfer = false;
+
+	/** Highest protocol version receiver supports, or null if unknown. */
+	private volatile String receiverProtocolVersion = null;
+
 	/** The remote hostname or ip address. */
 	private String host = null;
 	/** The remote port. */
@@ -129,7 +182,12 @@ public class SocketProductSender extends DefaultConfigurable implements
 	/** How long to block while writing, before timing out. */
 	private int writeTimeout = -1;
 
-	private Socket socket = null;
+	/**
+	 * Sockets of sends in progress, closed by shutdown. Each send uses its own
+	 * socket, so one sender can send concurrently.
+	 */
+	private final Set<Socket> openSockets = Collections
+			.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
 
 	/**
 	 * Construct a new ProductSender with default connection timeout.
@@ -196,14 +254,139 @@ public class SocketProductSender extends DefaultConfigurable implements
 	 * Updates may be retrieved from a ProductTracker.
 	 */
 	public void sendProduct(Product product) throws Exception {
+		sendProduct(product, (SerializedProduct) null);
+	}
+
+	/**
+	 * Send a product that may already be serialized.
+	 *
+	 * The serialized payload is used when this sender sends the whole product
+	 * without content encoding, so senders with the same format and deflate
+	 * settings only read and compress the product once.
+	 *
+	 * @param serialized product to send.
+	 * @throws Exception if error occurs
+	 */
+	public void sendProduct(final SerializedProduct serialized)
+			throws Exception {
+		sendProduct(serialized.getProduct(), serialized);
+	}
+
+	/**
+	 * Send a product, falling back to older protocol versions when rejected.
+	 *
+	 * @param product product to send.
+	 * @param serialized serialized product, or null.
+	 * @throws Exception if error occurs
+	 */
+	protected void sendProduct(final Product product,
+			final SerializedProduct serialized) throws Exception {
+		String version = getProtocolVersion();
+		while (true) {
+			try {
+				sendProduct(product, version, serialized);
+				return;
+			} catch (Exception e) {
+				if (version == null || PROTOCOL_VERSION_0_1.equals(version)
+						|| !isUnsupportedProtocolVersion(e)) {
+					throw e;
+				}
+			}
+			// receiver is older, remember and resend
+			String previous = version;
+			if (PROTOCOL_VERSION_0_3.equals(version) && contentCodecs != null) {
+				version = PROTOCOL_VERSION_0_2;
+			} else {
+				version = PROTOCOL_VERSION_0_1;
+			}
+			LOGGER.info("[" + getName() + "] " + host + " does not support "
+					+ previous + ", using " + version);
+			receiverProtocolVersion = version;
+		}
+	}
+
+	/**
+	 * Choose the PDL protocol version.
+	 *
+	 * v0.2 is used when content codecs are configured, and v0.3 when delta
+	 * transfer is enabled. Both require binary format. Versions that a
+	 * receiver rejected are not used again.
+	 *
+	 * @return protocol version, or null when not using PDL protocol.
+	 */
+	protected String getProtocolVersion() {
+		if (!enablePdlProtocol) {
+			return null;
+		}
+		String version = PROTOCOL_VERSION_0_1;
+		if (binaryFormat) {
+			if (enableDeltaTransfer) {
+				version = PROTOCOL_VERSION_0_3;
+			} else if (contentCodecs != null) {
+				version = PROTOCOL_VERSION_0_2;
+			}
+		}
+		if (receiverProtocolVersion != null
+				&& receiverProtocolVersion.compareTo(version) < 0) {
+			version = receiverProtocolVersion;
+		}
+		return version;
+	}
+
+	/**
+	 * Check whether an exception was caused by a receiver rejecting the
+	 * protocol version.
+	 *
+	 * @param e exception from sendProduct.
+	 * @return true if any message in the cause chain says the protocol
+	 *         version is unsupported.
+	 */
+	protected static boolean isUnsupportedProtocolVersion(final Throwable e) {
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			if (t.getMessage() != null
+					&& t.getMessage().contains(UNSUPPORTED_PROTOCOL_VERSION)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Send a product.
+	 *
+	 * @param product product to send.
+	 * @param version PDL protocol version, or null to not use PDL protocol.
+	 * @throws Exception if error occurs
+	 */
+	protected void sendProduct(final Product product, final String version)
+			throws Exception {
+		sendProduct(product, version, null);
+	}
+
+	/**
+	 * Send a product.
+	 *
+	 * @param product product to send.
+	 * @param version PDL protocol version, or null to not use PDL protocol.
+	 * @param serialized serialized product, or null to serialize here.
+	 * @throws Exception if error occurs
+	 */
+	protected void sendProduct(final Product product, final String version,
+			final SerializedProduct serialized) throws Exception {
 		BinaryIO io = new BinaryIO();
+		boolean negotiateCodec = PROTOCOL_VERSION_0_2.equals(version)
+				|| PROTOCOL_VERSION_0_3.equals(version);
+		boolean negotiateContents = PROTOCOL_VERSION_0_3.equals(version);
+		ContentCodec codec = null;
+		Set<String> knownContents = null;
 		boolean sendProduct = true;
 		String status = null;
 		ObjectProductSource productSource = null;
 		InputStream in = null;
 		OutputStream out = null;
+		final Socket socket = new Socket();
+		openSockets.add(socket);
 		try {
-			socket = new Socket();
 			socket.setSoTimeout(readTimeout);
 			socket.connect(new InetSocketAddress(host, port), connectTimeout);
 			LOGGER.info("[" + getName() + "] sending product to "
@@ -217,21 +400,52 @@ public class SocketProductSender extends DefaultConfigurable implements
 				out = new TimeoutOutputStream(out, writeTimeout);
 			}
 
-			if (enablePdlProtocol) {
+			if (version != null) {
 				LOGGER.fine("[" + getName() + "] using protocol version "
-						+ PROTOCOL_VERSION_0_1);
+						+ version);
 
-				// flag to receiver for "PDL" protocol
-				out.write(PROTOCOL_HEADER);
-				io.writeString(PROTOCOL_VERSION_0_1, out);
-				io.writeString(product.getId().toString(), out);
-				out.flush();
+				try {
+					// flag to receiver for "PDL" protocol
+					out.write(PROTOCOL_HEADER);
+					io.writeString(version, out);
+					io.writeString(product.getId().toString(), out);
+					if (negotiateCodec) {
+						io.writeString(contentCodecs == null ? ContentCodecs.RAW
+								: contentCodecs, out);
+					}
+					if (negotiateContents) {
+						writeContentHashes(product, io, out);
+					}
+					out.flush();
 
-				status = io.readString(in);
+					status = io.readString(in);
+				} catch (SocketTimeoutException ste) {
+					throw ste;
+				} catch (IOException ioe) {
+					if (PROTOCOL_VERSION_0_1.equals(version)) {
+						throw ioe;
+					}
+					// older receivers close without reading the rest of the
+					// handshake, which may arrive as a reset or end of stream
+					throw new Exception(UNSUPPORTED_PROTOCOL_VERSION
+							+ ", connection closed during " + version
+							+ " handshake", ioe);
+				}
 				if (ALREADY_HAVE_PRODUCT.equals(status)) {
 					sendProduct = false;
 				} else if (UNKNOWN_PRODUCT.equals(status)) {
 					// hub doesn't have this product, send
+					if (negotiateCodec) {
+						codec = ContentCodecs.getCodec(io.readString(in));
+						LOGGER.fine("[" + getName() + "] using content codec "
+								+ (codec == null ? ContentCodecs.RAW
+										: codec.getName()));
+					}
+					if (negotiateContents) {
+						knownContents = readContentHashes(io, in);
+						LOGGER.fine("[" + getName() + "] receiver has "
+								+ knownContents.size() + " contents");
+					}
 				} else {
 					// unexpected reply, don't consider it success
 					throw new Exception("Unexpected hub reply '" + status + "'");
@@ -241,24 +455,36 @@ public class SocketProductSender extends DefaultConfigurable implements
 			}
 
 			if (sendProduct) {
-				if (enableDeflate) {
-					out = new DeflaterOutputStream(out, new Deflater(
-							deflateLevel));
-				}
-
-				// make sure product handler doesn't close stream before done
-				OutputStream productOut = new StreamUtils.UnclosableOutputStream(
-						out);
-				if (binaryFormat) {
-					productSource
-							.streamTo(new BinaryProductHandler(productOut));
+				// encoded content is already compressed
+				boolean deflate = enableDeflate && codec == null;
+				if (serialized != null && codec == null
+						&& (knownContents == null || knownContents.isEmpty())) {
+					// whole product, reuse bytes shared with other senders
+					serialized.getPayload(binaryFormat,
+							deflate ? deflateLevel : SerializedProduct.NO_DEFLATE)
+							.writeTo(out);
 				} else {
-					productSource.streamTo(new XmlProductHandler(productOut));
-				}
+					if (deflate) {
+						out = new DeflaterOutputStream(out, new Deflater(
+								deflateLevel));
+					}
+
+					// make sure product handler doesn't close stream before done
+					OutputStream productOut = new StreamUtils.UnclosableOutputStream(
+							out);
+					if (binaryFormat) {
+						BinaryProductHandler handler = new BinaryProductHandler(
+								productOut, codec);
+						handler.setKnownContents(knownContents);
+						productSource.streamTo(handler);
+					} else {
+						productSource.streamTo(new XmlProductHandler(productOut));
+					}
 
-				// deflate requires "finish"
-				if (enableDeflate) {
-					((DeflaterOutputStream) out).finish();
+					// deflate requires "finish"
+					if (deflate) {
+						((DeflaterOutputStream) out).finish();
+					}
 				}
 
 				// flush buffered output stream to socket
@@ -314,7 +540,7 @@ public class SocketProductSender extends DefaultConfigurable implements
 			} catch (Exception ignore) {
 			}
 			socket.close();
-			socket = null;
+			openSockets.remove(socket);
 		}
 
 		if (status != null && status.startsWith("Error")) {
@@ -323,6 +549,52 @@ public class SocketProductSender extends DefaultConfigurable implements
 		}
 	}
 
+	/**
+	 * Offer content hashes to receiver.
+	 *
+	 * Small contents are not offered, since references are not much smaller.
+	 *
+	 * @param product product being sent.
+	 * @param io binary io.
+	 * @param out stream to receiver.
+	 * @throws Exception if error occurs
+	 */
+	protected void writeContentHashes(final Product product,
+			final BinaryIO io, final OutputStream out) throws Exception {
+		Set<String> hashes = new LinkedHashSet<String>();
+		for (Content content : product.getContents().values()) {
+			Long length = content.getLength();
+			if (length != null && length >= DELTA_MIN_LENGTH) {
+				hashes.add(content.getSha256());
+			}
+		}
+		io.writeInt(hashes.size(), out);
+		for (String hash : hashes) {
+			io.writeString(hash, out);
+		}
+	}
+
+	/**
+	 * Read content hashes the receiver already has.
+	 *
+	 * @param io binary io.
+	 * @param in stream from receiver.
+	 * @return set of sha256 values.
+	 * @throws IOException if error occurs
+	 */
+	protected static Set<String> readContentHashes(final BinaryIO io,
+			final InputStream in) throws IOException {
+		int count = io.readInt(in);
+		if (count < 0 || count > MAX_CONTENT_HASHES) {
+			throw new IOException("invalid content hash count " + count);
+		}
+		Set<String> hashes = new HashSet<String>();
+		for (int i = 0; i < count; i++) {
+			hashes.add(io.readString(in, CONTENT_HASH_MAX_LENGTH));
+		}
+		return hashes;
+	}
+
 	/**
 	 * Reads the host and port from config.
 	 *
@@ -373,13 +645,23 @@ public class SocketProductSender extends DefaultConfigurable implements
 				ENABLE_PDL_PROTOCOL_PROPERTY, DEFAULT_ENABLE_PDL_PROTOCOL));
 		LOGGER.config("[" + getName() + "] enablePdlProtocol is "
 				+ enablePdlProtocol);
+
+		enableDeltaTransfer = Boolean.valueOf(config.getProperty(
+				ENABLE_DELTA_TRANSFER_PROPERTY, DEFAULT_ENABLE_DELTA_TRANSFER));
+		LOGGER.config("[" + getName() + "] enableDeltaTransfer is "
+				+ enableDeltaTransfer);
+
+		setContentCodecs(config.getProperty(CONTENT_CODECS_PROPERTY,
+				DEFAULT_CONTENT_CODECS));
+		LOGGER.config("[" + getName() + "] contentCodecs is "
+				+ contentCodecs);
 	}
 
 	/**
-	 * Makes sure the socket is closed.
+	 * Makes sure sockets of sends in progress are closed.
 	 */
 	public void shutdown() throws Exception {
-		if (socket != null) {
+		for (Socket socket : openSockets) {
 			if (!socket.isOutputShutdown()) {
 				try {
 					socket.getOutputStream().flush();
@@ -463,6 +745,43 @@ public class SocketProductSender extends DefaultConfigurable implements
 		this.enablePdlProtocol = enablePdlProtocol;
 	}
 
+	/**
+	 * @return the content codecs offered to receivers, or null if content is
+	 *         not encoded
+	 */
+	public String getContentCodecs() {
+		return contentCodecs;
+	}
+
+	/**
+	 * @param contentCodecs
+	 *            comma separated content codecs offered to receivers, or
+	 *            null/empty to not encode content
+	 */
+	public void setContentCodecs(String contentCodecs) {
+		if (contentCodecs != null && contentCodecs.trim().length() == 0) {
+			contentCodecs = null;
+		}
+		this.contentCodecs = contentCodecs;
+		this.receiverProtocolVersion = null;
+	}
+
+	/**
+	 * @return whether contents the receiver already has are skipped
+	 */
+	public boolean isEnableDeltaTransfer() {
+		return enableDeltaTransfer;
+	}
+
+	/**
+	 * @param enableDeltaTransfer
+	 *            whether to skip contents the receiver already has
+	 */
+	public void setEnableDeltaTransfer(boolean enableDeltaTransfer) {
+		this.enableDeltaTransfer = enableDeltaTransfer;
+		this.receiverProtocolVersion = null;
+	}
+
 	/**
 	 * @return the connectTimeout
 	 */
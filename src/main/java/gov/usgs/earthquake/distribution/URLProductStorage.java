@@ -7,6 +7,8 @@ import gov.usgs.earthquake.product.ProductId;
 
 import gov.usgs.earthquake.product.io.BinaryProductHandler;
 import gov.usgs.earthquake.product.io.BinaryProductSource;
+import gov.usgs.earthquake.product.io.ContentCodec;
+import gov.usgs.earthquake.product.io.ContentCodecs;
 import gov.usgs.earthquake.product.io.JsonProductHandler;
 import gov.usgs.earthquake.product.io.JsonProductSource;
 import gov.usgs.earthquake.product.io.ProductSource;
@@ -87,8 +89,18 @@ public class URLProductStorage extends FileProductStorage {
 	/** Default value for whether to use binary format. */
 	public static final String BINARY_FORMAT_DEFAULT = "false";
 
+	/**
+	 * Property for contentCodec, used with binary format.
+	 *
+	 * Products stored with a content codec can only be read by clients that
+	 * support the CODEDCONTENT binary record.
+	 */
+	public static final String CONTENT_CODEC_PROPERTY = "contentCodec";
+
 	private Format storageFormat = Format.XML;
 	private String storagePath = DEFAULT_STORAGE_PATH;
+	/** Codec for binary format content, or null to store raw content. */
+	private ContentCodec contentCodec = null;
 
 	/**
 	 * Constructor for the Configurable interface.
@@ -141,6 +153,13 @@ public class URLProductStorage extends FileProductStorage {
 		}
 		LOGGER.config("[" + getName() + "] using format " + storageFormat);
 
+		contentCodec = ContentCodecs.getCodec(
+				config.getProperty(CONTENT_CODEC_PROPERTY));
+		if (contentCodec != null) {
+			LOGGER.config("[" + getName() + "] using content codec "
+					+ contentCodec.getName());
+		}
+
 		storagePath = config.getProperty(STORAGE_PATH_PROPERTY, DEFAULT_STORAGE_PATH);
 		LOGGER.config("[" + getName() + "] using path " + storagePath);
 	}
@@ -192,7 +211,7 @@ public class URLProductStorage extends FileProductStorage {
 			throws Exception {
 		OutputStream out = StreamUtils.getOutputStream(file);
 		if (storageFormat == Format.BINARY) {
-			return new BinaryProductHandler(out);
+			return new BinaryProductHandler(out, contentCodec);
 		} else if (storageFormat == Format.JSON) {
 			return new JsonProductHandler(out);
 		} else {
@@ -222,6 +241,16 @@ public class URLProductStorage extends FileProductStorage {
 		}
 	}
 
+	/** @return codec for binary format content, or null */
+	public ContentCodec getContentCodec() {
+		return this.contentCodec;
+	}
+
+	/** @param contentCodec codec for binary format content, or null */
+	public void setContentCodec(final ContentCodec contentCodec) {
+		this.contentCodec = contentCodec;
+	}
+
 	/** @return storageFormat */
 	public Format getStorageFormat() {
 		return this.storageFormat;
@@ -1,10 +1,13 @@
 package gov.usgs.earthquake.dyfi;
 
+import gov.usgs.earthquake.indexer.ContentSummaryCache;
 import gov.usgs.earthquake.product.Content;
 import gov.usgs.earthquake.product.Product;
 
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * DYFIProduct object to add additional Product properties based on contents.
@@ -57,12 +60,38 @@ public class DYFIProduct extends Product {
 					+ DYFI_EVENT_XML_ATTACHMENT + ")");
 		}
 
+		// parsed properties are cached by sha256, for reprocessing
+		try {
+			getProperties().putAll(ContentSummaryCache.getDefaultCache()
+					.getSummary(DYFI_EVENT_XML_ATTACHMENT, source,
+							this::parseEventXml));
+		} catch (Exception e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * Parse event xml properties.
+	 *
+	 * @param source event xml content
+	 * @return number of responses and max intensity properties
+	 * @throws Exception if error occurs
+	 */
+	protected Map<String, String> parseEventXml(final Content source)
+			throws Exception {
 		EventDataXMLHandler handler = new EventDataXMLHandler(this);
 		try (final InputStream in = source.getInputStream()) {
 			handler.parse(in);
-		} catch (Exception e) {
-			throw new IllegalArgumentException(e);
 		}
+		Map<String, String> properties = new HashMap<String, String>();
+		for (String name : new String[] { DYFI_NUM_RESP_PROPERTY,
+				DYFI_MAX_MMI_PROPERTY }) {
+			String value = getProperties().get(name);
+			if (value != null) {
+				properties.put(name, value);
+			}
+		}
+		return properties;
 	}
 
 	/**
@@ -3,9 +3,11 @@ package gov.usgs.earthquake.eids;
 import java.io.File;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -29,6 +31,7 @@ import gov.usgs.earthquake.quakeml.FileToQuakemlConverter;
 import gov.usgs.util.Config;
 import gov.usgs.util.CryptoUtils;
 import gov.usgs.util.DirectoryPoller;
+import gov.usgs.util.FileListenerInterface;
 import gov.usgs.util.FileUtils;
 import gov.usgs.util.StringUtils;
 import gov.usgs.util.CryptoUtils.Version;
@@ -42,9 +45,16 @@ import gov.usgs.util.CryptoUtils.Version;
  *
  * Much of the configuration can be supplied using either a configuration file,
  * or command line arguments.
+ *
+ * When polling, a DirectoryPoller watches the poll directory for new files,
+ * and files are processed by pollThreads threads. Parsing is done one file at
+ * a time, because product creators are not thread safe, but products are
+ * signed and sent concurrently. When orderByEvent is enabled, files are parsed
+ * in the order they arrive, and files for the same event are sent in that
+ * order.
  */
 public class EIDSInputWedge extends ProductBuilder implements Runnable,
-		Bootstrappable {
+		Bootstrappable, FileListenerInterface {
 
 	/**
 	 * Global reference to arguments array, when EIDSInputWedge is run via
@@ -123,14 +133,60 @@ public class EIDSInputWedge extends ProductBuilder implements Runnable,
 	public static final String DEFAULT_POLL_CAREFULLY = "false";
 	private boolean pollCarefully = false;
 
+	/** Property for whether to watch polldir for new files */
+	public static final String WATCH_PROPERTY = "watch";
+	/** Default status of WATCH */
+	public static final String DEFAULT_WATCH = "true";
+	private boolean watch = true;
+
+	/**
+	 * Property for milliseconds a file must be unchanged before it is
+	 * processed. Defaults to poll interval when pollCarefully is enabled.
+	 */
+	public static final String STABLE_TIME_PROPERTY = "stableTime";
+	/** Default milliseconds a file must be unchanged */
+	public static final String DEFAULT_STABLE_TIME = "250";
+	private long stableTime = 250L;
+
+	/** Property for number of threads processing polled files */
+	public static final String POLL_THREADS_PROPERTY = "pollThreads";
+	/** Default number of threads processing polled files */
+	public static final String DEFAULT_POLL_THREADS = "4";
+	private int pollThreads = 4;
+
+	/** Property for sending files for the same event in order */
+	public static final String ORDER_BY_EVENT_PROPERTY = "orderByEvent";
+	/** Default status of ORDER_BY_EVENT */
+	public static final String DEFAULT_ORDER_BY_EVENT = "true";
+	private boolean orderByEvent = true;
+
+	/** Serializes product creator use, which is not thread safe. */
+	private final Object parseLock = new Object();
+
+	/** Maximum number of files kept in parsedFiles. */
+	private static final int MAX_PARSED_FILES = 100;
+
+	/** Products parsed while ordering files, by file, or parse exception. */
+	private final Map<File, Object> parsedFiles = Collections
+			.synchronizedMap(new LinkedHashMap<File, Object>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						final Map.Entry<File, Object> eldest) {
+					// drop files that were never processed, onFile parses
+					// any file that is not here
+					return size() > MAX_PARSED_FILES;
+				}
+			});
+
+
 	/** Property for doBufferFix */
 	public static final String DO_BUFFER_FIX_PROPERTY = "doBufferFix";
 	/** Default status of DO_BUFFER_FIX property */
 	public static final String DEFAULT_DO_BUFFER_FIX = "true";
 	private boolean doBufferFix = true;
 
-	private Thread pollThread = null;
-
 	/**
 	 * Empty constructor
 	 * @throws Exception if error occurs
@@ -152,21 +208,32 @@ public class EIDSInputWedge extends ProductBuilder implements Runnable,
 			final File file, final Map<String, Content> attachContent)
 			throws Exception {
 
-		Map<ProductId, Map<ProductSender, Exception>> sendProductResults = new HashMap<ProductId, Map<ProductSender, Exception>>();
+		final Map<ProductId, Map<ProductSender, Exception>> sendProductResults = new HashMap<ProductId, Map<ProductSender, Exception>>();
+
+		if (productCreator instanceof StreamingProductCreator
+				&& (attachContent == null || attachContent.size() == 0)
+				&& !parsedFiles.containsKey(file)) {
+			// send each product as soon as it is parsed
+			((StreamingProductCreator) productCreator).getProducts(file,
+					(product) -> {
+						setProductType(product);
+						sendProductResults.put(product.getId(),
+								sendProduct(product));
+						return true;
+					});
+			if (sendProductResults.size() == 0) {
+				throw new Exception("No products created from file "
+						+ file.getName());
+			}
+			return sendProductResults;
+		}
 
-		List<Product> products = productCreator.getProducts(file);
+		List<Product> products = getProducts(file);
 
 		Iterator<Product> iter = products.iterator();
 		while (iter.hasNext()) {
 			Product product = iter.next();
-			ProductId id = product.getId();
-
-			if (createInternalProducts) {
-				id.setType("internal-" + id.getType());
-			}
-			if (createScenarioProducts) {
-				id.setType(id.getType() + "-scenario");
-			}
+			setProductType(product);
 
 			// attach files to generated product
 			if (attachContent != null && attachContent.size() > 0) {
@@ -184,6 +251,99 @@ public class EIDSInputWedge extends ProductBuilder implements Runnable,
 		return sendProductResults;
 	}
 
+	/**
+	 * Add internal or scenario to product type, when configured.
+	 *
+	 * @param product product to update
+	 */
+	protected void setProductType(final Product product) {
+		ProductId id = product.getId();
+		if (createInternalProducts) {
+			id.setType("internal-" + id.getType());
+		}
+		if (createScenarioProducts) {
+			id.setType(id.getType() + "-scenario");
+		}
+	}
+
+	/**
+	 * Parse products from a file.
+	 *
+	 * Uses products already parsed by getEventKey, if any.
+	 *
+	 * @param file file to parse
+	 * @return parsed products
+	 * @throws Exception if file cannot be parsed
+	 */
+	protected List<Product> getProducts(final File file) throws Exception {
+		Object parsed = parsedFiles.remove(file);
+		if (parsed == null) {
+			synchronized (parseLock) {
+				return productCreator.getProducts(file);
+			}
+		}
+		if (parsed instanceof Exception) {
+			throw (Exception) parsed;
+		}
+		@SuppressWarnings("unchecked")
+		List<Product> products = (List<Product>) parsed;
+		return products;
+	}
+
+	/**
+	 * Get the event a polled file is about, so files for the same event are
+	 * sent in order.
+	 *
+	 * Called by the DirectoryPoller as files arrive, one at a time. The file
+	 * is parsed so the event is known exactly, and the parsed products are
+	 * kept for onFile. Streaming product creators only parse until the
+	 * first product with an event id, and the file is streamed again by
+	 * onFile.
+	 *
+	 * @param file file to parse
+	 * @return event source and code of first product with an event id, or
+	 *         null if products do not have an event id.
+	 */
+	protected String getEventKey(final File file) {
+		if (productCreator instanceof StreamingProductCreator) {
+			final String[] eventId = new String[1];
+			try {
+				((StreamingProductCreator) productCreator).getProducts(file,
+						(product) -> {
+							if (product.getEventId() == null) {
+								return true;
+							}
+							// stop parsing
+							eventId[0] = product.getEventId().toLowerCase();
+							return false;
+						});
+			} catch (Exception e) {
+				// reported when file is processed
+				parsedFiles.put(file, e);
+			}
+			return eventId[0];
+		}
+
+		List<Product> products;
+		try {
+			synchronized (parseLock) {
+				products = productCreator.getProducts(file);
+			}
+		} catch (Exception e) {
+			// reported when file is processed
+			parsedFiles.put(file, e);
+			return null;
+		}
+		parsedFiles.put(file, products);
+		for (Product product : products) {
+			String eventId = product.getEventId();
+			if (eventId != null) {
+				return eventId.toLowerCase();
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * Parses given file, looking for send exceptions and reports statistics
 	 * @param file to parse and look for errors
@@ -340,6 +500,22 @@ public class EIDSInputWedge extends ProductBuilder implements Runnable,
 				DEFAULT_POLL_CAREFULLY));
 		LOGGER.config("Poll carefully = " + pollCarefully);
 
+		watch = Boolean.valueOf(config.getProperty(WATCH_PROPERTY,
+				DEFAULT_WATCH));
+		LOGGER.config("Watch = " + watch);
+
+		stableTime = Long.valueOf(config.getProperty(STABLE_TIME_PROPERTY,
+				pollCarefully ? Long.toString(pollInterval) : DEFAULT_STABLE_TIME));
+		LOGGER.config("Using stable time " + stableTime + "ms");
+
+		pollThreads = Integer.valueOf(config.getProperty(POLL_THREADS_PROPERTY,
+				DEFAULT_POLL_THREADS));
+		LOGGER.config("Using " + pollThreads + " poll threads");
+
+		orderByEvent = Boolean.valueOf(config.getProperty(
+				ORDER_BY_EVENT_PROPERTY, DEFAULT_ORDER_BY_EVENT));
+		LOGGER.config("Order by event = " + orderByEvent);
+
 		storagedir = new File(config.getProperty(STORAGEDIR_PROPERTY,
 				DEFAULT_STORAGEDIR));
 		LOGGER.config("Using oldinput directory "
@@ -367,10 +543,7 @@ public class EIDSInputWedge extends ProductBuilder implements Runnable,
 
 	@Override
 	public void shutdown() throws Exception {
-		if (pollThread != null) {
-			pollThread.interrupt();
-			pollThread = null;
-		}
+		stopPolling();
 
 		super.shutdown();
 	}
@@ -379,11 +552,37 @@ public class EIDSInputWedge extends ProductBuilder implements Runnable,
 	public void startup() throws Exception {
 		super.startup();
 
-		if (pollThread == null) {
-			pollThread = new Thread(this);
-			pollThread.setName("poll thread");
-			pollThread.start();
+		startPolling();
+	}
+
+	/**
+	 * Start polling polldir for files.
+	 *
+	 * Creates a DirectoryPoller unless one was already set.
+	 */
+	protected synchronized void startPolling() {
+		if (directoryPoller == null) {
+			directoryPoller = new DirectoryPoller(polldir, storagedir);
 		}
+		directoryPoller.setWatch(watch);
+		directoryPoller.setStableTime(
+				pollCarefully ? Math.max(stableTime, pollInterval) : stableTime);
+		directoryPoller.setThreads(pollThreads);
+		directoryPoller.setKeyFunction(orderByEvent ? this::getEventKey : null);
+		directoryPoller.removeFileListener(this);
+		directoryPoller.addFileListener(this);
+		directoryPoller.start(pollInterval);
+	}
+
+	/**
+	 * Stop polling polldir for files.
+	 */
+	protected synchronized void stopPolling() {
+		if (directoryPoller != null) {
+			directoryPoller.stop();
+			directoryPoller.removeFileListener(this);
+		}
+		parsedFiles.clear();
 	}
 
 	/** @return polldir */
@@ -456,6 +655,46 @@ public class EIDSInputWedge extends ProductBuilder implements Runnable,
 		this.pollCarefully = pollCarefully;
 	}
 
+	/** @return whether polldir is watched for new files */
+	public boolean isWatch() {
+		return watch;
+	}
+
+	/** @param watch whether polldir is watched for new files */
+	public void setWatch(boolean watch) {
+		this.watch = watch;
+	}
+
+	/** @return milliseconds a file must be unchanged before processing */
+	public long getStableTime() {
+		return stableTime;
+	}
+
+	/** @param stableTime milliseconds a file must be unchanged */
+	public void setStableTime(long stableTime) {
+		this.stableTime = stableTime;
+	}
+
+	/** @return number of threads processing polled files */
+	public int getPollThreads() {
+		return pollThreads;
+	}
+
+	/** @param pollThreads number of threads processing polled files */
+	public void setPollThreads(int pollThreads) {
+		this.pollThreads = pollThreads;
+	}
+
+	/** @return whether files for the same event are sent in order */
+	public boolean isOrderByEvent() {
+		return orderByEvent;
+	}
+
+	/** @param orderByEvent whether files for the same event are sent in order */
+	public void setOrderByEvent(boolean orderByEvent) {
+		this.orderByEvent = orderByEvent;
+	}
+
 	/**
 	 * @return the createInternalProducts
 	 */
@@ -531,6 +770,14 @@ public class EIDSInputWedge extends ProductBuilder implements Runnable,
 	public static final String POLL_INTERVAL_ARGUMENT = "--pollInterval=";
 	/** Argument for tracker url */
 	public static final String TRACKER_URL_ARGUMENT = "--trackerURL=";
+	/** Argument for stable time */
+	public static final String STABLE_TIME_ARGUMENT = "--stableTime=";
+	/** Argument for poll threads */
+	public static final String POLL_THREADS_ARGUMENT = "--pollThreads=";
+	/** Argument to disable watching polldir */
+	public static final String DISABLE_WATCH_ARGUMENT = "--disableWatch";
+	/** Argument to send files in any order */
+	public static final String DISABLE_ORDER_BY_EVENT_ARGUMENT = "--disableOrderByEvent";
 
 	/** Argument for file */
 	public static final String FILE_ARGUMENT = "--file=";
@@ -676,6 +923,16 @@ public class EIDSInputWedge extends ProductBuilder implements Runnable,
 			} else if (arg.startsWith(POLL_INTERVAL_ARGUMENT)) {
 				setPollInterval(Long.valueOf(arg.replace(
 						POLL_INTERVAL_ARGUMENT, "")));
+			} else if (arg.startsWith(STABLE_TIME_ARGUMENT)) {
+				setStableTime(Long.valueOf(arg.replace(
+						STABLE_TIME_ARGUMENT, "")));
+			} else if (arg.startsWith(POLL_THREADS_ARGUMENT)) {
+				setPollThreads(Integer.valueOf(arg.replace(
+						POLL_THREADS_ARGUMENT, "")));
+			} else if (arg.equals(DISABLE_WATCH_ARGUMENT)) {
+				setWatch(false);
+			} else if (arg.equals(DISABLE_ORDER_BY_EVENT_ARGUMENT)) {
+				setOrderByEvent(false);
 			} else if (arg.startsWith(TRACKER_URL_ARGUMENT)) {
 				this.setTrackerURL(new URL(arg
 						.replace(TRACKER_URL_ARGUMENT, "")));
@@ -811,6 +1068,14 @@ public class EIDSInputWedge extends ProductBuilder implements Runnable,
 						+ "POLLDIR] ["
 						+ POLL_INTERVAL_ARGUMENT
 						+ "INTERVAL] ["
+						+ STABLE_TIME_ARGUMENT
+						+ "STABLETIME] ["
+						+ POLL_THREADS_ARGUMENT
+						+ "THREADS] ["
+						+ DISABLE_WATCH_ARGUMENT
+						+ "] ["
+						+ DISABLE_ORDER_BY_EVENT_ARGUMENT
+						+ "] ["
 						+ STORAGEDIR_ARGUMENT
 						+ "STORAGEDIR] ["
 						+ ERRORDIR_ARGUMENT
@@ -877,6 +1142,20 @@ public class EIDSInputWedge extends ProductBuilder implements Runnable,
 		System.err.println("\t\tmilliseconds between polling");
 		System.err.println("\t\tdefault is \"" + DEFAULT_POLLINTERVAL + "\"ms");
 
+		System.err.println("\t" + STABLE_TIME_ARGUMENT + "STABLETIME");
+		System.err.println("\t\tmilliseconds a file must be unchanged before processing");
+		System.err.println("\t\tdefault is \"" + DEFAULT_STABLE_TIME + "\"ms");
+
+		System.err.println("\t" + POLL_THREADS_ARGUMENT + "THREADS");
+		System.err.println("\t\tnumber of files processed at the same time");
+		System.err.println("\t\tdefault is \"" + DEFAULT_POLL_THREADS + "\"");
+
+		System.err.println("\t" + DISABLE_WATCH_ARGUMENT);
+		System.err.println("\t\tonly poll POLLDIR, instead of also watching for new files");
+
+		System.err.println("\t" + DISABLE_ORDER_BY_EVENT_ARGUMENT);
+		System.err.println("\t\tsend files in any order, instead of in order for each event");
+
 		System.err.println("\t" + STORAGEDIR_ARGUMENT + "STORAGEDIR");
 		System.err.println("\t\tdirectory for files that were processed");
 
@@ -920,71 +1199,24 @@ public class EIDSInputWedge extends ProductBuilder implements Runnable,
 		System.exit(1);
 	}
 
+	/**
+	 * Poll until interrupted.
+	 *
+	 * Polling normally runs in background threads started by startup(), this
+	 * method is for callers that run the wedge in their own thread.
+	 */
 	@Override
 	public void run() {
-		if (!polldir.exists()) {
-			polldir.mkdirs();
-		}
-		while (!Thread.currentThread().isInterrupted()) {
-			try {
-				Date pollStart = new Date();
-
-				String[] polldirFiles = polldir.list();
-				if (polldirFiles.length > 0) {
-					LOGGER.fine("Polldir contains " + polldirFiles.length
-							+ " files");
-				}
-
-				for (int i = 0, len = polldirFiles.length; i < len; i++) {
-					File file = new File(polldir, polldirFiles[i]);
-					try {
-						if (pollCarefully) {
-							// wait until file is at least pollInterval ms old,
-							// in case it is still being written
-							long age = new Date().getTime() - file.lastModified();
-							if (age <= pollInterval) {
-								continue;
-							}
-						}
-
-						onFile(file);
-
-						if (storagedir != null) {
-							if (!storagedir.exists()) {
-								storagedir.mkdirs();
-							}
-							file.renameTo(new File(storagedir, pollStart
-									.getTime() + "_" + file.getName()));
-						} else {
-							FileUtils.deleteTree(file);
-						}
-					} catch (Exception e) {
-						if (errordir != null) {
-							if (!errordir.exists()) {
-								errordir.mkdirs();
-							}
-							file.renameTo(new File(errordir, pollStart
-									.getTime() + "_" + file.getName()));
-						} else {
-							LOGGER.warning("Error processing file "
-									+ file.getName()
-									+ ", and no error directory configured");
-							FileUtils.deleteTree(file);
-						}
-					}
-				}
-
-				Date pollEnd = new Date();
-				Long pollTime = pollEnd.getTime() - pollStart.getTime();
-				if (pollTime < pollInterval) {
-					Thread.sleep(pollInterval - pollTime);
-				}
-			} catch (InterruptedException ie) {
-				// interrupted means shutdown
-				return;
+		startPolling();
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				Thread.sleep(Long.MAX_VALUE);
 			}
+		} catch (InterruptedException ie) {
+			// interrupted means shutdown
+		} finally {
+			stopPolling();
 		}
-
 	}
 
 }
@@ -0,0 +1,21 @@
+package gov.usgs.earthquake.eids;
+
+import gov.usgs.earthquake.product.Product;
+
+/**
+ * Receives products from a StreamingProductCreator as they are created.
+ */
+public interface ProductCreatorListener {
+
+	/**
+	 * Called for each product that is created.
+	 *
+	 * @param product
+	 *            product that was created.
+	 * @return true to continue parsing, false to stop parsing the file.
+	 * @throws Exception
+	 *             to stop parsing the file with an error.
+	 */
+	boolean onProduct(final Product product) throws Exception;
+
+}
@@ -0,0 +1,188 @@
+package gov.usgs.earthquake.eids;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Read a quakeml document one event element at a time.
+ *
+ * Uses StAX so only the current event is held in memory. Each event is
+ * returned as a standalone quakeml document, with the same quakeml and
+ * eventParameters elements (including namespaces and attributes) and any
+ * non-event eventParameters children (creationInfo, description, comment)
+ * that appear before it.
+ *
+ * ANSS internalEvent and scenarioEvent elements are read the same way as
+ * event elements.
+ *
+ * Not thread safe.
+ */
+public class QuakemlEventReader implements Closeable {
+
+	/** Local name of event parameters element. */
+	public static final String EVENT_PARAMETERS_ELEMENT = "eventParameters";
+	/** Local name of event element. */
+	public static final String EVENT_ELEMENT = "event";
+	/** Local name of anss internal event element. */
+	public static final String INTERNAL_EVENT_ELEMENT = "internalEvent";
+	/** Local name of anss scenario event element. */
+	public static final String SCENARIO_EVENT_ELEMENT = "scenarioEvent";
+
+	private static final XMLInputFactory INPUT_FACTORY;
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory
+			.newInstance();
+	private static final XMLEventFactory EVENT_FACTORY = XMLEventFactory
+			.newInstance();
+	static {
+		INPUT_FACTORY = XMLInputFactory.newInstance();
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+	}
+
+	private final XMLEventReader reader;
+
+	// envelope shared by all events
+	private StartElement quakeml;
+	private StartElement eventParameters;
+	private final List<XMLEvent> envelope = new ArrayList<XMLEvent>();
+
+	// number of open elements
+	private int depth = 0;
+
+	/**
+	 * Create a reader.
+	 *
+	 * @param in
+	 *            stream to read, not closed by this object.
+	 * @throws XMLStreamException
+	 *             if unable to create reader.
+	 */
+	public QuakemlEventReader(final InputStream in) throws XMLStreamException {
+		reader = INPUT_FACTORY.createXMLEventReader(in);
+	}
+
+	/**
+	 * Read the next event.
+	 *
+	 * @return quakeml document containing the next event element, or null
+	 *         when there are no more events.
+	 * @throws XMLStreamException
+	 *             if document is not well formed.
+	 */
+	public String nextEvent() throws XMLStreamException {
+		while (reader.hasNext()) {
+			XMLEvent next = reader.nextEvent();
+			if (next.isStartElement()) {
+				depth++;
+				StartElement start = next.asStartElement();
+				String name = start.getName().getLocalPart();
+				if (depth == 1) {
+					quakeml = start;
+				} else if (depth == 2 && EVENT_PARAMETERS_ELEMENT.equals(name)) {
+					eventParameters = start;
+				} else if (depth == 3 && eventParameters != null
+						&& isEventElement(name)) {
+					return readEvent(start);
+				} else if (depth >= 3 && eventParameters != null) {
+					envelope.add(next);
+				}
+			} else if (next.isEndElement()) {
+				if (depth >= 3 && eventParameters != null) {
+					envelope.add(next);
+				} else if (depth == 2) {
+					// stop collecting after eventParameters closes
+					eventParameters = null;
+				}
+				depth--;
+			} else if (depth >= 3 && eventParameters != null) {
+				envelope.add(next);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Check whether an eventParameters child is an event.
+	 *
+	 * @param name
+	 *            local name of element.
+	 * @return true for event, internalEvent, and scenarioEvent elements.
+	 */
+	protected static boolean isEventElement(final String name) {
+		return EVENT_ELEMENT.equals(name)
+				|| INTERNAL_EVENT_ELEMENT.equals(name)
+				|| SCENARIO_EVENT_ELEMENT.equals(name);
+	}
+
+	/**
+	 * Serialize one event element into a standalone quakeml document.
+	 *
+	 * @param event
+	 *            start of event element, the remainder is read from reader.
+	 * @return quakeml document.
+	 * @throws XMLStreamException
+	 *             if document is not well formed.
+	 */
+	protected String readEvent(final StartElement event)
+			throws XMLStreamException {
+		StringWriter xml = new StringWriter();
+		XMLEventWriter writer = OUTPUT_FACTORY.createXMLEventWriter(xml);
+		writer.add(EVENT_FACTORY.createStartDocument("UTF-8", "1.0"));
+		writer.add(quakeml);
+		writer.add(eventParameters);
+		for (XMLEvent next : envelope) {
+			writer.add(next);
+		}
+		writer.add(event);
+		// copy event element
+		int eventDepth = 1;
+		while (eventDepth > 0) {
+			XMLEvent next = reader.nextEvent();
+			if (next.isStartElement()) {
+				eventDepth++;
+			} else if (next.isEndElement()) {
+				eventDepth--;
+			}
+			writer.add(next);
+		}
+		depth--;
+		writer.add(createEndElement(eventParameters.getName()));
+		writer.add(createEndElement(quakeml.getName()));
+		writer.add(EVENT_FACTORY.createEndDocument());
+		writer.close();
+		return xml.toString();
+	}
+
+	private static XMLEvent createEndElement(final QName name) {
+		return EVENT_FACTORY.createEndElement(name.getPrefix(),
+				name.getNamespaceURI(), name.getLocalPart());
+	}
+
+	/**
+	 * Close the underlying xml reader.
+	 *
+	 * Does not close the input stream.
+	 */
+	@Override
+	public void close() {
+		try {
+			reader.close();
+		} catch (XMLStreamException e) {
+			// ignore
+		}
+	}
+
+}
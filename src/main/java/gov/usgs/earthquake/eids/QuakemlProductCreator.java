@@ -12,6 +12,7 @@ import gov.usgs.util.StreamUtils;
 import gov.usgs.util.XmlUtils;
 
 import java.io.File;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
@@ -52,8 +53,12 @@ import org.quakeml_1_2.EvaluationStatus;
 
 /**
  * Create Products from ANSS Quakeml files.
+ *
+ * {@link #getProducts(File)} only creates products for the first event in a
+ * file. {@link #getProducts(File, ProductCreatorListener)} streams the file
+ * and creates products for every event, one event at a time.
  */
-public class QuakemlProductCreator implements ProductCreator {
+public class QuakemlProductCreator implements StreamingProductCreator {
 
 	/** For use in logging issues */
 	public static final Logger LOGGER = Logger
@@ -927,6 +932,107 @@ public class QuakemlProductCreator implements ProductCreator {
 		}
 	}
 
+	/**
+	 * Implement the StreamingProductCreator interface.
+	 *
+	 * Products for each event element are created and passed to the listener
+	 * before the next event is parsed. When a converter is configured, the
+	 * file is not quakeml and products from {@link #getProducts(File)} are
+	 * passed to the listener instead.
+	 *
+	 * Parsing uses a separate creator with the same settings, so this method
+	 * may be called concurrently.
+	 */
+	@Override
+	public void getProducts(final File file,
+			final ProductCreatorListener listener) throws Exception {
+		QuakemlProductCreator creator = copy();
+		if (this.converter != null) {
+			for (Product product : creator.getProducts(file)) {
+				if (!listener.onProduct(product)) {
+					return;
+				}
+			}
+			return;
+		}
+		InputStream in = StreamUtils.getInputStream(file);
+		try {
+			creator.getQuakemlProducts(in, listener, file);
+		} finally {
+			StreamUtils.closeStream(in);
+		}
+	}
+
+	/**
+	 * Stream a quakeml message, and create products for each event element.
+	 *
+	 * Each event is parsed as a separate quakeml message (see
+	 * {@link QuakemlEventReader}), which is also used as the raw quakeml
+	 * content of its products.
+	 *
+	 * @param in
+	 *            stream containing quakeml message, not closed by this method.
+	 * @param listener
+	 *            receives products for each event, until it returns false.
+	 * @throws Exception if error occurs
+	 */
+	public void getQuakemlProducts(final InputStream in,
+			final ProductCreatorListener listener) throws Exception {
+		getQuakemlProducts(in, listener, null);
+	}
+
+	/**
+	 * Stream a quakeml message, and create products for each event element.
+	 *
+	 * The reader looks one event ahead, so when the message only contains
+	 * one event the original file is used as raw quakeml content, the same
+	 * as {@link #getProducts(File)}.
+	 *
+	 * @param in
+	 *            stream containing quakeml message, not closed by this method.
+	 * @param listener
+	 *            receives products for each event, until it returns false.
+	 * @param file
+	 *            file being streamed, or null.
+	 * @throws Exception if error occurs
+	 */
+	protected void getQuakemlProducts(final InputStream in,
+			final ProductCreatorListener listener, final File file)
+			throws Exception {
+		QuakemlEventReader reader = new QuakemlEventReader(in);
+		try {
+			String event = reader.nextEvent();
+			String next = (event == null ? null : reader.nextEvent());
+			if (event != null && next == null && file != null) {
+				// preserve quakeml input
+				event = new String(StreamUtils.readStream(file));
+			}
+			while (event != null) {
+				for (Product product : getQuakemlProducts(event)) {
+					if (!listener.onProduct(product)) {
+						return;
+					}
+				}
+				event = next;
+				next = (event == null ? null : reader.nextEvent());
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * @return new creator with the same settings as this creator.
+	 */
+	protected QuakemlProductCreator copy() {
+		QuakemlProductCreator copy = new QuakemlProductCreator(padForBase64Bug);
+		copy.setConverter(converter);
+		copy.setValidate(validate);
+		copy.setSendOriginWhenPhasesExist(sendOriginWhenPhasesExist);
+		copy.setSendMechanismWhenPhasesExist(sendMechanismWhenPhasesExist);
+		return copy;
+	}
+
 	/**
 	 * @return XML contents
 	 */
@@ -0,0 +1,31 @@
+package gov.usgs.earthquake.eids;
+
+import java.io.File;
+
+/**
+ * A ProductCreator that can deliver products while a file is being parsed.
+ *
+ * Used by the EIDSInputWedge so large files (for example catalogs with many
+ * events) can start sending before the whole file has been parsed, without
+ * holding every product in memory.
+ */
+public interface StreamingProductCreator extends ProductCreator {
+
+	/**
+	 * Parse product(s) from a file or directory, passing each product to the
+	 * listener as soon as it is created.
+	 *
+	 * Implementations must be safe to call from multiple threads.
+	 *
+	 * @param file
+	 *            file or directory.
+	 * @param listener
+	 *            receives products in the order they are created, until it
+	 *            returns false.
+	 * @throws Exception
+	 *             if error occurs, or listener throws an exception.
+	 */
+	void getProducts(final File file, final ProductCreatorListener listener)
+			throws Exception;
+
+}
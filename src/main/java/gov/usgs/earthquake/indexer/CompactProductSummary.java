@@ -0,0 +1,511 @@
+/*
+ * CompactProductSummary
+ */
+package gov.usgs.earthquake.indexer;
+
+import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.ProductId;
+import gov.usgs.earthquake.util.InternPool;
+import gov.usgs.util.XmlUtils;
+
+import java.math.BigDecimal;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A memory efficient, read only form of {@link ProductSummary}.
+ *
+ * Uses primitive fields for times and locations, interned strings for
+ * identifiers, and a {@link CompactProperties} map that omits properties
+ * derived from event attributes. Intended for holding large numbers of
+ * summaries in memory, for example during association, caching or archive
+ * scans.
+ *
+ * Converting to and from ProductSummary is lossless:
+ * <code>new CompactProductSummary(summary).toProductSummary()</code> has the
+ * same id, attributes, properties and links as <code>summary</code>.
+ */
+public class CompactProductSummary {
+
+	/** Value used for null long attributes. */
+	public static final long NULL_LONG = Long.MIN_VALUE;
+
+	/** Properties that ProductSummary setters derive from attributes. */
+	private static final String[] DERIVED_PROPERTIES = {
+			Product.EVENTSOURCE_PROPERTY, Product.EVENTSOURCECODE_PROPERTY,
+			Product.EVENTTIME_PROPERTY, Product.LATITUDE_PROPERTY,
+			Product.LONGITUDE_PROPERTY, Product.DEPTH_PROPERTY,
+			Product.MAGNITUDE_PROPERTY, Product.VERSION_PROPERTY };
+
+	/** Index of decimal attributes. */
+	private static final int LATITUDE = 0;
+	private static final int LONGITUDE = 1;
+	private static final int DEPTH = 2;
+	private static final int MAGNITUDE = 3;
+
+	/** Index id, or NULL_LONG. */
+	private final long indexId;
+
+	/** Product id parts (interned). */
+	private final String source;
+	private final String type;
+	private final String code;
+	/** Product update time in milliseconds, or NULL_LONG. */
+	private final long updateTime;
+
+	/** Product status (interned). */
+	private final String status;
+	/** Tracker url (interned). */
+	private final String trackerURL;
+	/** Product version (interned). */
+	private final String version;
+	/** Preferred weight. */
+	private final long preferredWeight;
+
+	/** Event id parts (interned). */
+	private final String eventSource;
+	private final String eventSourceCode;
+	/** Event time in milliseconds, or NULL_LONG. */
+	private final long eventTime;
+
+	/** Event location and magnitude, NaN when null. */
+	private final double latitude;
+	private final double longitude;
+	private final double depth;
+	private final double magnitude;
+
+	/** Scale of original decimal values. */
+	private final byte latitudeScale;
+	private final byte longitudeScale;
+	private final byte depthScale;
+	private final byte magnitudeScale;
+
+	/**
+	 * Original decimal values that cannot be restored from a double and scale.
+	 * Null in the common case.
+	 */
+	private final BigDecimal[] exactDecimals;
+
+	/** Properties that cannot be derived from attributes. */
+	private final CompactProperties properties;
+
+	/** Bit set of DERIVED_PROPERTIES that were missing from properties. */
+	private final int missingProperties;
+
+	/** Links as relation, href pairs. An empty relation has a null href. */
+	private final String[] links;
+
+	/** Cached hash code of id. */
+	private final int hash;
+
+	/**
+	 * Create a compact summary using the default intern pool.
+	 *
+	 * @param summary
+	 *            summary to compact.
+	 */
+	public CompactProductSummary(final ProductSummary summary) {
+		this(summary, InternPool.getDefault());
+	}
+
+	/**
+	 * Create a compact summary.
+	 *
+	 * @param summary
+	 *            summary to compact, must have an id.
+	 * @param pool
+	 *            pool used to intern identifiers and property names.
+	 */
+	public CompactProductSummary(final ProductSummary summary,
+			final InternPool pool) {
+		Long summaryIndexId = summary.getIndexId();
+		indexId = (summaryIndexId == null ? NULL_LONG : summaryIndexId);
+
+		ProductId id = summary.getId();
+		source = pool.intern(id.getSource());
+		type = pool.intern(id.getType());
+		code = pool.intern(id.getCode());
+		updateTime = toLong(id.getUpdateTime());
+
+		status = pool.intern(summary.getStatus());
+		URL summaryTrackerURL = summary.getTrackerURL();
+		trackerURL = (summaryTrackerURL == null ? null
+				: pool.intern(summaryTrackerURL.toString()));
+		version = pool.intern(summary.getVersion());
+		preferredWeight = summary.getPreferredWeight();
+
+		eventSource = pool.intern(summary.getEventSource());
+		eventSourceCode = pool.intern(summary.getEventSourceCode());
+		eventTime = toLong(summary.getEventTime());
+
+		BigDecimal[] decimals = new BigDecimal[] {
+				summary.getEventLatitude(), summary.getEventLongitude(),
+				summary.getEventDepth(), summary.getEventMagnitude() };
+		double[] doubles = new double[decimals.length];
+		byte[] scales = new byte[decimals.length];
+		BigDecimal[] exact = null;
+		for (int i = 0; i < decimals.length; i++) {
+			BigDecimal decimal = decimals[i];
+			if (decimal == null) {
+				doubles[i] = Double.NaN;
+				continue;
+			}
+			doubles[i] = decimal.doubleValue();
+			int scale = decimal.scale();
+			if (scale >= Byte.MIN_VALUE && scale <= Byte.MAX_VALUE
+					&& decimal.equals(toDecimal(doubles[i], (byte) scale))) {
+				scales[i] = (byte) scale;
+			} else {
+				// too many digits to restore from double
+				if (exact == null) {
+					exact = new BigDecimal[decimals.length];
+				}
+				exact[i] = decimal;
+			}
+		}
+		latitude = doubles[LATITUDE];
+		longitude = doubles[LONGITUDE];
+		depth = doubles[DEPTH];
+		magnitude = doubles[MAGNITUDE];
+		latitudeScale = scales[LATITUDE];
+		longitudeScale = scales[LONGITUDE];
+		depthScale = scales[DEPTH];
+		magnitudeScale = scales[MAGNITUDE];
+		exactDecimals = exact;
+
+		// only keep properties that setters will not restore
+		Map<String, String> summaryProperties = summary.getProperties();
+		Map<String, String> derived = getDerivedProperties(summary);
+		Map<String, String> kept = new HashMap<String, String>();
+		Iterator<String> iter = summaryProperties.keySet().iterator();
+		while (iter.hasNext()) {
+			String name = iter.next();
+			String value = summaryProperties.get(name);
+			if (!derived.containsKey(name)
+					|| !equals(value, derived.get(name))) {
+				kept.put(name, value);
+			}
+		}
+		int missing = 0;
+		for (int i = 0; i < DERIVED_PROPERTIES.length; i++) {
+			String name = DERIVED_PROPERTIES[i];
+			if (derived.get(name) != null
+					&& !summaryProperties.containsKey(name)) {
+				missing |= (1 << i);
+			}
+		}
+		properties = CompactProperties.copyOf(kept, pool);
+		missingProperties = missing;
+
+		List<String> linkPairs = new ArrayList<String>();
+		Map<String, List<URI>> summaryLinks = summary.getLinks();
+		Iterator<String> relations = summaryLinks.keySet().iterator();
+		while (relations.hasNext()) {
+			String relation = pool.intern(relations.next());
+			List<URI> hrefs = summaryLinks.get(relation);
+			if (hrefs == null || hrefs.size() == 0) {
+				linkPairs.add(relation);
+				linkPairs.add(null);
+				continue;
+			}
+			for (URI href : hrefs) {
+				linkPairs.add(relation);
+				linkPairs.add(href.toString());
+			}
+		}
+		links = linkPairs.toArray(new String[linkPairs.size()]);
+		hash = getId().hashCode();
+	}
+
+	/**
+	 * Convert back to a full ProductSummary.
+	 *
+	 * @return a new ProductSummary equivalent to the one used to create this
+	 *         object.
+	 */
+	public ProductSummary toProductSummary() {
+		ProductSummary summary = new ProductSummary();
+		summary.setIndexId(indexId == NULL_LONG ? null : indexId);
+		summary.setId(getId());
+		summary.setStatus(status);
+		if (trackerURL != null) {
+			try {
+				summary.setTrackerURL(new URL(trackerURL));
+			} catch (MalformedURLException e) {
+				// was parsed as a URL before being compacted
+				throw new IllegalStateException(e);
+			}
+		}
+		summary.setPreferredWeight(preferredWeight);
+
+		// setters also update derived properties
+		summary.setEventSource(eventSource);
+		summary.setEventSourceCode(eventSourceCode);
+		summary.setEventTime(toDate(eventTime));
+		summary.setEventLatitude(getDecimal(LATITUDE, latitude,
+				latitudeScale));
+		summary.setEventLongitude(getDecimal(LONGITUDE, longitude,
+				longitudeScale));
+		summary.setEventDepth(getDecimal(DEPTH, depth, depthScale));
+		summary.setEventMagnitude(getDecimal(MAGNITUDE, magnitude,
+				magnitudeScale));
+		summary.setVersion(version);
+
+		Map<String, String> summaryProperties = summary.getProperties();
+		for (int i = 0; i < DERIVED_PROPERTIES.length; i++) {
+			if ((missingProperties & (1 << i)) != 0) {
+				summaryProperties.remove(DERIVED_PROPERTIES[i]);
+			}
+		}
+		summaryProperties.putAll(properties);
+
+		Map<String, List<URI>> summaryLinks = summary.getLinks();
+		for (int i = 0; i < links.length; i += 2) {
+			String relation = links[i];
+			String href = links[i + 1];
+			if (href == null) {
+				summaryLinks.put(relation, new LinkedList<URI>());
+			} else {
+				summary.addLink(relation, URI.create(href));
+			}
+		}
+
+		return summary;
+	}
+
+	/**
+	 * Compact a list of summaries.
+	 *
+	 * @param summaries
+	 *            summaries to compact.
+	 * @return list of compact summaries, in the same order.
+	 */
+	public static List<CompactProductSummary> compact(
+			final List<ProductSummary> summaries) {
+		List<CompactProductSummary> compact = new ArrayList<CompactProductSummary>(
+				summaries.size());
+		InternPool pool = InternPool.getDefault();
+		for (ProductSummary summary : summaries) {
+			compact.add(new CompactProductSummary(summary, pool));
+		}
+		return compact;
+	}
+
+	/**
+	 * Expand a list of compact summaries.
+	 *
+	 * @param compact
+	 *            compact summaries to expand.
+	 * @return list of product summaries, in the same order.
+	 */
+	public static List<ProductSummary> expand(
+			final List<CompactProductSummary> compact) {
+		List<ProductSummary> summaries = new ArrayList<ProductSummary>(
+				compact.size());
+		for (CompactProductSummary summary : compact) {
+			summaries.add(summary.toProductSummary());
+		}
+		return summaries;
+	}
+
+	/** @return index id, or NULL_LONG. */
+	public long getIndexId() {
+		return indexId;
+	}
+
+	/** @return a new ProductId object for this summary. */
+	public ProductId getId() {
+		return new ProductId(source, type, code, toDate(updateTime));
+	}
+
+	/** @return product source. */
+	public String getSource() {
+		return source;
+	}
+
+	/** @return product type. */
+	public String getType() {
+		return type;
+	}
+
+	/** @return product code. */
+	public String getCode() {
+		return code;
+	}
+
+	/** @return product update time in milliseconds, or NULL_LONG. */
+	public long getUpdateTime() {
+		return updateTime;
+	}
+
+	/** @return product status. */
+	public String getStatus() {
+		return status;
+	}
+
+	/** @return whether product is deleted. */
+	public boolean isDeleted() {
+		return Product.STATUS_DELETE.equalsIgnoreCase(status);
+	}
+
+	/** @return preferred weight. */
+	public long getPreferredWeight() {
+		return preferredWeight;
+	}
+
+	/** @return product version. */
+	public String getVersion() {
+		return version;
+	}
+
+	/** @return null or eventId. */
+	public String getEventId() {
+		if (eventSource == null || eventSourceCode == null) {
+			return null;
+		}
+		return eventSource + eventSourceCode;
+	}
+
+	/** @return event source. */
+	public String getEventSource() {
+		return eventSource;
+	}
+
+	/** @return event source code. */
+	public String getEventSourceCode() {
+		return eventSourceCode;
+	}
+
+	/** @return event time in milliseconds, or NULL_LONG. */
+	public long getEventTime() {
+		return eventTime;
+	}
+
+	/** @return event latitude, or NaN. */
+	public double getEventLatitude() {
+		return latitude;
+	}
+
+	/** @return event longitude, or NaN. */
+	public double getEventLongitude() {
+		return longitude;
+	}
+
+	/** @return event depth, or NaN. */
+	public double getEventDepth() {
+		return depth;
+	}
+
+	/** @return event magnitude, or NaN. */
+	public double getEventMagnitude() {
+		return magnitude;
+	}
+
+	/**
+	 * Get a property value.
+	 *
+	 * Properties derived from event attributes are not stored, use
+	 * {@link #toProductSummary()} to get the complete property map.
+	 *
+	 * @param name
+	 *            property name.
+	 * @return stored value, or null if not stored.
+	 */
+	public String getProperty(final String name) {
+		return properties.get(name);
+	}
+
+	/**
+	 * Same equality as {@link ProductSummary#equals(Object)}, compares ids.
+	 */
+	@Override
+	public boolean equals(final Object o) {
+		if (!(o instanceof CompactProductSummary)) {
+			return false;
+		}
+		CompactProductSummary that = (CompactProductSummary) o;
+		return updateTime == that.updateTime && equals(source, that.source)
+				&& equals(type, that.type) && equals(code, that.code);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	/**
+	 * Properties ProductSummary setters add for event attributes.
+	 *
+	 * @param summary
+	 *            summary with attributes.
+	 * @return map of property name to value set by setters, null values are
+	 *         omitted.
+	 */
+	private static Map<String, String> getDerivedProperties(
+			final ProductSummary summary) {
+		Map<String, String> derived = new HashMap<String, String>();
+		putNotNull(derived, Product.EVENTSOURCE_PROPERTY,
+				summary.getEventSource());
+		putNotNull(derived, Product.EVENTSOURCECODE_PROPERTY,
+				summary.getEventSourceCode());
+		putNotNull(derived, Product.EVENTTIME_PROPERTY,
+				XmlUtils.formatDate(summary.getEventTime()));
+		putNotNull(derived, Product.LATITUDE_PROPERTY,
+				summary.getEventLatitude());
+		putNotNull(derived, Product.LONGITUDE_PROPERTY,
+				summary.getEventLongitude());
+		putNotNull(derived, Product.DEPTH_PROPERTY, summary.getEventDepth());
+		putNotNull(derived, Product.MAGNITUDE_PROPERTY,
+				summary.getEventMagnitude());
+		putNotNull(derived, Product.VERSION_PROPERTY, summary.getVersion());
+		return derived;
+	}
+
+	private static void putNotNull(final Map<String, String> map,
+			final String name, final Object value) {
+		if (value != null) {
+			map.put(name, value.toString());
+		}
+	}
+
+	private BigDecimal getDecimal(final int index, final double value,
+			final byte scale) {
+		if (exactDecimals != null && exactDecimals[index] != null) {
+			return exactDecimals[index];
+		}
+		if (Double.isNaN(value)) {
+			return null;
+		}
+		return toDecimal(value, scale);
+	}
+
+	private static BigDecimal toDecimal(final double value, final byte scale) {
+		BigDecimal decimal = BigDecimal.valueOf(value).stripTrailingZeros();
+		if (decimal.scale() > scale) {
+			// cannot restore without rounding
+			return decimal;
+		}
+		return decimal.setScale(scale);
+	}
+
+	private static long toLong(final Date date) {
+		return date == null ? NULL_LONG : date.getTime();
+	}
+
+	private static Date toDate(final long time) {
+		return time == NULL_LONG ? null : new Date(time);
+	}
+
+	private static boolean equals(final String a, final String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+}
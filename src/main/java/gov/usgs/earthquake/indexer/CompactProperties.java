@@ -0,0 +1,139 @@
+/*
+ * CompactProperties
+ */
+package gov.usgs.earthquake.indexer;
+
+import gov.usgs.earthquake.util.InternPool;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable property map stored as sorted parallel arrays.
+ *
+ * Property names are interned, so the many summaries that share names like
+ * "eventsource" or "review-status" share one instance of each name. A
+ * HashMap needs an entry object and table slot per property; this map only
+ * needs two array slots.
+ *
+ * Lookups use binary search on names.
+ */
+public class CompactProperties extends AbstractMap<String, String> {
+
+	/** Empty properties. */
+	public static final CompactProperties EMPTY = new CompactProperties(
+			new String[0], new String[0]);
+
+	/** Sorted, interned property names. */
+	private final String[] names;
+
+	/** Property values, same order as names. */
+	private final String[] values;
+
+	/**
+	 * Create properties from arrays that are already sorted and interned.
+	 *
+	 * @param names
+	 *            sorted property names.
+	 * @param values
+	 *            property values.
+	 */
+	private CompactProperties(final String[] names, final String[] values) {
+		this.names = names;
+		this.values = values;
+	}
+
+	/**
+	 * Create compact properties from a map.
+	 *
+	 * @param properties
+	 *            properties to copy.
+	 * @param pool
+	 *            pool used to intern property names.
+	 * @return compact copy of properties.
+	 */
+	public static CompactProperties copyOf(
+			final Map<String, String> properties, final InternPool pool) {
+		if (properties == null || properties.size() == 0) {
+			return EMPTY;
+		}
+		String[] names = properties.keySet().toArray(
+				new String[properties.size()]);
+		Arrays.sort(names);
+		String[] values = new String[names.length];
+		for (int i = 0; i < names.length; i++) {
+			values[i] = properties.get(names[i]);
+			names[i] = pool.intern(names[i]);
+		}
+		return new CompactProperties(names, values);
+	}
+
+	/**
+	 * Find the index of a property name.
+	 *
+	 * @param name
+	 *            name to find.
+	 * @return index, or negative if not found.
+	 */
+	private int indexOf(final Object name) {
+		if (!(name instanceof String)) {
+			return -1;
+		}
+		return Arrays.binarySearch(names, (String) name);
+	}
+
+	@Override
+	public String get(final Object name) {
+		int index = indexOf(name);
+		return index < 0 ? null : values[index];
+	}
+
+	@Override
+	public boolean containsKey(final Object name) {
+		return indexOf(name) >= 0;
+	}
+
+	@Override
+	public int size() {
+		return names.length;
+	}
+
+	@Override
+	public Set<Map.Entry<String, String>> entrySet() {
+		return new AbstractSet<Map.Entry<String, String>>() {
+			@Override
+			public Iterator<Map.Entry<String, String>> iterator() {
+				return new Iterator<Map.Entry<String, String>>() {
+					private int next = 0;
+
+					@Override
+					public boolean hasNext() {
+						return next < names.length;
+					}
+
+					@Override
+					public Map.Entry<String, String> next() {
+						if (next >= names.length) {
+							throw new NoSuchElementException();
+						}
+						Map.Entry<String, String> entry = new AbstractMap.SimpleImmutableEntry<String, String>(
+								names[next], values[next]);
+						next++;
+						return entry;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return names.length;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,134 @@
+/*
+ * ContentSummaryCache
+ */
+package gov.usgs.earthquake.indexer;
+
+import gov.usgs.earthquake.product.AbstractContent;
+import gov.usgs.earthquake.product.Content;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of properties that indexer modules derive from content.
+ *
+ * Entries are keyed by a name for the kind of summary and the content sha256,
+ * so re-summarizing identical content (re-indexing, reprocessing, or the same
+ * file in a new product version) does not parse it again. Content without a
+ * known sha256 is parsed every time, since hashing would read the whole
+ * content anyway.
+ *
+ * The least recently used entries are removed once the cache is full.
+ */
+public class ContentSummaryCache {
+
+	/** Default maximum number of entries. */
+	public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+	/** Cache shared by indexer modules. */
+	private static final ContentSummaryCache DEFAULT_CACHE = new ContentSummaryCache(
+			DEFAULT_MAX_ENTRIES);
+
+	/**
+	 * Parses properties from content.
+	 */
+	public static interface ContentSummarizer {
+		/**
+		 * @param content content to parse.
+		 * @return properties derived from content.
+		 * @throws Exception if content cannot be parsed.
+		 */
+		public Map<String, String> summarize(final Content content)
+				throws Exception;
+	}
+
+	/** Cached properties, in access order. */
+	private final Map<String, Map<String, String>> cache;
+
+	/**
+	 * Create a cache.
+	 *
+	 * @param maxEntries
+	 *            maximum number of entries.
+	 */
+	public ContentSummaryCache(final int maxEntries) {
+		cache = new LinkedHashMap<String, Map<String, String>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					final Map.Entry<String, Map<String, String>> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * @return cache shared by indexer modules.
+	 */
+	public static ContentSummaryCache getDefaultCache() {
+		return DEFAULT_CACHE;
+	}
+
+	/**
+	 * Get properties for content, using cached properties when the same
+	 * content was already summarized.
+	 *
+	 * @param name
+	 *            kind of summary, so different summaries of the same content
+	 *            are cached separately.
+	 * @param content
+	 *            content to summarize.
+	 * @param summarizer
+	 *            parses content when not cached.
+	 * @return unmodifiable properties.
+	 * @throws Exception
+	 *             if summarizer throws an exception, errors are not cached.
+	 */
+	public Map<String, String> getSummary(final String name,
+			final Content content, final ContentSummarizer summarizer)
+			throws Exception {
+		String sha256 = null;
+		if (content instanceof AbstractContent) {
+			sha256 = ((AbstractContent) content).getSha256(false);
+		}
+		if (sha256 == null) {
+			return Collections.unmodifiableMap(summarizer.summarize(content));
+		}
+
+		String key = name + ":" + sha256;
+		Map<String, String> summary;
+		synchronized (cache) {
+			summary = cache.get(key);
+		}
+		if (summary == null) {
+			summary = Collections.unmodifiableMap(new HashMap<String, String>(
+					summarizer.summarize(content)));
+			synchronized (cache) {
+				cache.put(key, summary);
+			}
+		}
+		return summary;
+	}
+
+	/**
+	 * @return number of cached entries.
+	 */
+	public int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public void clear() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+}
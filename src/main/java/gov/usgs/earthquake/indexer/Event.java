@@ -48,6 +48,26 @@ public class Event implements Comparable<Event> {
 	/** Cached summary. */
 	private EventSummary eventSummary = null;
 
+	/**
+	 * Cached derived views of products.
+	 *
+	 * These are computed on first use and cleared by {@link #clearCache()}
+	 * whenever products are added, removed, or replaced.
+	 */
+	private Map<String, List<ProductSummary>> productsCache = null;
+	/** Cached preferred products, keyed by type. */
+	private Map<String, ProductSummary> preferredProductsCache = null;
+	/** Cached event codes. */
+	private Map<String, String> eventCodesCache = null;
+	/** Cached sub events. */
+	private Map<String, Event> subEventsCache = null;
+	/** Cached preferred origin product, valid when flag is set. */
+	private ProductSummary preferredOriginProductCache = null;
+	private boolean preferredOriginProductCached = false;
+	/** Cached product with origin properties, valid when flag is set. */
+	private ProductSummary productWithOriginPropertiesCache = null;
+	private boolean productWithOriginPropertiesCached = false;
+
 	/**
 	 * Default constructor.
 	 *
@@ -110,11 +130,19 @@ public class Event implements Comparable<Event> {
 	 */
 	public void setIndexId(Long indexId) {
 		this.indexId = indexId;
+		// summary includes index id
+		eventSummary = null;
 	}
 
 	/**
 	 * Get all products associated with event, even if they are deleted.
 	 *
+	 * NOTE: derived views (preferred products, event codes, summary, ...) are
+	 * cached. Use {@link #addProduct(ProductSummary)},
+	 * {@link #removeProduct(ProductSummary)} or {@link #setProducts(Map)} to
+	 * modify products, or call {@link #clearCache()} after modifying the
+	 * returned map directly.
+	 *
 	 * @return all products associated with event.
 	 */
 	public Map<String, List<ProductSummary>> getAllProducts() {
@@ -133,17 +161,59 @@ public class Event implements Comparable<Event> {
 	 */
 	public Map<String, List<ProductSummary>> getProducts() {
 		Map<String, List<ProductSummary>> notDeleted = new HashMap<String, List<ProductSummary>>();
-		Iterator<String> types = products.keySet().iterator();
+		Map<String, List<ProductSummary>> cached = getCachedProducts();
+		Iterator<String> types = cached.keySet().iterator();
 		while (types.hasNext()) {
 			String type = types.next();
-			List<ProductSummary> notDeletedProducts = getProducts(type);
-			if (notDeletedProducts.size() > 0) {
-				notDeleted.put(type, notDeletedProducts);
-			}
+			notDeleted.put(type, new ArrayList<ProductSummary>(cached.get(type)));
 		}
 		return notDeleted;
 	}
 
+	/**
+	 * Get the cached map of products that have not been deleted or superseded.
+	 *
+	 * The returned map and lists must not be modified.
+	 *
+	 * @return cached map of event products.
+	 */
+	private Map<String, List<ProductSummary>> getCachedProducts() {
+		if (productsCache == null) {
+			Map<String, List<ProductSummary>> notDeleted = new HashMap<String, List<ProductSummary>>();
+			Iterator<String> types = products.keySet().iterator();
+			while (types.hasNext()) {
+				String type = types.next();
+				List<ProductSummary> notDeletedProducts = getWithoutDeleted(
+						getWithoutSuperseded(products.get(type)));
+				if (notDeletedProducts.size() > 0) {
+					notDeleted.put(type, notDeletedProducts);
+				}
+			}
+			productsCache = notDeleted;
+		}
+		return productsCache;
+	}
+
+	/**
+	 * Clear cached views derived from products.
+	 *
+	 * Called automatically by {@link #addProduct(ProductSummary)},
+	 * {@link #removeProduct(ProductSummary)} and {@link #setProducts(Map)}.
+	 * Only needs to be called directly after modifying the map returned by
+	 * {@link #getAllProducts()}.
+	 */
+	public void clearCache() {
+		eventSummary = null;
+		productsCache = null;
+		preferredProductsCache = null;
+		eventCodesCache = null;
+		subEventsCache = null;
+		preferredOriginProductCache = null;
+		preferredOriginProductCached = false;
+		productWithOriginPropertiesCache = null;
+		productWithOriginPropertiesCached = false;
+	}
+
 	/**
 	 * Set products.
 	 *
@@ -161,7 +231,7 @@ public class Event implements Comparable<Event> {
 			this.products.put(type,
 					new ArrayList<ProductSummary>(newProducts.get(type)));
 		}
-		eventSummary = null;
+		clearCache();
 	}
 
 	/**
@@ -181,8 +251,8 @@ public class Event implements Comparable<Event> {
 		}
 		if (!list.contains(summary)) {
 			list.add(summary);
+			clearCache();
 		}
-		eventSummary = null;
 	}
 
 	/**
@@ -199,13 +269,14 @@ public class Event implements Comparable<Event> {
 		List<ProductSummary> list = products.get(type);
 		if (list != null) {
 			// remove the product from the list
-			list.remove(summary);
+			if (list.remove(summary)) {
+				clearCache();
+			}
 			if (list.size() == 0) {
 				// if the list is now empty, remove the list
 				products.remove(type);
 			}
 		}
-		eventSummary = null;
 	}
 
 	/**
@@ -221,10 +292,10 @@ public class Event implements Comparable<Event> {
 	public List<ProductSummary> getProducts(final String type) {
 		ArrayList<ProductSummary> typeProducts = new ArrayList<ProductSummary>();
 
-		if (products.containsKey(type)) {
-			// only return products that haven't been deleted
-			typeProducts.addAll(getWithoutDeleted(getWithoutSuperseded(products
-					.get(type))));
+		// only return products that haven't been deleted
+		List<ProductSummary> notDeleted = getCachedProducts().get(type);
+		if (notDeleted != null) {
+			typeProducts.addAll(notDeleted);
 		}
 
 		return typeProducts;
@@ -253,7 +324,7 @@ public class Event implements Comparable<Event> {
 	 */
 	public List<ProductSummary> getProductList() {
 		List<ProductSummary> productList = new ArrayList<ProductSummary>();
-		Map<String, List<ProductSummary>> notDeletedProducts = getProducts();
+		Map<String, List<ProductSummary>> notDeletedProducts = getCachedProducts();
 		Iterator<String> iter = notDeletedProducts.keySet().iterator();
 		while (iter.hasNext()) {
 			productList.addAll(notDeletedProducts.get(iter.next()));
@@ -270,17 +341,20 @@ public class Event implements Comparable<Event> {
 	 * @return a map from product type to the preferred product of that type.
 	 */
 	public Map<String, ProductSummary> getPreferredProducts() {
-		Map<String, ProductSummary> preferredProducts = new HashMap<String, ProductSummary>();
-
-		Map<String, List<ProductSummary>> notDeletedProducts = getProducts();
-		Iterator<String> types = notDeletedProducts.keySet().iterator();
-		while (types.hasNext()) {
-			String type = types.next();
-			preferredProducts.put(type,
-					getPreferredProduct(notDeletedProducts.get(type)));
+		if (preferredProductsCache == null) {
+			Map<String, ProductSummary> preferredProducts = new HashMap<String, ProductSummary>();
+
+			Map<String, List<ProductSummary>> notDeletedProducts = getCachedProducts();
+			Iterator<String> types = notDeletedProducts.keySet().iterator();
+			while (types.hasNext()) {
+				String type = types.next();
+				preferredProducts.put(type,
+						getPreferredProduct(notDeletedProducts.get(type)));
+			}
+			preferredProductsCache = preferredProducts;
 		}
 
-		return preferredProducts;
+		return new HashMap<String, ProductSummary>(preferredProductsCache);
 	}
 
 	/**
@@ -292,7 +366,11 @@ public class Event implements Comparable<Event> {
 	 *         that type is associated.
 	 */
 	public ProductSummary getPreferredProduct(final String type) {
-		return getPreferredProduct(getProducts(type));
+		List<ProductSummary> notDeleted = getCachedProducts().get(type);
+		if (notDeleted == null) {
+			return null;
+		}
+		return getPreferredProduct(notDeleted);
 	}
 
 	/**
@@ -304,7 +382,10 @@ public class Event implements Comparable<Event> {
 	 * @return map of all event ids associated with this event.
 	 */
 	public Map<String, String> getEventCodes() {
-		return getEventCodes(this.getAllProductList());
+		if (eventCodesCache == null) {
+			eventCodesCache = getEventCodes(this.getAllProductList());
+		}
+		return new HashMap<String, String>(eventCodesCache);
 	}
 
 	/**
@@ -352,7 +433,11 @@ public class Event implements Comparable<Event> {
 			final boolean includeDeleted) {
 		Map<String, List<String>> allEventCodes = new HashMap<String, List<String>>();
 
-		Map<String, Event> subEvents = getSubEvents();
+		// read only, use cached sub events without copying
+		if (subEventsCache == null) {
+			subEventsCache = findSubEvents();
+		}
+		Map<String, Event> subEvents = subEventsCache;
 		Iterator<String> iter = subEvents.keySet().iterator();
 		while (iter.hasNext()) {
 			Event subEvent = subEvents.get(iter.next());
@@ -493,6 +578,19 @@ public class Event implements Comparable<Event> {
 	 * @see #productHasOriginProperties(ProductSummary)
 	 */
 	public ProductSummary getProductWithOriginProperties() {
+		if (!productWithOriginPropertiesCached) {
+			productWithOriginPropertiesCache = findProductWithOriginProperties();
+			productWithOriginPropertiesCached = true;
+		}
+		return productWithOriginPropertiesCache;
+	}
+
+	/**
+	 * Search products for {@link #getProductWithOriginProperties()}.
+	 *
+	 * @return the most recent product with origin properties.
+	 */
+	private ProductSummary findProductWithOriginProperties() {
 		Map<String, List<ProductSummary>> allProducts = getAllProducts();
 		List<ProductSummary> productsList = null;
 		ProductSummary preferredProduct = null;
@@ -580,6 +678,19 @@ public class Event implements Comparable<Event> {
 	 * @see #productHasOriginProperties(ProductSummary)
 	 */
 	public ProductSummary getPreferredOriginProduct() {
+		if (!preferredOriginProductCached) {
+			preferredOriginProductCache = findPreferredOriginProduct();
+			preferredOriginProductCached = true;
+		}
+		return preferredOriginProductCache;
+	}
+
+	/**
+	 * Search products for {@link #getPreferredOriginProduct()}.
+	 *
+	 * @return the most preferred origin-like product.
+	 */
+	private ProductSummary findPreferredOriginProduct() {
 		Map<String, List<ProductSummary>> allProducts = getAllProducts();
 		List<ProductSummary> productsList = null;
 		ProductSummary preferredProduct = null;
@@ -1104,9 +1215,30 @@ public class Event implements Comparable<Event> {
 	 * Event lines are drawn by eventid. Products that have no eventid are
 	 * included with the sub event whose id is considered preferred.
 	 *
+	 * Sub events are cached, but each call returns a new map of copies so
+	 * callers may modify the results.
+	 *
 	 * @return map from eventid to event object with products for that eventid.
 	 */
 	public Map<String, Event> getSubEvents() {
+		if (subEventsCache == null) {
+			subEventsCache = findSubEvents();
+		}
+		Map<String, Event> subEvents = new HashMap<String, Event>();
+		Iterator<String> iter = subEventsCache.keySet().iterator();
+		while (iter.hasNext()) {
+			String subEventId = iter.next();
+			subEvents.put(subEventId, new Event(subEventsCache.get(subEventId)));
+		}
+		return subEvents;
+	}
+
+	/**
+	 * Split products into sub events for {@link #getSubEvents()}.
+	 *
+	 * @return map from eventid to event object with products for that eventid.
+	 */
+	private Map<String, Event> findSubEvents() {
 		// Map of sub-events keyed by product "eventId"
 		Map<String, Event> subEvents = new HashMap<String, Event>();
 
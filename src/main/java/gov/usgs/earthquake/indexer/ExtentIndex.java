@@ -5,6 +5,7 @@ package gov.usgs.earthquake.indexer;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.Statement;
 import java.sql.Types;
 import java.sql.SQLException;
 
@@ -30,6 +31,11 @@ public class ExtentIndex extends JDBCProductIndex {
   public static final String EXTENT_MAX_LONG = "maximum_longitude";
   /** Extent min longitude */
   public static final String EXTENT_MIN_LONG = "minimum_longitude";
+  /** Table for the ExtentIndexerListener checkpoint, created when missing */
+  public static final String EXTENT_CHECKPOINT_TABLE = "extentSummaryCheckpoint";
+
+  /** Whether checkpoint table is known to exist */
+  private boolean checkpointTableExists = false;
 
   /**
    * Default constructor
@@ -45,7 +51,7 @@ public class ExtentIndex extends JDBCProductIndex {
    * @return long last extent index id
    * @throws Exception if something goes wrong with database transaction
    */
-  public long getLastExtentIndexId() throws Exception {
+  public synchronized long getLastExtentIndexId() throws Exception {
     long lastIndex;
 
     //Prepare statement
@@ -76,14 +82,84 @@ public class ExtentIndex extends JDBCProductIndex {
     return lastIndex;
   }
 
+  /**
+   * Reads the index id of the last product processed by an
+   * ExtentIndexerListener.
+   *
+   * When products are processed in parallel, extentSummary rows are added out
+   * of order, so the largest index id may be ahead of products that were
+   * still being processed.
+   *
+   * @return index id saved by setExtentCheckpoint, or null if never saved
+   * @throws Exception if something goes wrong with database transaction
+   */
+  public synchronized Long getExtentCheckpoint() throws Exception {
+    if (!checkpointTableExists) {
+      if (!hasTable(EXTENT_CHECKPOINT_TABLE)) {
+        return null;
+      }
+      checkpointTableExists = true;
+    }
+    String sql = "SELECT lastIndexId FROM " + EXTENT_CHECKPOINT_TABLE;
+    beginTransaction();
+    try (PreparedStatement getCheckpoint = getConnection().prepareStatement(sql);
+        ResultSet results = getCheckpoint.executeQuery()) {
+      Long checkpoint = null;
+      if (results.next()) {
+        checkpoint = results.getLong(1);
+      }
+      commitTransaction();
+      return checkpoint;
+    } catch (SQLException e) {
+      try {
+        rollbackTransaction();
+      } catch (Exception e2) {}
+      throw new SQLException(e.getMessage() + ". SQL query was: " + sql, e);
+    }
+  }
+
+  /**
+   * Saves the index id of the last product processed by an
+   * ExtentIndexerListener, along with every product before it.
+   *
+   * @param lastIndexId index id to save
+   * @throws Exception if something goes wrong with database transaction
+   */
+  public synchronized void setExtentCheckpoint(final long lastIndexId)
+      throws Exception {
+    if (!checkpointTableExists && !hasTable(EXTENT_CHECKPOINT_TABLE)) {
+      try (Statement statement = getConnection().createStatement()) {
+        statement.executeUpdate("CREATE TABLE " + EXTENT_CHECKPOINT_TABLE
+            + " (lastIndexId BIGINT)");
+      }
+    }
+    checkpointTableExists = true;
+    beginTransaction();
+    try (Statement statement = getConnection().createStatement()) {
+      statement.executeUpdate("DELETE FROM " + EXTENT_CHECKPOINT_TABLE);
+      statement.executeUpdate("INSERT INTO " + EXTENT_CHECKPOINT_TABLE
+          + " (lastIndexId) VALUES (" + lastIndexId + ")");
+      commitTransaction();
+    } catch (Exception e) {
+      try {
+        rollbackTransaction();
+      } catch (Exception e2) {}
+      throw e;
+    }
+  }
+
   /**
    * Inserts valid ExtentSummary products into extentSummary table
    *
+   * Replaces any existing row for the product, so products processed again
+   * after a restart are not duplicated.
+   *
    * @param product the product to be added
    *
    * @throws Exception if something goes wrong with the database transaction
    */
-  public void addExtentSummary(ExtentSummary product) throws Exception {
+  public synchronized void addExtentSummary(ExtentSummary product)
+      throws Exception {
     //Prepare statement
     String sql = "INSERT INTO " + EXTENT_TABLE +
         "(" +
@@ -96,8 +172,15 @@ public class ExtentIndex extends JDBCProductIndex {
           EXTENT_MAX_LONG +
         ") VALUES (?, ?, ?, ?, ?, ?, ?)";
 
+    String deleteSql = "DELETE FROM " + EXTENT_TABLE
+        + " WHERE " + EXTENT_INDEX_ID + "=?";
+
     beginTransaction();
-    try (PreparedStatement addProduct = getConnection().prepareStatement(sql)) {
+    try (PreparedStatement removeProduct = getConnection().prepareStatement(deleteSql);
+        PreparedStatement addProduct = getConnection().prepareStatement(sql)) {
+      removeProduct.setLong(1, product.getIndexId());
+      removeProduct.executeUpdate();
+
       //Add values
       addProduct.setLong(1, product.getIndexId());
       if (product.getStartTime() != null) {
@@ -41,13 +41,38 @@ public class ExtentIndexerListener extends ReliableIndexerListener {
   }
 
   /**
-   * Loads the last index id in the extent table before the listener has to use it
+   * Loads the saved checkpoint before the listener has to use it, or the
+   * last index id in the extent table when no checkpoint was saved.
    *
    * @throws Exception if ExtentIndex can't do database transaction
    */
   @Override
   protected void onBeforeProcessThreadStart() throws Exception {
-    setLastIndexId(((ExtentIndex) productIndex).getLastExtentIndexId());
+    ExtentIndex extentIndex = (ExtentIndex) productIndex;
+    Long checkpoint = extentIndex.getExtentCheckpoint();
+    super.setLastIndexId(checkpoint != null
+        ? checkpoint
+        : extentIndex.getLastExtentIndexId());
+  }
+
+  /**
+   * Saves a checkpoint along with lastIndexId.
+   *
+   * The extent table is not used as the checkpoint, because products
+   * processed in parallel add rows out of order.
+   *
+   * @param lastIndexId index id of last product processed, along with every
+   *     product before it
+   */
+  @Override
+  public void setLastIndexId(final long lastIndexId) {
+    super.setLastIndexId(lastIndexId);
+    try {
+      ((ExtentIndex) productIndex).setExtentCheckpoint(lastIndexId);
+    } catch (Exception e) {
+      LOGGER.log(Level.WARNING, "[" + getName()
+          + "] exception saving checkpoint " + lastIndexId, e);
+    }
   }
 
   /**
@@ -72,8 +97,6 @@ public class ExtentIndexerListener extends ReliableIndexerListener {
           + product.getId().toString()
           + " has no extent information; won't add to extent table");
     }
-
-    setLastIndexId(product.getIndexId());
   }
 
 }
\ No newline at end of file
@@ -10,6 +10,7 @@ import gov.usgs.earthquake.distribution.FileProductStorage;
 import gov.usgs.earthquake.distribution.HeartbeatListener;
 import gov.usgs.earthquake.distribution.ProductAlreadyInStorageException;
 import gov.usgs.earthquake.distribution.ProductStorage;
+import gov.usgs.earthquake.distribution.ProductTrace;
 import gov.usgs.earthquake.indexer.IndexerChange.IndexerChangeType;
 import gov.usgs.earthquake.product.Content;
 import gov.usgs.earthquake.product.Product;
@@ -229,6 +230,7 @@ public class ExternalIndexerListener extends DefaultIndexerListener {
 	public void runProductCommand(final String command, final Product product) throws Exception {
 		// execute
 		LOGGER.info("[" + getName() + "] running command " + command);
+		final long beginCommand = System.currentTimeMillis();
 		final Process process = Runtime.getRuntime().exec(command);
 
 		// Stream content over stdin if it exists
@@ -268,6 +270,7 @@ public class ExternalIndexerListener extends DefaultIndexerListener {
 				// Cancel the timer if it was not triggered
 				commandTimer.cancel();
 			}
+			ProductTrace.addCurrentStage(getName(), "command", beginCommand);
 		}
 		LOGGER.info("[" + getName() + "] command '" + command
 				+ "' exited with status '" + process.exitValue() + "'");
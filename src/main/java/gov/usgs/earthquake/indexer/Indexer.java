@@ -10,14 +10,18 @@ import gov.usgs.earthquake.distribution.HeartbeatListener;
 import gov.usgs.earthquake.distribution.Notification;
 import gov.usgs.earthquake.distribution.ProductAlreadyInStorageException;
 import gov.usgs.earthquake.distribution.ProductStorage;
+import gov.usgs.earthquake.distribution.ProductTrace;
 import gov.usgs.earthquake.geoserve.ANSSRegionsFactory;
 import gov.usgs.earthquake.product.Product;
 import gov.usgs.earthquake.product.ProductId;
 import gov.usgs.earthquake.util.CompareUtil;
+import gov.usgs.earthquake.util.JDBCConnection;
+import gov.usgs.earthquake.util.ProductPresenceFilter;
 import gov.usgs.util.Config;
 import gov.usgs.util.Configurable;
 import gov.usgs.util.FutureExecutorTask;
 import gov.usgs.util.StringUtils;
+import gov.usgs.util.metrics.MetricsRegistry;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -33,6 +37,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 /**
  * The indexer receives products from Distribution, and adds them to the
@@ -57,6 +62,12 @@ import java.util.logging.Logger;
  * <dt>listeners</dt>
  * <dd>A comma delimited list of objects that implement the IndexerListener
  * interface</dd>
+ *
+ * <dt>presenceFilter</dt>
+ * <dd>(Optional) Whether to keep ids of indexed products in memory, so
+ * duplicate checks for new products do not query the index. Products found
+ * in memory are confirmed with the index. Default is true, except for MySQL
+ * indexes, which may be updated by other processes.</dd>
  * </dl>
  */
 public class Indexer extends DefaultNotificationListener {
@@ -108,6 +119,13 @@ public class Indexer extends DefaultNotificationListener {
 	public static final String SEARCH_PORT_PROPERTY = "searchPort";
 	/** Property name for search socket thread pool size. */
 	public static final String SEARCH_THREADS_PROPERTY = "searchThreads";
+	/** Property name for bytes of serialized products cached for search. */
+	public static final String SEARCH_PRODUCT_CACHE_SIZE_PROPERTY = "searchProductCacheSize";
+	/** Property name for largest serialized product cached for search. */
+	public static final String SEARCH_PRODUCT_CACHE_MAX_PRODUCT_PROPERTY = "searchProductCacheMaxProduct";
+
+	/** Property name to keep ids of indexed products in memory. */
+	public static final String PRESENCE_FILTER_PROPERTY = "presenceFilter";
 
 	/** Default value whether to enable search socket. */
 	public static final String DEFAULT_ENABLE_SEARCH = "false";
@@ -115,6 +133,10 @@ public class Indexer extends DefaultNotificationListener {
 	public static final String DEFAULT_SEARCH_PORT = "11236";
 	/** Number of threads (concurrent searches) allowed. */
 	public static final String DEFAULT_SEARCH_THREADS = "5";
+	/** Default bytes of serialized products cached for search, 64MB. */
+	public static final String DEFAULT_SEARCH_PRODUCT_CACHE_SIZE = "67108864";
+	/** Default largest serialized product cached for search, 8MB. */
+	public static final String DEFAULT_SEARCH_PRODUCT_CACHE_MAX_PRODUCT = "8388608";
 
 	/** Utility used for associating products to events. */
 	private Associator associator;
@@ -131,6 +153,12 @@ public class Indexer extends DefaultNotificationListener {
 	/** Read index for {@link #hasProductBeenIndexed(ProductId)} */
 	private ProductIndex readProductIndex;
 
+	/** Whether to use indexedProducts, null for default. */
+	private Boolean presenceFilterEnabled = null;
+
+	/** Ids of indexed products, when loaded. */
+	private final ProductPresenceFilter indexedProducts = new ProductPresenceFilter();
+
 	/** Modules provide product specific functionality. */
 	private List<IndexerModule> modules = new LinkedList<IndexerModule>();
 
@@ -149,6 +177,9 @@ public class Indexer extends DefaultNotificationListener {
 	/** Synchronization object for indexing. */
 	private final Object indexProductSync = new Object();
 
+	/** Summarize, lock wait, and index transaction metrics. */
+	private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+
 	/**
 	 * Service used by FutureExecutorTask for execution.
 	 * See distribution.FutureListenerNotifier for more details.
@@ -174,6 +205,9 @@ public class Indexer extends DefaultNotificationListener {
 
 	private SearchServerSocket searchSocket = null;
 
+	/** Serialized products for search, invalidated when removed from storage. */
+	private final SerializedProductCache serializedProducts = new SerializedProductCache();
+
 	private DefaultIndexerModule defaultModule = new DefaultIndexerModule();
 
 	/**
@@ -234,6 +268,16 @@ public class Indexer extends DefaultNotificationListener {
 		this.productStorage = productStorage;
 	}
 
+	/**
+	 * Returns the cache of serialized products used by search.
+	 *
+	 * @return cache, entries are removed when products are removed from
+	 *         storage.
+	 */
+	public SerializedProductCache getSerializedProductCache() {
+		return serializedProducts;
+	}
+
 	/**
 	 * Returns the product index component used to index product information as
 	 * it is received.
@@ -415,10 +459,22 @@ public class Indexer extends DefaultNotificationListener {
 	 * NOT synchronized to allow multiple threads to access.
 	 * readProductIndex.hasProduct is synchronized.
 	 *
+	 * When loaded, the presence filter answers for products that are not
+	 * indexed. Products it reports present may be fingerprint collisions, and
+	 * are confirmed using the index.
+	 *
 	 * @param id ProductId to check
 	 * @return true if product has already been indexed.
 	 */
 	protected boolean hasProductBeenIndexed(final ProductId id) {
+		if (indexedProducts.isLoaded()) {
+			boolean indexed = indexedProducts.contains(id);
+			metrics.increment(getName(), indexed ? "presenceFilter.present"
+					: "presenceFilter.absent");
+			if (!indexed) {
+				return false;
+			}
+		}
 		try {
 			if (readProductIndex == productIndex) {
 				// synchronize on this if read and product index are same
@@ -533,6 +589,7 @@ public class Indexer extends DefaultNotificationListener {
 	public void onProduct(final Product product, final boolean force) throws Exception {
 		ProductId id = product.getId();
 		final long beginStore = new Date().getTime();
+		final long beginProcess = metrics.startTimer();
 
 		// -------------------------------------------------------------------//
 		// -- Step 1: Store product
@@ -547,7 +604,12 @@ public class Indexer extends DefaultNotificationListener {
 		// -------------------------------------------------------------------//
 
 		LOGGER.finer("[" + getName() + "] summarizing product id=" + id.toString());
+		final long beginSummarize = metrics.startTimer();
+		final long beginSummarizeMillis = System.currentTimeMillis();
 		final ProductSummary productSummary = summarizeProduct(product);
+		metrics.recordSince(getName(), "summarize", beginSummarize);
+		ProductTrace.addCurrentStage(getName(), "summarize",
+				beginSummarizeMillis);
 
 		// -------------------------------------------------------------------//
 		// -- Step 3: Add product summary to the product index
@@ -556,12 +618,17 @@ public class Indexer extends DefaultNotificationListener {
 		LOGGER.finer("[" + getName() + "] indexing product id=" + id.toString());
 		// measure time waiting to enter synchronized block
 		final long beforeEnterSync = new Date().getTime();
+		final long beginLockWait = metrics.startTimer();
 		synchronized (indexProductSync) {
 			final long afterEnterSync = new Date().getTime();
+			metrics.recordSince(getName(), "index.lockWait", beginLockWait);
+			ProductTrace.addCurrentStage(getName(), "index.lockWait",
+					beforeEnterSync);
 
 			try {
 				indexProduct(productSummary);
 			} finally {
+				metrics.recordSince(getName(), "process", beginProcess);
 				final long endIndex = new Date().getTime();
 				LOGGER.fine("[" + getName() + "] indexer processed product id="
 						+ id.toString() + " in " +
@@ -634,172 +701,28 @@ public class Indexer extends DefaultNotificationListener {
 		IndexerEvent notification = new IndexerEvent(this);
 		notification.setIndex(getProductIndex());
 		notification.setSummary(productSummary);
+		notification.setTrace(ProductTrace.getCurrent());
 
 		// Start the product index transaction, only proceed if able
+		final long beginTransaction = metrics.startTimer();
+		final long beginTransactionMillis = System.currentTimeMillis();
 		productIndex.beginTransaction();
 
 		try {
-			LOGGER.finer("[" + getName() + "] finding previous version");
-			// Check index for previous version of this product
-			ProductSummary prevSummary = getPrevProductVersion(productSummary);
-
-			LOGGER.finer("[" + getName() + "] finding previous event");
-			Event prevEvent = null;
-			boolean redundantProduct = isRedundantProduct(prevSummary, productSummary);
-			if (!redundantProduct) {
-				// Skip association queries and use existing product association
-				// performed in next branch (should be associated already if
-				// "redundant").
-
-				// Check index for existing event candidate
-				prevEvent = getPrevEvent(productSummary, true);
-			}
-
-			// may be an update/delete to a product that previously associated
-			// to an event, even though this product isn't associating on its
-			// own
-			if (prevSummary != null && prevEvent == null) {
-				// see if prevSummary associated with an event
-				ProductIndexQuery prevEventQuery = new ProductIndexQuery();
-				prevEventQuery.getProductIds().add(prevSummary.getId());
-				if (associateUsingCurrentProducts) {
-					prevEventQuery.setResultType(ProductIndexQuery.RESULT_TYPE_CURRENT);
-				}
-				List<Event> prevEvents = productIndex.getEvents(prevEventQuery);
-				if (prevEvents.size() != 0) {
-					// just use first (there can really only be one).
-					prevEvent = prevEvents.get(0);
-				}
-			}
-
-			// special handling to allow trump products to associate based on
-			// a product link. Not used when eventsource/eventsourcecode set.
-			if (prevEvent == null
-					&& productSummary.getId().getType().equals(TRUMP_PRODUCT_TYPE)
-					&& productSummary.getLinks().containsKey("product")
-					&& !productSummary.getStatus().equalsIgnoreCase(
-							Product.STATUS_DELETE)) {
-				// see if we can associate via another product
-				ProductIndexQuery otherEventQuery = new ProductIndexQuery();
-				otherEventQuery.getProductIds().add(
-						ProductId.parse(productSummary.getLinks()
-								.get("product").get(0).toString()));
-				if (associateUsingCurrentProducts) {
-					otherEventQuery.setResultType(ProductIndexQuery.RESULT_TYPE_CURRENT);
-				}
-				List<Event> prevEvents = productIndex
-						.getEvents(otherEventQuery);
-				if (prevEvents.size() != 0) {
-					// just use first (there can really only be one).
-					prevEvent = prevEvents.get(0);
-				}
-			}
-
-			// Add the summary to the index
-			LOGGER.finer("[" + getName() + "] adding summary to index");
-			if (prevSummary != null && prevSummary.equals(productSummary)) {
-				// implied force=true, prevEvent!=null
-
-				// remove the previous version of this product summary
-				// so the new one can take its place
-				if (prevEvent != null) {
-					productIndex.removeAssociation(prevEvent, prevSummary);
-				} else {
-					LOGGER.fine("[" + getName()
-							+ "] reprocessing unassociated summary");
-				}
-				productIndex.removeProductSummary(prevSummary);
-			}
-			productSummary = productIndex.addProductSummary(productSummary);
-
-			Event event = null;
-			if (prevEvent == null) {
-				// No existing event, try to create one and associate
-				event = createEvent(productSummary);
-				if (event != null) {
-					LOGGER.finer("[" + getName() + "] created event indexid="
-							+ event.getIndexId());
-					event.log(LOGGER);
-				} else {
-					LOGGER.finer("[" + getName()
-							+ "] unable to create event for product.");
-				}
-			} else {
-				LOGGER.finer("[" + getName()
-						+ "] found existing event indexid="
-						+ prevEvent.getIndexId());
-				prevEvent.log(LOGGER);
-
-				// Existing event found associate to it
-				event = productIndex.addAssociation(prevEvent, productSummary);
-			}
-
-			// Can't split or merge a non-existent event
-			if (prevEvent != null && event != null) {
-				LOGGER.finer("[" + getName() + "] checking for event splits");
-				// Check for event splits
-				notification.addIndexerChanges(checkForEventSplits(
-						productSummary, prevEvent, event));
-			}
-
-			// Is this a problem??? split may modify the event, and then
-			// the unmodified version of that event is passed to merge???
-			// If this is a problem, checkForEventSplits and checkForEventMerges
-			// could be modified to accept the notification object (and add
-			// changes to it) and return the potentially modified object by
-			// reference.
-
-			if (event != null) {
-				LOGGER.finer("[" + getName() + "] checking for event merges");
-				// Check for event merges
-				notification.addIndexerChanges(checkForEventMerges(
-						productSummary, prevEvent, event));
-			}
-
-			// see if this is a trump product that needs special processing.
-			event = checkForTrump(event, productSummary, prevSummary);
-
-			// Set our notification indexer changes if not set yet
-			if (notification.getIndexerChanges().size() == 0) {
-				if (prevEvent == null && event != null) {
-					// No previous event, so event added.
-					notification.addIndexerChange(new IndexerChange(
-							IndexerChange.EVENT_ADDED, prevEvent, event));
-				} else if (prevEvent != null && event != null) {
-					// Previous existed so event updated.
-					notification.addIndexerChange(new IndexerChange(event
-							.isDeleted() ? IndexerChange.EVENT_DELETED
-							: IndexerChange.EVENT_UPDATED, prevEvent, event));
-				} else if (prevEvent == null && event == null) {
-					// No event existed or could be created.
-
-					if (prevSummary == null) {
-						// No previous summary, product added.
-						notification.addIndexerChange(new IndexerChange(
-								IndexerChange.PRODUCT_ADDED, null, null));
-					} else {
-						// Previous summary existed. Product updated.
-						notification
-								.addIndexerChange(new IndexerChange(
-										productSummary.isDeleted() ? IndexerChange.PRODUCT_DELETED
-												: IndexerChange.PRODUCT_UPDATED,
-										null, null));
-					}
-				}
-			}
-
-			LOGGER.finer("[" + getName()
-					+ "] updating event summary parameters");
-			// update preferred event parameters in index
-			productIndex.eventsUpdated(notification.getEvents());
+			productSummary = indexProductSummary(productSummary, notification);
 
 			LOGGER.finer("[" + getName() + "] committing transaction");
 			// Commit our changes to the index (after updating summary attrs)
 			productIndex.commitTransaction();
+			indexedProducts.add(productSummary.getId());
+			metrics.recordSince(getName(), "index.transaction", beginTransaction);
+			ProductTrace.addCurrentStage(getName(), "index.transaction",
+					beginTransactionMillis);
 		} catch (Exception e) {
 			LOGGER.log(Level.FINE, "[" + getName() + "] rolling back transaction", e);
 			// just rollback since it wasn't successful
 			productIndex.rollbackTransaction();
+			metrics.increment(getName(), "index.errors");
 
 			// send heartbeat info
 			HeartbeatListener.sendHeartbeatMessage(getName(),
@@ -826,11 +749,254 @@ public class Indexer extends DefaultNotificationListener {
 		// send heartbeat info
 		HeartbeatListener.sendHeartbeatMessage(getName(),
 				"indexed product", productSummary.getId().toString());
+		metrics.increment(getName(), "indexed");
 
 		// return summary after added to index
 		return productSummary;
 	}
 
+	/**
+	 * Add product summaries to product index in one transaction.
+	 *
+	 * Used to rebuild an index. Summaries are associated, split, and merged
+	 * in list order exactly like indexProduct, so the resulting index is the
+	 * same as calling indexProduct for each summary in order, but changes are
+	 * committed once instead of once per product.
+	 *
+	 * If any summary fails, the whole transaction is rolled back, and the
+	 * caller may retry summaries individually.
+	 *
+	 * @param summaries
+	 *            summaries to add, in order.
+	 * @param notify
+	 *            whether to notify listeners after the transaction commits.
+	 * @return summaries added to index.
+	 * @throws Exception
+	 *             if error occurs, nothing is added.
+	 */
+	public List<ProductSummary> indexProducts(
+			final List<ProductSummary> summaries, final boolean notify)
+			throws Exception {
+		// same lock order as onProduct, which calls indexProduct
+		synchronized (indexProductSync) {
+			synchronized (this) {
+				final List<ProductSummary> indexed = new ArrayList<ProductSummary>(
+						summaries.size());
+				final List<IndexerEvent> notifications = new ArrayList<IndexerEvent>(
+						summaries.size());
+				final long beginTransaction = metrics.startTimer();
+				productIndex.beginTransaction();
+				try {
+					for (ProductSummary summary : summaries) {
+						IndexerEvent notification = new IndexerEvent(this);
+						notification.setIndex(getProductIndex());
+						notification.setSummary(summary);
+						indexed.add(indexProductSummary(summary, notification));
+						notifications.add(notification);
+					}
+					productIndex.commitTransaction();
+					metrics.recordSince(getName(), "index.bulkTransaction",
+							beginTransaction);
+				} catch (Exception e) {
+					LOGGER.log(Level.FINE, "[" + getName()
+							+ "] rolling back bulk transaction", e);
+					productIndex.rollbackTransaction();
+					metrics.increment(getName(), "index.errors");
+					throw e;
+				}
+
+				for (ProductSummary summary : indexed) {
+					indexedProducts.add(summary.getId());
+				}
+				metrics.add(getName(), "indexed", indexed.size());
+				if (notify) {
+					for (IndexerEvent notification : notifications) {
+						try {
+							notifyListeners(notification);
+						} catch (Exception e) {
+							LOGGER.log(Level.WARNING, "[" + getName()
+									+ "] exception while notifying listeners", e);
+						}
+					}
+				}
+				return indexed;
+			}
+		}
+	}
+
+	/**
+	 * Add product summary to product index, within a transaction.
+	 *
+	 * Finds the previous version and event, associates, checks for splits,
+	 * merges, and trumps, and updates event summaries.
+	 *
+	 * @param productSummary
+	 *            summary to add.
+	 * @param notification
+	 *            event where indexer changes are added.
+	 * @return summary added to index.
+	 * @throws Exception
+	 *             if error occurs.
+	 */
+	private ProductSummary indexProductSummary(ProductSummary productSummary,
+			final IndexerEvent notification) throws Exception {
+		LOGGER.finer("[" + getName() + "] finding previous version");
+		// Check index for previous version of this product
+		ProductSummary prevSummary = getPrevProductVersion(productSummary);
+
+		LOGGER.finer("[" + getName() + "] finding previous event");
+		Event prevEvent = null;
+		boolean redundantProduct = isRedundantProduct(prevSummary, productSummary);
+		if (!redundantProduct) {
+			// Skip association queries and use existing product association
+			// performed in next branch (should be associated already if
+			// "redundant").
+
+			// Check index for existing event candidate
+			prevEvent = getPrevEvent(productSummary, true);
+		}
+
+		// may be an update/delete to a product that previously associated
+		// to an event, even though this product isn't associating on its
+		// own
+		if (prevSummary != null && prevEvent == null) {
+			// see if prevSummary associated with an event
+			ProductIndexQuery prevEventQuery = new ProductIndexQuery();
+			prevEventQuery.getProductIds().add(prevSummary.getId());
+			if (associateUsingCurrentProducts) {
+				prevEventQuery.setResultType(ProductIndexQuery.RESULT_TYPE_CURRENT);
+			}
+			List<Event> prevEvents = productIndex.getEvents(prevEventQuery);
+			if (prevEvents.size() != 0) {
+				// just use first (there can really only be one).
+				prevEvent = prevEvents.get(0);
+			}
+		}
+
+		// special handling to allow trump products to associate based on
+		// a product link. Not used when eventsource/eventsourcecode set.
+		if (prevEvent == null
+				&& productSummary.getId().getType().equals(TRUMP_PRODUCT_TYPE)
+				&& productSummary.getLinks().containsKey("product")
+				&& !productSummary.getStatus().equalsIgnoreCase(
+						Product.STATUS_DELETE)) {
+			// see if we can associate via another product
+			ProductIndexQuery otherEventQuery = new ProductIndexQuery();
+			otherEventQuery.getProductIds().add(
+					ProductId.parse(productSummary.getLinks()
+							.get("product").get(0).toString()));
+			if (associateUsingCurrentProducts) {
+				otherEventQuery.setResultType(ProductIndexQuery.RESULT_TYPE_CURRENT);
+			}
+			List<Event> prevEvents = productIndex
+					.getEvents(otherEventQuery);
+			if (prevEvents.size() != 0) {
+				// just use first (there can really only be one).
+				prevEvent = prevEvents.get(0);
+			}
+		}
+
+		// Add the summary to the index
+		LOGGER.finer("[" + getName() + "] adding summary to index");
+		if (prevSummary != null && prevSummary.equals(productSummary)) {
+			// implied force=true, prevEvent!=null
+
+			// remove the previous version of this product summary
+			// so the new one can take its place
+			if (prevEvent != null) {
+				productIndex.removeAssociation(prevEvent, prevSummary);
+			} else {
+				LOGGER.fine("[" + getName()
+						+ "] reprocessing unassociated summary");
+			}
+			productIndex.removeProductSummary(prevSummary);
+		}
+		productSummary = productIndex.addProductSummary(productSummary);
+
+		Event event = null;
+		if (prevEvent == null) {
+			// No existing event, try to create one and associate
+			event = createEvent(productSummary);
+			if (event != null) {
+				LOGGER.finer("[" + getName() + "] created event indexid="
+						+ event.getIndexId());
+				event.log(LOGGER);
+			} else {
+				LOGGER.finer("[" + getName()
+						+ "] unable to create event for product.");
+			}
+		} else {
+			LOGGER.finer("[" + getName()
+					+ "] found existing event indexid="
+					+ prevEvent.getIndexId());
+			prevEvent.log(LOGGER);
+
+			// Existing event found associate to it
+			event = productIndex.addAssociation(prevEvent, productSummary);
+		}
+
+		// Can't split or merge a non-existent event
+		if (prevEvent != null && event != null) {
+			LOGGER.finer("[" + getName() + "] checking for event splits");
+			// Check for event splits
+			notification.addIndexerChanges(checkForEventSplits(
+					productSummary, prevEvent, event));
+		}
+
+		// Is this a problem??? split may modify the event, and then
+		// the unmodified version of that event is passed to merge???
+		// If this is a problem, checkForEventSplits and checkForEventMerges
+		// could be modified to accept the notification object (and add
+		// changes to it) and return the potentially modified object by
+		// reference.
+
+		if (event != null) {
+			LOGGER.finer("[" + getName() + "] checking for event merges");
+			// Check for event merges
+			notification.addIndexerChanges(checkForEventMerges(
+					productSummary, prevEvent, event));
+		}
+
+		// see if this is a trump product that needs special processing.
+		event = checkForTrump(event, productSummary, prevSummary);
+
+		// Set our notification indexer changes if not set yet
+		if (notification.getIndexerChanges().size() == 0) {
+			if (prevEvent == null && event != null) {
+				// No previous event, so event added.
+				notification.addIndexerChange(new IndexerChange(
+						IndexerChange.EVENT_ADDED, prevEvent, event));
+			} else if (prevEvent != null && event != null) {
+				// Previous existed so event updated.
+				notification.addIndexerChange(new IndexerChange(event
+						.isDeleted() ? IndexerChange.EVENT_DELETED
+						: IndexerChange.EVENT_UPDATED, prevEvent, event));
+			} else if (prevEvent == null && event == null) {
+				// No event existed or could be created.
+
+				if (prevSummary == null) {
+					// No previous summary, product added.
+					notification.addIndexerChange(new IndexerChange(
+							IndexerChange.PRODUCT_ADDED, null, null));
+				} else {
+					// Previous summary existed. Product updated.
+					notification
+							.addIndexerChange(new IndexerChange(
+									productSummary.isDeleted() ? IndexerChange.PRODUCT_DELETED
+											: IndexerChange.PRODUCT_UPDATED,
+									null, null));
+				}
+			}
+		}
+
+		LOGGER.finer("[" + getName()
+				+ "] updating event summary parameters");
+		// update preferred event parameters in index
+		productIndex.eventsUpdated(notification.getEvents());
+
+		return productSummary;
+	}
+
 	/**
 	 * Check whether two products are redundant, meaning would not affect event
 	 * associations and indexer can skip split/merge steps.
@@ -1804,9 +1970,17 @@ public class Indexer extends DefaultNotificationListener {
 					SEARCH_THREADS_PROPERTY, DEFAULT_SEARCH_THREADS));
 			searchSocket.setThreads(searchThreads);
 
+			serializedProducts.setMaxBytes(Long.parseLong(config.getProperty(
+					SEARCH_PRODUCT_CACHE_SIZE_PROPERTY,
+					DEFAULT_SEARCH_PRODUCT_CACHE_SIZE)));
+			serializedProducts.setMaxPayloadBytes(Long.parseLong(config.getProperty(
+					SEARCH_PRODUCT_CACHE_MAX_PRODUCT_PROPERTY,
+					DEFAULT_SEARCH_PRODUCT_CACHE_MAX_PRODUCT)));
+
 			LOGGER.config("[" + getName()
 					+ "] SearchServerSocket running at localhost:" + searchPort
-					+ ", with " + searchThreads + " threads");
+					+ ", with " + searchThreads + " threads, caching "
+					+ serializedProducts.getMaxBytes() + " bytes of products");
 		}
 		// -- Load dependent configurations -- //
 
@@ -1815,6 +1989,73 @@ public class Indexer extends DefaultNotificationListener {
 				DEFAULT_ASSOCIATE_USING_CURRENT_PRODUCTS));
 		LOGGER.config("[" + getName() + "] associateUsingCurrentProducts = "
 				+ associateUsingCurrentProducts);
+
+		String presenceFilter = config.getProperty(PRESENCE_FILTER_PROPERTY);
+		if (presenceFilter != null) {
+			presenceFilterEnabled = Boolean.valueOf(presenceFilter);
+			LOGGER.config("[" + getName() + "] presenceFilter = "
+					+ presenceFilterEnabled);
+		}
+	}
+
+	/**
+	 * Load ids of indexed products into memory, if enabled.
+	 *
+	 * Only JDBCProductIndex supports loading ids. MySQL indexes are skipped
+	 * unless presenceFilter is configured, since other processes may update
+	 * the same index.
+	 */
+	protected void loadIndexedProducts() {
+		indexedProducts.clear();
+		if (!(productIndex instanceof JDBCProductIndex)) {
+			return;
+		}
+		JDBCProductIndex jdbcProductIndex = (JDBCProductIndex) productIndex;
+		boolean enabled = (presenceFilterEnabled != null)
+				? presenceFilterEnabled
+				: !String.valueOf(jdbcProductIndex.getDriver()).contains("mysql");
+		if (!enabled) {
+			return;
+		}
+		final long start = System.currentTimeMillis();
+		synchronized (indexProductSync) {
+			try {
+				indexedProducts.beginLoad();
+				jdbcProductIndex.beginTransaction();
+				try {
+					jdbcProductIndex.loadProductIds(indexedProducts);
+					jdbcProductIndex.commitTransaction();
+				} catch (Exception e) {
+					jdbcProductIndex.rollbackTransaction();
+					throw e;
+				}
+				indexedProducts.endLoad();
+				LOGGER.info("[" + getName() + "] loaded presence filter with "
+						+ indexedProducts.size() + " products in "
+						+ (System.currentTimeMillis() - start) + " ms");
+			} catch (Exception e) {
+				LOGGER.log(Level.WARNING, "[" + getName()
+						+ "] exception loading presence filter,"
+						+ " checking index instead", e);
+				indexedProducts.clear();
+			}
+		}
+	}
+
+	/**
+	 * @return ids of indexed products, loaded during startup.
+	 */
+	public ProductPresenceFilter getIndexedProducts() {
+		return indexedProducts;
+	}
+
+	/**
+	 * @param presenceFilterEnabled
+	 *            whether to load ids of indexed products during startup,
+	 *            or null to enable except for MySQL indexes.
+	 */
+	public void setPresenceFilterEnabled(final Boolean presenceFilterEnabled) {
+		this.presenceFilterEnabled = presenceFilterEnabled;
 	}
 
 	/**
@@ -1838,6 +2079,7 @@ public class Indexer extends DefaultNotificationListener {
 			LOGGER.log(Level.WARNING, "[" + getName()
 					+ "] exception shutting down product index", e);
 		}
+		indexedProducts.clear();
 		productStorage.shutdown();
 
 		// ExecutorServices tied to known listeners.
@@ -1947,6 +2189,8 @@ public class Indexer extends DefaultNotificationListener {
 			readProductIndex = productIndex;
 		}
 
+		loadIndexedProducts();
+
 		// Cleanup thread to purge old products
 		if (archivePolicies.size() > 0) {
 			// Instantiate a timer object
@@ -2061,21 +2305,24 @@ public class Indexer extends DefaultNotificationListener {
 						+ policy.getName() + ")");
 
 				try {
-					// Get a list of those products
-					List<ProductSummary> expiredProducts;
+					// Get a list of those products, compacted while they are
+					// removed one transaction at a time
+					List<CompactProductSummary> expiredProducts;
 
 					if (productPolicy.isOnlyUnassociated()) {
-						expiredProducts = productIndex
-								.getUnassociatedProducts(query);
+						expiredProducts = CompactProductSummary.compact(
+								productIndex.getUnassociatedProducts(query));
 					} else {
-						expiredProducts = productIndex.getProducts(query);
+						expiredProducts = CompactProductSummary.compact(
+								productIndex.getProducts(query));
 					}
 
 					// Loop over list of expired products and remove each one
-					Iterator<ProductSummary> productIter = expiredProducts
+					Iterator<CompactProductSummary> productIter = expiredProducts
 							.iterator();
 					while (productIter.hasNext()) {
-						ProductSummary product = productIter.next();
+						ProductSummary product = productIter.next()
+								.toProductSummary();
 
 						LOGGER.info("[" + getName() + "] archiving product "
 								+ product.getId().toString());
@@ -2108,6 +2355,17 @@ public class Indexer extends DefaultNotificationListener {
 			}
 		}
 
+		if ((counts[0] > 0 || counts[1] > 0)
+				&& productIndex instanceof JDBCConnection) {
+			// release pages freed by archiving
+			try {
+				((JDBCConnection) productIndex).incrementalVacuum();
+			} catch (Exception e) {
+				LOGGER.log(Level.WARNING, "[" + getName()
+						+ "] exception during incremental vacuum", e);
+			}
+		}
+
 		return counts;
 	}
 
@@ -2127,7 +2385,10 @@ public class Indexer extends DefaultNotificationListener {
 			ProductSummary summary = summaryIter.next();
 			// Remove product from storage
 			productStorage.removeProduct(summary.getId());
-			// Remove product summary from index
+			serializedProducts.remove(summary.getId());
+			// Remove product summary from index, before commit since a
+			// missing id is only reprocessed
+			indexedProducts.remove(summary.getId());
 			productIndex.removeProductSummary(summary);
 		}
 
@@ -2160,7 +2421,9 @@ public class Indexer extends DefaultNotificationListener {
 
 		// Remove product from storage
 		productStorage.removeProduct(summary.getId());
+		serializedProducts.remove(summary.getId());
 		// Remove product summary from index
+		indexedProducts.remove(summary.getId());
 		productIndex.removeProductSummary(summary);
 
 		// if product was associated to event need to update index
@@ -2208,6 +2471,10 @@ public class Indexer extends DefaultNotificationListener {
 	/**
 	 * Search for products in this index.
 	 *
+	 * When a query has a limit, and a full page of events or product summaries
+	 * is returned, the query nextCursor is set to continue after the last
+	 * result.
+	 *
 	 * @param request
 	 *            the search request.
 	 * @return the search response.
@@ -2221,29 +2488,53 @@ public class Indexer extends DefaultNotificationListener {
 		Iterator<SearchQuery> iter = request.getQueries().iterator();
 		while (iter.hasNext()) {
 			SearchQuery query = iter.next();
+			query.setNextCursor(null);
 
 			if (query instanceof EventsSummaryQuery) {
 				List<EventSummary> eventSummaries = new LinkedList<EventSummary>();
-				Iterator<Event> events = productIndex.getEvents(
-						query.getProductIndexQuery()).iterator();
-				// convert events to event summaries
-				while (events.hasNext()) {
-					Event event = events.next();
-					eventSummaries.add(event.getEventSummary());
+				if (productIndex instanceof JDBCProductIndex
+						&& ((JDBCProductIndex) productIndex).isEventSummaryQuery(
+								query.getProductIndexQuery())) {
+					// answer from eventSummary table, without product summaries
+					eventSummaries.addAll(((JDBCProductIndex) productIndex)
+							.getEventSummaries(query.getProductIndexQuery()));
+				} else {
+					List<Event> events = productIndex.getEvents(
+							query.getProductIndexQuery());
+					// convert events to event summaries
+					for (Event event : events) {
+						eventSummaries.add(event.getEventSummary());
+					}
 				}
 				((EventsSummaryQuery) query).setResult(eventSummaries);
+				setNextEventCursor(query, eventSummaries.stream()
+						.map(EventSummary::getIndexId)
+						.collect(Collectors.toList()));
 			}
 
 			else if (query instanceof EventDetailQuery) {
 				List<Event> events = productIndex.getEvents(query
 						.getProductIndexQuery());
 				((EventDetailQuery) query).setResult(events);
+				setNextEventCursor(query, events.stream()
+						.map(Event::getIndexId)
+						.collect(Collectors.toList()));
 			}
 
 			else if (query instanceof ProductsSummaryQuery) {
 				List<ProductSummary> products = productIndex.getProducts(query
 						.getProductIndexQuery());
 				((ProductsSummaryQuery) query).setResult(products);
+				// product pages continue by index id, unless otherwise ordered
+				Integer limit = query.getProductIndexQuery().getLimit();
+				if (limit != null && products.size() >= limit
+						&& products.size() > 0
+						&& query.getProductIndexQuery().getOrderBy() == null) {
+					Long last = products.get(products.size() - 1).getIndexId();
+					if (last != null) {
+						query.setNextCursor(last + 1);
+					}
+				}
 			}
 
 			else if (query instanceof ProductDetailQuery) {
@@ -2267,6 +2558,27 @@ public class Indexer extends DefaultNotificationListener {
 		return response;
 	}
 
+	/**
+	 * Set the nextCursor of an event query that returned a full page.
+	 *
+	 * @param query
+	 *            the query.
+	 * @param eventIndexIds
+	 *            index ids of events found by query, in order.
+	 */
+	private void setNextEventCursor(final SearchQuery query,
+			final List<Long> eventIndexIds) {
+		Integer limit = query.getProductIndexQuery().getLimit();
+		if (limit == null || eventIndexIds.size() == 0
+				|| eventIndexIds.size() < limit) {
+			return;
+		}
+		Long last = eventIndexIds.get(eventIndexIds.size() - 1);
+		if (last != null) {
+			query.setNextCursor(last + 1);
+		}
+	}
+
 	/** @return disableArchive */
 	public boolean isDisableArchive() {
 		return disableArchive;
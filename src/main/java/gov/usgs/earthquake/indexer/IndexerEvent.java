@@ -3,6 +3,7 @@
  */
 package gov.usgs.earthquake.indexer;
 
+import gov.usgs.earthquake.distribution.ProductTrace;
 import gov.usgs.earthquake.product.Product;
 
 import java.util.EventObject;
@@ -36,6 +37,9 @@ public class IndexerEvent extends EventObject {
 	 */
 	private Vector<IndexerChange> indexerChanges = null;
 
+	/** Trace for product that triggered this change, or null. */
+	private transient ProductTrace trace = null;
+
 	/**
 	 * Construct a new IndexerEvent.
 	 *
@@ -48,6 +52,16 @@ public class IndexerEvent extends EventObject {
 		this.indexerChanges = new Vector<IndexerChange>(5, 5);
 	}
 
+	/** @return trace for product that triggered this change, or null. */
+	public ProductTrace getTrace() {
+		return trace;
+	}
+
+	/** @param trace trace for product that triggered this change, or null. */
+	public void setTrace(final ProductTrace trace) {
+		this.trace = trace;
+	}
+
 	/** @return Indexer */
 	public Indexer getIndexer() {
 		return (Indexer) getSource();
@@ -1,6 +1,9 @@
 package gov.usgs.earthquake.indexer;
 
+import gov.usgs.earthquake.distribution.ProductTrace;
+import gov.usgs.earthquake.distribution.ProductTracer;
 import gov.usgs.earthquake.distribution.ProductTracker;
+import gov.usgs.util.metrics.MetricsRegistry;
 
 import java.util.concurrent.Callable;
 import java.util.logging.Level;
@@ -18,6 +21,9 @@ public class IndexerListenerCallable implements Callable<Void> {
 	private final IndexerListener listener;
 	private final IndexerEvent event;
 
+	/** When this callable was created, usually when it was queued. */
+	private final long queued = System.currentTimeMillis();
+
 	/**
 	 * Get a callable object for deferred listener notification.
 	 *
@@ -33,10 +39,26 @@ public class IndexerListenerCallable implements Callable<Void> {
 	}
 
 	public Void call() throws Exception {
+		final MetricsRegistry metrics = MetricsRegistry.getDefault();
+		final long beginDelivery = metrics.startTimer();
+		final ProductTrace trace = event.getTrace();
+		final long beginDeliveryMillis = System.currentTimeMillis();
+		if (trace != null) {
+			trace.addStage(listener.getName(), "queue", queued,
+					beginDeliveryMillis);
+			ProductTrace.setCurrent(trace);
+		}
 		try {
 			listener.onIndexerEvent(event);
+			metrics.recordSince(listener.getName(), "deliver", beginDelivery);
+			if (trace != null) {
+				trace.addStage(listener.getName(), "deliver",
+						beginDeliveryMillis, System.currentTimeMillis());
+				ProductTracer.getDefault().complete(trace, listener.getName());
+			}
 			return null;
 		} catch (Exception e) {
+			metrics.increment(listener.getName(), "deliver.errors");
 			ProductSummary summary = event.getSummary();
 
 			LOGGER.log(Level.WARNING, "["
@@ -55,6 +77,8 @@ public class IndexerListenerCallable implements Callable<Void> {
 
 			// but rethrow for outside handling
 			throw e;
+		} finally {
+			ProductTrace.setCurrent(null);
 		}
 	}
 
@@ -5,6 +5,7 @@ package gov.usgs.earthquake.indexer;
 
 import gov.usgs.earthquake.product.ProductId;
 import gov.usgs.earthquake.util.JDBCConnection;
+import gov.usgs.earthquake.util.ProductPresenceFilter;
 import gov.usgs.util.Config;
 import gov.usgs.util.JDBCUtils;
 import gov.usgs.util.StreamUtils;
@@ -15,18 +16,23 @@ import java.math.BigDecimal;
 import java.net.URI;
 import java.net.URL;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -114,8 +120,64 @@ public class JDBCProductIndex extends JDBCConnection implements ProductIndex {
 	// private static final String SUMMARY_LINK_RELATION = "relation";
 	// private static final String SUMMARY_LINK_URL = "url";
 
+	/** Property to maintain and query the eventSummary table. */
+	public static final String EVENT_SUMMARY_PROPERTY = "eventSummary";
+	/** Default is to not maintain the eventSummary table. */
+	public static final String DEFAULT_EVENT_SUMMARY = "false";
+
+	/** Number of events per transaction when populating eventSummary. */
+	private static final int EVENT_SUMMARY_BACKFILL_SIZE = 500;
+
+	/**
+	 * Portable schema for the eventSummary tables, created by startup when
+	 * missing. See also etc/schema/productIndexSchema*.sql.
+	 */
+	private static final String[] EVENT_SUMMARY_SCHEMA = new String[] {
+		"CREATE TABLE eventSummary ("
+				+ " eventId BIGINT PRIMARY KEY,"
+				+ " updated BIGINT,"
+				+ " source VARCHAR(255),"
+				+ " sourceCode VARCHAR(255),"
+				+ " eventTime BIGINT,"
+				+ " latitude DOUBLE PRECISION,"
+				+ " longitude DOUBLE PRECISION,"
+				+ " depth DOUBLE PRECISION,"
+				+ " magnitude DOUBLE PRECISION,"
+				+ " status VARCHAR(255),"
+				+ " productTypes TEXT,"
+				+ " eventCodes TEXT"
+				+ ")",
+		"CREATE TABLE eventSummaryCode ("
+				+ " eventId BIGINT,"
+				+ " source VARCHAR(255),"
+				+ " code VARCHAR(255),"
+				+ " preferred INTEGER"
+				+ ")",
+		"CREATE INDEX eventSummaryTimeIdx"
+				+ " ON eventSummary (eventTime, latitude, longitude)",
+		"CREATE INDEX eventSummaryMagnitudeIdx"
+				+ " ON eventSummary (magnitude)",
+		"CREATE INDEX eventSummaryCodeIdx"
+				+ " ON eventSummaryCode (source, code)",
+		"CREATE INDEX eventSummaryCodeEventIdx"
+				+ " ON eventSummaryCode (eventId)"
+	};
+
+	/**
+	 * Has a row once eventSummary is populated from existing events, so an
+	 * interrupted backfill is repeated at the next startup.
+	 */
+	private static final String EVENT_SUMMARY_BACKFILL_SCHEMA =
+			"CREATE TABLE eventSummaryBackfill (completed BIGINT)";
+
 	private String index_file;
 
+	/** Whether eventsUpdated maintains the eventSummary table. */
+	private boolean eventSummaryEnabled = Boolean.valueOf(DEFAULT_EVENT_SUMMARY);
+
+	/** Whether the eventSummary table is populated and can answer queries. */
+	private volatile boolean eventSummaryReady = false;
+
 	/**
 	 * Constructor. Sets index_file to the default value JDBC_DEFAULT_FILE
 	 *
@@ -156,6 +218,23 @@ public class JDBCProductIndex extends JDBCConnection implements ProductIndex {
 		if (index_file == null || "".equals(index_file)) {
 			index_file = JDBC_DEFAULT_FILE;
 		}
+
+		eventSummaryEnabled = Boolean.valueOf(config.getProperty(
+				EVENT_SUMMARY_PROPERTY, DEFAULT_EVENT_SUMMARY));
+		LOGGER.config("[" + getName() + "] maintain event summary table = "
+				+ eventSummaryEnabled);
+	}
+
+	/**
+	 * Connect to the database, and create the eventSummary tables when
+	 * enabled and missing.
+	 */
+	@Override
+	public void startup() throws Exception {
+		super.startup();
+		if (eventSummaryEnabled) {
+			createEventSummaryTables();
+		}
 	}
 
 	/**
@@ -200,71 +279,85 @@ public class JDBCProductIndex extends JDBCConnection implements ProductIndex {
 	 * @return List of Event objects
 	 */
 	@Override
-	public synchronized List<Event> getEvents(ProductIndexQuery query)
+	public List<Event> getEvents(ProductIndexQuery query)
 			throws Exception {
-		if (query == null) {
-			return new ArrayList<Event>();
-		}
-		// map of events (index id => event), so products can be added incrementally
-		final Map<Long, Event> events = new HashMap<>();
-		// all products for loading details
-		ArrayList<ProductSummary> products = new ArrayList<>();
-
-		// Build up our clause list like always
-		// These clauses may only match certain products within events,
-		// and are used to find a list of event ids
-		List<String> clauses = buildProductClauses(query);
-
-		// Build the SQL Query from our ProductIndexQuery object
-		String sql = "SELECT DISTINCT ps2.*"
-				+ " FROM productSummary ps2,"
-				+ " (SELECT DISTINCT e.id FROM event e, productSummary p"
-				+ " WHERE e.id=p.eventId";
-		// Add all appropriate where clauses
-		for (final String clause : clauses) {
-			sql = sql + " AND " + clause;
-		}
-		sql = sql + ") eventids"
-				+ " WHERE ps2.eventid=eventids.id";
-
-		// add current clause to outer query
-		if (query.getResultType() == ProductIndexQuery.RESULT_TYPE_CURRENT) {
-			sql = sql + " AND NOT EXISTS ("
-					+ " SELECT * FROM productSummary"
-					+ " WHERE source=ps2.source"
-					+ " AND type=ps2.type"
-					+ " AND code=ps2.code"
-					+ " AND updateTime>ps2.updateTime"
-					+ ")";
-		}
+		return read(() -> {
+			if (query == null) {
+				return new ArrayList<Event>();
+			}
+			// map of events (index id => event), so products can be added incrementally,
+			// sorted by index id so pages can continue after the last event
+			final Map<Long, Event> events = new TreeMap<>();
+			// all products for loading details
+			ArrayList<ProductSummary> products = new ArrayList<>();
+
+			// Build up our clause list like always
+			// These clauses may only match certain products within events,
+			// and are used to find a list of event ids
+			List<String> clauses = buildProductClauses(query);
+
+			// Build the SQL Query from our ProductIndexQuery object
+			String sql = "SELECT DISTINCT ps2.*"
+					+ " FROM productSummary ps2,"
+					+ " (SELECT DISTINCT e.id FROM event e, productSummary p"
+					+ " WHERE e.id=p.eventId";
+			// Add all appropriate where clauses
+			for (final String clause : clauses) {
+				sql = sql + " AND " + clause;
+			}
+			// keyset pagination on event index id
+			final Long minEventIndexId = query.getMinEventIndexId();
+			if (minEventIndexId != null) {
+				sql = sql + String.format(" AND %s.id>=%d", EVENT_TABLE_ALIAS,
+						minEventIndexId);
+			}
+			final Integer limit = query.getLimit();
+			if (limit != null) {
+				sql = sql + String.format(" ORDER BY %s.id LIMIT %d",
+						EVENT_TABLE_ALIAS, limit);
+			}
+			sql = sql + ") eventids"
+					+ " WHERE ps2.eventid=eventids.id";
+
+			// add current clause to outer query
+			if (query.getResultType() == ProductIndexQuery.RESULT_TYPE_CURRENT) {
+				sql = sql + " AND NOT EXISTS ("
+						+ " SELECT * FROM productSummary"
+						+ " WHERE source=ps2.source"
+						+ " AND type=ps2.type"
+						+ " AND code=ps2.code"
+						+ " AND updateTime>ps2.updateTime"
+						+ ")";
+			}
 
-		// load event products
-		try (
-			final PreparedStatement statement = getConnection().prepareStatement(sql);
-			final ResultSet results = statement.executeQuery();
-		) {
-			statement.setQueryTimeout(60);
-			while (results.next()) {
-				// eventid not part of product summary object,
-				// so need to do this as products are parsed...
-				final Long id = results.getLong("eventId");
-				Event event = events.get(id);
-				if (event == null) {
-					// create event to hold products
-					event = new Event();
-					event.setIndexId(id);
-					events.put(id, event);
+			// load event products
+			try (
+				final PreparedStatement statement = getConnection().prepareStatement(sql);
+				final ResultSet results = statement.executeQuery();
+			) {
+				statement.setQueryTimeout(60);
+				while (results.next()) {
+					// eventid not part of product summary object,
+					// so need to do this as products are parsed...
+					final Long id = results.getLong("eventId");
+					Event event = events.get(id);
+					if (event == null) {
+						// create event to hold products
+						event = new Event();
+						event.setIndexId(id);
+						events.put(id, event);
+					}
+					final ProductSummary productSummary = parseProductSummary(results);
+					event.addProduct(productSummary);
+					products.add(productSummary);
 				}
-				final ProductSummary productSummary = parseProductSummary(results);
-				event.addProduct(productSummary);
-				products.add(productSummary);
 			}
-		}
 
-		// load product details
-		loadProductSummaries(products);
+			// load product details
+			loadProductSummaries(products);
 
-		return events.values().stream().collect(Collectors.toList());
+			return events.values().stream().collect(Collectors.toList());
+		});
 	}
 
 	/**
@@ -351,6 +444,10 @@ public class JDBCProductIndex extends JDBCConnection implements ProductIndex {
 			LOGGER.finest("[" + getName() + "] Removed event id=" + id);
 		}
 
+		if (eventSummaryEnabled) {
+			removeEventSummary(id);
+		}
+
 		return productIds;
 	}
 
@@ -364,38 +461,40 @@ public class JDBCProductIndex extends JDBCConnection implements ProductIndex {
 	 *             when query event search type is SEARCH_EVENT_PREFERRED.
 	 */
 	@Override
-	public synchronized List<ProductSummary> getUnassociatedProducts(
+	public List<ProductSummary> getUnassociatedProducts(
 			ProductIndexQuery query) throws Exception {
-		if (query.getEventSearchType() == ProductIndexQuery.SEARCH_EVENT_PREFERRED) {
-			throw new IllegalArgumentException(
-					"getUnassociatedProducts does not support SEARCH_EVENT_PREFERRED");
-		}
+		return read(() -> {
+			if (query.getEventSearchType() == ProductIndexQuery.SEARCH_EVENT_PREFERRED) {
+				throw new IllegalArgumentException(
+						"getUnassociatedProducts does not support SEARCH_EVENT_PREFERRED");
+			}
 
-		final ArrayList<ProductSummary> products = new ArrayList<ProductSummary>();
+			final ArrayList<ProductSummary> products = new ArrayList<ProductSummary>();
 
-		final List<String> clauseList = buildProductClauses(query);
-		// Add the unassociated quantifier to the clause list
-		clauseList.add("eventId IS NULL");
-		final String sql = buildProductQuery(clauseList);
+			final List<String> clauseList = buildProductClauses(query);
+			// Add the unassociated quantifier to the clause list
+			clauseList.add("eventId IS NULL");
+			final String sql = buildProductQuery(clauseList);
 
-		try (
-			final PreparedStatement statement = getConnection().prepareStatement(sql);
-		) {
-			statement.setQueryTimeout(60);
 			try (
-				final ResultSet results = statement.executeQuery();
+				final PreparedStatement statement = getConnection().prepareStatement(sql);
 			) {
-				// Now lets build product objects from each row in the result set
-				while (results.next()) {
-					products.add(parseProductSummary(results));
+				statement.setQueryTimeout(60);
+				try (
+					final ResultSet results = statement.executeQuery();
+				) {
+					// Now lets build product objects from each row in the result set
+					while (results.next()) {
+						products.add(parseProductSummary(results));
+					}
 				}
 			}
-		}
 
-		// load properties and links
-		loadProductSummaries(products);
+			// load properties and links
+			loadProductSummaries(products);
 
-		return products;
+			return products;
+		});
 	}
 
 	/**
@@ -409,7 +508,7 @@ public class JDBCProductIndex extends JDBCConnection implements ProductIndex {
 	 *             when query event search type is SEARCH_EVENT_PREFERRED.
 	 */
 	@Override
-	public synchronized List<ProductSummary> getProducts(ProductIndexQuery query)
+	public List<ProductSummary> getProducts(ProductIndexQuery query)
 			throws Exception {
 		// load full product summaries by default
 		return getProducts(query, true);
@@ -428,37 +527,42 @@ public class JDBCProductIndex extends JDBCConnection implements ProductIndex {
 	 * @throws Exception
 	 *     if error occurs
 	 */
-	public synchronized List<ProductSummary> getProducts(ProductIndexQuery query, final boolean loadDetails)
+	public List<ProductSummary> getProducts(ProductIndexQuery query, final boolean loadDetails)
 			throws Exception {
-		final List<String> clauseList = buildProductClauses(query);
-		final String sql = buildProductQuery(clauseList);
+		return read(() -> {
+			final List<String> clauseList = buildProductClauses(query);
+			final String sql = buildProductQuery(clauseList, buildOrderBy(query));
 
-		final List<ProductSummary> products = new LinkedList<ProductSummary>();
-		try (
-			final PreparedStatement statement = getConnection().prepareStatement(sql);
-		) {
-			statement.setQueryTimeout(60);
+			final List<ProductSummary> products = new LinkedList<ProductSummary>();
 			try (
-				final ResultSet results = statement.executeQuery();
+				final PreparedStatement statement = getConnection().prepareStatement(sql);
 			) {
-				// Now lets build product objects from each row in the result set
-				while (results.next()) {
-					products.add(parseProductSummary(results));
+				statement.setQueryTimeout(60);
+				try (
+					final ResultSet results = statement.executeQuery();
+				) {
+					// Now lets build product objects from each row in the result set
+					while (results.next()) {
+						products.add(parseProductSummary(results));
+					}
 				}
 			}
-		}
 
-		if (loadDetails) {
-			// load properties and links
-			loadProductSummaries(products);
-		}
+			if (loadDetails) {
+				// load properties and links
+				loadProductSummaries(products);
+			}
 
-		return products;
+			return products;
+		});
 	}
 
 	/**
 	 * Check whether product summary is in index.
 	 *
+	 * Always uses the writer connection, since readers may lag behind and
+	 * cause products to be indexed twice.
+	 *
 	 * @param id
 	 *     product to search.
 	 */
@@ -483,6 +587,38 @@ public class JDBCProductIndex extends JDBCConnection implements ProductIndex {
 		}
 	}
 
+	/**
+	 * Load ids of all product summaries in index.
+	 *
+	 * Reads only identifier columns, so large indexes can be loaded without
+	 * creating summaries.
+	 *
+	 * @param filter
+	 *     filter where ids are added using addLoaded.
+	 * @return number of ids loaded.
+	 * @throws Exception if error occurs
+	 */
+	public synchronized int loadProductIds(final ProductPresenceFilter filter)
+			throws Exception {
+		final String sql = "SELECT source, type, code, updateTime"
+				+ " FROM productSummary";
+		int count = 0;
+		try (
+			final PreparedStatement statement = getConnection().prepareStatement(sql);
+			final ResultSet results = statement.executeQuery();
+		) {
+			while (results.next()) {
+				filter.addLoaded(new ProductId(
+						results.getString(1),
+						results.getString(2),
+						results.getString(3),
+						new Date(results.getLong(4))));
+				count++;
+			}
+		}
+		return count;
+	}
+
 	/**
 	 * Add a product summary to the database
 	 *
@@ -729,18 +865,16 @@ public class JDBCProductIndex extends JDBCConnection implements ProductIndex {
 		// handle it gracefully
 		if (productsList != null) {
 			// remove all product with given source, type, and code
-			Iterator<ProductSummary> iter = productsList.iterator();
+			// (using removeProduct so cached event views are updated,
+			// it also removes the list when it becomes empty)
+			Iterator<ProductSummary> iter = new ArrayList<ProductSummary>(
+					productsList).iterator();
 			while (iter.hasNext()) {
-				ProductId id = iter.next().getId();
-				if (id.isSameProduct(summary.getId())) {
-					iter.remove();
+				ProductSummary next = iter.next();
+				if (next.getId().isSameProduct(summary.getId())) {
+					updatedEvent.removeProduct(next);
 				}
 			}
-			if (productsList.size() == 0) {
-				// if this was the last product of that type, remove the list
-				// too
-				updatedEvent.getAllProducts().remove(summary.getType());
-			}
 		} else {
 			LOGGER.warning("Products list is empty for summary type "
 					+ summary.getId().toString()
@@ -958,7 +1092,8 @@ public class JDBCProductIndex extends JDBCConnection implements ProductIndex {
 
 		Long minProductIndexId = query.getMinProductIndexId();
 		if (minProductIndexId != null) {
-			clauseList.add(String.format("%s>=%d", SUMMARY_PRODUCT_INDEX_ID, minProductIndexId));
+			clauseList.add(String.format("%s.%s>=%d", SUMMARY_TABLE_ALIAS,
+					SUMMARY_PRODUCT_INDEX_ID, minProductIndexId));
 		}
 
 		BigDecimal minLon = query.getMinEventLongitude();
@@ -1032,6 +1167,31 @@ public class JDBCProductIndex extends JDBCConnection implements ProductIndex {
 		return query_text;
 	}
 
+	/**
+	 * Build the ORDER BY and LIMIT clauses for a product query.
+	 *
+	 * When a limit is set without an orderBy, products are ordered by index id
+	 * so a page can be continued using minProductIndexId.
+	 *
+	 * @param query query with optional orderBy and limit
+	 * @return ORDER BY and LIMIT clauses, or an empty string
+	 */
+	protected String buildOrderBy(final ProductIndexQuery query) {
+		String orderBy = query.getOrderBy();
+		final Integer limit = query.getLimit();
+		if (orderBy == null && limit != null) {
+			orderBy = SUMMARY_TABLE_ALIAS + "." + SUMMARY_PRODUCT_INDEX_ID;
+		}
+		String clause = "";
+		if (orderBy != null) {
+			clause = "ORDER BY " + orderBy;
+		}
+		if (limit != null) {
+			clause = clause + " LIMIT " + limit;
+		}
+		return clause;
+	}
+
 	/**
 	 * Create the full SELECT query for the products table using the clauseList
 	 * as the WHERE clause. This method is a wrapper for
@@ -1051,7 +1211,7 @@ public class JDBCProductIndex extends JDBCConnection implements ProductIndex {
 	 * @param summaries List of ProductSummaries
 	 * @throws Exception if error occurs
 	 */
-	protected synchronized void loadProductSummaries(final List<ProductSummary> summaries)
+	protected void loadProductSummaries(final List<ProductSummary> summaries)
 			throws Exception {
 		if (summaries.size() == 0) {
 			// nothing to load
@@ -1446,6 +1606,449 @@ public class JDBCProductIndex extends JDBCConnection implements ProductIndex {
 				}
 			}
 		}
+
+		if (eventSummaryEnabled) {
+			updateEventSummaries(events);
+		}
+	}
+
+	/**
+	 * Create the eventSummary tables if they do not exist, and populate them
+	 * from existing events unless a previous startup completed populating.
+	 *
+	 * Queries are not answered from the eventSummary table until populated.
+	 *
+	 * @throws Exception if error occurs
+	 */
+	protected synchronized void createEventSummaryTables() throws Exception {
+		eventSummaryReady = false;
+		final Connection conn = getConnection();
+		if (!hasTable("eventSummary")) {
+			LOGGER.info("[" + getName() + "] creating event summary tables");
+			try (final Statement statement = conn.createStatement()) {
+				for (final String sql : EVENT_SUMMARY_SCHEMA) {
+					statement.executeUpdate(sql);
+				}
+			}
+		}
+		if (!hasTable("eventSummaryBackfill")) {
+			try (final Statement statement = conn.createStatement()) {
+				statement.executeUpdate(EVENT_SUMMARY_BACKFILL_SCHEMA);
+			}
+		}
+		try (
+			final Statement statement = conn.createStatement();
+			final ResultSet results = statement.executeQuery(
+					"SELECT completed FROM eventSummaryBackfill");
+		) {
+			if (results.next()) {
+				eventSummaryReady = true;
+				return;
+			}
+		}
+
+		// populate from existing events, one page at a time. Rows are
+		// replaced, so repeating part of an interrupted backfill is safe
+		long count = 0;
+		Long minEventIndexId = 0L;
+		while (minEventIndexId != null) {
+			final ProductIndexQuery query = new ProductIndexQuery();
+			query.setMinEventIndexId(minEventIndexId);
+			query.setLimit(EVENT_SUMMARY_BACKFILL_SIZE);
+			final List<Event> events = getEvents(query);
+			beginTransaction();
+			try {
+				updateEventSummaries(events);
+				commitTransaction();
+			} catch (Exception e) {
+				rollbackTransaction();
+				throw e;
+			}
+			count += events.size();
+			minEventIndexId = events.size() < EVENT_SUMMARY_BACKFILL_SIZE
+					? null
+					: events.get(events.size() - 1).getIndexId() + 1;
+		}
+		try (
+			final PreparedStatement statement = conn.prepareStatement(
+					"INSERT INTO eventSummaryBackfill (completed) VALUES (?)");
+		) {
+			JDBCUtils.setParameter(statement, 1, new Date().getTime(),
+					Types.BIGINT);
+			statement.executeUpdate();
+		}
+		eventSummaryReady = true;
+		LOGGER.info("[" + getName() + "] populated event summary for "
+				+ count + " events");
+	}
+
+	/**
+	 * Check whether a table exists.
+	 *
+	 * @param name
+	 *            table name.
+	 * @return true if the table exists.
+	 * @throws Exception if error occurs
+	 */
+	protected boolean hasTable(final String name) throws Exception {
+		final DatabaseMetaData metadata = getConnection().getMetaData();
+		// unquoted names are folded to upper or lower case by some databases
+		for (final String tableName : new String[] {
+				name, name.toUpperCase(), name.toLowerCase()}) {
+			try (final ResultSet tables = metadata.getTables(
+					null, null, tableName, null)) {
+				if (tables.next()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Replace eventSummary rows for updated events.
+	 *
+	 * Uses the current connection, so rows are updated in the same
+	 * transaction as the event table.
+	 *
+	 * @param events
+	 *            the events that have been updated.
+	 * @throws Exception if error occurs
+	 */
+	protected synchronized void updateEventSummaries(final List<Event> events)
+			throws Exception {
+		final String insertSql = "INSERT INTO eventSummary"
+				+ " (eventId, updated, source, sourceCode, eventTime, latitude,"
+				+ " longitude, depth, magnitude, status, productTypes, eventCodes)"
+				+ " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+		final String insertCodeSql = "INSERT INTO eventSummaryCode"
+				+ " (eventId, source, code, preferred) VALUES (?, ?, ?, ?)";
+		final String deletedSql = "UPDATE eventSummary"
+				+ " SET updated=?, status=? WHERE eventId=?";
+
+		try (
+			final PreparedStatement insertSummary =
+					getConnection().prepareStatement(insertSql);
+			final PreparedStatement insertCode =
+					getConnection().prepareStatement(insertCodeSql);
+			final PreparedStatement updateDeleted =
+					getConnection().prepareStatement(deletedSql);
+		) {
+			for (final Event event : events) {
+				final Long indexId = event.getIndexId();
+				if (indexId == null) {
+					continue;
+				}
+				final long now = new Date().getTime();
+				if (event.isDeleted()) {
+					// like event table, leave other parameters intact
+					JDBCUtils.setParameter(updateDeleted, 1, now, Types.BIGINT);
+					JDBCUtils.setParameter(updateDeleted, 2, EVENT_STATUS_DELETE,
+							Types.VARCHAR);
+					JDBCUtils.setParameter(updateDeleted, 3, indexId, Types.BIGINT);
+					updateDeleted.executeUpdate();
+					continue;
+				}
+
+				removeEventSummary(indexId);
+
+				final EventSummary summary = event.getEventSummary();
+				JDBCUtils.setParameter(insertSummary, 1, indexId, Types.BIGINT);
+				JDBCUtils.setParameter(insertSummary, 2, now, Types.BIGINT);
+				JDBCUtils.setParameter(insertSummary, 3, summary.getSource(),
+						Types.VARCHAR);
+				JDBCUtils.setParameter(insertSummary, 4, summary.getSourceCode(),
+						Types.VARCHAR);
+				JDBCUtils.setParameter(insertSummary, 5,
+						summary.getTime() == null ? null
+								: summary.getTime().getTime(),
+						Types.BIGINT);
+				JDBCUtils.setParameter(insertSummary, 6,
+						toDouble(summary.getLatitude()), Types.DOUBLE);
+				JDBCUtils.setParameter(insertSummary, 7,
+						toDouble(summary.getLongitude()), Types.DOUBLE);
+				JDBCUtils.setParameter(insertSummary, 8,
+						toDouble(summary.getDepth()), Types.DOUBLE);
+				JDBCUtils.setParameter(insertSummary, 9,
+						toDouble(summary.getMagnitude()), Types.DOUBLE);
+				JDBCUtils.setParameter(insertSummary, 10, EVENT_STATUS_UPDATE,
+						Types.VARCHAR);
+				JDBCUtils.setParameter(insertSummary, 11,
+						formatProductTypes(event.getPreferredProducts().keySet()),
+						Types.VARCHAR);
+				JDBCUtils.setParameter(insertSummary, 12,
+						formatEventCodes(summary.getEventCodes()), Types.VARCHAR);
+				insertSummary.executeUpdate();
+
+				// all codes, for indexed event id lookups
+				final Map<String, String> preferredCodes = summary.getEventCodes();
+				final Map<String, List<String>> allCodes =
+						event.getAllEventCodes(false);
+				for (final String source : allCodes.keySet()) {
+					for (final String code : allCodes.get(source)) {
+						JDBCUtils.setParameter(insertCode, 1, indexId,
+								Types.BIGINT);
+						JDBCUtils.setParameter(insertCode, 2, source,
+								Types.VARCHAR);
+						JDBCUtils.setParameter(insertCode, 3, code,
+								Types.VARCHAR);
+						JDBCUtils.setParameter(insertCode, 4,
+								code.equals(preferredCodes.get(source)) ? 1 : 0,
+								Types.INTEGER);
+						insertCode.addBatch();
+					}
+				}
+				insertCode.executeBatch();
+			}
+		}
+	}
+
+	/**
+	 * Remove eventSummary rows for an event.
+	 *
+	 * @param indexId
+	 *            event index id.
+	 * @throws Exception if error occurs
+	 */
+	protected synchronized void removeEventSummary(final Long indexId)
+			throws Exception {
+		for (final String sql : new String[] {
+				"DELETE FROM eventSummaryCode WHERE eventId=?",
+				"DELETE FROM eventSummary WHERE eventId=?"}) {
+			try (
+				final PreparedStatement statement =
+						getConnection().prepareStatement(sql);
+			) {
+				JDBCUtils.setParameter(statement, 1, indexId, Types.BIGINT);
+				statement.executeUpdate();
+			}
+		}
+	}
+
+	/**
+	 * Check whether a query can be answered by
+	 * {@link #getEventSummaries(ProductIndexQuery)}.
+	 *
+	 * The eventSummary table only has preferred event parameters, so the
+	 * query cannot filter on individual product properties.
+	 *
+	 * @param query
+	 *            the query.
+	 * @return true if the eventSummary table is maintained, populated, and
+	 *         answers the query.
+	 */
+	public boolean isEventSummaryQuery(final ProductIndexQuery query) {
+		if (!eventSummaryEnabled || !eventSummaryReady || query == null) {
+			return false;
+		}
+		final boolean hasLocation = query.getMinEventTime() != null
+				|| query.getMaxEventTime() != null
+				|| query.getMinEventLatitude() != null
+				|| query.getMaxEventLatitude() != null
+				|| query.getMinEventLongitude() != null
+				|| query.getMaxEventLongitude() != null
+				|| query.getMinEventDepth() != null
+				|| query.getMaxEventDepth() != null
+				|| query.getMinEventMagnitude() != null
+				|| query.getMaxEventMagnitude() != null;
+		return (!hasLocation || query.getEventSearchType()
+						== ProductIndexQuery.SEARCH_EVENT_PREFERRED)
+				&& query.getResultType() == ProductIndexQuery.RESULT_TYPE_CURRENT
+				&& query.getProductIds().size() == 0
+				&& query.getMinProductUpdateTime() == null
+				&& query.getMaxProductUpdateTime() == null
+				&& query.getProductSource() == null
+				&& query.getProductCode() == null
+				&& query.getProductVersion() == null
+				&& query.getProductStatus() == null
+				&& query.getMinProductIndexId() == null
+				&& query.getOrderBy() == null;
+	}
+
+	/**
+	 * Search the eventSummary table, without reading product summaries.
+	 *
+	 * @param query
+	 *            query where {@link #isEventSummaryQuery(ProductIndexQuery)}
+	 *            is true.
+	 * @return event summaries, sorted by event index id.
+	 * @throws Exception if error occurs
+	 */
+	public List<EventSummary> getEventSummaries(final ProductIndexQuery query)
+			throws Exception {
+		if (!isEventSummaryQuery(query)) {
+			throw new IllegalArgumentException(
+					"query not supported by event summary table");
+		}
+		return read(() -> {
+			final List<String> clauses = new ArrayList<String>();
+			final List<Object> values = new ArrayList<Object>();
+			final List<Integer> types = new ArrayList<Integer>();
+
+			final String eventSource = query.getEventSource();
+			final String eventSourceCode = query.getEventSourceCode();
+			if (eventSource != null || eventSourceCode != null) {
+				String codeClause = "EXISTS (SELECT * FROM eventSummaryCode c"
+						+ " WHERE c.eventId=s.eventId";
+				if (eventSource != null) {
+					codeClause += " AND c.source=?";
+					values.add(eventSource);
+					types.add(Types.VARCHAR);
+				}
+				if (eventSourceCode != null) {
+					codeClause += " AND c.code=?";
+					values.add(eventSourceCode);
+					types.add(Types.VARCHAR);
+				}
+				clauses.add(codeClause + ")");
+			}
+			addRangeClause(clauses, values, types, "s.eventTime",
+					query.getMinEventTime(), query.getMaxEventTime());
+			addRangeClause(clauses, values, types, "s.latitude",
+					query.getMinEventLatitude(), query.getMaxEventLatitude());
+			addRangeClause(clauses, values, types, "s.longitude",
+					query.getMinEventLongitude(), query.getMaxEventLongitude());
+			addRangeClause(clauses, values, types, "s.depth",
+					query.getMinEventDepth(), query.getMaxEventDepth());
+			addRangeClause(clauses, values, types, "s.magnitude",
+					query.getMinEventMagnitude(), query.getMaxEventMagnitude());
+			if (query.getProductType() != null) {
+				clauses.add("s.productTypes LIKE ?");
+				values.add("%," + query.getProductType() + ",%");
+				types.add(Types.VARCHAR);
+			}
+			if (query.getMinEventIndexId() != null) {
+				clauses.add("s.eventId>=?");
+				values.add(query.getMinEventIndexId());
+				types.add(Types.BIGINT);
+			}
+
+			String sql = "SELECT s.* FROM eventSummary s";
+			if (clauses.size() > 0) {
+				sql += " WHERE " + String.join(" AND ", clauses);
+			}
+			sql += " ORDER BY s.eventId";
+			if (query.getLimit() != null) {
+				sql += " LIMIT " + query.getLimit().intValue();
+			}
+
+			final List<EventSummary> summaries = new ArrayList<EventSummary>();
+			try (
+				final PreparedStatement statement =
+						getConnection().prepareStatement(sql);
+			) {
+				statement.setQueryTimeout(60);
+				for (int i = 0; i < values.size(); i++) {
+					JDBCUtils.setParameter(statement, i + 1, values.get(i),
+							types.get(i));
+				}
+				try (final ResultSet results = statement.executeQuery()) {
+					while (results.next()) {
+						summaries.add(parseEventSummary(results));
+					}
+				}
+			}
+			return summaries;
+		});
+	}
+
+	/**
+	 * Parse an eventSummary row.
+	 *
+	 * @param results
+	 *            result set positioned on an eventSummary row.
+	 * @return the event summary.
+	 * @throws Exception if error occurs
+	 */
+	protected EventSummary parseEventSummary(final ResultSet results)
+			throws Exception {
+		final EventSummary summary = new EventSummary();
+		summary.setIndexId(results.getLong("eventId"));
+		summary.setSource(results.getString("source"));
+		summary.setSourceCode(results.getString("sourceCode"));
+		final long eventTime = results.getLong("eventTime");
+		summary.setTime(results.wasNull() ? null : new Date(eventTime));
+		summary.setLatitude(toBigDecimal(results.getString("latitude")));
+		summary.setLongitude(toBigDecimal(results.getString("longitude")));
+		summary.setDepth(toBigDecimal(results.getString("depth")));
+		summary.setMagnitude(toBigDecimal(results.getString("magnitude")));
+		summary.setDeleted(EVENT_STATUS_DELETE.equals(
+				results.getString("status")));
+		summary.getEventCodes().putAll(
+				parseEventCodes(results.getString("eventCodes")));
+		return summary;
+	}
+
+	private static void addRangeClause(final List<String> clauses,
+			final List<Object> values, final List<Integer> types,
+			final String column, final Object min, final Object max) {
+		if (min != null) {
+			addParameter(values, types, min);
+			clauses.add(column + ">=?");
+		}
+		if (max != null) {
+			addParameter(values, types, max);
+			clauses.add(column + "<=?");
+		}
+	}
+
+	private static void addParameter(final List<Object> values,
+			final List<Integer> types, final Object value) {
+		if (value instanceof Date) {
+			values.add(((Date) value).getTime());
+			types.add(Types.BIGINT);
+		} else {
+			values.add(((BigDecimal) value).doubleValue());
+			types.add(Types.DOUBLE);
+		}
+	}
+
+	private static Double toDouble(final BigDecimal value) {
+		return value == null ? null : value.doubleValue();
+	}
+
+	private static BigDecimal toBigDecimal(final String value) {
+		return value == null ? null : new BigDecimal(value);
+	}
+
+	/**
+	 * @param types
+	 *            product types.
+	 * @return comma delimited types, with leading and trailing commas so each
+	 *         type can be matched with LIKE '%,type,%'.
+	 */
+	static String formatProductTypes(final Collection<String> types) {
+		return "," + String.join(",", new TreeSet<String>(types)) + ",";
+	}
+
+	/**
+	 * @param eventCodes
+	 *            map from source to code.
+	 * @return comma delimited source:code pairs.
+	 */
+	static String formatEventCodes(final Map<String, String> eventCodes) {
+		return new TreeMap<String, String>(eventCodes).entrySet().stream()
+				.map(entry -> entry.getKey() + ":" + entry.getValue())
+				.collect(Collectors.joining(","));
+	}
+
+	/**
+	 * @param eventCodes
+	 *            value from {@link #formatEventCodes(Map)}.
+	 * @return map from source to code.
+	 */
+	static Map<String, String> parseEventCodes(final String eventCodes) {
+		final Map<String, String> parsed = new HashMap<String, String>();
+		if (eventCodes == null || eventCodes.isEmpty()) {
+			return parsed;
+		}
+		for (final String pair : eventCodes.split(",")) {
+			final int colon = pair.indexOf(':');
+			if (colon > 0) {
+				parsed.put(pair.substring(0, colon), pair.substring(colon + 1));
+			}
+		}
+		return parsed;
 	}
 
 }
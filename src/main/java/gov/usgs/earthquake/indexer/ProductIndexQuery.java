@@ -150,6 +150,9 @@ public class ProductIndexQuery implements Comparable<ProductIndexQuery> {
 	/** The product index ID; unique per productIndex */
 	private Long minProductIndexId;
 
+	/** Minimum event index ID, inclusive. */
+	private Long minEventIndexId;
+
 	/** The max number of results */
 	private Integer limit;
 
@@ -394,6 +397,16 @@ public class ProductIndexQuery implements Comparable<ProductIndexQuery> {
 		return this.minProductIndexId;
 	}
 
+	/** @param minEventIndexId to set */
+	public void setMinEventIndexId(final Long minEventIndexId) {
+		this.minEventIndexId = minEventIndexId;
+	}
+
+	/** @return minEventIndexId */
+	public Long getMinEventIndexId() {
+		return this.minEventIndexId;
+	}
+
 	/** @param limit to set */
 	public void setLimit(final Integer limit) {
 		this.limit = limit;
@@ -3,7 +3,12 @@
  */
 package gov.usgs.earthquake.indexer;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,6 +33,24 @@ import gov.usgs.util.Config;
  * <dl>
  * <dt>index</dt>
  * <dd>(Required) The index to use for product querying.</dd>
+ *
+ * <dt>processThreads</dt>
+ * <dd>(Optional, default 1) Number of threads processing products.
+ * When greater than 1, products are processed in parallel and lastIndexId
+ * only advances past products that completed along with every product
+ * before them.</dd>
+ *
+ * <dt>partitionByEvent</dt>
+ * <dd>(Optional, default true) When processing in parallel, process products
+ * with the same event id (or the same product, when there is no event id)
+ * on the same thread, in index order.</dd>
+ *
+ * <dt>prefetch</dt>
+ * <dd>(Optional, default true) When processing in parallel, fetch the next
+ * batch of products while the current batch is processed.</dd>
+ *
+ * <dt>productsPerQuery</dt>
+ * <dd>(Optional, default 10) Number of products fetched per query.</dd>
  * </dl>
  */
 
@@ -39,10 +62,40 @@ public class ReliableIndexerListener extends DefaultIndexerListener implements R
 
   private static final int PRODUCTS_PER_QUERY = 10;
 
-  private boolean stopThread = false;
-  private long lastIndexId = -1;
+  /** Property for number of threads processing products */
+  public static final String PROCESS_THREADS_PROPERTY = "processThreads";
+  /** Default number of threads processing products */
+  public static final String DEFAULT_PROCESS_THREADS = "1";
+  /** Property for processing products with same event on same thread */
+  public static final String PARTITION_BY_EVENT_PROPERTY = "partitionByEvent";
+  /** Default partition by event */
+  public static final String DEFAULT_PARTITION_BY_EVENT = "true";
+  /** Property for fetching next batch while current batch is processed */
+  public static final String PREFETCH_PROPERTY = "prefetch";
+  /** Default prefetch */
+  public static final String DEFAULT_PREFETCH = "true";
+  /** Property for number of products fetched per query */
+  public static final String PRODUCTS_PER_QUERY_PROPERTY = "productsPerQuery";
+
+  private volatile boolean stopThread = false;
+  private volatile long lastIndexId = -1;
   private final Object syncObject = new Object();
 
+  private int processThreads = 1;
+  private boolean partitionByEvent = true;
+  private boolean prefetch = true;
+  private int productsPerQuery = PRODUCTS_PER_QUERY;
+
+  /**
+   * Products being processed in parallel, by index id, and whether each
+   * completed. Also used to synchronize parallel processing state.
+   */
+  private final TreeMap<Long, Boolean> pending = new TreeMap<Long, Boolean>();
+  /** Number of submitted products that have not finished. */
+  private int running = 0;
+  /** Set when a product fails, to refetch from lastIndexId. */
+  private boolean rewind = false;
+
   private Thread processThread;
   /** Product Index */
   protected ProductIndex productIndex;
@@ -68,6 +121,19 @@ public class ReliableIndexerListener extends DefaultIndexerListener implements R
       throw new ConfigurationException("[" + getName()
           + "] ProductIndex is required");
     }
+
+    processThreads = Integer.parseInt(config.getProperty(
+        PROCESS_THREADS_PROPERTY, DEFAULT_PROCESS_THREADS));
+    partitionByEvent = Boolean.valueOf(config.getProperty(
+        PARTITION_BY_EVENT_PROPERTY, DEFAULT_PARTITION_BY_EVENT));
+    prefetch = Boolean.valueOf(config.getProperty(
+        PREFETCH_PROPERTY, DEFAULT_PREFETCH));
+    productsPerQuery = Integer.parseInt(config.getProperty(
+        PRODUCTS_PER_QUERY_PROPERTY, Integer.toString(PRODUCTS_PER_QUERY)));
+    LOGGER.config("[" + getName() + "] processThreads = " + processThreads
+        + ", partitionByEvent = " + partitionByEvent
+        + ", prefetch = " + prefetch
+        + ", productsPerQuery = " + productsPerQuery);
   }
 
   /**
@@ -90,6 +156,11 @@ public class ReliableIndexerListener extends DefaultIndexerListener implements R
    */
   @Override
   public void run() {
+    if (processThreads > 1) {
+      runParallel();
+      return;
+    }
+
     //Run until we're told not to
     while (!stopThread) {
 
@@ -149,6 +220,190 @@ public class ReliableIndexerListener extends DefaultIndexerListener implements R
     }
   }
 
+  /**
+   * Parallel thread main body.
+   *
+   * Fetches products after the last fetched product, and submits them to
+   * worker threads. With prefetch, the next batch is fetched while the
+   * current batch is processed, otherwise after the current batch completes.
+   *
+   * lastIndexId advances only past products that completed along with every
+   * product before them, so a restart from a saved lastIndexId never skips a
+   * product. Subclasses that save progress should save lastIndexId, not the
+   * largest index id they processed. If processing
+   * fails and onProcessException throws, products are fetched again starting
+   * after lastIndexId once running products finish. Products that completed
+   * after the failed product are processed again.
+   *
+   * Uses getNextProducts(long) instead of getNextProducts().
+   */
+  protected void runParallel() {
+    final List<ExecutorService> workers = new ArrayList<ExecutorService>();
+    if (partitionByEvent) {
+      // one queue per thread, so products in a partition run in order
+      for (int i = 0; i < processThreads; i++) {
+        workers.add(Executors.newSingleThreadExecutor());
+      }
+    } else {
+      workers.add(Executors.newFixedThreadPool(processThreads));
+    }
+    final int maxAhead = prefetch ? productsPerQuery : 0;
+    long fetchIndexId = getLastIndexId();
+    synchronized (pending) {
+      pending.clear();
+      running = 0;
+      rewind = false;
+    }
+
+    try {
+      while (!stopThread) {
+        synchronized (pending) {
+          // wait until current batch is (mostly) done
+          while (!stopThread && !rewind && pending.size() > maxAhead) {
+            pending.wait();
+          }
+          if (rewind) {
+            while (!stopThread && running > 0) {
+              pending.wait();
+            }
+            LOGGER.fine("[" + getName() + "] refetching products after "
+                + getLastIndexId());
+            pending.clear();
+            fetchIndexId = getLastIndexId();
+            rewind = false;
+          }
+        }
+
+        List<ProductSummary> productList = null;
+        //Synchronized so we aren't notified of new products right before we wait
+        synchronized (syncObject) {
+          try {
+            productList = getNextProducts(fetchIndexId);
+          } catch (Exception e) {
+            try {
+              //Handle exception if we can
+              this.onProductGetException(e);
+            } catch (Exception e2) {
+              //Do nothing if we can't
+            }
+          }
+          if (productList == null || productList.size() == 0) {
+            //Wait when there are no more products to process
+            syncObject.wait();
+            continue;
+          }
+        }
+
+        for (final ProductSummary summary : productList) {
+          synchronized (pending) {
+            pending.put(summary.getIndexId(), Boolean.FALSE);
+            running++;
+          }
+          fetchIndexId = summary.getIndexId();
+          getWorker(workers, summary).submit(() -> processParallel(summary));
+        }
+      }
+    } catch (InterruptedException ignore) {
+      //Ignore because it's most likely we get interrupted by shutdown
+      LOGGER.log(Level.FINE,"[" + getName() + "] was told to stop, or something went wrong");
+    } finally {
+      // let running products finish
+      Thread.interrupted();
+      for (ExecutorService worker : workers) {
+        worker.shutdown();
+      }
+      try {
+        for (ExecutorService worker : workers) {
+          worker.awaitTermination(1, TimeUnit.MINUTES);
+        }
+      } catch (InterruptedException ignore) {
+        //Give up waiting
+      }
+    }
+  }
+
+  /**
+   * Process one product on a worker thread, and record completion.
+   *
+   * @param summary product to process
+   */
+  private void processParallel(final ProductSummary summary) {
+    boolean completed = false;
+    try {
+      //Skip remaining products during shutdown
+      if (stopThread) {
+        return;
+      }
+      try {
+        if (accept(summary.getId())) {
+          this.processProduct(summary);
+        }
+        completed = true;
+      } catch (Exception e) {
+        try {
+          //Handle exception if we can
+          this.onProcessException(summary, e);
+          completed = true;
+        } catch (Exception e2) {
+          //Retry after running products finish
+        }
+      }
+    } finally {
+      boolean failed;
+      synchronized (pending) {
+        running--;
+        if (completed) {
+          pending.put(summary.getIndexId(), Boolean.TRUE);
+          //Advance over contiguous completed products
+          while (!pending.isEmpty() && pending.firstEntry().getValue()) {
+            this.setLastIndexId(pending.pollFirstEntry().getKey());
+          }
+        } else if (!stopThread) {
+          rewind = true;
+        }
+        failed = rewind;
+        pending.notifyAll();
+      }
+      if (failed) {
+        //Wake fetch thread if waiting for new products
+        synchronized (syncObject) {
+          syncObject.notify();
+        }
+      }
+    }
+  }
+
+  /**
+   * Choose worker that processes a product.
+   *
+   * @param workers worker executors
+   * @param summary product to process
+   * @return worker executor
+   */
+  private ExecutorService getWorker(final List<ExecutorService> workers,
+      final ProductSummary summary) {
+    if (workers.size() == 1) {
+      return workers.get(0);
+    }
+    return workers.get(Math.floorMod(getPartitionKey(summary).hashCode(),
+        workers.size()));
+  }
+
+  /**
+   * Get key used to process related products in order.
+   *
+   * @param summary product summary
+   * @return event id when set, otherwise source, type, and code of product
+   */
+  protected String getPartitionKey(final ProductSummary summary) {
+    String eventId = summary.getEventId();
+    if (eventId != null) {
+      return eventId;
+    }
+    return summary.getId().getSource() + ":" + summary.getId().getType()
+        + ":" + summary.getId().getCode();
+  }
+
   /**
    * Starts thread
    *
@@ -195,6 +450,46 @@ public class ReliableIndexerListener extends DefaultIndexerListener implements R
     this.productIndex = productIndex;
   }
 
+  /** @return number of threads processing products */
+  public int getProcessThreads() {
+    return processThreads;
+  }
+
+  /** @param processThreads number of threads processing products */
+  public void setProcessThreads(final int processThreads) {
+    this.processThreads = processThreads;
+  }
+
+  /** @return whether products with same event are processed in order */
+  public boolean isPartitionByEvent() {
+    return partitionByEvent;
+  }
+
+  /** @param partitionByEvent whether products with same event are processed in order */
+  public void setPartitionByEvent(final boolean partitionByEvent) {
+    this.partitionByEvent = partitionByEvent;
+  }
+
+  /** @return whether next batch is fetched while current batch is processed */
+  public boolean isPrefetch() {
+    return prefetch;
+  }
+
+  /** @param prefetch whether next batch is fetched while current batch is processed */
+  public void setPrefetch(final boolean prefetch) {
+    this.prefetch = prefetch;
+  }
+
+  /** @return number of products fetched per query */
+  public int getProductsPerQuery() {
+    return productsPerQuery;
+  }
+
+  /** @param productsPerQuery number of products fetched per query */
+  public void setProductsPerQuery(final int productsPerQuery) {
+    this.productsPerQuery = productsPerQuery;
+  }
+
 
   ////////////////////////
   //Stubs for subclasses//
@@ -254,10 +549,24 @@ public class ReliableIndexerListener extends DefaultIndexerListener implements R
    * @throws Exception if we have a database issue
    */
   public List<ProductSummary> getNextProducts() throws Exception{
+    return getNextProducts(this.getLastIndexId());
+  }
+
+  /**
+   * Gets the next products after an index id.
+   *
+   * Used when processing in parallel, which fetches products ahead of
+   * lastIndexId.
+   *
+   * @param afterIndexId return products with greater index ids
+   * @return List of product summaries
+   * @throws Exception if we have a database issue
+   */
+  public List<ProductSummary> getNextProducts(final long afterIndexId) throws Exception{
     ProductIndexQuery query = new ProductIndexQuery();
-    query.setLimit(PRODUCTS_PER_QUERY);
+    query.setLimit(productsPerQuery);
     query.setOrderBy(JDBCProductIndex.SUMMARY_PRODUCT_INDEX_ID); //Currently the only public field; should maybe change
-    query.setMinProductIndexId(this.getLastIndexId()+1);
+    query.setMinProductIndexId(afterIndexId+1);
 
     return productIndex.getProducts(query);
   }
@@ -17,6 +17,9 @@ public abstract class SearchQuery implements Comparable<SearchQuery> {
 	/** Contains an error returned in a SearchResult if one occurred **/
 	private String error;
 
+	/** Cursor for the next page of results, or null if there are no more. */
+	private Long nextCursor;
+
 	/**
 	 * Construct a new SearchQuery object.
 	 *
@@ -41,6 +44,43 @@ public abstract class SearchQuery implements Comparable<SearchQuery> {
 		return this.query;
 	}
 
+	/**
+	 * Whether this query pages by event index id.
+	 *
+	 * @return true for event searches, false for product searches.
+	 */
+	public boolean isEventQuery() {
+		return type == SearchMethod.EVENTS_SUMMARY
+				|| type == SearchMethod.EVENT_DETAIL;
+	}
+
+	/**
+	 * Get the cursor where results start.
+	 *
+	 * The cursor is the minimum event index id for event searches, and the
+	 * minimum product index id for product searches.
+	 *
+	 * @return the cursor, or null to start at the first result.
+	 */
+	public Long getCursor() {
+		return isEventQuery() ? query.getMinEventIndexId()
+				: query.getMinProductIndexId();
+	}
+
+	/**
+	 * Set the cursor where results start.
+	 *
+	 * @param cursor
+	 *            a nextCursor from a previous page, or null for the first page.
+	 */
+	public void setCursor(final Long cursor) {
+		if (isEventQuery()) {
+			query.setMinEventIndexId(cursor);
+		} else {
+			query.setMinProductIndexId(cursor);
+		}
+	}
+
 	/**
 	 * Get the result associated with a specific query type.
 	 *
@@ -119,4 +159,18 @@ public abstract class SearchQuery implements Comparable<SearchQuery> {
 		return error;
 	}
 
+	/**
+	 * @param nextCursor cursor for the next page, or null if there are no more.
+	 */
+	public void setNextCursor(final Long nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * @return cursor for the next page, or null if there are no more.
+	 */
+	public Long getNextCursor() {
+		return nextCursor;
+	}
+
 }
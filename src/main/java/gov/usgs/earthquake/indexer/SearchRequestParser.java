@@ -167,8 +167,20 @@ public class SearchRequestParser extends DefaultHandler {
 					query.setProductStatus(value);
 				}
 
+				value = XmlUtils.getAttribute(attributes, uri,
+						SearchXML.LIMIT_ATTRIBUTE);
+				if (value != null) {
+					query.setLimit(Integer.valueOf(value));
+				}
+
 				searchQuery = SearchQuery.getSearchQuery(
 						SearchMethod.fromXmlMethodName(method), query);
+
+				value = XmlUtils.getAttribute(attributes, uri,
+						SearchXML.CURSOR_ATTRIBUTE);
+				if (value != null && searchQuery != null) {
+					searchQuery.setCursor(Long.valueOf(value));
+				}
 			}
 		} else if (XmlProductHandler.PRODUCT_XML_NAMESPACE.equals(uri)) {
 			// Possible inclusion of properties in the future
@@ -0,0 +1,79 @@
+/*
+ * SearchResponseListener
+ */
+package gov.usgs.earthquake.indexer;
+
+import gov.usgs.earthquake.product.Product;
+
+/**
+ * Receives search results as a response is parsed.
+ *
+ * Used with SearchSocket to process large responses without holding every
+ * result in memory. Each method receives the query being answered; the query
+ * result lists are not populated.
+ */
+public interface SearchResponseListener {
+
+	/**
+	 * Called for each event in an EVENT_DETAIL result.
+	 *
+	 * @param query
+	 *            query being answered.
+	 * @param event
+	 *            event that was parsed.
+	 * @throws Exception
+	 *             to stop parsing the response.
+	 */
+	public void onEvent(final SearchQuery query, final Event event)
+			throws Exception;
+
+	/**
+	 * Called for each event summary in an EVENTS_SUMMARY result.
+	 *
+	 * @param query
+	 *            query being answered.
+	 * @param summary
+	 *            event summary that was parsed.
+	 * @throws Exception
+	 *             to stop parsing the response.
+	 */
+	public void onEventSummary(final SearchQuery query,
+			final EventSummary summary) throws Exception;
+
+	/**
+	 * Called for each product summary in a PRODUCTS_SUMMARY result.
+	 *
+	 * @param query
+	 *            query being answered.
+	 * @param summary
+	 *            product summary that was parsed.
+	 * @throws Exception
+	 *             to stop parsing the response.
+	 */
+	public void onProductSummary(final SearchQuery query,
+			final ProductSummary summary) throws Exception;
+
+	/**
+	 * Called for each product in a PRODUCT_DETAIL result.
+	 *
+	 * @param query
+	 *            query being answered.
+	 * @param product
+	 *            product that was parsed, with contents in storage.
+	 * @throws Exception
+	 *             to stop parsing the response.
+	 */
+	public void onProduct(final SearchQuery query, final Product product)
+			throws Exception;
+
+	/**
+	 * Called at the end of each result.
+	 *
+	 * @param query
+	 *            query that was answered, with any error and nextCursor.
+	 * @throws Exception
+	 *             to stop parsing the response.
+	 */
+	public void onResult(final SearchQuery query) throws Exception;
+
+}
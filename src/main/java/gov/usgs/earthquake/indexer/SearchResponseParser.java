@@ -36,6 +36,9 @@ public class SearchResponseParser extends DefaultHandler {
 	private FileProductStorage storage;
 	private SearchResponseXmlProductSource productHandler = null;
 
+	/** When set, results are passed to listener instead of collected. */
+	private SearchResponseListener listener = null;
+
 	/**
 	 * Constructor
 	 * @param storage a FileProductStorage
@@ -44,6 +47,20 @@ public class SearchResponseParser extends DefaultHandler {
 		this.storage = storage;
 	}
 
+	/**
+	 * Construct a parser that streams results to a listener.
+	 *
+	 * Result lists in the parsed response remain empty.
+	 *
+	 * @param storage a FileProductStorage
+	 * @param listener listener notified as each result is parsed
+	 */
+	public SearchResponseParser(final FileProductStorage storage,
+			final SearchResponseListener listener) {
+		this.storage = storage;
+		this.listener = listener;
+	}
+
 	/** @return SearchResponse */
 	public SearchResponse getSearchResponse() {
 		return response;
@@ -66,6 +83,11 @@ public class SearchResponseParser extends DefaultHandler {
 								SearchXML.METHOD_ATTRIBUTE));
 				query = SearchQuery.getSearchQuery(method,
 						new ProductIndexQuery());
+				String nextCursor = XmlUtils.getAttribute(attributes, uri,
+						SearchXML.NEXT_CURSOR_ATTRIBUTE);
+				if (nextCursor != null) {
+					query.setNextCursor(Long.valueOf(nextCursor));
+				}
 				// create results container now
 				if (query instanceof EventDetailQuery) {
 					((EventDetailQuery) query)
@@ -209,6 +231,19 @@ public class SearchResponseParser extends DefaultHandler {
 					piQuery.setProductVersion(productVersion);
 				}
 
+				// Limit Attribute
+				String limit = XmlUtils.getAttribute(attributes, uri,
+						SearchXML.LIMIT_ATTRIBUTE);
+				if (limit != null) {
+					piQuery.setLimit(Integer.valueOf(limit));
+				}
+				// Cursor Attribute
+				String cursor = XmlUtils.getAttribute(attributes, uri,
+						SearchXML.CURSOR_ATTRIBUTE);
+				if (cursor != null) {
+					query.setCursor(Long.valueOf(cursor));
+				}
+
 				// Set result type. At the moment we ony support the "current"
 				// type.
 				piQuery.setResultType(ProductIndexQuery.RESULT_TYPE_CURRENT);
@@ -413,8 +448,17 @@ public class SearchResponseParser extends DefaultHandler {
 			productHandler.endElement(uri, localName, qName);
 			if (XmlProductHandler.PRODUCT_ELEMENT.equals(localName)) {
 				ProductDetailQuery pdQuery = (ProductDetailQuery) query;
-				pdQuery.getResult().add(productHandler.getProduct());
+				Product product = productHandler.getProduct();
 				productHandler = null;
+				if (listener != null) {
+					try {
+						listener.onProduct(query, product);
+					} catch (Exception e) {
+						throw new SAXException(e);
+					}
+				} else {
+					pdQuery.getResult().add(product);
+				}
 			}
 		} else if (SearchXML.INDEXER_XMLNS.equals(uri)) {
 			if (SearchXML.RESPONSE_ELEMENT.equals(localName)) {
@@ -426,6 +470,13 @@ public class SearchResponseParser extends DefaultHandler {
 							"result element found without response parent");
 				else {
 					response.addResult(query);
+					if (listener != null) {
+						try {
+							listener.onResult(query);
+						} catch (Exception e) {
+							throw new SAXException(e);
+						}
+					}
 					query = null;
 				}
 			} else if (SearchXML.QUERY_ELEMENT.equals(localName)) {
@@ -443,23 +494,21 @@ public class SearchResponseParser extends DefaultHandler {
 				} else {
 					if (event != null) {
 						// We're adding product summaries to events.
-						Map<String, List<ProductSummary>> eventProducts = event
-								.getAllProducts();
-						String productType = pSummary.getType();
-						if (eventProducts.containsKey(productType)) {
-							// Key exists, so just add the product summary to it
-							eventProducts.get(productType).add(pSummary);
-						} else {
-							List<ProductSummary> newList = new ArrayList<ProductSummary>();
-							newList.add(pSummary);
-							eventProducts.put(productType, newList);
-						}
+						event.addProduct(pSummary);
 					} else if (query != null
 							&& query.getType() == SearchMethod.PRODUCTS_SUMMARY) {
 						// This was a product summary query and these are its
 						// results
 						ProductsSummaryQuery psQuery = (ProductsSummaryQuery) query;
-						psQuery.getResult().add(pSummary);
+						if (listener != null) {
+							try {
+								listener.onProductSummary(query, pSummary);
+							} catch (Exception e) {
+								throw new SAXException(e);
+							}
+						} else {
+							psQuery.getResult().add(pSummary);
+						}
 					} else {
 						throw new SAXException(
 								"productSummary element encountered without recognized parent");
@@ -471,7 +520,15 @@ public class SearchResponseParser extends DefaultHandler {
 						&& query.getType() == SearchMethod.EVENT_DETAIL) {
 					// This was an event detail query and has opened properly
 					EventDetailQuery edQuery = (EventDetailQuery) query;
-					edQuery.getResult().add(event);
+					if (listener != null) {
+						try {
+							listener.onEvent(query, event);
+						} catch (Exception e) {
+							throw new SAXException(e);
+						}
+					} else {
+						edQuery.getResult().add(event);
+					}
 					event = null;
 				} else {
 					throw new SAXException(
@@ -482,8 +539,16 @@ public class SearchResponseParser extends DefaultHandler {
 						&& query.getType() == SearchMethod.EVENTS_SUMMARY) {
 					// This was an event summary query and has opened properly
 					EventsSummaryQuery esQuery = (EventsSummaryQuery) query;
-					esQuery.getResult().add(eSummary);
-					esQuery = null;
+					if (listener != null) {
+						try {
+							listener.onEventSummary(query, eSummary);
+						} catch (Exception e) {
+							throw new SAXException(e);
+						}
+					} else {
+						esQuery.getResult().add(eSummary);
+					}
+					eSummary = null;
 				} else {
 					throw new SAXException(
 							"eventSummary element encountered without recognized parent");
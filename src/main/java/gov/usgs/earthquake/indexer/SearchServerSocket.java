@@ -2,9 +2,15 @@ package gov.usgs.earthquake.indexer;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -12,6 +18,8 @@ import java.util.zip.DeflaterOutputStream;
 import java.util.zip.InflaterInputStream;
 
 import gov.usgs.earthquake.distribution.ConfigurationException;
+import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.ProductId;
 import gov.usgs.util.Config;
 import gov.usgs.util.DefaultConfigurable;
 import gov.usgs.util.SocketAcceptor;
@@ -20,6 +28,13 @@ import gov.usgs.util.StreamUtils;
 
 /**
  * Server side of socket search interface.
+ *
+ * Responses are streamed as they are searched. Queries without a limit are
+ * searched pageSize results at a time, each page is written before the next
+ * is searched, and the indexer is only locked while searching a page.
+ * Queries with a limit return one page, at most pageSize results, and a
+ * nextCursor attribute when more results are available. PRODUCT_DETAIL
+ * queries load and write one product at a time.
  */
 public class SearchServerSocket extends DefaultConfigurable implements
 		SocketListenerInterface {
@@ -46,12 +61,21 @@ public class SearchServerSocket extends DefaultConfigurable implements
 	/** The configuration property used to reference a URLProductStorage. */
 	public static final String PRODUCT_STORAGE_PROPERTY = "storage";
 
+	/** The configuration property used for number of results per page. */
+	public static final String PAGE_SIZE_PROPERTY = "pageSize";
+
+	/** The default number of results per page, as a string. */
+	public static final String DEFAULT_PAGE_SIZE = "1000";
+
 	/** The port to bind. */
 	private int port = -1;
 
 	/** The number of threads to use. */
 	private int threads = -1;
 
+	/** The maximum number of results searched at once. */
+	private int pageSize = -1;
+
 	/** The server socket accept thread. */
 	private SocketAcceptor acceptor;
 
@@ -64,6 +88,7 @@ public class SearchServerSocket extends DefaultConfigurable implements
 	public SearchServerSocket() {
 		this.port = Integer.parseInt(DEFAULT_SEARCH_PORT);
 		this.threads = Integer.parseInt(DEFAULT_THREAD_POOL_SIZE);
+		this.pageSize = Integer.parseInt(DEFAULT_PAGE_SIZE);
 	}
 
 	/**
@@ -81,6 +106,169 @@ public class SearchServerSocket extends DefaultConfigurable implements
 		return indexer.search(request);
 	}
 
+	/**
+	 * Search one query.
+	 *
+	 * @param query
+	 *            the query to execute.
+	 * @return the query result.
+	 * @throws Exception if error occurs
+	 */
+	protected SearchQuery searchQuery(final SearchQuery query)
+			throws Exception {
+		SearchRequest request = new SearchRequest();
+		request.addQuery(query);
+		List<SearchQuery> results = this.search(request).getResults();
+		if (results.size() == 0) {
+			return query;
+		}
+		return results.get(0);
+	}
+
+	/**
+	 * Search a request and write the response, one page at a time.
+	 *
+	 * @param request
+	 *            the search to execute.
+	 * @param out
+	 *            where the response xml is written.
+	 * @throws Exception if error occurs
+	 */
+	protected void writeResponse(final SearchRequest request,
+			final OutputStream out) throws Exception {
+		Writer writer = new OutputStreamWriter(out);
+		SearchXML.writeResponseStart(writer);
+		for (SearchQuery query : request.getQueries()) {
+			if (query.getType() == SearchMethod.PRODUCT_DETAIL) {
+				writeProductDetail(writer, out, query);
+			} else {
+				writeResult(writer, out, query);
+			}
+		}
+		SearchXML.writeResponseEnd(writer);
+	}
+
+	/**
+	 * Search and write the result of an event or product summary query.
+	 *
+	 * @param writer
+	 *            where xml is written.
+	 * @param out
+	 *            stream used by writer.
+	 * @param query
+	 *            query to execute.
+	 * @throws Exception if error occurs
+	 */
+	protected void writeResult(final Writer writer, final OutputStream out,
+			final SearchQuery query) throws Exception {
+		final ProductIndexQuery piQuery = query.getProductIndexQuery();
+		final Integer limit = piQuery.getLimit();
+		if (limit != null) {
+			// one page requested
+			if (limit > pageSize) {
+				piQuery.setLimit(pageSize);
+			}
+			SearchQuery result = searchQuery(query);
+			SearchXML.writeResultStart(writer, result);
+			SearchXML.writeResultItems(writer, out, result);
+			SearchXML.writeResultEnd(writer);
+			writer.flush();
+			return;
+		}
+
+		// all results requested, stream in pages
+		final Long cursor = query.getCursor();
+		boolean started = false;
+		try {
+			while (true) {
+				piQuery.setLimit(pageSize);
+				SearchQuery result = searchQuery(query);
+				piQuery.setLimit(null);
+				Long nextCursor = result.getNextCursor();
+				if (!started) {
+					// result element describes the original query
+					result.setNextCursor(null);
+					SearchXML.writeResultStart(writer, result);
+					started = true;
+				}
+				SearchXML.writeResultItems(writer, out, result);
+				writer.flush();
+				if (nextCursor == null) {
+					break;
+				}
+				query.setCursor(nextCursor);
+			}
+		} finally {
+			piQuery.setLimit(null);
+			query.setCursor(cursor);
+		}
+		SearchXML.writeResultEnd(writer);
+	}
+
+	/**
+	 * Search and write the result of a product detail query, loading one
+	 * product at a time.
+	 *
+	 * Serialized products are cached by the indexer, so popular products are
+	 * not loaded and encoded again for each search.
+	 *
+	 * @param writer
+	 *            where xml is written.
+	 * @param out
+	 *            stream used by writer.
+	 * @param query
+	 *            query to execute.
+	 * @throws Exception if error occurs
+	 */
+	protected void writeProductDetail(final Writer writer,
+			final OutputStream out, final SearchQuery query) throws Exception {
+		SearchXML.writeResultStart(writer, query);
+		writer.flush();
+		final SerializedProductCache cache = getSerializedProductCache();
+		List<ProductId> ids = new ArrayList<ProductId>(query
+				.getProductIndexQuery().getProductIds());
+		for (ProductId id : ids) {
+			byte[] payload = cache.getPayload(id, this::serializeProduct);
+			if (payload != null) {
+				// write cached array directly, without copying
+				out.write(payload);
+			}
+		}
+		SearchXML.writeResultEnd(writer);
+	}
+
+	/**
+	 * Search for one product and serialize it.
+	 *
+	 * @param id
+	 *            product to load.
+	 * @return product xml, or null if not found.
+	 * @throws Exception if error occurs
+	 */
+	protected byte[] serializeProduct(final ProductId id) throws Exception {
+		ProductIndexQuery idQuery = new ProductIndexQuery();
+		idQuery.getProductIds().add(id);
+		SearchQuery result = searchQuery(SearchQuery.getSearchQuery(
+				SearchMethod.PRODUCT_DETAIL, idQuery));
+		List<Product> products = ((ProductDetailQuery) result).getResult();
+		if (products == null || products.size() == 0) {
+			return null;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		SearchXML.writeProduct(bytes, products.get(0));
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @return indexer cache, or a disabled cache when there is no indexer.
+	 */
+	protected SerializedProductCache getSerializedProductCache() {
+		if (indexer == null) {
+			return new SerializedProductCache(0L, 0L);
+		}
+		return indexer.getSerializedProductCache();
+	}
+
 	/**
 	 * This method is called each time a SearchSocket connects.
 	 */
@@ -100,14 +288,10 @@ public class SearchServerSocket extends DefaultConfigurable implements
 			SearchRequest request = SearchXML
 					.parseRequest(new StreamUtils.UnclosableInputStream(in));
 
-			// do search
-			SearchResponse response = this.search(request);
-
-			// send response
+			// search and send response
 			out = new DeflaterOutputStream(new BufferedOutputStream(
 					socket.getOutputStream()));
-			SearchXML.toXML(response, new StreamUtils.UnclosableOutputStream(
-					out));
+			writeResponse(request, new StreamUtils.UnclosableOutputStream(out));
 
 			// finish compression
 			out.finish();
@@ -151,6 +335,10 @@ public class SearchServerSocket extends DefaultConfigurable implements
 				THREAD_POOL_SIZE_PROPERTY, DEFAULT_THREAD_POOL_SIZE));
 		LOGGER.config("[" + getName() + "] number of threads is " + threads);
 
+		pageSize = Integer.parseInt(config.getProperty(PAGE_SIZE_PROPERTY,
+				DEFAULT_PAGE_SIZE));
+		LOGGER.config("[" + getName() + "] page size is " + pageSize);
+
 		String indexerName = config.getProperty(PRODUCT_INDEXER_PROPERTY);
 		if (indexerName == null) {
 			throw new ConfigurationException("[" + getName() + "] '"
@@ -203,6 +391,16 @@ public class SearchServerSocket extends DefaultConfigurable implements
 		this.threads = threads;
 	}
 
+	/** @return maximum number of results searched at once */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/** @param pageSize maximum number of results searched at once */
+	public void setPageSize(int pageSize) {
+		this.pageSize = pageSize;
+	}
+
 	/** @return indexer */
 	public Indexer getIndexer() {
 		return indexer;
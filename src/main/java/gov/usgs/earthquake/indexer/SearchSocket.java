@@ -11,6 +11,7 @@ import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.util.List;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.InflaterInputStream;
 
@@ -70,6 +71,89 @@ public class SearchSocket {
 		}
 	}
 
+	/**
+	 * Send a search request, passing each result to a listener as it is
+	 * received.
+	 *
+	 * Results are parsed from the socket in the calling thread, and are not
+	 * collected, so responses larger than available memory can be processed.
+	 *
+	 * @param request
+	 *            the request to send.
+	 * @param storage
+	 *            where received products are stored.
+	 * @param listener
+	 *            receives each event, summary, or product.
+	 * @return the response, with queries but without results.
+	 * @throws Exception if error occurs, or listener throws an exception
+	 */
+	public SearchResponse search(final SearchRequest request,
+			final FileProductStorage storage,
+			final SearchResponseListener listener) throws Exception {
+		Socket socket = null;
+		try {
+			socket = sendRequest(request);
+			InputStream in = new InflaterInputStream(new BufferedInputStream(
+					socket.getInputStream()));
+			return SearchXML.parseResponse(in, storage, listener);
+		} finally {
+			// make sure socket is closed
+			try {
+				socket.close();
+			} catch (Exception e) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * Send a search request one page at a time, passing each result to a
+	 * listener.
+	 *
+	 * Each query is sent with a limit, and repeated using the nextCursor of
+	 * each page until all results are received, so the server only searches
+	 * one page per connection.
+	 *
+	 * @param request
+	 *            the request to send.
+	 * @param storage
+	 *            where received products are stored.
+	 * @param pageSize
+	 *            number of results per page.
+	 * @param listener
+	 *            receives each event, summary, or product.
+	 * @throws Exception if error occurs, or listener throws an exception
+	 */
+	public void searchPages(final SearchRequest request,
+			final FileProductStorage storage, final int pageSize,
+			final SearchResponseListener listener) throws Exception {
+		for (SearchQuery query : request.getQueries()) {
+			ProductIndexQuery piQuery = query.getProductIndexQuery();
+			Integer limit = piQuery.getLimit();
+			Long cursor = query.getCursor();
+			try {
+				if (limit == null) {
+					piQuery.setLimit(pageSize);
+				}
+				while (true) {
+					SearchRequest page = new SearchRequest();
+					page.addQuery(query);
+					List<SearchQuery> results = search(page, storage, listener)
+							.getResults();
+					Long nextCursor = results.size() == 0 ? null : results
+							.get(0).getNextCursor();
+					if (nextCursor == null) {
+						break;
+					}
+					query.setCursor(nextCursor);
+				}
+			} finally {
+				piQuery.setLimit(limit);
+				query.setCursor(cursor);
+			}
+		}
+	}
+
 	/**
 	 * Send a search request, writing the response to an outputstream.
 	 *
@@ -82,22 +166,10 @@ public class SearchSocket {
 	public void search(final SearchRequest request,
 			final OutputStream responseOut) throws Exception {
 		Socket socket = null;
-		DeflaterOutputStream out = null;
 		InputStream in = null;
 
 		try {
-			// connect to the configured endpoint
-			socket = new Socket(host, port);
-
-			// send the request as compressed xml
-			out = new DeflaterOutputStream(new BufferedOutputStream(
-					socket.getOutputStream()));
-			SearchXML.toXML(request,
-					new StreamUtils.UnclosableOutputStream(out));
-
-			// must finish and flush to complete Deflater stream
-			out.finish();
-			out.flush();
+			socket = sendRequest(request);
 
 			// now read response
 			in = new InflaterInputStream(new BufferedInputStream(
@@ -113,6 +185,38 @@ public class SearchSocket {
 		}
 	}
 
+	/**
+	 * Connect and send a search request.
+	 *
+	 * @param request
+	 *            the request to send.
+	 * @return connected socket, ready to read the response.
+	 * @throws Exception if error occurs
+	 */
+	private Socket sendRequest(final SearchRequest request) throws Exception {
+		// connect to the configured endpoint
+		Socket socket = new Socket(host, port);
+		try {
+			// send the request as compressed xml
+			DeflaterOutputStream out = new DeflaterOutputStream(
+					new BufferedOutputStream(socket.getOutputStream()));
+			SearchXML.toXML(request,
+					new StreamUtils.UnclosableOutputStream(out));
+
+			// must finish and flush to complete Deflater stream
+			out.finish();
+			out.flush();
+		} catch (Exception e) {
+			try {
+				socket.close();
+			} catch (Exception e2) {
+				// ignore
+			}
+			throw e;
+		}
+		return socket;
+	}
+
 	/**
 	 * Thread used for parsing search response in background.
 	 */
@@ -10,6 +10,7 @@ import gov.usgs.util.XmlUtils;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.util.Iterator;
 import java.util.List;
@@ -78,6 +79,12 @@ public class SearchXML {
 	public static final String PRODUCT_VERSION_ATTRIBUTE = "productVersion";
 	/** Attribute for product Status */
 	public static final String PRODUCT_STATUS_ATTRIBUTE = "productStatus";
+	/** Attribute for the maximum number of results */
+	public static final String LIMIT_ATTRIBUTE = "limit";
+	/** Attribute for the index id where results start */
+	public static final String CURSOR_ATTRIBUTE = "cursor";
+	/** Attribute for the cursor of the next page of results */
+	public static final String NEXT_CURSOR_ATTRIBUTE = "nextCursor";
 
 	/** Element for event summary */
 	public static final String EVENT_SUMMARY_ELEMENT = "eventSummary";
@@ -141,6 +148,28 @@ public class SearchXML {
 		return parser.getSearchResponse();
 	}
 
+	/**
+	 * Parse an input stream with xml, passing each result to a listener.
+	 *
+	 * @param in
+	 *            the input stream containing xml.
+	 * @param storage
+	 *            the storage where received products are stored.
+	 * @param listener
+	 *            receives each result as it is parsed.
+	 * @return the parsed SearchResponse object, with queries but without
+	 *         results.
+	 * @throws Exception if error occurs
+	 */
+	public static SearchResponse parseResponse(final InputStream in,
+			final FileProductStorage storage,
+			final SearchResponseListener listener) throws Exception {
+		SearchResponseParser parser = new SearchResponseParser(storage,
+				listener);
+		XmlUtils.parse(in, parser);
+		return parser.getSearchResponse();
+	}
+
 	/**
 	 * Convert a SearchRequest object to xml.
 	 *
@@ -179,168 +208,278 @@ public class SearchXML {
 	public static void toXML(final SearchResponse response,
 			final OutputStream out) throws Exception {
 		OutputStreamWriter writer = new OutputStreamWriter(out);
+		writeResponseStart(writer);
+		List<SearchQuery> results = response.getResults();
+		for (Iterator<SearchQuery> resultsIterator = results.iterator(); resultsIterator
+				.hasNext();) {
+			SearchQuery result = resultsIterator.next();
+			writeResultStart(writer, result);
+			writeResultItems(writer, out, result);
+			writeResultEnd(writer);
+		}
+		writeResponseEnd(writer);
+		writer.flush();
+	}
+
+	/**
+	 * Write the opening response element.
+	 *
+	 * Responses may be written incrementally using writeResponseStart,
+	 * writeResultStart, writeResultItems (once per page of results),
+	 * writeResultEnd, and writeResponseEnd.
+	 *
+	 * @param writer
+	 *            where xml is written.
+	 * @throws Exception if error occurs
+	 */
+	public static void writeResponseStart(final Writer writer)
+			throws Exception {
 		writer.write("<?xml version=\"1.0\"?>");
 		writer.write("<" + RESPONSE_ELEMENT);
 		writer.write(" xmlns=\"" + INDEXER_XMLNS + "\"");
 		writer.write(" xmlns:product=\""
 				+ XmlProductHandler.PRODUCT_XML_NAMESPACE + "\"");
 		writer.write(">");
-		List<SearchQuery> results = response.getResults();
-		for (Iterator<SearchQuery> resultsIterator = results.iterator(); resultsIterator
-				.hasNext();) {
-			SearchQuery result = resultsIterator.next();
-			writer.write("<" + RESULT_ELEMENT);
-			writer.write(" " + METHOD_ATTRIBUTE + "=\""
-					+ result.getType().getXmlMethodName() + "\"");
-			writer.write(">");
-			writer.write(getQueryXMLString(result));
-
-			if (result.getType() == SearchMethod.EVENT_DETAIL) {
-				EventDetailQuery edResult = (EventDetailQuery) result;
-				List<Event> events = edResult.getResult();
-				for (Iterator<Event> eventIter = events.iterator(); eventIter
-						.hasNext();) {
-					Event event = eventIter.next();
-					writer.write("<" + EVENT_ELEMENT);
-					if (event.getSource() != null)
-						writer.write(" " + SOURCE_ATTRIBUTE + "=\""
-								+ event.getSource() + "\"");
-					if (event.getSourceCode() != null)
-						writer.write(" " + SOURCE_CODE_ATTRIBUTE + "=\""
-								+ event.getSourceCode() + "\"");
-					if (event.getTime() != null)
-						writer.write(" " + TIME_ATTRIBUTE + "=\""
-								+ XmlUtils.formatDate(event.getTime()) + "\"");
-					if (event.getLatitude() != null)
-						writer.write(" " + LATITUDE_ATTRIBUTE + "=\""
-								+ event.getLatitude().toString() + "\"");
-					if (event.getLongitude() != null)
-						writer.write(" " + LONGITUDE_ATTRIBUTE + "=\""
-								+ event.getLongitude().toString() + "\"");
-					if (event.getDepth() != null)
-						writer.write(" " + DEPTH_ATTRIBUTE + "=\""
-								+ event.getDepth().toString() + "\"");
-					if (event.getMagnitude() != null)
-						writer.write(" " + MAGNITUDE_ATTRIBUTE + "=\""
-								+ event.getMagnitude().toString() + "\"");
-					writer.write(">");
-					if (!event.getProducts().isEmpty()) {
-						Map<String, List<ProductSummary>> products = event
-								.getProducts();
-						for (Iterator<String> prodIter = products.keySet()
-								.iterator(); prodIter.hasNext();) {
-							String prodType = prodIter.next();
-							for (Iterator<ProductSummary> summaryIter = products
-									.get(prodType).iterator(); summaryIter
-									.hasNext();) {
-								writer.write(getProductSummaryXmlString(summaryIter
-										.next()));
-							}
-						}
-					}
-					writer.write("</" + EVENT_ELEMENT + ">");
-				}
-			} else if (result.getType() == SearchMethod.EVENTS_SUMMARY) {
-				EventsSummaryQuery esResult = (EventsSummaryQuery) result;
-				List<EventSummary> summaries = esResult.getResult();
-				for (Iterator<EventSummary> summaryIter = summaries.iterator(); summaryIter
-						.hasNext();) {
-					writer.write("<" + EVENT_SUMMARY_ELEMENT);
-					EventSummary summary = summaryIter.next();
-					if (summary.getSource() != null)
-						writer.write(" " + SOURCE_ATTRIBUTE + "=\""
-								+ summary.getSource() + "\"");
-					if (summary.getSourceCode() != null)
-						writer.write(" " + SOURCE_CODE_ATTRIBUTE + "=\""
-								+ summary.getSourceCode() + "\"");
-					if (summary.getTime() != null)
-						writer.write(" " + TIME_ATTRIBUTE + "=\""
-								+ XmlUtils.formatDate(summary.getTime()) + "\"");
-					if (summary.getLatitude() != null)
-						writer.write(" " + LATITUDE_ATTRIBUTE + "=\""
-								+ summary.getLatitude().toString() + "\"");
-					if (summary.getLongitude() != null)
-						writer.write(" " + LONGITUDE_ATTRIBUTE + "=\""
-								+ summary.getLongitude().toString() + "\"");
-					if (summary.getDepth() != null)
-						writer.write(" " + DEPTH_ATTRIBUTE + "=\""
-								+ summary.getDepth().toString() + "\"");
-					if (summary.getMagnitude() != null)
-						writer.write(" " + MAGNITUDE_ATTRIBUTE + "=\""
-								+ summary.getMagnitude().toString() + "\"");
-					writer.write(">");
-					if (!summary.getProperties().isEmpty()) {
-						Map<String, String> properties = summary
-								.getProperties();
-						for (Iterator<String> propIter = properties.keySet()
-								.iterator(); propIter.hasNext();) {
-							String property = propIter.next();
-							String value = properties.get(property);
-							writer.write("<product:"
-									+ XmlProductHandler.PROPERTY_ELEMENT);
-							writer.write(" "
-									+ XmlProductHandler.PROPERTY_ATTRIBUTE_NAME
-									+ "=\"" + property + "\"");
-							writer.write(" "
-									+ XmlProductHandler.PROPERTY_ATTRIBUTE_VALUE
-									+ "=\"" + value + "\"");
-							writer.write(" />");
-						}
-					}
-					writer.write("</" + EVENT_SUMMARY_ELEMENT + ">");
-				}
-			} else if (result.getType() == SearchMethod.PRODUCT_DETAIL) {
-				ProductDetailQuery pdResult = (ProductDetailQuery) result;
-				List<Product> products = pdResult.getResult();
-				writer.flush();
-				for (Iterator<Product> prodIter = products.iterator(); prodIter
+	}
+
+	/**
+	 * Write the opening result element, and the query it answers.
+	 *
+	 * @param writer
+	 *            where xml is written.
+	 * @param result
+	 *            the query, nextCursor is included when set.
+	 * @throws Exception if error occurs
+	 */
+	public static void writeResultStart(final Writer writer,
+			final SearchQuery result) throws Exception {
+		writer.write("<" + RESULT_ELEMENT);
+		writer.write(" " + METHOD_ATTRIBUTE + "=\""
+				+ result.getType().getXmlMethodName() + "\"");
+		if (result.getNextCursor() != null) {
+			writer.write(" " + NEXT_CURSOR_ATTRIBUTE + "=\""
+					+ result.getNextCursor() + "\"");
+		}
+		writer.write(">");
+		writer.write(getQueryXMLString(result));
+	}
+
+	/**
+	 * Write the current results of a query.
+	 *
+	 * @param writer
+	 *            where xml is written.
+	 * @param out
+	 *            stream used by writer, where products are written.
+	 * @param result
+	 *            query with results to write.
+	 * @throws Exception if error occurs
+	 */
+	public static void writeResultItems(final Writer writer,
+			final OutputStream out, final SearchQuery result) throws Exception {
+		if (result.getType() == SearchMethod.EVENT_DETAIL) {
+			EventDetailQuery edResult = (EventDetailQuery) result;
+			List<Event> events = edResult.getResult();
+			for (Iterator<Event> eventIter = events.iterator(); eventIter
+					.hasNext();) {
+				writeEvent(writer, eventIter.next());
+			}
+		} else if (result.getType() == SearchMethod.EVENTS_SUMMARY) {
+			EventsSummaryQuery esResult = (EventsSummaryQuery) result;
+			List<EventSummary> summaries = esResult.getResult();
+			for (Iterator<EventSummary> summaryIter = summaries.iterator(); summaryIter
+					.hasNext();) {
+				writeEventSummary(writer, summaryIter.next());
+			}
+		} else if (result.getType() == SearchMethod.PRODUCT_DETAIL) {
+			ProductDetailQuery pdResult = (ProductDetailQuery) result;
+			List<Product> products = pdResult.getResult();
+			writer.flush();
+			for (Iterator<Product> prodIter = products.iterator(); prodIter
+					.hasNext();) {
+				writeProduct(out, prodIter.next());
+			}
+		} else if (result.getType() == SearchMethod.PRODUCTS_SUMMARY) {
+			ProductsSummaryQuery psQuery = (ProductsSummaryQuery) result;
+			List<ProductSummary> summaries = psQuery.getResult();
+			for (Iterator<ProductSummary> summaryIter = summaries
+					.iterator(); summaryIter.hasNext();) {
+				writer.write(getProductSummaryXmlString(summaryIter.next()));
+			}
+		}
+	}
+
+	/**
+	 * Write the closing result element.
+	 *
+	 * @param writer
+	 *            where xml is written.
+	 * @throws Exception if error occurs
+	 */
+	public static void writeResultEnd(final Writer writer) throws Exception {
+		writer.write("</" + RESULT_ELEMENT + ">");
+	}
+
+	/**
+	 * Write the closing response element, and flush writer.
+	 *
+	 * @param writer
+	 *            where xml is written.
+	 * @throws Exception if error occurs
+	 */
+	public static void writeResponseEnd(final Writer writer) throws Exception {
+		writer.write("</" + RESPONSE_ELEMENT + ">");
+		writer.flush();
+	}
+
+	/**
+	 * Write an event and its products.
+	 *
+	 * @param writer
+	 *            where xml is written.
+	 * @param event
+	 *            event to write.
+	 * @throws Exception if error occurs
+	 */
+	private static void writeEvent(final Writer writer, final Event event)
+			throws Exception {
+		writer.write("<" + EVENT_ELEMENT);
+		if (event.getSource() != null)
+			writer.write(" " + SOURCE_ATTRIBUTE + "=\""
+					+ event.getSource() + "\"");
+		if (event.getSourceCode() != null)
+			writer.write(" " + SOURCE_CODE_ATTRIBUTE + "=\""
+					+ event.getSourceCode() + "\"");
+		if (event.getTime() != null)
+			writer.write(" " + TIME_ATTRIBUTE + "=\""
+					+ XmlUtils.formatDate(event.getTime()) + "\"");
+		if (event.getLatitude() != null)
+			writer.write(" " + LATITUDE_ATTRIBUTE + "=\""
+					+ event.getLatitude().toString() + "\"");
+		if (event.getLongitude() != null)
+			writer.write(" " + LONGITUDE_ATTRIBUTE + "=\""
+					+ event.getLongitude().toString() + "\"");
+		if (event.getDepth() != null)
+			writer.write(" " + DEPTH_ATTRIBUTE + "=\""
+					+ event.getDepth().toString() + "\"");
+		if (event.getMagnitude() != null)
+			writer.write(" " + MAGNITUDE_ATTRIBUTE + "=\""
+					+ event.getMagnitude().toString() + "\"");
+		writer.write(">");
+		if (!event.getProducts().isEmpty()) {
+			Map<String, List<ProductSummary>> products = event
+					.getProducts();
+			for (Iterator<String> prodIter = products.keySet()
+					.iterator(); prodIter.hasNext();) {
+				String prodType = prodIter.next();
+				for (Iterator<ProductSummary> summaryIter = products
+						.get(prodType).iterator(); summaryIter
 						.hasNext();) {
-					Product product = prodIter.next();
-					XmlProductHandler handler = new XmlProductHandler(out, false);
-					handler.onBeginProduct(product.getId(),
-							product.getStatus(), product.getTrackerURL());
-					Map<String, String> properties = product.getProperties();
-					for (Iterator<String> propIter = properties.keySet()
-							.iterator(); propIter.hasNext();) {
-						String name = propIter.next();
-						handler.onProperty(product.getId(), name,
-								properties.get(name));
-					}
-					Map<String, List<URI>> links = product.getLinks();
-					for (Iterator<String> relIter = links.keySet().iterator(); relIter
-							.hasNext();) {
-						String relation = relIter.next();
-						for (Iterator<URI> uriIter = links.get(relation)
-								.iterator(); uriIter.hasNext();) {
-							URI href = uriIter.next();
-							handler.onLink(product.getId(), relation, href);
-						}
-					}
-					Map<String, Content> contents = product.getContents();
-					for (Iterator<String> pathIter = contents.keySet()
-							.iterator(); pathIter.hasNext();) {
-						String path = pathIter.next();
-						handler.onContent(product.getId(), path,
-								contents.get(path));
-					}
-					if (product.getSignature() != null)
-						handler.onSignature(product.getId(),
-								product.getSignature());
-					handler.onEndProduct(product.getId());
-				}
-			} else if (result.getType() == SearchMethod.PRODUCTS_SUMMARY) {
-				ProductsSummaryQuery psQuery = (ProductsSummaryQuery) result;
-				List<ProductSummary> summaries = psQuery.getResult();
-				for (Iterator<ProductSummary> summaryIter = summaries
-						.iterator(); summaryIter.hasNext();) {
-					writer.write(getProductSummaryXmlString(summaryIter.next()));
+					writer.write(getProductSummaryXmlString(summaryIter
+							.next()));
 				}
 			}
+		}
+		writer.write("</" + EVENT_ELEMENT + ">");
+	}
 
-			writer.write("</" + RESULT_ELEMENT + ">");
+	/**
+	 * Write an event summary.
+	 *
+	 * @param writer
+	 *            where xml is written.
+	 * @param summary
+	 *            event summary to write.
+	 * @throws Exception if error occurs
+	 */
+	private static void writeEventSummary(final Writer writer,
+			final EventSummary summary) throws Exception {
+		writer.write("<" + EVENT_SUMMARY_ELEMENT);
+		if (summary.getSource() != null)
+			writer.write(" " + SOURCE_ATTRIBUTE + "=\""
+					+ summary.getSource() + "\"");
+		if (summary.getSourceCode() != null)
+			writer.write(" " + SOURCE_CODE_ATTRIBUTE + "=\""
+					+ summary.getSourceCode() + "\"");
+		if (summary.getTime() != null)
+			writer.write(" " + TIME_ATTRIBUTE + "=\""
+					+ XmlUtils.formatDate(summary.getTime()) + "\"");
+		if (summary.getLatitude() != null)
+			writer.write(" " + LATITUDE_ATTRIBUTE + "=\""
+					+ summary.getLatitude().toString() + "\"");
+		if (summary.getLongitude() != null)
+			writer.write(" " + LONGITUDE_ATTRIBUTE + "=\""
+					+ summary.getLongitude().toString() + "\"");
+		if (summary.getDepth() != null)
+			writer.write(" " + DEPTH_ATTRIBUTE + "=\""
+					+ summary.getDepth().toString() + "\"");
+		if (summary.getMagnitude() != null)
+			writer.write(" " + MAGNITUDE_ATTRIBUTE + "=\""
+					+ summary.getMagnitude().toString() + "\"");
+		writer.write(">");
+		if (!summary.getProperties().isEmpty()) {
+			Map<String, String> properties = summary
+					.getProperties();
+			for (Iterator<String> propIter = properties.keySet()
+					.iterator(); propIter.hasNext();) {
+				String property = propIter.next();
+				String value = properties.get(property);
+				writer.write("<product:"
+						+ XmlProductHandler.PROPERTY_ELEMENT);
+				writer.write(" "
+						+ XmlProductHandler.PROPERTY_ATTRIBUTE_NAME
+						+ "=\"" + property + "\"");
+				writer.write(" "
+						+ XmlProductHandler.PROPERTY_ATTRIBUTE_VALUE
+						+ "=\"" + value + "\"");
+				writer.write(" />");
+			}
 		}
-		writer.write("</" + RESPONSE_ELEMENT + ">");
-		writer.flush();
+		writer.write("</" + EVENT_SUMMARY_ELEMENT + ">");
+	}
+
+	/**
+	 * Write a product.
+	 *
+	 * @param out
+	 *            where xml is written, any writer using out must be flushed.
+	 * @param product
+	 *            product to write.
+	 * @throws Exception if error occurs
+	 */
+	public static void writeProduct(final OutputStream out,
+			final Product product) throws Exception {
+		XmlProductHandler handler = new XmlProductHandler(out, false);
+		handler.onBeginProduct(product.getId(),
+				product.getStatus(), product.getTrackerURL());
+		Map<String, String> properties = product.getProperties();
+		for (Iterator<String> propIter = properties.keySet()
+				.iterator(); propIter.hasNext();) {
+			String name = propIter.next();
+			handler.onProperty(product.getId(), name,
+					properties.get(name));
+		}
+		Map<String, List<URI>> links = product.getLinks();
+		for (Iterator<String> relIter = links.keySet().iterator(); relIter
+				.hasNext();) {
+			String relation = relIter.next();
+			for (Iterator<URI> uriIter = links.get(relation)
+					.iterator(); uriIter.hasNext();) {
+				URI href = uriIter.next();
+				handler.onLink(product.getId(), relation, href);
+			}
+		}
+		Map<String, Content> contents = product.getContents();
+		for (Iterator<String> pathIter = contents.keySet()
+				.iterator(); pathIter.hasNext();) {
+			String path = pathIter.next();
+			handler.onContent(product.getId(), path,
+					contents.get(path));
+		}
+		if (product.getSignature() != null)
+			handler.onSignature(product.getId(),
+					product.getSignature());
+		handler.onEndProduct(product.getId());
 	}
 
 	/**
@@ -422,6 +561,13 @@ public class SearchXML {
 			queryXmlString.append(" " + PRODUCT_STATUS_ATTRIBUTE + "=\""
 					+ prodIndexQuery.getProductStatus() + "\"");
 
+		if (prodIndexQuery.getLimit() != null)
+			queryXmlString.append(" " + LIMIT_ATTRIBUTE + "=\""
+					+ prodIndexQuery.getLimit() + "\"");
+		if (query.getCursor() != null)
+			queryXmlString.append(" " + CURSOR_ATTRIBUTE + "=\""
+					+ query.getCursor() + "\"");
+
 		queryXmlString.append(">");
 
 		Iterator<ProductId> ids = prodIndexQuery.getProductIds().iterator();
@@ -0,0 +1,205 @@
+/*
+ * SerializedProductCache
+ */
+package gov.usgs.earthquake.indexer;
+
+import gov.usgs.earthquake.product.ProductId;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of serialized product xml, used by SearchServerSocket for
+ * PRODUCT_DETAIL queries.
+ *
+ * Stored products do not change, so popular products are loaded from storage
+ * and encoded once, and later searches write the cached bytes. Entries must be
+ * removed when a product is removed from storage.
+ *
+ * The least recently used entries are removed once the total payload size
+ * exceeds maxBytes. Payloads larger than maxPayloadBytes are not cached.
+ */
+public class SerializedProductCache {
+
+	/** Default maximum total payload size, 64MB. */
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+	/** Default maximum size of one cached payload, 8MB. */
+	public static final long DEFAULT_MAX_PAYLOAD_BYTES = 8L * 1024 * 1024;
+
+	/**
+	 * Serializes a product.
+	 */
+	public static interface ProductSerializer {
+		/**
+		 * @param id product to serialize.
+		 * @return serialized product, or null if not found.
+		 * @throws Exception if product cannot be loaded or serialized.
+		 */
+		public byte[] serialize(final ProductId id) throws Exception;
+	}
+
+	/** Cached payloads, in access order. */
+	private final LinkedHashMap<ProductId, byte[]> cache = new LinkedHashMap<ProductId, byte[]>(
+			16, 0.75f, true);
+
+	/** Maximum total payload size, 0 to disable. */
+	private long maxBytes;
+	/** Maximum size of one cached payload. */
+	private long maxPayloadBytes;
+
+	/** Total size of cached payloads. */
+	private long bytes = 0L;
+	/** Incremented on removal, so payloads serialized before are not cached. */
+	private long generation = 0L;
+
+	private long hits = 0L;
+	private long misses = 0L;
+
+	/**
+	 * Create a cache using default sizes.
+	 */
+	public SerializedProductCache() {
+		this(DEFAULT_MAX_BYTES, DEFAULT_MAX_PAYLOAD_BYTES);
+	}
+
+	/**
+	 * Create a cache.
+	 *
+	 * @param maxBytes
+	 *            maximum total payload size, 0 to disable caching.
+	 * @param maxPayloadBytes
+	 *            maximum size of one cached payload.
+	 */
+	public SerializedProductCache(final long maxBytes,
+			final long maxPayloadBytes) {
+		this.maxBytes = maxBytes;
+		this.maxPayloadBytes = maxPayloadBytes;
+	}
+
+	/**
+	 * Get a serialized product, serializing it when not cached.
+	 *
+	 * @param id
+	 *            product id.
+	 * @param serializer
+	 *            serializes product when not cached.
+	 * @return serialized product, or null if serializer returns null. The
+	 *         array may be shared and must not be modified.
+	 * @throws Exception
+	 *             if serializer throws an exception, errors are not cached.
+	 */
+	public byte[] getPayload(final ProductId id,
+			final ProductSerializer serializer) throws Exception {
+		final long startGeneration;
+		synchronized (this) {
+			final byte[] payload = cache.get(id);
+			if (payload != null) {
+				hits++;
+				return payload;
+			}
+			misses++;
+			startGeneration = generation;
+		}
+
+		// serialize outside lock, concurrent misses may both serialize
+		final byte[] payload = serializer.serialize(id);
+		if (payload == null) {
+			return null;
+		}
+		synchronized (this) {
+			if (maxBytes <= 0 || payload.length > maxPayloadBytes
+					|| generation != startGeneration) {
+				// disabled, too large, or removed while serializing
+				return payload;
+			}
+			final byte[] previous = cache.put(id, payload);
+			if (previous != null) {
+				bytes -= previous.length;
+			}
+			bytes += payload.length;
+			trim();
+		}
+		return payload;
+	}
+
+	/**
+	 * Remove a product from the cache.
+	 *
+	 * Call when the product is removed from storage.
+	 *
+	 * @param id
+	 *            product id.
+	 */
+	public synchronized void remove(final ProductId id) {
+		generation++;
+		final byte[] previous = cache.remove(id);
+		if (previous != null) {
+			bytes -= previous.length;
+		}
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public synchronized void clear() {
+		generation++;
+		cache.clear();
+		bytes = 0L;
+	}
+
+	/**
+	 * Remove least recently used entries until within maxBytes.
+	 */
+	private void trim() {
+		final Iterator<Map.Entry<ProductId, byte[]>> iter = cache.entrySet()
+				.iterator();
+		while (bytes > maxBytes && iter.hasNext()) {
+			bytes -= iter.next().getValue().length;
+			iter.remove();
+		}
+	}
+
+	/** @return number of cached entries. */
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	/** @return total size of cached payloads. */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/** @return number of requests answered from the cache. */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/** @return number of requests that were serialized. */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/** @return maximum total payload size, 0 when disabled. */
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/** @param maxBytes maximum total payload size, 0 to disable. */
+	public synchronized void setMaxBytes(final long maxBytes) {
+		this.maxBytes = maxBytes;
+		trim();
+	}
+
+	/** @return maximum size of one cached payload. */
+	public synchronized long getMaxPayloadBytes() {
+		return maxPayloadBytes;
+	}
+
+	/** @param maxPayloadBytes maximum size of one cached payload. */
+	public synchronized void setMaxPayloadBytes(final long maxPayloadBytes) {
+		this.maxPayloadBytes = maxPayloadBytes;
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * ContentProbe
+ */
+package gov.usgs.earthquake.product;
+
+import gov.usgs.util.StreamUtils;
+
+import java.awt.Dimension;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Read metadata about content from its header, without reading or decoding
+ * the whole content.
+ */
+public class ContentProbe {
+
+	/** PNG file signature. */
+	private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G',
+			'\r', '\n', 0x1a, '\n' };
+	/** Bytes needed to read PNG (IHDR) or GIF dimensions. */
+	private static final int HEADER_LENGTH = 24;
+
+	/**
+	 * Get image dimensions.
+	 *
+	 * PNG and GIF dimensions are read from fixed header fields. Other formats
+	 * use an ImageIO reader, which only reads until the image header.
+	 *
+	 * @param content
+	 *            image content.
+	 * @return image dimensions, or null if not a supported image format.
+	 * @throws IOException
+	 *             if error occurs reading content.
+	 */
+	public static Dimension getImageSize(final Content content)
+			throws IOException {
+		InputStream in = null;
+		try {
+			in = new BufferedInputStream(content.getInputStream());
+			return getImageSize(in);
+		} finally {
+			StreamUtils.closeStream(in);
+		}
+	}
+
+	/**
+	 * Get image dimensions.
+	 *
+	 * @param in
+	 *            stream that supports mark, not closed by this method.
+	 * @return image dimensions, or null if not a supported image format.
+	 * @throws IOException
+	 *             if error occurs reading stream.
+	 */
+	public static Dimension getImageSize(final InputStream in)
+			throws IOException {
+		in.mark(HEADER_LENGTH);
+		byte[] header = new byte[HEADER_LENGTH];
+		int length = readFully(in, header);
+		if (length == HEADER_LENGTH && startsWith(header, PNG_SIGNATURE)
+				&& header[12] == 'I' && header[13] == 'H' && header[14] == 'D'
+				&& header[15] == 'R') {
+			return new Dimension(readInt(header, 16), readInt(header, 20));
+		}
+		if (length >= 10 && header[0] == 'G' && header[1] == 'I'
+				&& header[2] == 'F' && header[3] == '8') {
+			return new Dimension((header[6] & 0xff) | (header[7] & 0xff) << 8,
+					(header[8] & 0xff) | (header[9] & 0xff) << 8);
+		}
+
+		// let ImageIO read header
+		in.reset();
+		ImageInputStream imageIn = ImageIO.createImageInputStream(in);
+		if (imageIn == null) {
+			return null;
+		}
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(imageIn);
+			if (!readers.hasNext()) {
+				return null;
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(imageIn, true, true);
+				return new Dimension(reader.getWidth(0), reader.getHeight(0));
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			imageIn.close();
+		}
+	}
+
+	private static int readFully(final InputStream in, final byte[] buffer)
+			throws IOException {
+		int total = 0;
+		while (total < buffer.length) {
+			int read = in.read(buffer, total, buffer.length - total);
+			if (read == -1) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	private static boolean startsWith(final byte[] bytes, final byte[] prefix) {
+		for (int i = 0; i < prefix.length; i++) {
+			if (bytes[i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int readInt(final byte[] bytes, final int offset) {
+		return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16
+				| (bytes[offset + 2] & 0xff) << 8 | (bytes[offset + 3] & 0xff);
+	}
+
+}
@@ -6,6 +6,7 @@ package gov.usgs.earthquake.product;
 import gov.usgs.util.StreamUtils;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -101,18 +102,25 @@ public class FileContent extends AbstractContent {
 			parent.mkdirs();
 		}
 
-		// save handle to stream to force it closed
-		OutputStream out = null;
-		InputStream in = null;
-		try {
-			in = content.getInputStream();
-			out = StreamUtils.getOutputStream(toWrite);
-			// write the file
-			StreamUtils.transferStream(in, out);
-		} finally {
-			// force the stream closed
-			StreamUtils.closeStream(in);
-			StreamUtils.closeStream(out);
+		if (content instanceof FileRegionContent) {
+			// copy file to file without reading through java buffers
+			try (FileOutputStream out = new FileOutputStream(toWrite)) {
+				((FileRegionContent) content).transferTo(out.getChannel());
+			}
+		} else {
+			// save handle to stream to force it closed
+			OutputStream out = null;
+			InputStream in = null;
+			try {
+				in = content.getInputStream();
+				out = StreamUtils.getOutputStream(toWrite);
+				// write the file
+				StreamUtils.transferStream(in, out);
+			} finally {
+				// force the stream closed
+				StreamUtils.closeStream(in);
+				StreamUtils.closeStream(out);
+			}
 		}
 
 		// update modification date in filesystem
@@ -0,0 +1,162 @@
+/*
+ * FileRegionContent
+ */
+package gov.usgs.earthquake.product;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Content stored in a region of a larger file.
+ *
+ * The file is opened each time content is read, and only the region between
+ * offset and offset + length is read. Use transferTo to copy content to a
+ * channel without copying through java buffers, FileContent uses transferTo
+ * when content is written to a file.
+ */
+public class FileRegionContent extends AbstractContent {
+
+	/** File containing content. */
+	private final File file;
+
+	/** Offset of first content byte in file. */
+	private final long offset;
+
+	/**
+	 * Construct a new FileRegionContent.
+	 *
+	 * @param file
+	 *            file containing content.
+	 * @param offset
+	 *            offset of first content byte in file.
+	 * @param length
+	 *            number of content bytes.
+	 */
+	public FileRegionContent(final File file, final long offset,
+			final long length) {
+		this.file = file;
+		this.offset = offset;
+		setLength(length);
+	}
+
+	/**
+	 * @return the file containing content.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return offset of first content byte in file.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return new RegionInputStream(new RandomAccessFile(file, "r")
+				.getChannel(), offset, getLength());
+	}
+
+	/**
+	 * Copy content to a channel.
+	 *
+	 * Uses FileChannel.transferTo, which may avoid copying content into user
+	 * space.
+	 *
+	 * @param target
+	 *            channel where content is written.
+	 * @return number of bytes written.
+	 * @throws IOException
+	 *             if IO error occurs.
+	 */
+	public long transferTo(final WritableByteChannel target)
+			throws IOException {
+		long length = getLength();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			long transferred = 0L;
+			while (transferred < length) {
+				long count = channel.transferTo(offset + transferred,
+						length - transferred, target);
+				if (count <= 0) {
+					throw new IOException("unable to transfer region of "
+							+ file + ", file may be truncated");
+				}
+				transferred += count;
+			}
+			return transferred;
+		}
+	}
+
+	/**
+	 * Free any resources associated with this content.
+	 */
+	@Override
+	public void close() {
+		// nothing to free, file is opened when read
+	}
+
+	/**
+	 * InputStream that reads a region of a FileChannel using positional reads.
+	 */
+	private static class RegionInputStream extends InputStream {
+
+		private final FileChannel channel;
+		private long position;
+		private final long end;
+
+		RegionInputStream(final FileChannel channel, final long offset,
+				final long length) {
+			this.channel = channel;
+			this.position = offset;
+			this.end = offset + length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : (b[0] & 0xFF);
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+				throws IOException {
+			if (position >= end) {
+				return -1;
+			}
+			int toRead = (int) Math.min(len, end - position);
+			int read = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+			if (read == -1) {
+				throw new IOException("unexpected end of file, region is truncated");
+			}
+			position += read;
+			return read;
+		}
+
+		@Override
+		public long skip(final long n) {
+			long skipped = Math.max(0L, Math.min(n, end - position));
+			position += skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return (int) Math.min(Integer.MAX_VALUE, end - position);
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+	}
+
+}
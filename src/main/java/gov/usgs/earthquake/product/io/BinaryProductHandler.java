@@ -3,6 +3,7 @@ package gov.usgs.earthquake.product.io;
 import gov.usgs.earthquake.product.ByteContent;
 import gov.usgs.earthquake.product.Content;
 import gov.usgs.earthquake.product.ProductId;
+import gov.usgs.earthquake.util.ChunkedOutputStream;
 import gov.usgs.util.StreamUtils;
 import gov.usgs.util.CryptoUtils.Version;
 
@@ -10,6 +11,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URL;
+import java.util.Set;
 
 /**
  * Generator of binary format for product data.
@@ -69,6 +71,26 @@ import java.net.URL;
  * <li>length (Long)</li>
  * <li>raw bytes</li>
  * </ol>
+ * or, when content is encoded:
+ * <ol>
+ * <li>"CODEDCONTENT" (String)</li>
+ * <li>path (String)</li>
+ * <li>contentType (String)</li>
+ * <li>lastModified (Date)</li>
+ * <li>length (Long), before encoding</li>
+ * <li>codec (String), see ContentCodecs</li>
+ * <li>encoded bytes, as chunks of Integer length and bytes, ending with a
+ * chunk of length 0</li>
+ * </ol>
+ * or, when the reader already has content with the same hash:
+ * <ol>
+ * <li>"CONTENTREF" (String)</li>
+ * <li>path (String)</li>
+ * <li>contentType (String)</li>
+ * <li>lastModified (Date)</li>
+ * <li>length (Long)</li>
+ * <li>sha256 (String)</li>
+ * </ol>
  * </li>
  *
  * <li>Signature Version, 0 or 1.
@@ -104,6 +126,10 @@ public class BinaryProductHandler implements ProductHandler {
 	public static final String LINK = "LINK";
 	/** CONTENT */
 	public static final String CONTENT = "CONTENT";
+	/** CODEDCONTENT */
+	public static final String CODEDCONTENT = "CODEDCONTENT";
+	/** CONTENTREF */
+	public static final String CONTENTREF = "CONTENTREF";
 	/** SIGNATURE VERSION */
 	public static final String SIGNATUREVERSION = "SIGNATUREVERSION";
 	/** SIGNATURE */
@@ -113,14 +139,47 @@ public class BinaryProductHandler implements ProductHandler {
 
 	private OutputStream out;
 	private BinaryIO io;
+	/** codec used for content, or null to write raw content. */
+	private ContentCodec codec;
+	/** sha256 of content the reader already has, or null. */
+	private Set<String> knownContents;
 
 	/**
 	 * Constructor. Sets up a new BinaryIO
 	 * @param out an OutputStream
 	 */
 	public BinaryProductHandler(final OutputStream out) {
+		this(out, null);
+	}
+
+	/**
+	 * Constructor that encodes content.
+	 *
+	 * Content that is small or already compressed is written raw,
+	 * see ContentCodecs.chooseCodec. Readers must support the CODEDCONTENT
+	 * record when codec is not null.
+	 *
+	 * @param out an OutputStream
+	 * @param codec codec for content, or null to write raw content
+	 */
+	public BinaryProductHandler(final OutputStream out,
+			final ContentCodec codec) {
 		this.out = out;
 		this.io = new BinaryIO();
+		this.codec = codec;
+	}
+
+	/**
+	 * Set content the reader already has.
+	 *
+	 * Content with a matching sha256 is written as a CONTENTREF record
+	 * instead of bytes. Readers must be able to resolve these references,
+	 * see BinaryProductSource(InputStream, Map).
+	 *
+	 * @param knownContents sha256 values, or null
+	 */
+	public void setKnownContents(final Set<String> knownContents) {
+		this.knownContents = knownContents;
 	}
 
 	@Override
@@ -162,14 +221,44 @@ public class BinaryProductHandler implements ProductHandler {
 			content = new ByteContent(content);
 		}
 
-		io.writeString(CONTENT, out);
+		long length = content.getLength().longValue();
+		if (knownContents != null && knownContents.size() > 0) {
+			String sha256 = content.getSha256();
+			if (knownContents.contains(sha256)) {
+				io.writeString(CONTENTREF, out);
+				io.writeString(path, out);
+				io.writeString(content.getContentType(), out);
+				io.writeDate(content.getLastModified(), out);
+				io.writeLong(length, out);
+				io.writeString(sha256, out);
+				return;
+			}
+		}
+		ContentCodec contentCodec = ContentCodecs.chooseCodec(codec, path,
+				content.getContentType(), length);
+
+		io.writeString(contentCodec == null ? CONTENT : CODEDCONTENT, out);
 		io.writeString(path, out);
 
 		io.writeString(content.getContentType(), out);
 		io.writeDate(content.getLastModified(), out);
 		InputStream contentInputStream = content.getInputStream();
 		try {
-			io.writeStream(content.getLength().longValue(), contentInputStream, out);
+			if (contentCodec == null) {
+				io.writeStream(length, contentInputStream, out);
+			} else {
+				io.writeLong(length, out);
+				io.writeString(contentCodec.getName(), out);
+				// closing encoding stream writes end of chunks, not out
+				OutputStream encoded = contentCodec.getEncodingStream(
+						new ChunkedOutputStream(out));
+				byte[] buffer = new byte[StreamUtils.DEFAULT_BUFFER_SIZE];
+				int read;
+				while ((read = contentInputStream.read(buffer)) != -1) {
+					encoded.write(buffer, 0, read);
+				}
+				encoded.close();
+			}
 		} finally {
 			StreamUtils.closeStream(contentInputStream);
 		}
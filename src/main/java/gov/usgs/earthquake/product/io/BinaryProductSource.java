@@ -1,16 +1,20 @@
 package gov.usgs.earthquake.product.io;
 
+import gov.usgs.earthquake.product.Content;
 import gov.usgs.earthquake.product.InputStreamContent;
 import gov.usgs.earthquake.product.ProductId;
+import gov.usgs.earthquake.util.ChunkedInputStream;
 import gov.usgs.util.StreamUtils;
 import gov.usgs.util.CryptoUtils.Version;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.net.URI;
 import java.net.URL;
 import java.util.Date;
+import java.util.Map;
 
 /**
  * Parser for binary format for product data.
@@ -23,14 +27,28 @@ public class BinaryProductSource implements ProductSource {
 	private InputStream in;
 	/** binary io utility. */
 	private BinaryIO io;
+	/** content used to resolve CONTENTREF records, by sha256. */
+	private Map<String, Content> knownContents;
 
 	/**
 	 * Constructor. Sets up a new BinaryIO
 	 * @param in an InputStream
 	 */
 	public BinaryProductSource(final InputStream in) {
+		this(in, null);
+	}
+
+	/**
+	 * Constructor for streams that may contain CONTENTREF records.
+	 *
+	 * @param in an InputStream
+	 * @param knownContents content by sha256, used to resolve references
+	 */
+	public BinaryProductSource(final InputStream in,
+			final Map<String, Content> knownContents) {
 		this.in = in;
 		this.io = new BinaryIO();
+		this.knownContents = knownContents;
 	}
 
 	@Override
@@ -63,43 +81,40 @@ public class BinaryProductSource implements ProductSource {
 					String contentType = io.readString(in);
 					Date lastModified = io.readDate(in);
 					Long length = io.readLong(in);
-
-					// use a piped output stream to deliver content to separate
-					// processing thread. this thread will continue to read
-					// InputStream, transfer content to pipedOutputStream.
-					// Background thread calls onContent, and reads from
-					// pipedInputStream.
-					PipedOutputStream pipedOut = new PipedOutputStream();
-					PipedInputStream pipedIn = new PipedInputStream(pipedOut);
-
-					final InputStreamContent content = new InputStreamContent(
-							pipedIn);
+					readContent(out, path, contentType, lastModified, length,
+							null);
+				} else if (next.equals(BinaryProductHandler.CODEDCONTENT)) {
+					String path = io.readString(in);
+					String contentType = io.readString(in);
+					Date lastModified = io.readDate(in);
+					Long length = io.readLong(in);
+					ContentCodec codec = ContentCodecs.getCodec(
+							io.readString(in));
+					readContent(out, path, contentType, lastModified, length,
+							codec);
+				} else if (next.equals(BinaryProductHandler.CONTENTREF)) {
+					String path = io.readString(in);
+					String contentType = io.readString(in);
+					Date lastModified = io.readDate(in);
+					Long length = io.readLong(in);
+					String sha256 = io.readString(in);
+					Content known = (knownContents == null ? null
+							: knownContents.get(sha256));
+					if (known == null) {
+						throw new IOException("unknown content reference '"
+								+ sha256 + "' for path '" + path + "'");
+					}
+					InputStreamContent content = new InputStreamContent(
+							known.getInputStream());
 					content.setContentType(contentType);
 					content.setLastModified(lastModified);
 					content.setLength(length);
-
-					// background thread delivers content object to product handler
-					ContentOutputThread outputThread = new ContentOutputThread(out, id, path, content);
-
+					content.setSha256(sha256);
 					try {
-						outputThread.start();
-
-						// read stream content
-						io.readStream(length, in, pipedOut);
+						out.onContent(id, path, content);
 					} finally {
-						// done reading content, close piped stream to signal EOF.
-						StreamUtils.closeStream(pipedOut);
-						pipedOut = null;
-						try {
-							// wait for background thread to complete
-							outputThread.join();
-						} catch (Exception e) {
-							// ignore
-						}
-						outputThread = null;
 						content.close();
 					}
-
 				} else if (next.equals(BinaryProductHandler.SIGNATUREVERSION)) {
 					Version version = Version.fromString(io.readString(in));
 					out.onSignatureVersion(id, version);
@@ -119,6 +134,74 @@ public class BinaryProductSource implements ProductSource {
 		}
 	}
 
+	/**
+	 * Read one content and deliver it to a handler.
+	 *
+	 * @param out handler that receives content.
+	 * @param path content path.
+	 * @param contentType content type.
+	 * @param lastModified content last modified.
+	 * @param length content length, before encoding.
+	 * @param codec codec used to encode content, or null for raw content.
+	 * @throws Exception if error occurs
+	 */
+	private void readContent(final ProductHandler out, final String path,
+			final String contentType, final Date lastModified,
+			final Long length, final ContentCodec codec) throws Exception {
+		// use a piped output stream to deliver content to separate
+		// processing thread. this thread will continue to read
+		// InputStream, transfer content to pipedOutputStream.
+		// Background thread calls onContent, and reads from
+		// pipedInputStream.
+		PipedOutputStream pipedOut = new PipedOutputStream();
+		PipedInputStream pipedIn = new PipedInputStream(pipedOut);
+
+		final InputStreamContent content = new InputStreamContent(
+				pipedIn);
+		content.setContentType(contentType);
+		content.setLastModified(lastModified);
+		content.setLength(length);
+
+		// background thread delivers content object to product handler
+		ContentOutputThread outputThread = new ContentOutputThread(out, id, path, content);
+
+		try {
+			outputThread.start();
+
+			// read stream content
+			if (codec == null) {
+				io.readStream(length, in, pipedOut);
+			} else {
+				ChunkedInputStream chunks = new ChunkedInputStream(in);
+				InputStream decoded = codec.getDecodingStream(chunks);
+				long total = 0L;
+				byte[] buffer = new byte[StreamUtils.DEFAULT_BUFFER_SIZE];
+				int read;
+				while ((read = decoded.read(buffer)) != -1) {
+					pipedOut.write(buffer, 0, read);
+					total += read;
+				}
+				// reads through end of chunks, without closing in
+				decoded.close();
+				if (total != length.longValue()) {
+					throw new IOException("decoded content length " + total
+							+ " does not match length " + length);
+				}
+			}
+		} finally {
+			// done reading content, close piped stream to signal EOF.
+			StreamUtils.closeStream(pipedOut);
+			pipedOut = null;
+			try {
+				// wait for background thread to complete
+				outputThread.join();
+			} catch (Exception e) {
+				// ignore
+			}
+			outputThread = null;
+			content.close();
+		}
+	}
 
 	/**
 	 * Free any resources associated with this source.
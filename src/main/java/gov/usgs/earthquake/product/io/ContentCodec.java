@@ -0,0 +1,43 @@
+package gov.usgs.earthquake.product.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compression used for individual product contents in the binary format.
+ *
+ * @see ContentCodecs
+ */
+public interface ContentCodec {
+
+	/**
+	 * @return name written in the binary format, and used in negotiation.
+	 */
+	public String getName();
+
+	/**
+	 * Wrap a stream to encode content.
+	 *
+	 * Closing the returned stream must finish encoding and close out.
+	 *
+	 * @param out
+	 *            stream where encoded content is written.
+	 * @return stream where content is written.
+	 * @throws IOException if error occurs
+	 */
+	public OutputStream getEncodingStream(final OutputStream out)
+			throws IOException;
+
+	/**
+	 * Wrap a stream to decode content.
+	 *
+	 * @param in
+	 *            stream containing encoded content.
+	 * @return stream where decoded content is read.
+	 * @throws IOException if error occurs
+	 */
+	public InputStream getDecodingStream(final InputStream in)
+			throws IOException;
+
+}
@@ -0,0 +1,209 @@
+package gov.usgs.earthquake.product.io;
+
+import gov.usgs.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Available ContentCodecs, and rules for when content should be encoded.
+ *
+ * Content that is already compressed, like images and zip files, gains
+ * nothing from another round of compression and is sent without encoding.
+ */
+public class ContentCodecs {
+
+	/** Name used when content is not encoded. */
+	public static final String RAW = "raw";
+
+	/** Deflate, at level 1 (best speed). */
+	public static final ContentCodec DEFLATE = new DeflateCodec(
+			Deflater.BEST_SPEED);
+
+	/**
+	 * LZ4 block compression, faster than deflate but larger output. Uses PDL
+	 * specific framing, see Lz4Codec.
+	 */
+	public static final ContentCodec LZ4 = new Lz4Codec();
+
+	/** Content smaller than this many bytes is not encoded. */
+	public static final long MIN_ENCODED_LENGTH = 512L;
+
+	/** Content types that are already compressed. */
+	public static final Set<String> COMPRESSED_CONTENT_TYPES = new HashSet<String>(
+			Arrays.asList(
+					"application/gzip",
+					"application/vnd.google-earth.kmz",
+					"application/x-bzip2",
+					"application/x-gzip",
+					"application/x-xz",
+					"application/zip",
+					"image/gif",
+					"image/jpeg",
+					"image/jpg",
+					"image/png",
+					"image/webp",
+					"video/mp4"));
+
+	/** File extensions of content that is already compressed. */
+	public static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<String>(
+			Arrays.asList(
+					".bz2", ".gif", ".gz", ".jpeg", ".jpg", ".kmz", ".mp4",
+					".png", ".tgz", ".webp", ".xz", ".zip"));
+
+	/** Codecs by name, in order of preference. */
+	private static final Map<String, ContentCodec> CODECS = new LinkedHashMap<String, ContentCodec>();
+	static {
+		CODECS.put(LZ4.getName(), LZ4);
+		CODECS.put(DEFLATE.getName(), DEFLATE);
+	}
+
+	/**
+	 * Find a codec by name.
+	 *
+	 * @param name
+	 *            codec name.
+	 * @return codec, or null if name is RAW.
+	 * @throws IOException
+	 *             if codec is not supported.
+	 */
+	public static ContentCodec getCodec(final String name) throws IOException {
+		if (name == null || RAW.equals(name)) {
+			return null;
+		}
+		ContentCodec codec = CODECS.get(name);
+		if (codec == null) {
+			throw new IOException("unsupported content codec '" + name + "'");
+		}
+		return codec;
+	}
+
+	/**
+	 * @return comma separated names of supported codecs, in order of
+	 *         preference.
+	 */
+	public static String getSupportedCodecs() {
+		return String.join(",", CODECS.keySet());
+	}
+
+	/**
+	 * Choose the first offered codec that is supported.
+	 *
+	 * @param offered
+	 *            comma separated codec names, in order of preference.
+	 * @return codec name, or RAW if none are supported.
+	 */
+	public static String negotiate(final String offered) {
+		if (offered != null) {
+			for (String name : StringUtils.split(offered, ",")) {
+				name = name.trim();
+				if (CODECS.containsKey(name)) {
+					return name;
+				}
+			}
+		}
+		return RAW;
+	}
+
+	/**
+	 * Choose the codec for one content.
+	 *
+	 * @param codec
+	 *            preferred codec, or null.
+	 * @param path
+	 *            content path.
+	 * @param contentType
+	 *            content type.
+	 * @param length
+	 *            content length.
+	 * @return codec, or null if content should not be encoded.
+	 */
+	public static ContentCodec chooseCodec(final ContentCodec codec,
+			final String path, final String contentType, final long length) {
+		if (codec == null || length < MIN_ENCODED_LENGTH
+				|| isCompressed(path, contentType)) {
+			return null;
+		}
+		return codec;
+	}
+
+	/**
+	 * Check whether content is already compressed.
+	 *
+	 * @param path
+	 *            content path.
+	 * @param contentType
+	 *            content type.
+	 * @return true if content type or path extension is known to be
+	 *         compressed.
+	 */
+	public static boolean isCompressed(final String path,
+			final String contentType) {
+		if (contentType != null && COMPRESSED_CONTENT_TYPES.contains(
+				contentType.toLowerCase(Locale.ROOT))) {
+			return true;
+		}
+		if (path != null) {
+			int dot = path.lastIndexOf('.');
+			if (dot != -1 && COMPRESSED_EXTENSIONS.contains(
+					path.substring(dot).toLowerCase(Locale.ROOT))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Codec using java.util.zip deflate.
+	 */
+	public static class DeflateCodec implements ContentCodec {
+
+		private final int level;
+
+		/**
+		 * @param level
+		 *            deflate level.
+		 */
+		public DeflateCodec(final int level) {
+			this.level = level;
+		}
+
+		@Override
+		public String getName() {
+			return "deflate";
+		}
+
+		@Override
+		public OutputStream getEncodingStream(final OutputStream out) {
+			final Deflater deflater = new Deflater(level);
+			return new DeflaterOutputStream(out, deflater) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						// not ended by DeflaterOutputStream when passed in
+						deflater.end();
+					}
+				}
+			};
+		}
+
+		@Override
+		public InputStream getDecodingStream(final InputStream in) {
+			return new InflaterInputStream(in);
+		}
+
+	}
+
+}
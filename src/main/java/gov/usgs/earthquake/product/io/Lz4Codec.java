@@ -0,0 +1,422 @@
+package gov.usgs.earthquake.product.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Pure java codec using LZ4 block compression, in a PDL specific framing.
+ *
+ * This is not the standard LZ4 frame format (no magic number, frame
+ * descriptor, or checksums), so it is negotiated as NAME ("pdl-lz4block")
+ * rather than "lz4". Implementations that support this codec must use the
+ * same framing.
+ *
+ * Content is split into blocks of up to BLOCK_SIZE bytes. Each block is
+ * written as:
+ * <ol>
+ * <li>raw length (4 bytes, big endian)</li>
+ * <li>encoded length (4 bytes, big endian), 0 when the block is stored
+ * uncompressed</li>
+ * <li>encoded bytes, a single LZ4 block, or raw bytes when encoded length is
+ * 0</li>
+ * </ol>
+ * The stream ends after the last block, there is no end marker.
+ *
+ * The compressor uses a single hash table probe per position, which trades
+ * some compression for speed, similar to LZ4's "fast" mode. Most text content
+ * (xml, json, csv) compresses to 20-40% of its size, several times faster
+ * than deflate.
+ */
+public class Lz4Codec implements ContentCodec {
+
+	/** Codec name, distinct from "lz4" since framing is not standard. */
+	public static final String NAME = "pdl-lz4block";
+
+	/** Maximum raw bytes per block. */
+	public static final int BLOCK_SIZE = 65536;
+
+	/** Minimum match length. */
+	private static final int MIN_MATCH = 4;
+	/** Last match must start this many bytes before end of block. */
+	private static final int MF_LIMIT = 12;
+	/** Last bytes of a block are always literals. */
+	private static final int LAST_LITERALS = 5;
+	/** Maximum match offset. */
+	private static final int MAX_OFFSET = 65535;
+	/** Bits used for hash table. */
+	private static final int HASH_BITS = 12;
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public OutputStream getEncodingStream(final OutputStream out) {
+		return new Lz4OutputStream(out);
+	}
+
+	@Override
+	public InputStream getDecodingStream(final InputStream in) {
+		return new Lz4InputStream(in);
+	}
+
+	/**
+	 * @param length
+	 *            raw length.
+	 * @return largest possible compressed length.
+	 */
+	public static int maxCompressedLength(final int length) {
+		return length + length / 255 + 16;
+	}
+
+	/**
+	 * Compress a block.
+	 *
+	 * @param src
+	 *            raw bytes.
+	 * @param srcLength
+	 *            number of raw bytes, no more than BLOCK_SIZE.
+	 * @param dst
+	 *            at least maxCompressedLength(srcLength) bytes.
+	 * @param table
+	 *            hash table with 1 &lt;&lt; HASH_BITS entries, reused between
+	 *            calls.
+	 * @return compressed length.
+	 */
+	public static int compress(final byte[] src, final int srcLength,
+			final byte[] dst, final int[] table) {
+		int anchor = 0;
+		int op = 0;
+		if (srcLength >= MF_LIMIT + 1) {
+			java.util.Arrays.fill(table, -1);
+			final int limit = srcLength - MF_LIMIT;
+			final int matchLimit = srcLength - LAST_LITERALS;
+			int ip = 0;
+			while (ip < limit) {
+				final int sequence = readInt(src, ip);
+				final int h = hash(sequence);
+				int ref = table[h];
+				table[h] = ip;
+				if (ref < 0 || ip - ref > MAX_OFFSET
+						|| readInt(src, ref) != sequence) {
+					// skip faster through incompressible data
+					ip += 1 + ((ip - anchor) >>> 6);
+					continue;
+				}
+				// extend match backwards
+				while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+					ip--;
+					ref--;
+				}
+				// extend match forwards
+				int matchLength = MIN_MATCH;
+				while (ip + matchLength < matchLimit
+						&& src[ip + matchLength] == src[ref + matchLength]) {
+					matchLength++;
+				}
+				op = writeSequence(src, anchor, ip - anchor, ip - ref,
+						matchLength, dst, op);
+				ip += matchLength;
+				anchor = ip;
+			}
+		}
+		// last literals
+		return writeSequence(src, anchor, srcLength - anchor, 0, 0, dst, op);
+	}
+
+	/**
+	 * Decompress a block.
+	 *
+	 * @param src
+	 *            compressed bytes.
+	 * @param srcLength
+	 *            number of compressed bytes.
+	 * @param dst
+	 *            where raw bytes are written.
+	 * @param dstLength
+	 *            expected raw length.
+	 * @throws IOException
+	 *             if block is corrupt.
+	 */
+	public static void decompress(final byte[] src, final int srcLength,
+			final byte[] dst, final int dstLength) throws IOException {
+		int ip = 0;
+		int op = 0;
+		try {
+			while (true) {
+				final int token = src[ip++] & 0xFF;
+				// literals
+				int literalLength = token >>> 4;
+				if (literalLength == 15) {
+					int b;
+					do {
+						b = src[ip++] & 0xFF;
+						literalLength += b;
+					} while (b == 255);
+				}
+				System.arraycopy(src, ip, dst, op, literalLength);
+				ip += literalLength;
+				op += literalLength;
+				if (ip >= srcLength) {
+					break;
+				}
+				// match
+				final int offset = (src[ip] & 0xFF) | ((src[ip + 1] & 0xFF) << 8);
+				ip += 2;
+				int matchLength = token & 0x0F;
+				if (matchLength == 15) {
+					int b;
+					do {
+						b = src[ip++] & 0xFF;
+						matchLength += b;
+					} while (b == 255);
+				}
+				matchLength += MIN_MATCH;
+				int ref = op - offset;
+				if (offset == 0 || ref < 0 || op + matchLength > dstLength) {
+					throw new IOException("corrupt lz4 block");
+				}
+				// byte by byte, since match may overlap output
+				for (int i = 0; i < matchLength; i++) {
+					dst[op++] = dst[ref++];
+				}
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("corrupt lz4 block", e);
+		}
+		if (op != dstLength) {
+			throw new IOException("corrupt lz4 block, expected " + dstLength
+					+ " bytes, decoded " + op);
+		}
+	}
+
+	private static int writeSequence(final byte[] src, final int literalStart,
+			final int literalLength, final int offset, final int matchLength,
+			final byte[] dst, final int start) {
+		int op = start;
+		final int tokenPosition = op++;
+		int token = Math.min(literalLength, 15) << 4;
+		if (literalLength >= 15) {
+			op = writeLength(literalLength - 15, dst, op);
+		}
+		System.arraycopy(src, literalStart, dst, op, literalLength);
+		op += literalLength;
+		if (matchLength > 0) {
+			dst[op++] = (byte) offset;
+			dst[op++] = (byte) (offset >>> 8);
+			final int length = matchLength - MIN_MATCH;
+			token |= Math.min(length, 15);
+			if (length >= 15) {
+				op = writeLength(length - 15, dst, op);
+			}
+		}
+		dst[tokenPosition] = (byte) token;
+		return op;
+	}
+
+	private static int writeLength(final int length, final byte[] dst,
+			final int start) {
+		int op = start;
+		int remaining = length;
+		while (remaining >= 255) {
+			dst[op++] = (byte) 255;
+			remaining -= 255;
+		}
+		dst[op++] = (byte) remaining;
+		return op;
+	}
+
+	private static int readInt(final byte[] b, final int i) {
+		return (b[i] & 0xFF) | ((b[i + 1] & 0xFF) << 8)
+				| ((b[i + 2] & 0xFF) << 16) | ((b[i + 3] & 0xFF) << 24);
+	}
+
+	private static int hash(final int sequence) {
+		return (sequence * -1640531535) >>> (32 - HASH_BITS);
+	}
+
+	private static void writeInt(final int value, final OutputStream out)
+			throws IOException {
+		out.write(value >>> 24);
+		out.write(value >>> 16);
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+	/**
+	 * Stream that compresses blocks.
+	 */
+	private static class Lz4OutputStream extends OutputStream {
+
+		private final OutputStream out;
+		private final byte[] block = new byte[BLOCK_SIZE];
+		private final byte[] compressed = new byte[maxCompressedLength(BLOCK_SIZE)];
+		private final int[] table = new int[1 << HASH_BITS];
+		private int count = 0;
+		private boolean closed = false;
+
+		Lz4OutputStream(final OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			if (count == BLOCK_SIZE) {
+				writeBlock();
+			}
+			block[count++] = (byte) b;
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len)
+				throws IOException {
+			int offset = off;
+			int remaining = len;
+			while (remaining > 0) {
+				if (count == BLOCK_SIZE) {
+					writeBlock();
+				}
+				int length = Math.min(remaining, BLOCK_SIZE - count);
+				System.arraycopy(b, offset, block, count, length);
+				count += length;
+				offset += length;
+				remaining -= length;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			writeBlock();
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				try {
+					writeBlock();
+				} finally {
+					out.close();
+				}
+			}
+		}
+
+		private void writeBlock() throws IOException {
+			if (count == 0) {
+				return;
+			}
+			int length = compress(block, count, compressed, table);
+			writeInt(count, out);
+			if (length < count) {
+				writeInt(length, out);
+				out.write(compressed, 0, length);
+			} else {
+				// incompressible, store raw
+				writeInt(0, out);
+				out.write(block, 0, count);
+			}
+			count = 0;
+		}
+
+	}
+
+	/**
+	 * Stream that decompresses blocks.
+	 */
+	private static class Lz4InputStream extends InputStream {
+
+		private final InputStream in;
+		private final byte[] block = new byte[BLOCK_SIZE];
+		private byte[] compressed = new byte[maxCompressedLength(BLOCK_SIZE)];
+		private int position = 0;
+		private int count = 0;
+
+		Lz4InputStream(final InputStream in) {
+			this.in = in;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (position == count && !readBlock()) {
+				return -1;
+			}
+			return block[position++] & 0xFF;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+				throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (position == count && !readBlock()) {
+				return -1;
+			}
+			int length = Math.min(len, count - position);
+			System.arraycopy(block, position, b, off, length);
+			position += length;
+			return length;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+		/**
+		 * @return false at end of stream.
+		 * @throws IOException if block is corrupt.
+		 */
+		private boolean readBlock() throws IOException {
+			int first = in.read();
+			if (first == -1) {
+				return false;
+			}
+			final int rawLength = (first << 24) | readInt(3);
+			final int encodedLength = readInt(4);
+			if (rawLength <= 0 || rawLength > BLOCK_SIZE || encodedLength < 0
+					|| encodedLength > compressed.length) {
+				throw new IOException("corrupt lz4 block header");
+			}
+			if (encodedLength == 0) {
+				readFully(block, rawLength);
+			} else {
+				readFully(compressed, encodedLength);
+				decompress(compressed, encodedLength, block, rawLength);
+			}
+			position = 0;
+			count = rawLength;
+			return true;
+		}
+
+		private int readInt(final int bytes) throws IOException {
+			int value = 0;
+			for (int i = 0; i < bytes; i++) {
+				int b = in.read();
+				if (b == -1) {
+					throw new EOFException();
+				}
+				value = (value << 8) | b;
+			}
+			return value;
+		}
+
+		private void readFully(final byte[] buffer, final int length)
+				throws IOException {
+			int total = 0;
+			while (total < length) {
+				int read = in.read(buffer, total, length - total);
+				if (read == -1) {
+					throw new EOFException();
+				}
+				total += read;
+			}
+		}
+
+	}
+
+}
@@ -6,6 +6,7 @@ package gov.usgs.earthquake.product.io;
 import gov.usgs.earthquake.product.Content;
 import gov.usgs.earthquake.product.ByteContent;
 import gov.usgs.earthquake.product.FileContent;
+import gov.usgs.earthquake.product.FileRegionContent;
 import gov.usgs.earthquake.product.URLContent;
 import gov.usgs.util.CryptoUtils.Version;
 import gov.usgs.earthquake.product.Product;
@@ -88,7 +89,8 @@ public class ObjectProductHandler implements ProductHandler {
 		// + content.toString() + ")");
 
 		if (content instanceof FileContent || content instanceof ByteContent
-				|| content instanceof URLContent) {
+				|| content instanceof URLContent
+				|| content instanceof FileRegionContent) {
 			// these types of content do not need to be read immediately
 			product.getContents().put(path, content);
 		} else {
@@ -1,5 +1,6 @@
 package gov.usgs.earthquake.shakemap;
 
+import gov.usgs.earthquake.indexer.ContentSummaryCache;
 import gov.usgs.earthquake.product.Content;
 import gov.usgs.earthquake.product.Product;
 import gov.usgs.util.StreamUtils;
@@ -79,38 +80,51 @@ public class ShakeMap extends Product {
 		super(product);
 
 		// prefer grid attachment
+		// parsed content is cached by sha256, for reprocessing
+		ContentSummaryCache cache = ContentSummaryCache.getDefaultCache();
+
 		Content gridxml = product.getContents().get(GRID_XML_ATTACHMENT);
 		if (gridxml != null) {
-			InputStream gridXmlIn = null;
 			try {
 				// parse grid.xml
-				GridXMLHandler gridxmlHandler = new GridXMLHandler();
-				gridXmlIn = gridxml.getInputStream();
-				HashMap<String, String> grid = gridxmlHandler.parse(gridXmlIn);
+				HashMap<String, String> grid = new HashMap<String, String>(
+						cache.getSummary(GRID_XML_ATTACHMENT, gridxml,
+								(content) -> {
+									InputStream gridXmlIn = null;
+									try {
+										gridXmlIn = content.getInputStream();
+										return new GridXMLHandler().parse(gridXmlIn);
+									} finally {
+										StreamUtils.closeStream(gridXmlIn);
+									}
+								}));
 				// parse through hash maps to set shakemap properties
 				this.setGridXMLProperties(grid);
 			} catch (Exception e) {
 				// error parsing grid
 				LOGGER.log(Level.WARNING, "error parsing grid.xml", e);
-			} finally {
-				StreamUtils.closeStream(gridXmlIn);
 			}
 		}
 
 		Content infoxml = product.getContents().get(INFO_XML_ATTACHMENT);
 		if (infoxml != null) {
-			InputStream infoXmlIn = null;
 			try {
 				// parse info.xml
-				InfoXMLHandler infoxmlHandler = new InfoXMLHandler();
-				infoXmlIn = infoxml.getInputStream();
-				HashMap<String, String> info = infoxmlHandler.parse(infoXmlIn);
+				HashMap<String, String> info = new HashMap<String, String>(
+						cache.getSummary(INFO_XML_ATTACHMENT, infoxml,
+								(content) -> {
+									InputStream infoXmlIn = null;
+									try {
+										infoXmlIn = content.getInputStream();
+										return new InfoXMLHandler().parse(infoXmlIn);
+									} finally {
+										StreamUtils.closeStream(infoXmlIn);
+									}
+								}));
 				// parse through hash maps to set shakemap properties
 				this.setInfoXMLProperties(info);
 			} catch (Exception e) {
 				LOGGER.log(Level.WARNING, "error parsing info.xml", e);
-			} finally {
-				StreamUtils.closeStream(infoXmlIn);
 			}
 		}
 
@@ -1,21 +1,20 @@
 package gov.usgs.earthquake.shakemap;
 
-import java.awt.image.BufferedImage;
+import java.awt.Dimension;
 import java.io.IOException;
-import java.io.InputStream;
 import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.imageio.ImageIO;
-
+import gov.usgs.earthquake.indexer.ContentSummaryCache;
 import gov.usgs.earthquake.indexer.DefaultIndexerModule;
 import gov.usgs.earthquake.indexer.IndexerModule;
 import gov.usgs.earthquake.indexer.ProductSummary;
 import gov.usgs.earthquake.product.Content;
+import gov.usgs.earthquake.product.ContentProbe;
 import gov.usgs.earthquake.product.Product;
-import gov.usgs.util.StreamUtils;
 
 /**
  * ShakeMap Indexer Module.
@@ -71,27 +70,42 @@ public class ShakeMapIndexerModule extends DefaultIndexerModule {
 
 		Content overlayImage = product.getContents().get(OVERLAY_IMAGE_PATH);
 		if (overlayImage != null) {
-			InputStream overlayInputStream = null;
 			try {
-				overlayInputStream = overlayImage.getInputStream();
-				BufferedImage info = ImageIO.read(overlayInputStream);
-				summary.getProperties().put(OVERLAY_WIDTH_PROPERTY,
-						Integer.toString(info.getWidth()));
-				summary.getProperties().put(OVERLAY_HEIGHT_PROPERTY,
-						Integer.toString(info.getHeight()));
-				LOGGER.finest("overlay width=" + info.getWidth() +
-						", overlay height=" + info.getHeight());
+				// only reads image header
+				summary.getProperties().putAll(ContentSummaryCache
+						.getDefaultCache().getSummary(OVERLAY_IMAGE_PATH,
+								overlayImage, ShakeMapIndexerModule::getOverlaySize));
 			} catch (IOException e) {
 				LOGGER.log(Level.WARNING, "exception reading "
 						+ OVERLAY_IMAGE_PATH + " width/height", e);
-			} finally {
-				StreamUtils.closeStream(overlayInputStream);
 			}
 		}
 
 		return summary;
 	}
 
+	/**
+	 * Read overlay width and height from the image header.
+	 *
+	 * @param overlayImage overlay image content.
+	 * @return width and height properties, empty if not an image.
+	 * @throws IOException if error occurs reading content.
+	 */
+	protected static Map<String, String> getOverlaySize(final Content overlayImage)
+			throws IOException {
+		Map<String, String> properties = new HashMap<String, String>();
+		Dimension size = ContentProbe.getImageSize(overlayImage);
+		if (size == null) {
+			LOGGER.warning("unable to read " + OVERLAY_IMAGE_PATH + " width/height");
+		} else {
+			properties.put(OVERLAY_WIDTH_PROPERTY, Integer.toString(size.width));
+			properties.put(OVERLAY_HEIGHT_PROPERTY, Integer.toString(size.height));
+			LOGGER.finest("overlay width=" + size.width +
+					", overlay height=" + size.height);
+		}
+		return properties;
+	}
+
 	@Override
 	protected long getPreferredWeight(ProductSummary summary)
 			throws Exception {
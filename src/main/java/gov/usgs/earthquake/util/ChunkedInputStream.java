@@ -0,0 +1,125 @@
+package gov.usgs.earthquake.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream that reads data written by ChunkedOutputStream.
+ *
+ * Reaches end of stream at the end marker, leaving the underlying stream
+ * positioned after the marker. Closing this stream reads any remaining chunks,
+ * but does not close the underlying stream.
+ *
+ * @see ChunkedOutputStream
+ */
+public class ChunkedInputStream extends InputStream {
+
+	private final InputStream in;
+	private final int maxChunkSize;
+	/** Bytes remaining in current chunk. */
+	private int remaining = 0;
+	/** Whether the end marker was read. */
+	private boolean done = false;
+
+	/**
+	 * Construct a new ChunkedInputStream.
+	 *
+	 * @param in
+	 *            stream containing chunks.
+	 */
+	public ChunkedInputStream(final InputStream in) {
+		this(in, ChunkedOutputStream.DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Construct a new ChunkedInputStream.
+	 *
+	 * @param in
+	 *            stream containing chunks.
+	 * @param maxChunkSize
+	 *            largest chunk allowed, larger chunks are treated as corrupt.
+	 */
+	public ChunkedInputStream(final InputStream in, final int maxChunkSize) {
+		this.in = in;
+		this.maxChunkSize = maxChunkSize;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!nextChunk()) {
+			return -1;
+		}
+		int b = in.read();
+		if (b == -1) {
+			throw new EOFException();
+		}
+		remaining--;
+		return b;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len)
+			throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!nextChunk()) {
+			return -1;
+		}
+		int read = in.read(b, off, Math.min(len, remaining));
+		if (read == -1) {
+			throw new EOFException();
+		}
+		remaining -= read;
+		return read;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return done ? 0 : Math.min(remaining, in.available());
+	}
+
+	/**
+	 * Read any remaining chunks, leaving underlying stream open.
+	 */
+	@Override
+	public void close() throws IOException {
+		byte[] buffer = new byte[4096];
+		while (read(buffer, 0, buffer.length) != -1) {
+			// skip
+		}
+	}
+
+	/**
+	 * Read next chunk header if current chunk is finished.
+	 *
+	 * @return false if end marker was reached.
+	 * @throws IOException if the stream ends early or is corrupt.
+	 */
+	private boolean nextChunk() throws IOException {
+		if (done) {
+			return false;
+		}
+		if (remaining == 0) {
+			int length = 0;
+			for (int i = 0; i < 4; i++) {
+				int b = in.read();
+				if (b == -1) {
+					throw new EOFException();
+				}
+				length = (length << 8) | b;
+			}
+			if (length == 0) {
+				done = true;
+				return false;
+			}
+			if (length < 0 || length > maxChunkSize) {
+				throw new IOException("invalid chunk length " + length);
+			}
+			remaining = length;
+		}
+		return true;
+	}
+
+}
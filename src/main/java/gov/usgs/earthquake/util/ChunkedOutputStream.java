@@ -0,0 +1,105 @@
+package gov.usgs.earthquake.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Stream that writes data as length-prefixed chunks.
+ *
+ * Used to embed a stream of unknown length in another stream. Each chunk is
+ * a 4-byte length followed by that many bytes; a zero length marks the end of
+ * the stream. Closing this stream writes the end marker, but does not close
+ * the underlying stream.
+ *
+ * @see ChunkedInputStream
+ */
+public class ChunkedOutputStream extends OutputStream {
+
+	/** Default chunk size. */
+	public static final int DEFAULT_CHUNK_SIZE = 65536;
+
+	private final OutputStream out;
+	private final byte[] buffer;
+	private int count = 0;
+	private boolean closed = false;
+
+	/**
+	 * Construct a new ChunkedOutputStream with the default chunk size.
+	 *
+	 * @param out
+	 *            stream where chunks are written.
+	 */
+	public ChunkedOutputStream(final OutputStream out) {
+		this(out, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Construct a new ChunkedOutputStream.
+	 *
+	 * @param out
+	 *            stream where chunks are written.
+	 * @param chunkSize
+	 *            maximum chunk size.
+	 */
+	public ChunkedOutputStream(final OutputStream out, final int chunkSize) {
+		this.out = out;
+		this.buffer = new byte[chunkSize];
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		if (count == buffer.length) {
+			writeChunk();
+		}
+		buffer[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len)
+			throws IOException {
+		int offset = off;
+		int remaining = len;
+		while (remaining > 0) {
+			if (count == buffer.length) {
+				writeChunk();
+			}
+			int length = Math.min(remaining, buffer.length - count);
+			System.arraycopy(b, offset, buffer, count, length);
+			count += length;
+			offset += length;
+			remaining -= length;
+		}
+	}
+
+	/**
+	 * Write any buffered bytes as a chunk, and flush the underlying stream.
+	 */
+	@Override
+	public void flush() throws IOException {
+		writeChunk();
+		out.flush();
+	}
+
+	/**
+	 * Write any buffered bytes and the end marker.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			writeChunk();
+			out.write(ByteBuffer.allocate(4).putInt(0).array());
+			out.flush();
+		}
+	}
+
+	private void writeChunk() throws IOException {
+		if (count > 0) {
+			out.write(ByteBuffer.allocate(4).putInt(count).array());
+			out.write(buffer, 0, count);
+			count = 0;
+		}
+	}
+
+}
@@ -0,0 +1,72 @@
+package gov.usgs.earthquake.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A pool of canonical string instances.
+ *
+ * Product identifiers (source, type, code), property names, and event ids
+ * repeat constantly across product versions. Holding one shared instance of
+ * each saves memory when many summaries are kept in memory.
+ *
+ * Unlike {@link String#intern()}, a pool can be cleared, and is separate from
+ * the JVM string table. Instances are weakly referenced, so the pool only
+ * holds strings that are still in use elsewhere.
+ */
+public class InternPool {
+
+	/** Shared pool used by default. */
+	private static final InternPool DEFAULT_POOL = new InternPool();
+
+	/** Canonical instances, removed once no longer referenced. */
+	private final Map<String, WeakReference<String>> pool = new WeakHashMap<String, WeakReference<String>>();
+
+	/**
+	 * Get the shared pool.
+	 *
+	 * @return the default pool.
+	 */
+	public static InternPool getDefault() {
+		return DEFAULT_POOL;
+	}
+
+	/**
+	 * Get the canonical instance of a string.
+	 *
+	 * @param value
+	 *            value to intern, may be null.
+	 * @return canonical instance equal to value, or null if value is null.
+	 */
+	public synchronized String intern(final String value) {
+		if (value == null) {
+			return null;
+		}
+		WeakReference<String> ref = pool.get(value);
+		String existing = (ref == null ? null : ref.get());
+		if (existing != null) {
+			return existing;
+		}
+		pool.put(value, new WeakReference<String>(value));
+		return value;
+	}
+
+	/**
+	 * @return number of canonical instances in the pool.
+	 */
+	public synchronized int size() {
+		return pool.size();
+	}
+
+	/**
+	 * Remove all canonical instances.
+	 *
+	 * Strings already returned by {@link #intern(String)} are still valid, but
+	 * will no longer be shared with strings interned after this call.
+	 */
+	public synchronized void clear() {
+		pool.clear();
+	}
+
+}
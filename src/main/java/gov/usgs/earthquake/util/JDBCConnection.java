@@ -1,12 +1,24 @@
 package gov.usgs.earthquake.util;
 
+import gov.usgs.earthquake.distribution.HeartbeatListener;
 import gov.usgs.util.Config;
 import gov.usgs.util.DefaultConfigurable;
+import gov.usgs.util.JDBCUtils;
+import gov.usgs.util.StringUtils;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,6 +30,17 @@ import java.util.logging.Logger;
  * connection is active, and will shutdown() and startup() to reinitialize if it
  * is not active.
  *
+ * All writes and transactions use a single writer connection. When
+ * readPoolSize is greater than zero, queries wrapped by {@link #read(Callable)}
+ * use a pool of reader connections instead, so they can run concurrently with
+ * each other and with the writer. Reader connections use readUrls (for example
+ * MySQL read replicas) when configured, otherwise the same database as the
+ * writer. A thread that has begun a transaction always reads from the writer,
+ * so it sees its own changes.
+ *
+ * SQLite connections are tuned using a {@link SQLiteProfile}, and a background
+ * timer checkpoints the write ahead log and updates query planner statistics.
+ *
  * @author jmfee
  */
 public class JDBCConnection extends DefaultConfigurable implements AutoCloseable {
@@ -34,6 +57,33 @@ public class JDBCConnection extends DefaultConfigurable implements AutoCloseable
 	/** JDBC connect url. */
 	private String url;
 
+	/** Property for number of reader connections. */
+	public static final String READ_POOL_SIZE_PROPERTY = "readPoolSize";
+	/** Default readPoolSize, reads use the writer connection. */
+	public static final String DEFAULT_READ_POOL_SIZE = "0";
+	/** Property for comma separated reader connect urls. */
+	public static final String READ_URLS_PROPERTY = "readUrls";
+
+	/** Maximum number of reader connections, 0 to read using writer. */
+	private int readPoolSize = 0;
+	/** Reader connect urls, empty to use url. */
+	private List<String> readUrls = new ArrayList<String>();
+	/** Next reader url to use. */
+	private final AtomicInteger nextReadUrl = new AtomicInteger();
+	/** Limits number of reader connections in use. */
+	private final ReadPermits readPermits = new ReadPermits();
+	/** Idle reader connections. */
+	private final LinkedBlockingQueue<Connection> idleReaders = new LinkedBlockingQueue<Connection>();
+	/** Reader connection in use by current thread. */
+	private final ThreadLocal<Connection> readConnection = new ThreadLocal<Connection>();
+	/** Whether current thread has begun a transaction on the writer. */
+	private final ThreadLocal<Boolean> inTransaction = new ThreadLocal<Boolean>();
+
+	/** Settings for sqlite connections. */
+	private SQLiteProfile sqliteProfile = new SQLiteProfile();
+	/** Runs sqlite checkpoint and analyze. */
+	private Timer maintenanceTimer;
+
 	/**
 	 * Create a new JDBCConnection object.
 	 */
@@ -72,6 +122,11 @@ public class JDBCConnection extends DefaultConfigurable implements AutoCloseable
 	public void configure(final Config config) throws Exception {
 		setDriver(config.getProperty("driver"));
 		setUrl(config.getProperty("url"));
+		setReadPoolSize(Integer.parseInt(config.getProperty(
+				READ_POOL_SIZE_PROPERTY, DEFAULT_READ_POOL_SIZE)));
+		setReadUrls(StringUtils.split(config.getProperty(READ_URLS_PROPERTY), ","));
+		sqliteProfile.setName(getName());
+		sqliteProfile.configure(config);
 	}
 
 	/**
@@ -84,12 +139,60 @@ public class JDBCConnection extends DefaultConfigurable implements AutoCloseable
 	 *             if unable to connect.
 	 */
 	protected Connection connect() throws Exception {
+		return connect(url);
+	}
+
+	/**
+	 * Connect to a database url using the configured driver.
+	 *
+	 * @param url
+	 *            JDBC connect url.
+	 * @return the connection.
+	 * @throws Exception
+	 *             if unable to connect.
+	 */
+	protected Connection connect(final String url) throws Exception {
 		// load driver if needed
 		Class.forName(driver);
 		final Connection conn = DriverManager.getConnection(url);
+		if (isSqlite()) {
+			sqliteProfile.apply(conn);
+		}
 		return conn;
 	}
 
+	/**
+	 * @return whether driver is the sqlite driver.
+	 */
+	public boolean isSqlite() {
+		return JDBCUtils.SQLITE_DRIVER_CLASSNAME.equals(driver);
+	}
+
+	/**
+	 * Connect a reader.
+	 *
+	 * Uses the next readUrl, or {@link #connect()} when there are none.
+	 *
+	 * @return the connection.
+	 * @throws Exception
+	 *             if unable to connect.
+	 */
+	protected Connection connectReader() throws Exception {
+		final Connection reader;
+		if (readUrls.size() == 0) {
+			reader = connect();
+		} else {
+			reader = connect(readUrls.get(Math.abs(nextReadUrl.getAndIncrement()
+					% readUrls.size())));
+		}
+		try {
+			reader.setReadOnly(true);
+		} catch (SQLException e) {
+			// some drivers only support read only when connecting
+		}
+		return reader;
+	}
+
 	/**
 	 * Initialize the database connection.
 	 *
@@ -99,6 +202,7 @@ public class JDBCConnection extends DefaultConfigurable implements AutoCloseable
 	@Override
 	public void startup() throws Exception {
 		this.connection = connect();
+		startMaintenance();
 	}
 
 	/**
@@ -111,6 +215,11 @@ public class JDBCConnection extends DefaultConfigurable implements AutoCloseable
 	 */
 	@Override
 	public void shutdown() throws Exception {
+		stopMaintenance();
+		Connection reader;
+		while ((reader = idleReaders.poll()) != null) {
+			closeReader(reader);
+		}
 		try {
 			if (connection != null) {
 				connection.close();
@@ -124,12 +233,22 @@ public class JDBCConnection extends DefaultConfigurable implements AutoCloseable
 	}
 
 	/**
-	 * Open a transaction on the database connection
+	 * Open a transaction on the database connection.
+	 *
+	 * Inside {@link #read(Callable)} this uses the current reader connection.
 	 * @throws Exception if error occurs
 	 */
-	public synchronized void beginTransaction() throws Exception {
-		Connection conn = this.verifyConnection();
-		conn.setAutoCommit(false);
+	public void beginTransaction() throws Exception {
+		final Connection reader = readConnection.get();
+		if (reader != null) {
+			reader.setAutoCommit(false);
+			return;
+		}
+		synchronized (this) {
+			Connection conn = this.verifyConnection();
+			conn.setAutoCommit(false);
+			inTransaction.set(Boolean.TRUE);
+		}
 	}
 
 	/**
@@ -137,25 +256,250 @@ public class JDBCConnection extends DefaultConfigurable implements AutoCloseable
 	 * transaction.
 	 * @throws Exception if error occurs
 	 */
-	public synchronized void commitTransaction() throws Exception {
-		getConnection().setAutoCommit(true);
+	public void commitTransaction() throws Exception {
+		final Connection reader = readConnection.get();
+		if (reader != null) {
+			reader.setAutoCommit(true);
+			return;
+		}
+		synchronized (this) {
+			inTransaction.remove();
+			getConnection().setAutoCommit(true);
+		}
 	}
 
 	/**
 	 * Undo all of the changes made during the current transaction
 	 * @throws Exception if error occurs
 	 */
-	public synchronized void rollbackTransaction() throws Exception {
-		getConnection().rollback();
+	public void rollbackTransaction() throws Exception {
+		final Connection reader = readConnection.get();
+		if (reader != null) {
+			reader.rollback();
+			return;
+		}
+		synchronized (this) {
+			inTransaction.remove();
+			getConnection().rollback();
+		}
 	}
 
 	/**
-	 * @return current connection object, or null if not connected.
+	 * Get the connection for the current thread.
+	 *
+	 * @return reader connection inside {@link #read(Callable)}, otherwise
+	 *         current writer connection object, or null if not connected.
 	 */
 	public Connection getConnection() {
+		final Connection reader = readConnection.get();
+		if (reader != null) {
+			return reader;
+		}
 		return this.connection;
 	}
 
+	/**
+	 * Run a read only query.
+	 *
+	 * When a reader pool is configured, and the current thread has not begun
+	 * a transaction, a reader connection is bound to the current thread and
+	 * returned by {@link #getConnection()} while the query runs. Otherwise the
+	 * query runs using the writer connection, synchronized with other users
+	 * of this object like synchronized methods.
+	 *
+	 * @param <T> query result type
+	 * @param query query to run, must not modify the database.
+	 * @return query result
+	 * @throws Exception if query throws an exception.
+	 */
+	public <T> T read(final Callable<T> query) throws Exception {
+		if (readConnection.get() != null) {
+			// already reading
+			return query.call();
+		}
+		if (readPoolSize <= 0 || inTransaction.get() != null) {
+			synchronized (this) {
+				return query.call();
+			}
+		}
+
+		final Connection reader = borrowReader();
+		boolean reuse = false;
+		readConnection.set(reader);
+		try {
+			final T result = query.call();
+			reuse = true;
+			return result;
+		} finally {
+			readConnection.remove();
+			releaseReader(reader, reuse);
+		}
+	}
+
+	/**
+	 * Get a reader connection, waiting if all are in use.
+	 *
+	 * @return reader connection
+	 * @throws Exception if unable to connect
+	 */
+	protected Connection borrowReader() throws Exception {
+		readPermits.acquire();
+		try {
+			Connection reader = idleReaders.poll();
+			if (reader != null && reader.isClosed()) {
+				reader = null;
+			}
+			if (reader == null) {
+				reader = connectReader();
+			}
+			return reader;
+		} catch (Exception e) {
+			readPermits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Return a reader connection.
+	 *
+	 * @param reader connection from borrowReader
+	 * @param reuse false to close connection, for example after an error.
+	 */
+	protected void releaseReader(final Connection reader, final boolean reuse) {
+		try {
+			if (reuse && !reader.isClosed() && reader.getAutoCommit()) {
+				idleReaders.add(reader);
+			} else {
+				closeReader(reader);
+			}
+		} catch (Exception e) {
+			closeReader(reader);
+		} finally {
+			readPermits.release();
+		}
+	}
+
+	private void closeReader(final Connection reader) {
+		try {
+			reader.close();
+		} catch (Exception e) {
+			LOGGER.log(Level.FINE, "[" + getName()
+					+ "] error closing reader connection", e);
+		}
+	}
+
+	/**
+	 * Schedule sqlite checkpoint and analyze tasks, if enabled.
+	 */
+	protected synchronized void startMaintenance() {
+		stopMaintenance();
+		if (!isSqlite()) {
+			return;
+		}
+		final long checkpointInterval = sqliteProfile.getCheckpointInterval();
+		final long analyzeInterval = sqliteProfile.getAnalyzeInterval();
+		if (checkpointInterval <= 0 && analyzeInterval <= 0) {
+			return;
+		}
+		maintenanceTimer = new Timer(true);
+		if (checkpointInterval > 0) {
+			maintenanceTimer.schedule(new TimerTask() {
+				public void run() {
+					try {
+						checkpoint();
+					} catch (Exception e) {
+						LOGGER.log(Level.WARNING, "[" + getName()
+								+ "] exception during sqlite checkpoint", e);
+					}
+				}
+			}, checkpointInterval, checkpointInterval);
+		}
+		if (analyzeInterval > 0) {
+			maintenanceTimer.schedule(new TimerTask() {
+				public void run() {
+					try {
+						analyze();
+					} catch (Exception e) {
+						LOGGER.log(Level.WARNING, "[" + getName()
+								+ "] exception during sqlite analyze", e);
+					}
+				}
+			}, analyzeInterval, analyzeInterval);
+		}
+	}
+
+	/**
+	 * Cancel sqlite maintenance tasks.
+	 */
+	protected synchronized void stopMaintenance() {
+		if (maintenanceTimer != null) {
+			maintenanceTimer.cancel();
+			maintenanceTimer = null;
+		}
+	}
+
+	/**
+	 * Checkpoint the sqlite write ahead log.
+	 *
+	 * Uses a separate connection so it does not wait for, or interfere with,
+	 * transactions on the writer. Checkpoint lag (frames not yet copied into
+	 * the database) and WAL size are reported in heartbeats.
+	 *
+	 * @return checkpoint status, or null if not using sqlite.
+	 * @throws Exception if error occurs
+	 */
+	public SQLiteProfile.CheckpointStatus checkpoint() throws Exception {
+		if (!isSqlite()) {
+			return null;
+		}
+		final SQLiteProfile.CheckpointStatus status;
+		try (final Connection conn = connect()) {
+			status = sqliteProfile.checkpoint(conn);
+		}
+		LOGGER.fine("[" + getName() + "] sqlite checkpoint busy=" + status.busy
+				+ ", lag=" + status.getLag() + ", walSize=" + status.walSize);
+		HeartbeatListener.sendHeartbeatMessage(getName(),
+				"sqlite checkpoint lag", Long.toString(status.getLag()));
+		HeartbeatListener.sendHeartbeatMessage(getName(),
+				"sqlite wal size", Long.toString(status.walSize));
+		return status;
+	}
+
+	/**
+	 * Update sqlite query planner statistics.
+	 *
+	 * Uses a separate connection, which waits up to the profile busy timeout
+	 * for transactions on the writer.
+	 *
+	 * @throws Exception if error occurs
+	 */
+	public void analyze() throws Exception {
+		if (!isSqlite()) {
+			return;
+		}
+		try (final Connection conn = connect()) {
+			sqliteProfile.analyze(conn);
+		}
+	}
+
+	/**
+	 * Release free sqlite pages after many deletes, for example after
+	 * archiving, when auto_vacuum is INCREMENTAL.
+	 *
+	 * Uses a separate connection, which waits up to the profile busy timeout
+	 * for transactions on the writer.
+	 *
+	 * @throws Exception if error occurs
+	 */
+	public void incrementalVacuum() throws Exception {
+		if (!isSqlite()) {
+			return;
+		}
+		try (final Connection conn = connect()) {
+			sqliteProfile.incrementalVacuum(conn);
+		}
+	}
+
 	/**
 	 * Check whether database connection is closed, and reconnect if needed.
 	 *
@@ -232,4 +576,55 @@ public class JDBCConnection extends DefaultConfigurable implements AutoCloseable
 	/** @param url URL to set */
 	public void setUrl(final String url) { this.url = url; }
 
+	/** @return maximum number of reader connections */
+	public int getReadPoolSize() { return this.readPoolSize; }
+	/** @param readPoolSize maximum number of reader connections, 0 to disable */
+	public void setReadPoolSize(final int readPoolSize) {
+		this.readPoolSize = readPoolSize;
+		this.readPermits.resize(Math.max(0, readPoolSize));
+	}
+
+	/** @return reader connect urls */
+	public List<String> getReadUrls() { return this.readUrls; }
+	/** @param readUrls reader connect urls, empty to use url */
+	public void setReadUrls(final List<String> readUrls) {
+		this.readUrls = new ArrayList<String>(readUrls);
+	}
+
+	/** @return settings for sqlite connections */
+	public SQLiteProfile getSqliteProfile() { return this.sqliteProfile; }
+	/** @param sqliteProfile settings for sqlite connections */
+	public void setSqliteProfile(final SQLiteProfile sqliteProfile) {
+		this.sqliteProfile = sqliteProfile;
+	}
+
+	/**
+	 * Reader permits that can be resized while readers are borrowed.
+	 *
+	 * Readers borrowed before a resize release to the same semaphore, so the
+	 * new size applies once they are returned.
+	 */
+	private static class ReadPermits extends Semaphore {
+		private static final long serialVersionUID = 1L;
+
+		/** Current number of permits, guarded by this. */
+		private int size = 0;
+
+		ReadPermits() {
+			super(0);
+		}
+
+		/**
+		 * @param newSize new number of permits.
+		 */
+		synchronized void resize(final int newSize) {
+			if (newSize > size) {
+				release(newSize - size);
+			} else if (newSize < size) {
+				reducePermits(size - newSize);
+			}
+			size = newSize;
+		}
+	}
+
 }
@@ -0,0 +1,260 @@
+package gov.usgs.earthquake.util;
+
+import gov.usgs.earthquake.product.ProductId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An in-memory set of product ids, used to answer "is this product here"
+ * without checking disk or a database.
+ *
+ * Each id is stored as a 64 bit fingerprint in an open addressing hash set,
+ * about 16 bytes per product. Two different ids with the same fingerprint are
+ * extremely unlikely (about 1 in 10^7 for a million products); when it
+ * happens, removing one id also removes the other, and the other is
+ * reported missing.
+ *
+ * A filter is not usable until it is loaded. Owners call
+ * {@link #beginLoad()}, {@link #addLoaded(ProductId)} for every existing
+ * product, then {@link #endLoad()}. Calls to {@link #add(ProductId)} and
+ * {@link #remove(ProductId)} while loading are replayed after loaded ids, so
+ * loading can happen in the background while products are stored and
+ * removed.
+ */
+public class ProductPresenceFilter {
+
+	/** Fingerprints of present products. */
+	private LongHashSet fingerprints = new LongHashSet();
+
+	/** Fingerprints found while loading. */
+	private LongHashSet loading = null;
+
+	/** Adds (positive) and removes (negative) while loading. */
+	private List<Long> journal = null;
+
+	/** Whether load has completed. */
+	private boolean loaded = false;
+
+	/**
+	 * @return true if the filter has been loaded and can be used.
+	 */
+	public synchronized boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * Check whether a product is present.
+	 *
+	 * @param id
+	 *            product to check.
+	 * @return true if present, false if not present or filter is not loaded.
+	 */
+	public synchronized boolean contains(final ProductId id) {
+		return loaded && fingerprints.contains(fingerprint(id));
+	}
+
+	/**
+	 * Add a product, after it is stored.
+	 *
+	 * @param id
+	 *            product that is now present.
+	 */
+	public synchronized void add(final ProductId id) {
+		long fingerprint = fingerprint(id);
+		if (journal != null) {
+			journal.add(fingerprint);
+			journal.add(1L);
+		}
+		fingerprints.add(fingerprint);
+	}
+
+	/**
+	 * Remove a product, before it is removed.
+	 *
+	 * @param id
+	 *            product that is no longer present.
+	 */
+	public synchronized void remove(final ProductId id) {
+		long fingerprint = fingerprint(id);
+		if (journal != null) {
+			journal.add(fingerprint);
+			journal.add(0L);
+		}
+		fingerprints.remove(fingerprint);
+	}
+
+	/**
+	 * Start loading, discarding any existing fingerprints.
+	 */
+	public synchronized void beginLoad() {
+		loaded = false;
+		fingerprints = new LongHashSet();
+		loading = new LongHashSet();
+		journal = new ArrayList<Long>();
+	}
+
+	/**
+	 * Add an existing product while loading.
+	 *
+	 * @param id
+	 *            product that was present when loading started.
+	 */
+	public synchronized void addLoaded(final ProductId id) {
+		if (loading != null) {
+			loading.add(fingerprint(id));
+		}
+	}
+
+	/**
+	 * Finish loading, apply changes that happened while loading, and start
+	 * answering queries.
+	 */
+	public synchronized void endLoad() {
+		if (loading == null) {
+			return;
+		}
+		for (int i = 0; i < journal.size(); i += 2) {
+			if (journal.get(i + 1) == 1L) {
+				loading.add(journal.get(i));
+			} else {
+				loading.remove(journal.get(i));
+			}
+		}
+		fingerprints = loading;
+		loading = null;
+		journal = null;
+		loaded = true;
+	}
+
+	/**
+	 * Stop answering queries, for example when loading failed.
+	 */
+	public synchronized void clear() {
+		loaded = false;
+		fingerprints = new LongHashSet();
+		loading = null;
+		journal = null;
+	}
+
+	/**
+	 * @return number of products in filter.
+	 */
+	public synchronized int size() {
+		return fingerprints.size();
+	}
+
+	/**
+	 * Compute a 64 bit fingerprint of a product id.
+	 *
+	 * @param id
+	 *            product id.
+	 * @return fingerprint, never 0.
+	 */
+	public static long fingerprint(final ProductId id) {
+		// FNV-1a over identifiers, separated so "a","bc" != "ab","c"
+		long hash = 0xcbf29ce484222325L;
+		hash = fnv(hash, id.getSource());
+		hash = fnv(hash, id.getType());
+		hash = fnv(hash, id.getCode());
+		hash ^= id.getUpdateTime().getTime();
+		// finalizer from SplitMix64
+		hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+		hash = hash ^ (hash >>> 31);
+		return hash == 0L ? 1L : hash;
+	}
+
+	private static long fnv(long hash, final String value) {
+		for (int i = 0, length = value.length(); i < length; i++) {
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= 0xff;
+		hash *= 0x100000001b3L;
+		return hash;
+	}
+
+	/**
+	 * Linear probing hash set of non-zero longs.
+	 */
+	private static class LongHashSet {
+
+		private long[] table = new long[1024];
+		private int size = 0;
+
+		int size() {
+			return size;
+		}
+
+		boolean contains(final long value) {
+			int mask = table.length - 1;
+			for (int i = index(value, mask); table[i] != 0L; i = (i + 1) & mask) {
+				if (table[i] == value) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		void add(final long value) {
+			int mask = table.length - 1;
+			int i = index(value, mask);
+			for (; table[i] != 0L; i = (i + 1) & mask) {
+				if (table[i] == value) {
+					return;
+				}
+			}
+			table[i] = value;
+			size++;
+			if (size * 2 > table.length) {
+				resize();
+			}
+		}
+
+		void remove(final long value) {
+			int mask = table.length - 1;
+			int i = index(value, mask);
+			for (; table[i] != value; i = (i + 1) & mask) {
+				if (table[i] == 0L) {
+					return;
+				}
+			}
+			table[i] = 0L;
+			size--;
+			// shift following entries back so lookups do not stop early
+			for (int j = (i + 1) & mask; table[j] != 0L; j = (j + 1) & mask) {
+				long moved = table[j];
+				int home = index(moved, mask);
+				// move if home is not cyclically within (i, j]
+				if ((j > i && (home <= i || home > j))
+						|| (j < i && (home <= i && home > j))) {
+					table[i] = moved;
+					table[j] = 0L;
+					i = j;
+				}
+			}
+		}
+
+		private void resize() {
+			long[] old = table;
+			table = new long[old.length * 2];
+			int mask = table.length - 1;
+			for (long value : old) {
+				if (value != 0L) {
+					int i = index(value, mask);
+					while (table[i] != 0L) {
+						i = (i + 1) & mask;
+					}
+					table[i] = value;
+				}
+			}
+		}
+
+		private static int index(final long value, final int mask) {
+			return (int) (value ^ (value >>> 32)) & mask;
+		}
+
+	}
+
+}
@@ -0,0 +1,295 @@
+package gov.usgs.earthquake.util;
+
+import gov.usgs.util.Config;
+import gov.usgs.util.DefaultConfigurable;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+/**
+ * Performance settings for SQLite databases.
+ *
+ * Pragmas are applied to each connection when it is opened. The defaults use
+ * a write ahead log, so readers do not block the writer, with synchronous
+ * NORMAL, so commits do not fsync (the database stays consistent, but the most
+ * recent transactions may be lost on power failure). Set any pragma property
+ * to an empty value to use the SQLite default instead.
+ *
+ * auto_vacuum only changes for new databases, or existing databases after a
+ * manual VACUUM.
+ *
+ * Checkpoint, analyze, and incremental vacuum run on their own connections,
+ * so every connection sets busy_timeout to wait for the other connection's
+ * lock instead of failing with SQLITE_BUSY, and analyze is bounded with
+ * analysis_limit so it does not hold the write lock for long.
+ *
+ * Properties are read from the JDBCConnection configuration:
+ * <dl>
+ * <dt>sqliteJournalMode</dt>
+ * <dd>journal_mode pragma, default WAL</dd>
+ * <dt>sqliteSynchronous</dt>
+ * <dd>synchronous pragma, default NORMAL</dd>
+ * <dt>sqliteMmapSize</dt>
+ * <dd>mmap_size pragma in bytes, default 268435456</dd>
+ * <dt>sqliteCacheSize</dt>
+ * <dd>cache_size pragma, negative values are KiB, default -16384</dd>
+ * <dt>sqliteAutoVacuum</dt>
+ * <dd>auto_vacuum pragma, default INCREMENTAL</dd>
+ * <dt>sqliteBusyTimeout</dt>
+ * <dd>busy_timeout pragma in milliseconds, default 10000</dd>
+ * <dt>sqliteAnalysisLimit</dt>
+ * <dd>analysis_limit pragma used by analyze, rows examined per index,
+ * default 1000</dd>
+ * <dt>sqliteCheckpointInterval</dt>
+ * <dd>milliseconds between background WAL checkpoints, default 60000,
+ * 0 to disable</dd>
+ * <dt>sqliteAnalyzeInterval</dt>
+ * <dd>milliseconds between background ANALYZE runs, default 86400000,
+ * 0 to disable</dd>
+ * </dl>
+ */
+public class SQLiteProfile extends DefaultConfigurable {
+
+	private static final Logger LOGGER = Logger.getLogger(SQLiteProfile.class
+			.getName());
+
+	/** Property for journal mode. */
+	public static final String JOURNAL_MODE_PROPERTY = "sqliteJournalMode";
+	/** Default journal mode. */
+	public static final String DEFAULT_JOURNAL_MODE = "WAL";
+	/** Property for synchronous level. */
+	public static final String SYNCHRONOUS_PROPERTY = "sqliteSynchronous";
+	/** Default synchronous level. */
+	public static final String DEFAULT_SYNCHRONOUS = "NORMAL";
+	/** Property for mmap size. */
+	public static final String MMAP_SIZE_PROPERTY = "sqliteMmapSize";
+	/** Default mmap size, 256MiB. */
+	public static final String DEFAULT_MMAP_SIZE = "268435456";
+	/** Property for cache size. */
+	public static final String CACHE_SIZE_PROPERTY = "sqliteCacheSize";
+	/** Default cache size, 16MiB. */
+	public static final String DEFAULT_CACHE_SIZE = "-16384";
+	/** Property for auto vacuum mode. */
+	public static final String AUTO_VACUUM_PROPERTY = "sqliteAutoVacuum";
+	/** Default auto vacuum mode. */
+	public static final String DEFAULT_AUTO_VACUUM = "INCREMENTAL";
+	/** Property for busy timeout. */
+	public static final String BUSY_TIMEOUT_PROPERTY = "sqliteBusyTimeout";
+	/** Default busy timeout, 10 seconds. */
+	public static final String DEFAULT_BUSY_TIMEOUT = "10000";
+	/** Property for analysis limit. */
+	public static final String ANALYSIS_LIMIT_PROPERTY = "sqliteAnalysisLimit";
+	/** Default analysis limit. */
+	public static final String DEFAULT_ANALYSIS_LIMIT = "1000";
+	/** Property for checkpoint interval. */
+	public static final String CHECKPOINT_INTERVAL_PROPERTY = "sqliteCheckpointInterval";
+	/** Default checkpoint interval, 1 minute. */
+	public static final String DEFAULT_CHECKPOINT_INTERVAL = "60000";
+	/** Property for analyze interval. */
+	public static final String ANALYZE_INTERVAL_PROPERTY = "sqliteAnalyzeInterval";
+	/** Default analyze interval, 1 day. */
+	public static final String DEFAULT_ANALYZE_INTERVAL = "86400000";
+
+	private String journalMode = DEFAULT_JOURNAL_MODE;
+	private String synchronous = DEFAULT_SYNCHRONOUS;
+	private String mmapSize = DEFAULT_MMAP_SIZE;
+	private String cacheSize = DEFAULT_CACHE_SIZE;
+	private String autoVacuum = DEFAULT_AUTO_VACUUM;
+	private String busyTimeout = DEFAULT_BUSY_TIMEOUT;
+	private String analysisLimit = DEFAULT_ANALYSIS_LIMIT;
+	private long checkpointInterval = Long.valueOf(DEFAULT_CHECKPOINT_INTERVAL);
+	private long analyzeInterval = Long.valueOf(DEFAULT_ANALYZE_INTERVAL);
+
+	/**
+	 * Result of a WAL checkpoint.
+	 */
+	public static class CheckpointStatus {
+		/** Whether checkpoint could not complete because of other connections. */
+		public boolean busy;
+		/** Number of frames in the WAL, -1 when not in WAL mode. */
+		public long walFrames;
+		/** Number of frames copied to the database, -1 when not in WAL mode. */
+		public long checkpointedFrames;
+		/** Size of the WAL file in bytes. */
+		public long walSize;
+
+		/** @return frames in WAL not yet copied to the database. */
+		public long getLag() {
+			return Math.max(0L, walFrames - checkpointedFrames);
+		}
+	}
+
+	@Override
+	public void configure(final Config config) throws Exception {
+		journalMode = config.getProperty(JOURNAL_MODE_PROPERTY,
+				DEFAULT_JOURNAL_MODE);
+		synchronous = config.getProperty(SYNCHRONOUS_PROPERTY,
+				DEFAULT_SYNCHRONOUS);
+		mmapSize = config.getProperty(MMAP_SIZE_PROPERTY, DEFAULT_MMAP_SIZE);
+		cacheSize = config.getProperty(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE);
+		autoVacuum = config.getProperty(AUTO_VACUUM_PROPERTY,
+				DEFAULT_AUTO_VACUUM);
+		busyTimeout = config.getProperty(BUSY_TIMEOUT_PROPERTY,
+				DEFAULT_BUSY_TIMEOUT);
+		analysisLimit = config.getProperty(ANALYSIS_LIMIT_PROPERTY,
+				DEFAULT_ANALYSIS_LIMIT);
+		checkpointInterval = Long.valueOf(config.getProperty(
+				CHECKPOINT_INTERVAL_PROPERTY, DEFAULT_CHECKPOINT_INTERVAL));
+		analyzeInterval = Long.valueOf(config.getProperty(
+				ANALYZE_INTERVAL_PROPERTY, DEFAULT_ANALYZE_INTERVAL));
+	}
+
+	/**
+	 * Apply pragmas to a newly opened connection.
+	 *
+	 * @param connection
+	 *            sqlite connection, in auto commit mode.
+	 * @throws Exception
+	 *             if a pragma fails.
+	 */
+	public void apply(final Connection connection) throws Exception {
+		try (final Statement statement = connection.createStatement()) {
+			// wait for locks held by other connections
+			pragma(statement, "busy_timeout", busyTimeout);
+			// auto_vacuum must be set before journal_mode=WAL on a new database
+			pragma(statement, "auto_vacuum", autoVacuum);
+			pragma(statement, "journal_mode", journalMode);
+			pragma(statement, "synchronous", synchronous);
+			pragma(statement, "mmap_size", mmapSize);
+			pragma(statement, "cache_size", cacheSize);
+		}
+	}
+
+	private static void pragma(final Statement statement, final String name,
+			final String value) throws Exception {
+		if (value == null || "".equals(value.trim())) {
+			return;
+		}
+		// some pragmas return a row, execute handles both
+		statement.execute("PRAGMA " + name + "=" + value.trim());
+	}
+
+	/**
+	 * Copy WAL frames into the database without blocking readers or writers.
+	 *
+	 * @param connection
+	 *            sqlite connection.
+	 * @return checkpoint status.
+	 * @throws Exception
+	 *             if checkpoint fails.
+	 */
+	public CheckpointStatus checkpoint(final Connection connection)
+			throws Exception {
+		final CheckpointStatus status = new CheckpointStatus();
+		String file = null;
+		try (
+			final Statement statement = connection.createStatement();
+		) {
+			try (final ResultSet rs = statement
+					.executeQuery("PRAGMA wal_checkpoint(PASSIVE)")) {
+				if (rs.next()) {
+					status.busy = rs.getInt(1) != 0;
+					status.walFrames = rs.getLong(2);
+					status.checkpointedFrames = rs.getLong(3);
+				}
+			}
+			try (final ResultSet rs = statement
+					.executeQuery("PRAGMA database_list")) {
+				while (rs.next()) {
+					if ("main".equals(rs.getString("name"))) {
+						file = rs.getString("file");
+					}
+				}
+			}
+		}
+		if (file != null && !"".equals(file)) {
+			status.walSize = new File(file + "-wal").length();
+		}
+		return status;
+	}
+
+	/**
+	 * Free pages released by deletes, when auto_vacuum is INCREMENTAL.
+	 *
+	 * @param connection
+	 *            sqlite connection, not in a transaction.
+	 * @throws Exception
+	 *             if vacuum fails.
+	 */
+	public void incrementalVacuum(final Connection connection)
+			throws Exception {
+		try (final Statement statement = connection.createStatement()) {
+			statement.execute("PRAGMA incremental_vacuum");
+		}
+	}
+
+	/**
+	 * Update query planner statistics.
+	 *
+	 * Sets analysis_limit first, so large indexes are sampled instead of
+	 * scanned. Older sqlite versions ignore analysis_limit.
+	 *
+	 * @param connection
+	 *            sqlite connection.
+	 * @throws Exception
+	 *             if analyze fails.
+	 */
+	public void analyze(final Connection connection) throws Exception {
+		final long start = System.currentTimeMillis();
+		try (final Statement statement = connection.createStatement()) {
+			pragma(statement, "analysis_limit", analysisLimit);
+			statement.execute("ANALYZE");
+		}
+		LOGGER.fine("[" + getName() + "] analyze took "
+				+ (System.currentTimeMillis() - start) + "ms");
+	}
+
+	/** @return journal mode */
+	public String getJournalMode() { return journalMode; }
+	/** @param journalMode journal mode, empty for sqlite default */
+	public void setJournalMode(final String journalMode) { this.journalMode = journalMode; }
+
+	/** @return synchronous level */
+	public String getSynchronous() { return synchronous; }
+	/** @param synchronous synchronous level, empty for sqlite default */
+	public void setSynchronous(final String synchronous) { this.synchronous = synchronous; }
+
+	/** @return mmap size */
+	public String getMmapSize() { return mmapSize; }
+	/** @param mmapSize mmap size in bytes, empty for sqlite default */
+	public void setMmapSize(final String mmapSize) { this.mmapSize = mmapSize; }
+
+	/** @return cache size */
+	public String getCacheSize() { return cacheSize; }
+	/** @param cacheSize cache size, empty for sqlite default */
+	public void setCacheSize(final String cacheSize) { this.cacheSize = cacheSize; }
+
+	/** @return auto vacuum mode */
+	public String getAutoVacuum() { return autoVacuum; }
+	/** @param autoVacuum auto vacuum mode, empty for sqlite default */
+	public void setAutoVacuum(final String autoVacuum) { this.autoVacuum = autoVacuum; }
+
+	/** @return busy timeout in milliseconds */
+	public String getBusyTimeout() { return busyTimeout; }
+	/** @param busyTimeout milliseconds, empty for sqlite default */
+	public void setBusyTimeout(final String busyTimeout) { this.busyTimeout = busyTimeout; }
+
+	/** @return analysis limit */
+	public String getAnalysisLimit() { return analysisLimit; }
+	/** @param analysisLimit rows per index, empty for no limit */
+	public void setAnalysisLimit(final String analysisLimit) { this.analysisLimit = analysisLimit; }
+
+	/** @return checkpoint interval in milliseconds */
+	public long getCheckpointInterval() { return checkpointInterval; }
+	/** @param checkpointInterval milliseconds, 0 to disable */
+	public void setCheckpointInterval(final long checkpointInterval) { this.checkpointInterval = checkpointInterval; }
+
+	/** @return analyze interval in milliseconds */
+	public long getAnalyzeInterval() { return analyzeInterval; }
+	/** @param analyzeInterval milliseconds, 0 to disable */
+	public void setAnalyzeInterval(final long analyzeInterval) { this.analyzeInterval = analyzeInterval; }
+
+}
@@ -0,0 +1,178 @@
+package gov.usgs.earthquake.util;
+
+import gov.usgs.util.StreamUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Stream that buffers bytes in memory, and spools to a temporary file once
+ * more than a limit has been written.
+ *
+ * After the stream is closed, the written bytes can be read any number of
+ * times, including concurrently, until {@link #delete()} is called.
+ */
+public class SpooledOutputStream extends OutputStream {
+
+	/** Maximum number of bytes kept in memory. */
+	private final long memoryLimit;
+	/** Directory for temporary file, or null for system default. */
+	private final File tempDirectory;
+
+	private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+	private byte[] bytes = null;
+	private File file = null;
+	private OutputStream fileOut = null;
+	private long length = 0L;
+	private boolean closed = false;
+
+	/**
+	 * Create a stream that spools to the default temporary directory.
+	 *
+	 * @param memoryLimit
+	 *            maximum number of bytes to keep in memory.
+	 */
+	public SpooledOutputStream(final long memoryLimit) {
+		this(memoryLimit, null);
+	}
+
+	/**
+	 * Create a stream.
+	 *
+	 * @param memoryLimit
+	 *            maximum number of bytes to keep in memory.
+	 * @param tempDirectory
+	 *            directory for temporary file, or null for system default.
+	 */
+	public SpooledOutputStream(final long memoryLimit, final File tempDirectory) {
+		this.memoryLimit = memoryLimit;
+		this.tempDirectory = tempDirectory;
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len)
+			throws IOException {
+		if (closed) {
+			throw new IOException("stream is closed");
+		}
+		if (fileOut == null && length + len > memoryLimit) {
+			// move to file
+			file = File.createTempFile("spool", ".tmp", tempDirectory);
+			fileOut = new BufferedOutputStream(new FileOutputStream(file));
+			memory.writeTo(fileOut);
+			memory = null;
+		}
+		if (fileOut != null) {
+			fileOut.write(b, off, len);
+		} else {
+			memory.write(b, off, len);
+		}
+		length += len;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (fileOut != null) {
+			fileOut.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (fileOut != null) {
+			fileOut.close();
+			fileOut = null;
+		} else {
+			bytes = memory.toByteArray();
+			memory = null;
+		}
+	}
+
+	/**
+	 * @return number of bytes written.
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return true if bytes are in memory, false if spooled to a file.
+	 */
+	public boolean isInMemory() {
+		return file == null;
+	}
+
+	/**
+	 * Read the written bytes.
+	 *
+	 * @return new stream of written bytes.
+	 * @throws IOException
+	 *             if stream is not closed, or file cannot be opened.
+	 */
+	public InputStream getInputStream() throws IOException {
+		if (!closed) {
+			throw new IOException("stream is not closed");
+		}
+		if (file != null) {
+			return new FileInputStream(file);
+		}
+		if (bytes == null) {
+			throw new IOException("stream was deleted");
+		}
+		return new ByteArrayInputStream(bytes);
+	}
+
+	/**
+	 * Copy the written bytes to another stream.
+	 *
+	 * @param out
+	 *            stream to write, not closed by this method.
+	 * @throws IOException
+	 *             if error occurs.
+	 */
+	public void writeTo(final OutputStream out) throws IOException {
+		InputStream in = getInputStream();
+		try {
+			byte[] buffer = new byte[StreamUtils.DEFAULT_BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		} finally {
+			StreamUtils.closeStream(in);
+		}
+	}
+
+	/**
+	 * Release memory and delete any temporary file.
+	 */
+	public void delete() {
+		try {
+			close();
+		} catch (IOException e) {
+			// ignore
+		}
+		bytes = null;
+		if (file != null) {
+			file.delete();
+			file = null;
+		}
+	}
+
+}
@@ -7,23 +7,67 @@
 package gov.usgs.util;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.LinkedList;
-import java.util.Timer;
+import java.util.Map;
+import java.util.Set;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Monitor a directory for files, notifying FileListenerInterfaces.
  *
  * Implementers of the FileListenerInterface should process files before
  * returning, because these files may move or disappear.
+ *
+ * When watch is enabled, a WatchService (inotify on Linux) reports new files
+ * as soon as they are created, and the directory is still listed every
+ * polling interval in case events are missed or the file system does not
+ * support watching. When stableTime is greater than zero, a file is only
+ * processed once its length and modification time have not changed for
+ * stableTime milliseconds, so files that are still being written are not
+ * processed early.
+ *
+ * Files are processed by threads worker threads. When a key function is set,
+ * files with the same key are processed one at a time in the order they
+ * became ready, and files with different keys are processed concurrently.
  */
 public class DirectoryPoller {
 
-	/** Timer schedules polling frequency. */
-	private Timer timer;
+	/** Logging object. */
+	private static final Logger LOGGER = Logger.getLogger(DirectoryPoller.class
+			.getName());
+
+	/** Schedules polling, and checks whether files are ready. */
+	private ScheduledExecutorService scheduler;
+
+	/** Watches poll directory for new files. */
+	private WatchService watchService;
+
+	/** Thread reading watchService events. */
+	private Thread watchThread;
+
+	/** Threads processing files, one executor per key partition. */
+	private ExecutorService[] workers;
 
 	/** Directory to watch. */
 	private final File pollDirectory;
@@ -34,6 +78,33 @@ public class DirectoryPoller {
 	/** Notification of files. */
 	private List<FileListenerInterface> listeners = new LinkedList<FileListenerInterface>();
 
+	/** Whether to use a WatchService in addition to polling. */
+	private boolean watch = true;
+
+	/** Milliseconds a file must be unchanged before it is processed. */
+	private long stableTime = 0L;
+
+	/** Number of threads processing files. */
+	private int threads = 1;
+
+	/** Milliseconds stop waits for files being processed. */
+	private long stopTimeout = 60000L;
+
+	/** Set while stopping, so queued files are left in the poll directory. */
+	private volatile boolean stopping = false;
+
+	/** Optional key used to process related files in order. */
+	private Function<File, String> keyFunction = null;
+
+	/** Names of files queued or being processed. */
+	private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+
+	/** Files waiting to become stable, only used by scheduler thread. */
+	private final Map<String, FileState> candidates = new HashMap<String, FileState>();
+
+	/** Used to assign files without a key to workers. */
+	private int nextWorker = 0;
+
 	/**
 	 * Create a DirectoryPoller.
 	 *
@@ -85,43 +156,252 @@ public class DirectoryPoller {
 	 * @param frequencyInMilliseconds
 	 *            how often to poll.
 	 */
-	public void start(final long frequencyInMilliseconds) {
-		if (timer != null) {
+	public synchronized void start(final long frequencyInMilliseconds) {
+		if (scheduler != null) {
 			// already started
 			stop();
 		}
 
-		timer = new Timer();
-		timer.schedule(new PollTask(), 0L, frequencyInMilliseconds);
+		stopping = false;
+		workers = new ExecutorService[Math.max(1, threads)];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = Executors.newSingleThreadExecutor();
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+		if (watch) {
+			startWatching();
+		}
+		scheduler.scheduleWithFixedDelay(new PollTask(), 0L,
+				frequencyInMilliseconds, TimeUnit.MILLISECONDS);
 	}
 
 	/**
 	 * Stop any currently scheduled polling.
+	 *
+	 * Files that are queued but not yet processed remain in the poll
+	 * directory, and are processed the next time polling starts. Files
+	 * already being processed are given up to stopTimeout milliseconds to
+	 * finish before worker threads are interrupted.
+	 */
+	public synchronized void stop() {
+		stopping = true;
+		if (watchThread != null) {
+			watchThread.interrupt();
+			watchThread = null;
+		}
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			watchService = null;
+		}
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			try {
+				// candidates are only used by the scheduler thread
+				if (!scheduler.awaitTermination(stopTimeout,
+						TimeUnit.MILLISECONDS)) {
+					LOGGER.warning("Poll still running after " + stopTimeout
+							+ "ms");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			scheduler = null;
+		}
+		if (workers != null) {
+			for (ExecutorService worker : workers) {
+				worker.shutdown();
+			}
+			final long end = System.currentTimeMillis() + stopTimeout;
+			for (ExecutorService worker : workers) {
+				try {
+					long wait = Math.max(0L, end - System.currentTimeMillis());
+					if (!worker.awaitTermination(wait, TimeUnit.MILLISECONDS)) {
+						LOGGER.warning("Files still processing after "
+								+ stopTimeout + "ms, interrupting");
+						worker.shutdownNow();
+					}
+				} catch (InterruptedException e) {
+					worker.shutdownNow();
+					Thread.currentThread().interrupt();
+				}
+			}
+			workers = null;
+		}
+		candidates.clear();
+		inProgress.clear();
+	}
+
+	/**
+	 * Start a thread that checks files reported by a WatchService.
+	 *
+	 * Logs a warning and only polls if the directory cannot be watched.
 	 */
-	public void stop() {
-		if (timer != null) {
-			timer.cancel();
-			timer = null;
+	private void startWatching() {
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+			pollDirectory.toPath().register(watchService,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException | UnsupportedOperationException e) {
+			LOGGER.log(Level.WARNING, "Unable to watch " + pollDirectory
+					+ ", polling only", e);
+			watchService = null;
+			return;
 		}
+
+		final WatchService service = watchService;
+		final ScheduledExecutorService checker = scheduler;
+		watchThread = new Thread(() -> {
+			try {
+				while (true) {
+					WatchKey key = service.take();
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+							// events were lost, list directory
+							checker.execute(new PollTask());
+						} else {
+							final File file = new File(pollDirectory,
+									((Path) event.context()).toString());
+							checker.execute(() -> check(file));
+						}
+					}
+					key.reset();
+				}
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				// stopped
+			} catch (Exception e) {
+				LOGGER.log(Level.WARNING, "Exception watching " + pollDirectory
+						+ ", polling only", e);
+			}
+		}, "DirectoryPoller watch " + pollDirectory.getName());
+		watchThread.setDaemon(true);
+		watchThread.start();
 	}
 
 	/**
-	 * The Polling Task. Notifies all listeners then either deletes or moves the
-	 * file to storage.
+	 * The Polling Task. Checks every file in the poll directory, in the order
+	 * they were modified.
 	 *
 	 * @author jmfee
 	 *
 	 */
 	protected class PollTask extends TimerTask {
 		public void run() {
-			// get files from poll directory
-			File[] files = pollDirectory.listFiles();
-			for (File file : files) {
-				// send file to listeners
-				notifyListeners(file);
-				// move file to storage
-				moveToStorage(file);
+			try {
+				// get files from poll directory
+				File[] files = pollDirectory.listFiles();
+				if (files == null) {
+					return;
+				}
+				Arrays.sort(files, (a, b) -> {
+					int r = Long.compare(a.lastModified(), b.lastModified());
+					return r != 0 ? r : a.getName().compareTo(b.getName());
+				});
+				for (File file : files) {
+					check(file);
+				}
+			} catch (Exception e) {
+				// keep polling
+				LOGGER.log(Level.WARNING, "Exception polling " + pollDirectory,
+						e);
+			}
+		}
+	}
+
+	/**
+	 * Process a file if it is ready, or check again after stableTime.
+	 *
+	 * Only called by the scheduler thread.
+	 *
+	 * @param file
+	 *            file in poll directory.
+	 */
+	private void check(final File file) {
+		final String name = file.getName();
+		if (inProgress.contains(name)) {
+			return;
+		}
+		if (!file.exists()) {
+			candidates.remove(name);
+			return;
+		}
+
+		if (stableTime > 0) {
+			long now = System.currentTimeMillis();
+			long length = file.length();
+			long modified = file.lastModified();
+			FileState state = candidates.get(name);
+			if (state == null || state.length != length
+					|| state.modified != modified) {
+				// new or changed, wait for file to be unchanged
+				state = new FileState(length, modified, now);
+				candidates.put(name, state);
+			}
+			long remaining = stableTime - (now - state.since);
+			if (remaining > 0) {
+				if (!state.scheduled) {
+					final FileState scheduled = state;
+					scheduled.scheduled = true;
+					scheduler.schedule(() -> {
+						scheduled.scheduled = false;
+						check(file);
+					}, remaining, TimeUnit.MILLISECONDS);
+				}
+				return;
 			}
+			candidates.remove(name);
+		}
+
+		dispatch(file);
+	}
+
+	/**
+	 * Queue a ready file for processing.
+	 *
+	 * @param file
+	 *            file to process.
+	 */
+	private void dispatch(final File file) {
+		final String name = file.getName();
+		String key = null;
+		if (keyFunction != null) {
+			try {
+				key = keyFunction.apply(file);
+			} catch (Exception e) {
+				LOGGER.log(Level.FINE, "Exception getting key for " + name, e);
+			}
+		}
+		ExecutorService worker;
+		if (key != null) {
+			worker = workers[Math.abs(key.hashCode() % workers.length)];
+		} else {
+			worker = workers[nextWorker];
+			nextWorker = (nextWorker + 1) % workers.length;
+		}
+
+		inProgress.add(name);
+		try {
+			worker.execute(() -> {
+				try {
+					if (stopping) {
+						// leave for next start
+						return;
+					}
+					// send file to listeners
+					notifyListeners(file);
+					// move file to storage
+					moveToStorage(file);
+				} finally {
+					inProgress.remove(name);
+				}
+			});
+		} catch (Exception e) {
+			// stopping
+			inProgress.remove(name);
 		}
 	}
 
@@ -173,4 +453,98 @@ public class DirectoryPoller {
 		file.renameTo(storageFile);
 	}
 
+	/** @return whether a WatchService is used in addition to polling. */
+	public boolean isWatch() {
+		return watch;
+	}
+
+	/**
+	 * @param watch
+	 *            whether a WatchService is used in addition to polling, takes
+	 *            effect the next time polling starts.
+	 */
+	public void setWatch(final boolean watch) {
+		this.watch = watch;
+	}
+
+	/** @return milliseconds a file must be unchanged before processing. */
+	public long getStableTime() {
+		return stableTime;
+	}
+
+	/**
+	 * @param stableTime
+	 *            milliseconds a file must be unchanged before processing, 0
+	 *            to process files as soon as they are seen.
+	 */
+	public void setStableTime(final long stableTime) {
+		this.stableTime = stableTime;
+	}
+
+	/** @return number of threads processing files. */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @param threads
+	 *            number of threads processing files, takes effect the next
+	 *            time polling starts.
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
+	/** @return milliseconds stop waits for files being processed. */
+	public long getStopTimeout() {
+		return stopTimeout;
+	}
+
+	/**
+	 * @param stopTimeout
+	 *            milliseconds stop waits for files being processed, before
+	 *            interrupting worker threads.
+	 */
+	public void setStopTimeout(final long stopTimeout) {
+		this.stopTimeout = stopTimeout;
+	}
+
+	/** @return function returning ordering key for a file, or null. */
+	public Function<File, String> getKeyFunction() {
+		return keyFunction;
+	}
+
+	/**
+	 * Set a function that returns a key for each file.
+	 *
+	 * Files with the same key are processed in order, one at a time. The
+	 * function is called for one file at a time, in the order files become
+	 * ready, and may return null when a file can be processed in any order.
+	 *
+	 * @param keyFunction
+	 *            function returning ordering key for a file, or null to
+	 *            process all files in any order.
+	 */
+	public void setKeyFunction(final Function<File, String> keyFunction) {
+		this.keyFunction = keyFunction;
+	}
+
+	/**
+	 * Length and modification time of a file when first seen unchanged.
+	 */
+	private static class FileState {
+		final long length;
+		final long modified;
+		/** When file was first seen with this length and time. */
+		final long since;
+		/** Whether a check is already scheduled. */
+		boolean scheduled = false;
+
+		FileState(final long length, final long modified, final long since) {
+			this.length = length;
+			this.modified = modified;
+			this.since = since;
+		}
+	}
+
 }
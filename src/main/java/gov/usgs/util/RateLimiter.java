@@ -0,0 +1,57 @@
+/*
+ * RateLimiter
+ */
+package gov.usgs.util;
+
+/**
+ * Spaces calls evenly so they happen at most a fixed number of times per
+ * second.
+ *
+ * Permits are not saved up while idle, so a burst after a pause is still
+ * spread out at the configured rate.
+ */
+public class RateLimiter {
+
+	/** Nanoseconds between permits. */
+	private final long interval;
+
+	/** Nanotime when the next permit is available. */
+	private long next;
+
+	/**
+	 * Create a new RateLimiter.
+	 *
+	 * @param permitsPerSecond
+	 *            maximum rate, must be greater than zero.
+	 */
+	public RateLimiter(final double permitsPerSecond) {
+		if (permitsPerSecond <= 0) {
+			throw new IllegalArgumentException(
+					"permitsPerSecond must be greater than zero");
+		}
+		this.interval = (long) (1000000000L / permitsPerSecond);
+		this.next = System.nanoTime();
+	}
+
+	/**
+	 * Wait until a permit is available.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting.
+	 */
+	public void acquire() throws InterruptedException {
+		long wait;
+		synchronized (this) {
+			long now = System.nanoTime();
+			if (next < now) {
+				next = now;
+			}
+			wait = next - now;
+			next += interval;
+		}
+		if (wait > 0) {
+			Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+		}
+	}
+
+}
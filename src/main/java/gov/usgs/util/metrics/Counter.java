@@ -0,0 +1,46 @@
+/*
+ * Counter
+ */
+package gov.usgs.util.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count.
+ */
+public class Counter {
+
+	private final LongAdder count = new LongAdder();
+
+	/**
+	 * Add one.
+	 */
+	public void increment() {
+		count.increment();
+	}
+
+	/**
+	 * Add an amount.
+	 *
+	 * @param amount
+	 *            amount to add.
+	 */
+	public void add(final long amount) {
+		count.add(amount);
+	}
+
+	/**
+	 * @return current count.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Reset count to zero.
+	 */
+	public void reset() {
+		count.reset();
+	}
+
+}
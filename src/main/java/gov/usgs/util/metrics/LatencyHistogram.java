@@ -0,0 +1,159 @@
+/*
+ * LatencyHistogram
+ */
+package gov.usgs.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size, log-linear histogram of durations in nanoseconds.
+ *
+ * Similar to HdrHistogram, values are grouped by power of two, and each power
+ * of two is split into SUB_BUCKETS linear buckets. Recorded values are
+ * accurate to within 1/SUB_BUCKETS (about 3%) of their actual value, from
+ * nanoseconds to days, and recording never allocates or locks.
+ */
+public class LatencyHistogram {
+
+	/** Number of bits used for linear sub buckets. */
+	private static final int SUB_BUCKET_BITS = 5;
+
+	/** Number of linear buckets per power of two. */
+	public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/** Number of buckets, enough for any positive long. */
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Record a duration.
+	 *
+	 * @param nanos
+	 *            duration in nanoseconds, negative values are recorded as 0.
+	 */
+	public void record(final long nanos) {
+		final long value = Math.max(0L, nanos);
+		buckets.incrementAndGet(getBucket(value));
+		count.increment();
+		total.add(value);
+		if (value > max.get()) {
+			max.accumulateAndGet(value, Math::max);
+		}
+	}
+
+	/**
+	 * @return number of recorded values.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return mean of recorded values in nanoseconds, or 0 if none recorded.
+	 */
+	public double getMean() {
+		final long n = count.sum();
+		return n == 0 ? 0 : total.sum() / (double) n;
+	}
+
+	/**
+	 * @return largest recorded value in nanoseconds.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Estimate a percentile.
+	 *
+	 * @param percentile
+	 *            percentile between 0 and 100.
+	 * @return estimated value in nanoseconds, or 0 if none recorded.
+	 */
+	public long getPercentile(final double percentile) {
+		if (percentile >= 100.0) {
+			return max.get();
+		}
+		long[] counts = new long[BUCKETS];
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			n += counts[i];
+		}
+		if (n == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1L,
+				(long) Math.ceil(n * percentile / 100.0));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				// middle of bucket, but not more than largest value
+				return Math.min(max.get(), getBucketLowerBound(i)
+						+ getBucketWidth(i) / 2);
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Reset all values.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0L);
+		}
+		count.reset();
+		total.reset();
+		max.set(0L);
+	}
+
+	/**
+	 * @param value
+	 *            non-negative value.
+	 * @return index of bucket containing value.
+	 */
+	static int getBucket(final long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		final int shift = exponent - SUB_BUCKET_BITS;
+		final int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * @param bucket
+	 *            bucket index.
+	 * @return smallest value in bucket.
+	 */
+	static long getBucketLowerBound(final int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		final int shift = bucket / SUB_BUCKETS - 1;
+		final long subBucket = bucket % SUB_BUCKETS;
+		return (SUB_BUCKETS + subBucket) << shift;
+	}
+
+	/**
+	 * @param bucket
+	 *            bucket index.
+	 * @return number of values in bucket.
+	 */
+	static long getBucketWidth(final int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return 1;
+		}
+		return 1L << (bucket / SUB_BUCKETS - 1);
+	}
+
+}
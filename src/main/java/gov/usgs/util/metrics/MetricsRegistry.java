@@ -0,0 +1,251 @@
+/*
+ * MetricsRegistry
+ */
+package gov.usgs.util.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, gauges, and latency histograms.
+ *
+ * Metric names are usually "component.metric", where component is the
+ * configured name of a receiver, listener, or storage. Most code uses the
+ * default registry, and the convenience methods startTimer, recordSince, and
+ * increment:
+ *
+ * <pre>
+ * MetricsRegistry metrics = MetricsRegistry.getDefault();
+ * long start = metrics.startTimer();
+ * ...
+ * metrics.recordSince(getName(), "download", start);
+ * </pre>
+ *
+ * The registry is disabled by default; when disabled these methods return
+ * without reading the clock, building metric names, or updating metrics.
+ */
+public class MetricsRegistry {
+
+	/** Registry used by PDL components. */
+	private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+	/** Whether metrics are recorded. */
+	private volatile boolean enabled = false;
+
+	private final Map<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+	private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<String, LongSupplier>();
+	private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+
+	/**
+	 * @return registry used by PDL components.
+	 */
+	public static MetricsRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @return whether metrics are recorded.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled
+	 *            whether metrics are recorded.
+	 */
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Get or create a counter.
+	 *
+	 * @param name
+	 *            counter name.
+	 * @return counter.
+	 */
+	public Counter getCounter(final String name) {
+		return counters.computeIfAbsent(name, key -> new Counter());
+	}
+
+	/**
+	 * Get or create a histogram.
+	 *
+	 * @param name
+	 *            histogram name.
+	 * @return histogram.
+	 */
+	public LatencyHistogram getHistogram(final String name) {
+		return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+	}
+
+	/**
+	 * Register a gauge, replacing any existing gauge with the same name.
+	 *
+	 * Gauges are only read when metrics are summarized.
+	 *
+	 * @param name
+	 *            gauge name.
+	 * @param gauge
+	 *            supplies current value.
+	 */
+	public void setGauge(final String name, final LongSupplier gauge) {
+		gauges.put(name, gauge);
+	}
+
+	/**
+	 * Remove a gauge.
+	 *
+	 * @param name
+	 *            gauge name.
+	 */
+	public void removeGauge(final String name) {
+		gauges.remove(name);
+	}
+
+	/**
+	 * Start timing an operation.
+	 *
+	 * @return start time for recordSince, or 0 when disabled.
+	 */
+	public long startTimer() {
+		return enabled ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Record time elapsed since startTimer.
+	 *
+	 * @param component
+	 *            component name.
+	 * @param metric
+	 *            histogram name within component.
+	 * @param start
+	 *            value returned by startTimer.
+	 */
+	public void recordSince(final String component, final String metric,
+			final long start) {
+		if (!enabled || start == 0L) {
+			return;
+		}
+		getHistogram(getName(component, metric)).record(
+				System.nanoTime() - start);
+	}
+
+	/**
+	 * Add one to a counter.
+	 *
+	 * @param component
+	 *            component name.
+	 * @param metric
+	 *            counter name within component.
+	 */
+	public void increment(final String component, final String metric) {
+		add(component, metric, 1L);
+	}
+
+	/**
+	 * Add an amount to a counter.
+	 *
+	 * @param component
+	 *            component name.
+	 * @param metric
+	 *            counter name within component.
+	 * @param amount
+	 *            amount to add.
+	 */
+	public void add(final String component, final String metric,
+			final long amount) {
+		if (!enabled) {
+			return;
+		}
+		getCounter(getName(component, metric)).add(amount);
+	}
+
+	/**
+	 * @return current counter values, sorted by name.
+	 */
+	public Map<String, Long> getCounterValues() {
+		Map<String, Long> values = new TreeMap<String, Long>();
+		for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+			values.put(entry.getKey(), entry.getValue().getCount());
+		}
+		return values;
+	}
+
+	/**
+	 * @return current gauge values, sorted by name.
+	 */
+	public Map<String, Long> getGaugeValues() {
+		Map<String, Long> values = new TreeMap<String, Long>();
+		for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+			values.put(entry.getKey(), entry.getValue().getAsLong());
+		}
+		return values;
+	}
+
+	/**
+	 * @return histograms, sorted by name.
+	 */
+	public Map<String, LatencyHistogram> getHistograms() {
+		return new TreeMap<String, LatencyHistogram>(histograms);
+	}
+
+	/**
+	 * Reset counters and histograms. Gauges are not affected.
+	 */
+	public void reset() {
+		for (Counter counter : counters.values()) {
+			counter.reset();
+		}
+		for (LatencyHistogram histogram : histograms.values()) {
+			histogram.reset();
+		}
+	}
+
+	/**
+	 * Summarize all metrics, one per line.
+	 *
+	 * Latencies are formatted in milliseconds.
+	 *
+	 * @return summary.
+	 */
+	public String getSummary() {
+		StringBuffer buf = new StringBuffer();
+		if (!enabled) {
+			buf.append("metrics disabled\n");
+		}
+		for (Map.Entry<String, Long> entry : getCounterValues().entrySet()) {
+			buf.append(entry.getKey()).append(" = ").append(entry.getValue())
+					.append("\n");
+		}
+		for (Map.Entry<String, Long> entry : getGaugeValues().entrySet()) {
+			buf.append(entry.getKey()).append(" = ").append(entry.getValue())
+					.append("\n");
+		}
+		for (Map.Entry<String, LatencyHistogram> entry : getHistograms()
+				.entrySet()) {
+			LatencyHistogram histogram = entry.getValue();
+			buf.append(entry.getKey())
+					.append(" count=").append(histogram.getCount())
+					.append(" mean=").append(toMillis(histogram.getMean()))
+					.append(" p50=").append(toMillis(histogram.getPercentile(50)))
+					.append(" p90=").append(toMillis(histogram.getPercentile(90)))
+					.append(" p99=").append(toMillis(histogram.getPercentile(99)))
+					.append(" max=").append(toMillis(histogram.getMax()))
+					.append(" ms\n");
+		}
+		return buf.toString();
+	}
+
+	private static String getName(final String component, final String metric) {
+		return component == null ? metric : component + "." + metric;
+	}
+
+	private static String toMillis(final double nanos) {
+		return String.format("%.3f", nanos / 1000000.0);
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * In-process metrics: counters, gauges, and latency histograms.
+ */
+package gov.usgs.util.metrics;
@@ -0,0 +1,142 @@
+/*
+ * BatchProductResenderTest
+ */
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.product.ByteContent;
+import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.ProductId;
+import gov.usgs.earthquake.product.io.IOUtil;
+import gov.usgs.earthquake.product.io.ObjectProductSource;
+import gov.usgs.util.DefaultConfigurable;
+import gov.usgs.util.FileUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the BatchProductResender class.
+ */
+public class BatchProductResenderTest {
+
+	private static final int PRODUCT_COUNT = 20;
+
+	private File directory;
+	private List<String> paths = new ArrayList<String>();
+	private TestSender sender;
+	private ProductBuilder builder;
+
+	/**
+	 * Sender that records product codes, and fails products with code "fail".
+	 */
+	private static class TestSender extends DefaultConfigurable implements
+			ProductSender {
+		final Set<String> codes = Collections
+				.synchronizedSet(new HashSet<String>());
+		boolean fail = true;
+		boolean shutdown = false;
+
+		@Override
+		public void shutdown() throws Exception {
+			shutdown = true;
+		}
+
+		@Override
+		public void sendProduct(final Product product) throws Exception {
+			String code = product.getId().getCode();
+			if (fail && code.equals("fail")) {
+				throw new Exception("send failed");
+			}
+			codes.add(code);
+		}
+	}
+
+	@Before
+	public void setup() throws Exception {
+		ProductTracker.setTrackerEnabled(false);
+		directory = Files.createTempDirectory("batchResend").toFile();
+		for (int i = 0; i < PRODUCT_COUNT; i++) {
+			String code = (i == 0 ? "fail" : "code" + i);
+			Product product = new Product(new ProductId("us", "test", code,
+					new Date()));
+			product.getContents().put("", new ByteContent(("product " + i)
+					.getBytes()));
+			File file = new File(directory, code + ".bin");
+			new ObjectProductSource(product).streamTo(IOUtil.getProductHandler(
+					IOUtil.BINARY_FORMAT, file));
+			paths.add(file.getPath());
+		}
+		sender = new TestSender();
+		sender.setName("test");
+		builder = new ProductBuilder();
+		builder.addProductSender(sender);
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		FileUtils.deleteTree(directory);
+	}
+
+	private BatchProductResender newBatch(final File checkpoint) {
+		BatchProductResender batch = new BatchProductResender(builder,
+				IOUtil.BINARY_FORMAT);
+		batch.setParseThreads(2);
+		batch.setSendThreads(3);
+		batch.setMaxInFlight(4);
+		batch.setCheckpointFile(checkpoint);
+		return batch;
+	}
+
+	@Test
+	public void testCheckpointSkipsSentProducts() throws Exception {
+		File checkpoint = new File(directory, "checkpoint");
+		paths.add(new File(directory, "missing.bin").getPath());
+
+		BatchProductResender batch = newBatch(checkpoint);
+		batch.run(paths);
+		Assert.assertEquals(PRODUCT_COUNT - 1, batch.getSentCount());
+		Assert.assertEquals("send and parse failures", 2,
+				batch.getFailedCount());
+		Assert.assertEquals(PRODUCT_COUNT - 1, sender.codes.size());
+
+		// rerun only retries failures
+		sender.codes.clear();
+		sender.fail = false;
+		batch = newBatch(checkpoint);
+		batch.run(paths);
+		Assert.assertEquals(PRODUCT_COUNT - 1, batch.getSkippedCount());
+		Assert.assertEquals(1, batch.getSentCount());
+		Assert.assertEquals(1, batch.getFailedCount());
+		Assert.assertTrue(sender.codes.contains("fail"));
+		Assert.assertEquals(1, sender.codes.size());
+	}
+
+	@Test
+	public void testSendRate() throws Exception {
+		sender.fail = false;
+		BatchProductResender batch = newBatch(null);
+		// 20 products at 100 per second takes at least 190ms
+		batch.setSendRate(100);
+		long start = System.currentTimeMillis();
+		batch.run(paths);
+		long elapsed = System.currentTimeMillis() - start;
+		Assert.assertEquals(PRODUCT_COUNT, batch.getSentCount());
+		Assert.assertTrue("rate limited, elapsed=" + elapsed, elapsed >= 180);
+
+		// limited sender is still shutdown with the builder
+		builder.shutdown();
+		Assert.assertTrue(sender.shutdown);
+	}
+
+}
@@ -1,5 +1,11 @@
 package gov.usgs.earthquake.distribution;
 
+import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.io.BinaryProductSource;
+import gov.usgs.earthquake.product.io.ObjectProductHandler;
+import gov.usgs.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 
@@ -25,4 +31,14 @@ public class DeflateComparisonTest {
 				"etc/test_products/usa00040xz/us_losspager_usa00040xz_1287260989064.bin"));
 	}
 
+	@Test
+	public void testShakemapContentCodecs() throws Exception {
+		// shakemap has a mix of images and text content
+		Product product = ObjectProductHandler.getProduct(
+				new BinaryProductSource(new ByteArrayInputStream(
+						StreamUtils.readStream(new File(
+								"etc/test_products/usa00040xz/us_shakemap_usa00040xz_1287260900624.bin")))));
+		new DeflateComparison().testContentCodecs("shakemap", product);
+	}
+
 }
@@ -0,0 +1,112 @@
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.product.ProductId;
+import gov.usgs.util.FileUtils;
+
+import java.io.File;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExpiredNotificationCleanupTest {
+
+	private static final long FUTURE = new Date().getTime() + 1000000L;
+
+	private File directory;
+	private MemoryNotificationIndex index;
+	private FileProductStorage storage;
+
+	@Before
+	public void before() throws Exception {
+		directory = File.createTempFile("expiredcleanup", "");
+		directory.delete();
+		index = new MemoryNotificationIndex();
+		index.setDirectory(new File(directory, "index"));
+		index.setSnapshotInterval(0);
+		index.startup();
+		storage = new FileProductStorage(new File(directory, "storage")) {
+			@Override
+			public void removeProduct(ProductId id) throws Exception {
+				if (id.getCode().equals("fail")) {
+					throw new Exception("test failure");
+				}
+				super.removeProduct(id);
+			}
+		};
+		storage.startup();
+	}
+
+	@After
+	public void after() throws Exception {
+		index.shutdown();
+		storage.shutdown();
+		FileUtils.deleteTree(directory);
+	}
+
+	private void addNotification(final String code, final long expires)
+			throws Exception {
+		index.addNotification(new DefaultNotification(new ProductId("us",
+				"origin", code), new Date(expires), null));
+	}
+
+	@Test
+	public void testRemoveInBatches() throws Exception {
+		for (int i = 0; i < 7; i++) {
+			addNotification("expired" + i, 1000L);
+		}
+		addNotification("current", FUTURE);
+
+		ExpiredNotificationCleanup cleanup = new ExpiredNotificationCleanup(
+				"test", index, storage);
+		cleanup.setBatchSize(3);
+		// one batch per time slice
+		cleanup.setTimeSlice(0);
+		cleanup.setSlicePause(0);
+		try {
+			Assert.assertEquals(7, cleanup.removeExpired());
+		} finally {
+			cleanup.shutdown();
+		}
+		Assert.assertEquals(1, index.size());
+		Assert.assertEquals(0, index.findExpiredNotifications().size());
+	}
+
+	@Test
+	public void testStorageFailureKeepsNotification() throws Exception {
+		addNotification("expired", 1000L);
+		addNotification("fail", 1000L);
+
+		ExpiredNotificationCleanup cleanup = new ExpiredNotificationCleanup(
+				"test", index, storage);
+		try {
+			Assert.assertEquals(1, cleanup.removeExpired());
+		} finally {
+			cleanup.shutdown();
+		}
+		Assert.assertEquals("retried next cleanup", 1,
+				index.findExpiredNotifications().size());
+	}
+
+	@Test
+	public void testStorageFailureDoesNotStopCleanup() throws Exception {
+		// failure expires first, so is at the start of every batch
+		addNotification("fail", 500L);
+		for (int i = 0; i < 5; i++) {
+			addNotification("expired" + i, 1000L);
+		}
+
+		ExpiredNotificationCleanup cleanup = new ExpiredNotificationCleanup(
+				"test", index, storage);
+		cleanup.setBatchSize(2);
+		try {
+			Assert.assertEquals(5, cleanup.removeExpired());
+		} finally {
+			cleanup.shutdown();
+		}
+		Assert.assertEquals(1, index.findExpiredNotifications().size());
+	}
+
+}
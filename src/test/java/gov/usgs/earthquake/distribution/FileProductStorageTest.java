@@ -174,6 +174,44 @@ public class FileProductStorageTest {
 
 	}
 
+	/**
+	 * Stored products are found by the presence filter after restart, and
+	 * stores and removes keep it current.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void presenceFilter() throws Exception {
+		FileUtils.deleteTree(TESTING_DIRECTORY);
+		FileProductStorage storage = new FileProductStorage(TESTING_DIRECTORY);
+		storage.storeProduct(product1);
+		// incomplete store, without product.xml
+		storage.getProductFile(product2.getId()).mkdirs();
+
+		storage = new FileProductStorage(TESTING_DIRECTORY);
+		storage.startup();
+		// wait for background scan
+		for (int i = 0; i < 100 && !storage.getPresenceFilter().isLoaded(); i++) {
+			Thread.sleep(50);
+		}
+		Assert.assertTrue(storage.getPresenceFilter().isLoaded());
+		Assert.assertEquals(1, storage.getPresenceFilter().size());
+		Assert.assertTrue(storage.hasProduct(product1.getId()));
+		Assert.assertFalse(storage.hasProduct(product2.getId()));
+
+		FileUtils.deleteTree(storage.getProductFile(product2.getId()));
+		storage.storeProduct(product2);
+		Assert.assertTrue(storage.hasProduct(product2.getId()));
+		storage.removeProduct(product1.getId());
+		Assert.assertFalse(storage.hasProduct(product1.getId()));
+
+		// present in filter is confirmed on file system
+		FileUtils.deleteTree(storage.getProductFile(product2.getId()));
+		Assert.assertTrue(storage.getPresenceFilter().contains(product2.getId()));
+		Assert.assertFalse(storage.hasProduct(product2.getId()));
+		storage.shutdown();
+	}
+
 	/**
 	 * Checks that a ProductAlreadyInStorageException exception is thrown when
 	 * product already exists in storage.
@@ -0,0 +1,139 @@
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.product.ProductId;
+import gov.usgs.util.FileUtils;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MemoryNotificationIndexTest {
+
+	private static final long FUTURE = new Date().getTime() + 1000000L;
+
+	private File directory;
+	private MemoryNotificationIndex index;
+
+	@Before
+	public void before() throws Exception {
+		directory = File.createTempFile("memoryindex", "");
+		directory.delete();
+		index = createIndex();
+	}
+
+	@After
+	public void after() throws Exception {
+		index.shutdown();
+		FileUtils.deleteTree(directory);
+	}
+
+	private MemoryNotificationIndex createIndex() throws Exception {
+		MemoryNotificationIndex memoryIndex = new MemoryNotificationIndex();
+		memoryIndex.setDirectory(directory);
+		memoryIndex.setSnapshotInterval(0);
+		memoryIndex.startup();
+		return memoryIndex;
+	}
+
+	private static Notification createNotification(final String source,
+			final String type, final String code, final long expires)
+			throws Exception {
+		return new URLNotification(new ProductId(source, type, code, new Date(
+				1000L)), new Date(expires), new URL("http://tracker"),
+				new URL("http://product/" + source + "/" + type + "/" + code));
+	}
+
+	@Test
+	public void testFind() throws Exception {
+		Notification usPager = createNotification("us", "losspager", "us1", FUTURE);
+		Notification usShakemap = createNotification("us", "shakemap", "us1", FUTURE);
+		Notification ciShakemap = createNotification("ci", "shakemap", "ci1", FUTURE);
+		Notification expired = new DefaultNotification(new ProductId("nc",
+				"origin", "nc1"), new Date(1000L), null);
+		index.addNotification(usPager);
+		index.addNotification(usShakemap);
+		index.addNotification(ciShakemap);
+		index.addNotification(expired);
+
+		Assert.assertEquals(1, index.findNotifications(usPager.getProductId()).size());
+		Assert.assertEquals("ignores case", 2,
+				index.findNotifications("US", null, null).size());
+		Assert.assertEquals(1, index.findNotifications("us", "shakemap", "us1").size());
+		Assert.assertEquals(2, index.findNotifications(
+				Arrays.asList("us", "ci"), Arrays.asList("shakemap"), null).size());
+		Assert.assertEquals("lists match case", 0, index.findNotifications(
+				Arrays.asList("US"), null, null).size());
+		Assert.assertEquals("all products", 4, index.findNotifications(
+				(List<String>) null, null, null).size());
+
+		List<Notification> expiredNotifications = index.findExpiredNotifications();
+		Assert.assertEquals(1, expiredNotifications.size());
+		Assert.assertTrue(expired.equals(expiredNotifications.get(0)));
+
+		index.removeNotification(createNotification("us", "shakemap", "us1", FUTURE));
+		Assert.assertEquals(0, index.findNotifications(usShakemap.getProductId()).size());
+		Assert.assertEquals(3, index.size());
+	}
+
+	@Test
+	public void testJournalReplay() throws Exception {
+		List<Notification> notifications = new ArrayList<Notification>();
+		for (int i = 0; i < 10; i++) {
+			Notification notification = createNotification("us", "origin",
+					"us" + i, FUTURE);
+			notifications.add(notification);
+			index.addNotification(notification);
+		}
+		index.snapshot();
+		index.removeNotification(notifications.get(0));
+		index.addNotification(createNotification("ci", "origin", "ci1", FUTURE));
+
+		// simulate crash, load without shutdown
+		MemoryNotificationIndex loaded = createIndex();
+		try {
+			Assert.assertEquals(10, loaded.size());
+			Assert.assertEquals(0, loaded.findNotifications(
+					notifications.get(0).getProductId()).size());
+			Assert.assertEquals(1, loaded.findNotifications("ci", null, null).size());
+		} finally {
+			loaded.shutdown();
+		}
+	}
+
+	@Test
+	public void testPartialRecordIgnored() throws Exception {
+		index.addNotification(createNotification("us", "origin", "us1", FUTURE));
+		index.addNotification(createNotification("us", "origin", "us2", FUTURE));
+
+		// truncate last journal record
+		File journal = index.getJournalFiles().lastEntry().getValue();
+		try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+			file.setLength(file.length() - 5);
+		}
+
+		MemoryNotificationIndex loaded = createIndex();
+		try {
+			Assert.assertEquals(1, loaded.size());
+			// new records are readable after the partial record
+			loaded.addNotification(createNotification("us", "origin", "us3", FUTURE));
+		} finally {
+			loaded.shutdown();
+		}
+		loaded = createIndex();
+		try {
+			Assert.assertEquals(2, loaded.size());
+		} finally {
+			loaded.shutdown();
+		}
+	}
+
+}
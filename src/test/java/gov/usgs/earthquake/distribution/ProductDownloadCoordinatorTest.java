@@ -0,0 +1,131 @@
+/*
+ * ProductDownloadCoordinatorTest
+ */
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.ProductId;
+
+import java.io.File;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the ProductDownloadCoordinator class.
+ */
+public class ProductDownloadCoordinatorTest {
+
+	private final ProductId id = new ProductId("us", "origin", "us1234",
+			new Date());
+	private final ProductDownloadCoordinator coordinator = new ProductDownloadCoordinator();
+	private final AtomicInteger downloads = new AtomicInteger();
+	private final AtomicInteger reuses = new AtomicInteger();
+	private ExecutorService executor;
+
+	@Before
+	public void setup() {
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void cleanup() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Retriever that blocks downloads until released.
+	 */
+	private class TestRetriever implements ProductDownloadCoordinator.Retriever {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final boolean fail;
+		Boolean reusedSameStorage = null;
+
+		TestRetriever(final boolean fail) {
+			this.fail = fail;
+		}
+
+		public Product download() throws Exception {
+			downloads.incrementAndGet();
+			started.countDown();
+			release.await();
+			if (fail) {
+				throw new Exception("download failed");
+			}
+			return new Product(id);
+		}
+
+		public Product reuse(final ProductStorage storage,
+				final boolean sameStorage) {
+			reuses.incrementAndGet();
+			reusedSameStorage = sameStorage;
+			return new Product(id);
+		}
+	}
+
+	private Future<Product> retrieve(final ProductStorage storage,
+			final TestRetriever retriever) {
+		return executor.submit(() -> coordinator.retrieve(id, storage, retriever));
+	}
+
+	@Test
+	public void testConcurrentRetrieveReuses() throws Exception {
+		FileProductStorage storage1 = new FileProductStorage(new File("storage"));
+		FileProductStorage storage2 = new FileProductStorage(new File(
+				"./storage"));
+		TestRetriever leader = new TestRetriever(false);
+		TestRetriever follower = new TestRetriever(false);
+		follower.release.countDown();
+
+		Future<Product> first = retrieve(storage1, leader);
+		leader.started.await();
+		Future<Product> second = retrieve(storage2, follower);
+		// let follower start waiting
+		Thread.sleep(100);
+		leader.release.countDown();
+
+		Assert.assertNotNull(first.get(5, TimeUnit.SECONDS));
+		Assert.assertNotNull(second.get(5, TimeUnit.SECONDS));
+		Assert.assertEquals("one download", 1, downloads.get());
+		Assert.assertEquals(1, reuses.get());
+		Assert.assertTrue("same directory is same storage",
+				follower.reusedSameStorage);
+		Assert.assertEquals(0, coordinator.getDownloadCount());
+	}
+
+	@Test
+	public void testFailedDownloadRetried() throws Exception {
+		TestRetriever leader = new TestRetriever(true);
+		TestRetriever follower = new TestRetriever(false);
+		follower.release.countDown();
+
+		Future<Product> first = retrieve(new FileProductStorage(), leader);
+		leader.started.await();
+		Future<Product> second = retrieve(new FileProductStorage(new File(
+				"other")), follower);
+		Thread.sleep(100);
+		leader.release.countDown();
+
+		try {
+			first.get(5, TimeUnit.SECONDS);
+			Assert.fail("expected exception");
+		} catch (Exception e) {
+			// expected
+		}
+		Assert.assertNotNull(second.get(5, TimeUnit.SECONDS));
+		Assert.assertEquals("follower downloads after failure", 2,
+				downloads.get());
+		Assert.assertEquals(0, reuses.get());
+	}
+
+}
@@ -0,0 +1,179 @@
+/*
+ * ProductDownloaderTest
+ */
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.product.Content;
+import gov.usgs.earthquake.product.FileContent;
+import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.ProductId;
+import gov.usgs.earthquake.product.URLContent;
+import gov.usgs.util.FileUtils;
+import gov.usgs.util.StreamUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the ProductDownloader class using a local http server.
+ */
+public class ProductDownloaderTest {
+
+	private static final byte[] CONTENT = new byte[100000];
+	static {
+		new Random(1234L).nextBytes(CONTENT);
+	}
+
+	private ServerSocket server;
+	private Thread serverThread;
+	private final AtomicInteger requests = new AtomicInteger();
+	private final ProductDownloader downloader = new ProductDownloader();
+
+	/**
+	 * Start a minimal http server. The first request to "/drop" closes the
+	 * connection after half the content.
+	 */
+	@Before
+	public void setup() throws Exception {
+		server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		serverThread = new Thread(() -> {
+			while (!server.isClosed()) {
+				try {
+					final Socket socket = server.accept();
+					new Thread(() -> respond(socket)).start();
+				} catch (IOException e) {
+					// closed
+				}
+			}
+		});
+		serverThread.start();
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		downloader.shutdown();
+		server.close();
+		serverThread.join();
+	}
+
+	private void respond(final Socket socket) {
+		try (Socket s = socket) {
+			BufferedReader in = new BufferedReader(new InputStreamReader(
+					s.getInputStream(), StandardCharsets.US_ASCII));
+			OutputStream out = s.getOutputStream();
+			while (true) {
+				String request = in.readLine();
+				if (request == null) {
+					return;
+				}
+				String range = null;
+				String ifRange = null;
+				String line;
+				while ((line = in.readLine()) != null && !line.isEmpty()) {
+					String lower = line.toLowerCase();
+					if (lower.startsWith("range:")) {
+						range = line.substring(6).trim();
+					} else if (lower.startsWith("if-range:")) {
+						ifRange = line.substring(9).trim();
+					}
+				}
+				boolean drop = request.contains("/drop")
+						&& requests.incrementAndGet() == 1;
+				int start = 0;
+				StringBuilder headers = new StringBuilder();
+				if (range != null && "\"test\"".equals(ifRange)) {
+					start = Integer.parseInt(range.substring(
+							"bytes=".length(), range.length() - 1));
+					headers.append("HTTP/1.1 206 Partial Content\r\n");
+					headers.append("Content-Range: bytes " + start + "-"
+							+ (CONTENT.length - 1) + "/" + CONTENT.length
+							+ "\r\n");
+				} else {
+					headers.append("HTTP/1.1 200 OK\r\n");
+				}
+				headers.append("Accept-Ranges: bytes\r\n");
+				headers.append("ETag: \"test\"\r\n");
+				headers.append("Content-Length: " + (CONTENT.length - start)
+						+ "\r\n\r\n");
+				out.write(headers.toString().getBytes(StandardCharsets.US_ASCII));
+				if (drop) {
+					out.write(CONTENT, 0, CONTENT.length / 2);
+					out.flush();
+					return;
+				}
+				out.write(CONTENT, start, CONTENT.length - start);
+				out.flush();
+			}
+		} catch (IOException e) {
+			// client closed
+		}
+	}
+
+	private URL getURL(final String path) throws Exception {
+		return new URL("http://localhost:" + server.getLocalPort() + path);
+	}
+
+	@Test
+	public void testResume() throws Exception {
+		byte[] downloaded = StreamUtils.readStream(downloader
+				.openStream(getURL("/drop")));
+		Assert.assertArrayEquals(CONTENT, downloaded);
+		Assert.assertEquals("resumed once", 1, downloader.getResumeCount());
+	}
+
+	@Test
+	public void testNoResumeAfterMax() throws Exception {
+		downloader.setMaxResumes(0);
+		try {
+			StreamUtils.readStream(downloader.openStream(getURL("/drop")));
+			Assert.fail("expected exception");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testDownloadContents() throws Exception {
+		Product product = new Product(new ProductId("us", "test", "code",
+				new Date()));
+		for (int i = 0; i < 5; i++) {
+			URLContent content = new URLContent(getURL("/ok"));
+			content.setLength((long) CONTENT.length);
+			content.setContentType("application/octet-stream");
+			content.setLastModified(new Date(1500000000000L));
+			product.getContents().put("content" + i + ".bin", content);
+		}
+		File directory = Files.createTempDirectory("downloadTest").toFile();
+		try {
+			long bytes = downloader.downloadContents(product, directory);
+			Assert.assertEquals(5L * CONTENT.length, bytes);
+			for (Content content : product.getContents().values()) {
+				Assert.assertTrue(content instanceof FileContent);
+				Assert.assertEquals("application/octet-stream",
+						content.getContentType());
+				Assert.assertArrayEquals(CONTENT,
+						StreamUtils.readStream(content.getInputStream()));
+			}
+		} finally {
+			FileUtils.deleteTree(directory);
+		}
+	}
+
+}
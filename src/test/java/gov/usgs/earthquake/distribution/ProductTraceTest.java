@@ -0,0 +1,105 @@
+/*
+ * ProductTraceTest
+ */
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.product.ProductId;
+
+import java.net.URL;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test ProductTrace and ProductTracer.
+ */
+public class ProductTraceTest {
+
+	private ProductTracer tracer = ProductTracer.getDefault();
+
+	@Before
+	public void before() {
+		tracer.setEnabled(true);
+		tracer.setSampleRate(1.0);
+	}
+
+	@After
+	public void after() {
+		tracer.setEnabled(false);
+		ProductTrace.setCurrent(null);
+	}
+
+	@Test
+	public void testDisabled() {
+		ProductId id = new ProductId("us", "test", "code");
+		tracer.setEnabled(false);
+		Assert.assertNull(tracer.startTrace(id));
+		tracer.setEnabled(true);
+		tracer.setSampleRate(0.0);
+		Assert.assertNull(tracer.startTrace(id));
+		tracer.setSampleRate(1.0);
+		Assert.assertNotNull(tracer.startTrace(id));
+	}
+
+	@Test
+	public void testCompleteCopiesStages() {
+		ProductTrace trace = new ProductTrace(new ProductId("us", "test",
+				"code"));
+		trace.addStage("receiver", "download", trace.getStart(),
+				trace.getStart() + 10);
+		ProductTrace completed = trace.complete("listener");
+		trace.addStage("indexer", "summarize", trace.getStart() + 10,
+				trace.getStart() + 15);
+
+		Assert.assertEquals("listener", completed.getCompletedBy());
+		Assert.assertEquals(1, completed.getStages().size());
+		Assert.assertEquals("receiver.download", completed.getStages().get(0)
+				.getName());
+		Assert.assertEquals(10L, completed.getStages().get(0).getDuration());
+		Assert.assertEquals(2, trace.getStages().size());
+		Assert.assertTrue(completed.toString().contains(
+				"receiver.download=0+10"));
+	}
+
+	@Test
+	public void testListenerStages() throws Exception {
+		ProductId id = new ProductId("us", "test", "traced" + new Date().getTime());
+		DefaultNotificationReceiver receiver = new DefaultNotificationReceiver();
+		receiver.setName("receiver");
+		NotificationEvent event = new NotificationEvent(receiver,
+				new DefaultNotification(id, new Date(), new URL(
+						"http://localhost/tracker")));
+		event.setTrace(tracer.startTrace(id));
+
+		DefaultNotificationListener listener = new DefaultNotificationListener() {
+			@Override
+			public void onNotification(final NotificationEvent event)
+					throws Exception {
+				ProductTrace.addCurrentStage(getName(), "work",
+						System.currentTimeMillis() - 5);
+			}
+		};
+		listener.setName("listener");
+		new NotificationListenerCallable(listener, event).call();
+		Assert.assertNull("current trace cleared", ProductTrace.getCurrent());
+
+		ProductTrace completed = null;
+		for (ProductTrace trace : tracer.getSlowest(tracer.getMaxRecent())) {
+			if (trace.getId().equals(id)) {
+				completed = trace;
+			}
+		}
+		Assert.assertNotNull("trace completed", completed);
+		Assert.assertEquals("listener", completed.getCompletedBy());
+		List<ProductTrace.Stage> stages = completed.getStages();
+		Assert.assertEquals("listener.queue", stages.get(0).getName());
+		Assert.assertEquals("listener.work", stages.get(1).getName());
+		Assert.assertEquals("listener.deliver", stages.get(2).getName());
+		Assert.assertTrue(tracer.getSlowestSummary(1).length() > 0);
+	}
+
+}
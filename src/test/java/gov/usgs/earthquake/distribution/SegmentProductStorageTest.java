@@ -0,0 +1,217 @@
+/*
+ * SegmentProductStorageTest
+ */
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.product.Content;
+import gov.usgs.earthquake.product.FileContent;
+import gov.usgs.earthquake.product.FileRegionContent;
+import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.ProductTest;
+import gov.usgs.util.FileUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the SegmentProductStorage class.
+ */
+public class SegmentProductStorageTest {
+
+	/** Directory used to store segments for testing. */
+	public static File TESTING_DIRECTORY = new File(
+			System.getProperty("user.home"), "test" + File.separator
+					+ "segmentStorage");
+
+	private ProductTest productTest;
+	private Product product1;
+	private Product product2;
+	private SegmentProductStorage storage;
+
+	@Before
+	public void setupTestEnvironment() throws Exception {
+		FileUtils.deleteTree(TESTING_DIRECTORY);
+		productTest = new ProductTest();
+		product1 = productTest.getProduct();
+		product2 = productTest.getOtherProduct();
+		storage = createStorage();
+	}
+
+	@After
+	public void cleanupTestEnvironment() throws Exception {
+		storage.shutdown();
+		FileUtils.deleteTree(TESTING_DIRECTORY);
+	}
+
+	private SegmentProductStorage createStorage() throws Exception {
+		SegmentProductStorage storage = new SegmentProductStorage(
+				TESTING_DIRECTORY);
+		// compact manually
+		storage.setCompactInterval(0);
+		storage.startup();
+		return storage;
+	}
+
+	/**
+	 * Store and load a product, contents are read from segment.
+	 */
+	@Test
+	public void storeProduct() throws Exception {
+		Assert.assertFalse(storage.hasProduct(product1.getId()));
+		Assert.assertEquals(product1.getId(), storage.storeProduct(product1));
+		Assert.assertTrue(storage.hasProduct(product1.getId()));
+
+		Product loaded = storage.getProduct(product1.getId());
+		productTest.compareProducts(product1, loaded);
+		Content content = loaded.getContents().get("test.txt");
+		Assert.assertTrue("content is region of segment",
+				content instanceof FileRegionContent);
+
+		try {
+			storage.storeProduct(product1);
+			Assert.fail("expected ProductAlreadyInStorageException");
+		} catch (ProductAlreadyInStorageException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Removed products are not loaded, including after restart.
+	 */
+	@Test
+	public void removeProduct() throws Exception {
+		storage.storeProduct(product1);
+		storage.storeProduct(product2);
+		storage.removeProduct(product1.getId());
+		Assert.assertFalse(storage.hasProduct(product1.getId()));
+		Assert.assertNull(storage.getProductSource(product1.getId()));
+		Assert.assertTrue(storage.hasProduct(product2.getId()));
+
+		storage.shutdown();
+		storage = createStorage();
+		Assert.assertFalse(storage.hasProduct(product1.getId()));
+		productTest.compareProducts(product2,
+				storage.getProduct(product2.getId()));
+	}
+
+	/**
+	 * Compaction copies remaining products and removes old segments.
+	 */
+	@Test
+	public void compact() throws Exception {
+		storage.storeProduct(product1);
+		storage.storeProduct(product2);
+		// removal starts new segment
+		storage.setSegmentSize(1);
+		storage.removeProduct(product1.getId());
+		storage.setSegmentSize(SegmentProductStorage.DEFAULT_SEGMENT_SIZE);
+		Assert.assertEquals(2, storage.getSegmentCount());
+
+		// compact any segment with removed products
+		storage.setCompactRatio(1.0);
+		storage.compact();
+		Assert.assertEquals("only active segment remains", 1,
+				storage.getSegmentCount());
+		productTest.compareProducts(product2,
+				storage.getProduct(product2.getId()));
+
+		// retired segments deleted on next check
+		storage.compact();
+		storage.shutdown();
+		storage = createStorage();
+		Assert.assertEquals(1, storage.getProductCount());
+		Assert.assertFalse(storage.hasProduct(product1.getId()));
+		productTest.compareProducts(product2,
+				storage.getProduct(product2.getId()));
+	}
+
+	/**
+	 * Compacted segments are not deleted while contents may still be read.
+	 */
+	@Test
+	public void compactWithOpenContent() throws Exception {
+		storage.storeProduct(product2);
+		storage.setSegmentSize(1);
+		storage.storeProduct(product1);
+		storage.setSegmentSize(SegmentProductStorage.DEFAULT_SEGMENT_SIZE);
+		Product loaded = storage.getProduct(product2.getId());
+		FileRegionContent content = (FileRegionContent) loaded.getContents()
+				.values().iterator().next();
+
+		storage.removeProduct(product2.getId());
+		storage.setCompactRatio(1.0);
+		storage.compact();
+		storage.compact();
+		Assert.assertTrue("segment kept for open content", content.getFile()
+				.exists());
+		File copy = new File(TESTING_DIRECTORY, "copy.txt");
+		new FileContent(content, copy);
+		Assert.assertEquals(content.getLength().longValue(), copy.length());
+
+		for (Content loadedContent : loaded.getContents().values()) {
+			loadedContent.close();
+		}
+		storage.compact();
+		Assert.assertFalse("segment deleted once closed", content.getFile()
+				.exists());
+		productTest.compareProducts(product1,
+				storage.getProduct(product1.getId()));
+	}
+
+	/**
+	 * Removals are kept while an older segment file still exists.
+	 */
+	@Test
+	public void compactKeepsRemovalForRetiredSegment() throws Exception {
+		storage.storeProduct(product1);
+		// keeps first segment file after it is compacted
+		Product loaded = storage.getProduct(product1.getId());
+		storage.setSegmentSize(1);
+		storage.storeProduct(product2);
+		storage.removeProduct(product1.getId());
+		storage.removeProduct(product2.getId());
+
+		storage.setCompactRatio(1.0);
+		storage.compact();
+		// deletes retired segments without readers
+		storage.compact();
+		Assert.assertTrue("first segment not deleted yet", ((FileRegionContent)
+				loaded.getContents().values().iterator().next()).getFile()
+				.exists());
+
+		storage.shutdown();
+		storage = createStorage();
+		Assert.assertFalse(storage.hasProduct(product1.getId()));
+		Assert.assertFalse(storage.hasProduct(product2.getId()));
+	}
+
+	/**
+	 * Incomplete record at end of segment is truncated at startup.
+	 */
+	@Test
+	public void truncateIncompleteRecord() throws Exception {
+		storage.storeProduct(product1);
+		storage.shutdown();
+
+		File segment = TESTING_DIRECTORY.listFiles(
+				(dir, name) -> name.endsWith(SegmentProductStorage.SEGMENT_SUFFIX))[0];
+		long length = segment.length();
+		try (FileOutputStream out = new FileOutputStream(segment, true)) {
+			out.write(new byte[] { 0x50, 0x44, 0x4c });
+		}
+
+		storage = createStorage();
+		Assert.assertEquals(length, segment.length());
+		storage.storeProduct(product2);
+		productTest.compareProducts(product1,
+				storage.getProduct(product1.getId()));
+		productTest.compareProducts(product2,
+				storage.getProduct(product2.getId()));
+	}
+
+}
@@ -0,0 +1,42 @@
+/*
+ * SerializedProductTest
+ */
+package gov.usgs.earthquake.distribution;
+
+import gov.usgs.earthquake.product.ByteContent;
+import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.ProductId;
+
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the SerializedProduct class.
+ */
+public class SerializedProductTest {
+
+	/**
+	 * Senders that time out may still ask for a payload after close, which
+	 * must not create a temporary file that is never deleted.
+	 */
+	@Test
+	public void testGetPayloadAfterClose() throws Exception {
+		Product product = new Product(new ProductId("test", "product", "code",
+				new Date()));
+		product.getContents().put("test.txt", new ByteContent(new byte[1000]));
+		SerializedProduct serialized = new SerializedProduct(product, 100);
+		Assert.assertFalse("spooled to file", serialized.getPayload(true,
+				SerializedProduct.NO_DEFLATE).isInMemory());
+		serialized.close();
+
+		try {
+			serialized.getPayload(true, SerializedProduct.NO_DEFLATE);
+			Assert.fail("expected exception after close");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+}
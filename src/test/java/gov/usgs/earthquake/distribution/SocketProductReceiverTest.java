@@ -3,9 +3,12 @@ package gov.usgs.earthquake.distribution;
 import java.io.File;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.util.Date;
 import java.util.zip.DeflaterOutputStream;
 
+import gov.usgs.earthquake.product.ByteContent;
 import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.ProductId;
 import gov.usgs.earthquake.product.ProductTest;
 import gov.usgs.earthquake.product.io.BinaryProductHandler;
 import gov.usgs.earthquake.product.io.ObjectProductSource;
@@ -177,6 +180,37 @@ public class SocketProductReceiverTest {
 		}
 	}
 
+	@Test
+	public void testDeltaTransfer() throws Exception {
+		ProductStorage ps = receiver.getProductStorage();
+		Product first = productTest.getProduct();
+		Product second = productTest.getProduct();
+		second.setId(new ProductId(first.getId().getSource(),
+				first.getId().getType(), first.getId().getCode(),
+				new Date(first.getId().getUpdateTime().getTime() + 1000L)));
+		second.getContents().put("test.txt",
+				new ByteContent("changed content".getBytes()));
+		ps.removeProduct(first.getId());
+		ps.removeProduct(second.getId());
+
+		SocketProductSender sender = new SocketProductSender("localhost", 1984);
+		sender.setBinaryFormat(true);
+		sender.setEnableDeltaTransfer(true);
+
+		TestNotificationListener listener = new TestNotificationListener();
+		receiver.addNotificationListener(listener);
+		sender.sendProduct(first);
+		productTest.compareProducts(first, listener.getProduct());
+		receiver.removeNotificationListener(listener);
+
+		// jar content is sent as a reference to first version
+		listener = new TestNotificationListener();
+		receiver.addNotificationListener(listener);
+		sender.sendProduct(second);
+		productTest.compareProducts(second, listener.getProduct());
+		receiver.removeNotificationListener(listener);
+	}
+
 	private class TestNotificationListener extends DefaultConfigurable
 			implements NotificationListener {
 
@@ -1,17 +1,25 @@
 package gov.usgs.earthquake.distribution;
 
+import gov.usgs.earthquake.product.ByteContent;
 import gov.usgs.earthquake.product.Product;
 import gov.usgs.earthquake.product.ProductId;
 import gov.usgs.earthquake.product.ProductTest;
+import gov.usgs.earthquake.product.io.BinaryIO;
 import gov.usgs.earthquake.product.io.ObjectProductHandler;
 import gov.usgs.earthquake.product.io.ProductSource;
 import gov.usgs.util.DefaultConfigurable;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 public class SocketProductSenderTest {
@@ -39,6 +47,75 @@ public class SocketProductSenderTest {
 		testSendProduct(/* binaryFormat */true, /* enableDeflate */false, 1987);
 	}
 
+	@Test
+	public void testSendSerializedBinaryWithDeflate() throws Exception {
+		testSendProduct(/* binaryFormat */true, /* enableDeflate */true, 1988,
+				/* serialized */true);
+	}
+
+	@Test
+	public void testSendSerializedXmlNoDeflate() throws Exception {
+		testSendProduct(/* binaryFormat */false, /* enableDeflate */false, 1989,
+				/* serialized */true);
+	}
+
+	/**
+	 * Older receivers close the connection when they do not support the
+	 * protocol version, which the sender may see as a reset or end of stream.
+	 */
+	@Test
+	public void testFallbackWhenReceiverCloses() throws Exception {
+		final ServerSocket server = new ServerSocket(0);
+		final List<String> versions = Collections
+				.synchronizedList(new ArrayList<String>());
+		Thread receiver = new Thread(() -> {
+			BinaryIO io = new BinaryIO();
+			try {
+				while (versions.size() < 2) {
+					try (Socket socket = server.accept()) {
+						InputStream in = socket.getInputStream();
+						OutputStream out = socket.getOutputStream();
+						in.read(new byte[SocketProductSender.PROTOCOL_HEADER.length]);
+						String version = io.readString(in);
+						versions.add(version);
+						if (SocketProductSender.PROTOCOL_VERSION_0_1
+								.equals(version)) {
+							io.readString(in);
+							io.writeString(
+									SocketProductSender.ALREADY_HAVE_PRODUCT,
+									out);
+							out.flush();
+						}
+						// otherwise close without reading the handshake
+					}
+				}
+			} catch (IOException e) {
+				// test fails
+			}
+		});
+		receiver.start();
+
+		SocketProductSender sender = new SocketProductSender();
+		sender.setHost("localhost");
+		sender.setPort(server.getLocalPort());
+		sender.setBinaryFormat(true);
+		sender.setEnableDeltaTransfer(true);
+		sender.startup();
+		try {
+			Product p = new Product(new ProductId("test", "product", "self",
+					new Date()));
+			sender.sendProduct(p);
+		} finally {
+			sender.shutdown();
+			server.close();
+		}
+		receiver.join(1000);
+		Assert.assertEquals("fell back to v0.1",
+				SocketProductSender.PROTOCOL_VERSION_0_1, versions.get(1));
+		Assert.assertEquals(SocketProductSender.PROTOCOL_VERSION_0_3,
+				versions.get(0));
+	}
+
 	// ------------------------------------------------------------------------
 	// Helper/Utility Functions
 	// ------------------------------------------------------------------------
@@ -54,6 +131,18 @@ public class SocketProductSenderTest {
 	 */
 	protected void testSendProduct(final boolean binaryFormat,
 			final boolean enableDeflate, final int port) throws Exception {
+		testSendProduct(binaryFormat, enableDeflate, port, false);
+	}
+
+	/**
+	 * Test sending, optionally using a SerializedProduct.
+	 *
+	 * Serialized products use a small memory limit, so the payload is spooled
+	 * to a temporary file.
+	 */
+	protected void testSendProduct(final boolean binaryFormat,
+			final boolean enableDeflate, final int port,
+			final boolean serialized) throws Exception {
 		TestSocketAcceptor server = new TestSocketAcceptor(this, port);
 		server.start();
 
@@ -67,7 +156,18 @@ public class SocketProductSenderTest {
 		// here is the test
 		Product p = new Product(new ProductId("test", "product", "self",
 				new Date()));
-		sender.sendProduct(p);
+		if (serialized) {
+			p.getContents().put("test.txt",
+					new ByteContent(new byte[10000]));
+			SerializedProduct serializedProduct = new SerializedProduct(p, 100);
+			sender.sendProduct(serializedProduct);
+			Assert.assertFalse("spooled to file", serializedProduct.getPayload(
+					binaryFormat, enableDeflate ? 1 : SerializedProduct.NO_DEFLATE)
+					.isInMemory());
+			serializedProduct.close();
+		} else {
+			sender.sendProduct(p);
+		}
 		waitForProduct();
 		ProductTest pt = new ProductTest();
 		pt.compareProducts(p, product);
@@ -1,6 +1,8 @@
 package gov.usgs.earthquake.eids;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -220,4 +222,137 @@ public class QuakemlProductCreatorTest {
 						.getInputStream())));
 	}
 
+	@Test
+	public void testStreamMultipleEvents() throws Exception {
+		String first = new String(FileUtils.readFile(new File(
+				"etc/test_products/quakeml/pde20100314080803960_32.xml")));
+		String second = new String(FileUtils.readFile(new File(
+				"etc/test_products/quakeml/pde20000102042021390_33.xml")));
+		// catalog with both events
+		String secondEvent = second.substring(second.indexOf("<event "),
+				second.indexOf("</event>") + "</event>".length());
+		String catalog = first.replace("</eventParameters>", secondEvent
+				+ "</eventParameters>");
+
+		QuakemlProductCreator productCreator = new QuakemlProductCreator();
+		final List<String> eventIds = new ArrayList<String>();
+		productCreator.getQuakemlProducts(
+				new ByteArrayInputStream(catalog.getBytes()),
+				(product) -> {
+					eventIds.add(product.getEventId());
+					return true;
+				});
+
+		List<Product> firstProducts = productCreator.getQuakemlProducts(first);
+		List<Product> secondProducts = productCreator
+				.getQuakemlProducts(second);
+		Assert.assertEquals("products for each event",
+				firstProducts.size() + secondProducts.size(), eventIds.size());
+		// first event products are emitted before second event products
+		for (int i = 0; i < eventIds.size(); i++) {
+			Product expected = (i < firstProducts.size() ? firstProducts
+					.get(i) : secondProducts.get(i - firstProducts.size()));
+			Assert.assertEquals(expected.getEventId(), eventIds.get(i));
+		}
+	}
+
+	@Test
+	public void testStreamInternalEvent() throws Exception {
+		testStreamAnssEvent("internalEvent");
+	}
+
+	@Test
+	public void testStreamScenarioEvent() throws Exception {
+		testStreamAnssEvent("scenarioEvent");
+	}
+
+	@Test
+	public void testEventReaderAnssEvents() throws Exception {
+		String catalog = toAnssEvent(new String(FileUtils.readFile(new File(
+				"etc/test_products/quakeml/pde20100314080803960_32.xml"))),
+				"internalEvent");
+		String scenario = toAnssEvent(new String(FileUtils.readFile(new File(
+				"etc/test_products/quakeml/pde20000102042021390_33.xml"))),
+				"scenarioEvent");
+		catalog = catalog.replace("</eventParameters>", scenario.substring(
+				scenario.indexOf("<anss:scenarioEvent "),
+				scenario.indexOf("</anss:scenarioEvent>")
+						+ "</anss:scenarioEvent>".length())
+				+ "</eventParameters>");
+
+		QuakemlEventReader reader = new QuakemlEventReader(
+				new ByteArrayInputStream(catalog.getBytes()));
+		try {
+			String first = reader.nextEvent();
+			Assert.assertTrue("internal event read",
+					first.contains("internalEvent"));
+			String second = reader.nextEvent();
+			Assert.assertTrue("scenario event read",
+					second.contains("scenarioEvent"));
+			Assert.assertNull("no more events", reader.nextEvent());
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Stream a file with one anss event, and compare to parsing the whole file.
+	 *
+	 * @param element
+	 *            internalEvent or scenarioEvent.
+	 */
+	protected void testStreamAnssEvent(final String element) throws Exception {
+		String quakeml = toAnssEvent(new String(FileUtils.readFile(new File(
+				"etc/test_products/quakeml/pde20100314080803960_32.xml"))),
+				element);
+		File file = File.createTempFile("quakeml", ".xml");
+		try {
+			FileUtils.writeFile(file, quakeml.getBytes());
+
+			QuakemlProductCreator productCreator = new QuakemlProductCreator();
+			final List<Product> streamed = new ArrayList<Product>();
+			productCreator.getProducts(file, (product) -> {
+				streamed.add(product);
+				return true;
+			});
+			List<Product> expected = productCreator.getProducts(file);
+
+			Assert.assertTrue("products created", streamed.size() > 0);
+			Assert.assertEquals("same products", expected.size(),
+					streamed.size());
+			for (int i = 0; i < expected.size(); i++) {
+				Product product = streamed.get(i);
+				Assert.assertEquals(expected.get(i).getId(), product.getId());
+				if (product.getContents().containsKey(
+						QuakemlProductCreator.QUAKEML_CONTENT_PATH)) {
+					// single event files keep original quakeml
+					Assert.assertEquals("raw quakeml preserved",
+							new String(StreamUtils.readStream(expected.get(i)
+									.getContents().get(QuakemlProductCreator.QUAKEML_CONTENT_PATH)
+									.getInputStream())),
+							new String(StreamUtils.readStream(product
+									.getContents().get(QuakemlProductCreator.QUAKEML_CONTENT_PATH)
+									.getInputStream())));
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Convert the event element in a quakeml message to an anss event.
+	 *
+	 * @param quakeml
+	 *            quakeml message.
+	 * @param element
+	 *            internalEvent or scenarioEvent.
+	 * @return converted message.
+	 */
+	protected String toAnssEvent(final String quakeml, final String element) {
+		return quakeml.replace("<event ", "<anss:" + element
+				+ " xmlns:anss=\"http://anss.org/xmlns/event/0.1\" ").replace(
+				"</event>", "</anss:" + element + ">");
+	}
+
 }
@@ -0,0 +1,133 @@
+package gov.usgs.earthquake.indexer;
+
+import gov.usgs.earthquake.distribution.FileProductStorage;
+import gov.usgs.earthquake.distribution.ProductTracker;
+import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.io.ObjectProductHandler;
+import gov.usgs.earthquake.product.io.XmlProductSource;
+import gov.usgs.util.FileUtils;
+import gov.usgs.util.StreamUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compare bulk indexing with indexing one product at a time.
+ */
+public class BulkIndexTest {
+
+	/** Products that associate, split, and merge, in order. */
+	public static final String[] TEST_PRODUCTS = {
+			"etc/test_products/ci37645983/ci-origin-ci37645983-1494867948050.xml",
+			"etc/test_products/ci37645983/ci-origin-ci37645983-1494868047790.xml",
+			"etc/test_products/ci37645983/ci-origin-ci37645991-1494868066040.xml",
+			"etc/test_products/ci37645983/ci-origin-ci37645991-1494874160300.xml",
+			"etc/test_products/ci37645983/ci-origin-ci37645991-1494874160350.xml",
+			"etc/test_products/ci37645983/ci-origin-ci37645991-1494874160800.xml",
+			"etc/test_products/ci37645983/ci-origin-ci37645991-1494874160830.xml",
+			"etc/test_products/ci37645983/ci-origin-ci37645983-1494874177010.xml",
+			"etc/test_products/ci37645983/ci-origin-ci37645983-1494874177050.xml",
+			"etc/test_products/ci37645983/ci-origin-ci37645983-1494874177480.xml",
+			"etc/test_products/ci37645983/ci-origin-ci37645983-1494874177530.xml",
+			"etc/test_products/ci37645983/ci-origin-ci37645983-1494874177890.xml",
+			"etc/test_products/ci37645983/ci-origin-ci37645983-1494892985010.xml",
+			"etc/test_products/ci37645983/ci-origin-ci37645991-1494893051170.xml",
+			"etc/test_products/ci37645983/ci-origin-ci37645991-1494893051860.xml",
+			"etc/test_products/20110725_usc00053hg_nc71606670/us_origin_usc00053hg_1311534397000.xml",
+			"etc/test_products/20110725_usc00053hg_nc71606670/us_focal-mechanism_usc00053hg-neic-mwc_1311537586000.xml",
+			"etc/test_products/20110725_usc00053hg_nc71606670/nc_origin_nc71606670_1311633433000.xml" };
+
+	private File testDir;
+	private Indexer sequential;
+	private Indexer bulk;
+
+	@Before
+	public void setup() throws Exception {
+		ProductTracker.setTrackerEnabled(false);
+		testDir = Files.createTempDirectory("bulk-index-test").toFile();
+		sequential = createIndexer("sequential");
+		bulk = createIndexer("bulk");
+	}
+
+	@After
+	public void teardown() throws Exception {
+		sequential.shutdown();
+		bulk.shutdown();
+		FileUtils.deleteTree(testDir);
+	}
+
+	private Indexer createIndexer(final String name) throws Exception {
+		Indexer indexer = new Indexer();
+		indexer.setName(name);
+		indexer.setProductIndex(new JDBCProductIndex(new File(testDir, name
+				+ ".db").getPath()));
+		indexer.setProductStorage(new FileProductStorage(new File(testDir,
+				name)));
+		indexer.startup();
+		return indexer;
+	}
+
+	private List<Product> getProducts() throws Exception {
+		List<Product> products = new ArrayList<Product>();
+		for (String path : TEST_PRODUCTS) {
+			products.add(ObjectProductHandler.getProduct(new XmlProductSource(
+					StreamUtils.getInputStream(new File(path)))));
+		}
+		return products;
+	}
+
+	/**
+	 * Describe events and unassociated products in an index, independent of
+	 * index ids.
+	 */
+	private List<String> describeIndex(final Indexer indexer) throws Exception {
+		ProductIndex index = indexer.getProductIndex();
+		List<String> description = new ArrayList<String>();
+		for (Event event : index.getEvents(new ProductIndexQuery())) {
+			List<String> ids = new ArrayList<String>();
+			for (ProductSummary summary : event.getAllProductList()) {
+				ids.add(summary.getId().toString());
+			}
+			Collections.sort(ids);
+			description.add("event " + event.getEventId() + " " + ids);
+		}
+		for (ProductSummary summary : index
+				.getUnassociatedProducts(new ProductIndexQuery())) {
+			description.add("unassociated " + summary.getId().toString());
+		}
+		Collections.sort(description);
+		return description;
+	}
+
+	@Test
+	public void testBulkMatchesSequential() throws Exception {
+		for (Product product : getProducts()) {
+			sequential.onProduct(product);
+		}
+
+		List<ProductSummary> summaries = new ArrayList<ProductSummary>();
+		for (Product product : getProducts()) {
+			Assert.assertNotNull(bulk.storeProduct(product, false));
+			summaries.add(bulk.summarizeProduct(product));
+		}
+		// two transactions, splitting a group of products that split/merge
+		bulk.indexProducts(summaries.subList(0, 5), false);
+		bulk.indexProducts(summaries.subList(5, summaries.size()), false);
+
+		List<String> expected = describeIndex(sequential);
+		Assert.assertTrue("events were created", expected.size() > 1);
+		Assert.assertEquals(expected, describeIndex(bulk));
+
+		// products are marked as indexed
+		Assert.assertNull(bulk.storeProduct(getProducts().get(0), false));
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+ * CompactProductSummaryTest
+ */
+package gov.usgs.earthquake.indexer;
+
+import gov.usgs.earthquake.product.ProductId;
+import gov.usgs.earthquake.util.InternPool;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URL;
+import java.util.Date;
+import java.util.LinkedList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test conversion between ProductSummary and CompactProductSummary.
+ */
+public class CompactProductSummaryTest {
+
+	/**
+	 * Create a typical origin summary.
+	 *
+	 * @return summary with attributes, properties and links.
+	 * @throws Exception if error occurs
+	 */
+	public static ProductSummary createSummary() throws Exception {
+		ProductSummary summary = new ProductSummary();
+		summary.setIndexId(123L);
+		summary.setId(new ProductId("us", "origin", "us1234", new Date(
+				1500000000000L)));
+		summary.setStatus("UPDATE");
+		summary.setTrackerURL(new URL("http://localhost/tracker/"));
+		summary.setPreferredWeight(156);
+		summary.setEventSource("us");
+		summary.setEventSourceCode("1234");
+		summary.setEventTime(new Date(1499999990123L));
+		summary.setEventLatitude(new BigDecimal("34.1000"));
+		summary.setEventLongitude(new BigDecimal("-118.25"));
+		summary.setEventDepth(new BigDecimal("10"));
+		summary.setEventMagnitude(new BigDecimal("4.5"));
+		summary.setVersion("2");
+		summary.getProperties().put("review-status", "reviewed");
+		summary.getProperties().put("magnitude-type", "mww");
+		summary.addLink("related", new URI("http://localhost/one"));
+		summary.addLink("related", new URI("http://localhost/two"));
+		return summary;
+	}
+
+	/**
+	 * Assert two summaries are equivalent.
+	 *
+	 * @param expected expected summary
+	 * @param actual actual summary
+	 */
+	public static void assertSummaryEquals(final ProductSummary expected,
+			final ProductSummary actual) {
+		Assert.assertEquals(expected.getIndexId(), actual.getIndexId());
+		Assert.assertEquals(expected.getId(), actual.getId());
+		Assert.assertEquals(expected.getStatus(), actual.getStatus());
+		Assert.assertEquals(String.valueOf(expected.getTrackerURL()),
+				String.valueOf(actual.getTrackerURL()));
+		Assert.assertEquals(expected.getPreferredWeight(),
+				actual.getPreferredWeight());
+		Assert.assertEquals(expected.getEventSource(), actual.getEventSource());
+		Assert.assertEquals(expected.getEventSourceCode(),
+				actual.getEventSourceCode());
+		Assert.assertEquals(expected.getEventTime(), actual.getEventTime());
+		Assert.assertEquals(expected.getEventLatitude(),
+				actual.getEventLatitude());
+		Assert.assertEquals(expected.getEventLongitude(),
+				actual.getEventLongitude());
+		Assert.assertEquals(expected.getEventDepth(), actual.getEventDepth());
+		Assert.assertEquals(expected.getEventMagnitude(),
+				actual.getEventMagnitude());
+		Assert.assertEquals(expected.getVersion(), actual.getVersion());
+		Assert.assertEquals(expected.getProperties(), actual.getProperties());
+		Assert.assertEquals(expected.getLinks(), actual.getLinks());
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		ProductSummary summary = createSummary();
+		CompactProductSummary compact = new CompactProductSummary(summary);
+
+		Assert.assertEquals(34.1, compact.getEventLatitude(), 0.0);
+		Assert.assertEquals(1499999990123L, compact.getEventTime());
+		Assert.assertEquals("us1234", compact.getEventId());
+		Assert.assertEquals("reviewed", compact.getProperty("review-status"));
+		Assert.assertNull("derived properties are not stored",
+				compact.getProperty("latitude"));
+
+		assertSummaryEquals(summary, compact.toProductSummary());
+	}
+
+	@Test
+	public void testNullAttributes() throws Exception {
+		ProductSummary summary = new ProductSummary();
+		summary.setId(new ProductId("us", "phase-data", "us1234"));
+		CompactProductSummary compact = new CompactProductSummary(summary);
+
+		Assert.assertEquals(CompactProductSummary.NULL_LONG,
+				compact.getIndexId());
+		Assert.assertTrue(Double.isNaN(compact.getEventLatitude()));
+		Assert.assertNull(compact.getEventId());
+
+		assertSummaryEquals(summary, compact.toProductSummary());
+	}
+
+	@Test
+	public void testUnusualDecimals() throws Exception {
+		ProductSummary summary = createSummary();
+		summary.setEventLatitude(new BigDecimal("12.345678901234567890123"));
+		summary.setEventLongitude(new BigDecimal("1E+3"));
+		summary.setEventDepth(new BigDecimal("0"));
+		summary.setEventMagnitude(new BigDecimal("0.000"));
+
+		assertSummaryEquals(summary,
+				new CompactProductSummary(summary).toProductSummary());
+	}
+
+	@Test
+	public void testInconsistentProperties() throws Exception {
+		ProductSummary summary = createSummary();
+		// property that does not match attribute
+		summary.getProperties().put("eventtime", "not a time");
+		// derived property that was removed
+		summary.getProperties().remove("depth");
+		// relation without links
+		summary.getLinks().put("empty", new LinkedList<URI>());
+
+		assertSummaryEquals(summary,
+				new CompactProductSummary(summary).toProductSummary());
+	}
+
+	@Test
+	public void testIdentifiersInterned() throws Exception {
+		InternPool pool = new InternPool();
+		ProductSummary summary1 = createSummary();
+		ProductSummary summary2 = createSummary();
+		summary2.setId(new ProductId(new String("us"), new String("origin"),
+				new String("us1234"), new Date()));
+
+		CompactProductSummary compact1 = new CompactProductSummary(summary1,
+				pool);
+		CompactProductSummary compact2 = new CompactProductSummary(summary2,
+				pool);
+		Assert.assertSame(compact1.getSource(), compact2.getSource());
+		Assert.assertSame(compact1.getType(), compact2.getType());
+		Assert.assertSame(compact1.getCode(), compact2.getCode());
+		Assert.assertNotEquals(compact1, compact2);
+		Assert.assertEquals(compact1.getId().hashCode(), compact1.hashCode());
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * ContentSummaryCacheTest
+ */
+package gov.usgs.earthquake.indexer;
+
+import gov.usgs.earthquake.product.ByteContent;
+import gov.usgs.earthquake.product.Content;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the ContentSummaryCache class.
+ */
+public class ContentSummaryCacheTest {
+
+	private final AtomicInteger parseCount = new AtomicInteger();
+
+	private Map<String, String> summarize(final Content content) {
+		parseCount.incrementAndGet();
+		Map<String, String> properties = new HashMap<String, String>();
+		properties.put("length", content.getLength().toString());
+		return properties;
+	}
+
+	@Test
+	public void testCachedBySha256() throws Exception {
+		ContentSummaryCache cache = new ContentSummaryCache(2);
+		ByteContent content = new ByteContent("content".getBytes());
+		// sha256 not known, always parsed
+		cache.getSummary("test", content, this::summarize);
+		cache.getSummary("test", content, this::summarize);
+		Assert.assertEquals(2, parseCount.get());
+		Assert.assertEquals(0, cache.size());
+
+		// identical content in another object
+		content.getSha256();
+		ByteContent copy = new ByteContent("content".getBytes());
+		copy.setSha256(content.getSha256());
+		Assert.assertEquals("7", cache.getSummary("test", content,
+				this::summarize).get("length"));
+		Assert.assertEquals("7", cache.getSummary("test", copy,
+				this::summarize).get("length"));
+		Assert.assertEquals(3, parseCount.get());
+
+		// different summary name parsed separately
+		cache.getSummary("other", copy, this::summarize);
+		Assert.assertEquals(4, parseCount.get());
+
+		// least recently used entry removed
+		ByteContent other = new ByteContent("other".getBytes());
+		other.getSha256();
+		cache.getSummary("test", other, this::summarize);
+		Assert.assertEquals(2, cache.size());
+		cache.getSummary("other", copy, this::summarize);
+		Assert.assertEquals(5, parseCount.get());
+		cache.getSummary("test", copy, this::summarize);
+		Assert.assertEquals(6, parseCount.get());
+	}
+
+}
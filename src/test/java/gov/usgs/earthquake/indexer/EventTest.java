@@ -5,6 +5,8 @@ package gov.usgs.earthquake.indexer;
 
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Assert;
@@ -244,4 +246,130 @@ public class EventTest {
 		Assert.assertEquals("event2 has 3 products", 3, subEvents.get(
 				"source2code2").getAllProductList().size());
 	}
+
+	/**
+	 * Derived views are cached, and must be updated when products are added,
+	 * removed, or replaced.
+	 */
+	@Test
+	public void testCachedViewsUpdated() {
+		Event event = new Event();
+
+		ProductSummary origin1 = new ProductSummary();
+		origin1.setId(new ProductId("source1", "origin", "code1"));
+		origin1.setPreferredWeight(1);
+		origin1.setEventSource("source1");
+		origin1.setEventSourceCode("code1");
+		origin1.setEventLatitude(BigDecimal.valueOf(1.2));
+		origin1.setEventLongitude(BigDecimal.valueOf(2.3));
+		origin1.setEventTime(new Date());
+		event.addProduct(origin1);
+
+		Assert.assertSame("only origin is preferred",
+				origin1, event.getPreferredProducts().get("origin"));
+		Assert.assertEquals("source1code1", event.getEventSummary().getId());
+		Assert.assertEquals(1, event.getEventCodes().size());
+		Assert.assertEquals(1, event.getSubEvents().size());
+
+		ProductSummary origin2 = new ProductSummary();
+		origin2.setId(new ProductId("source2", "origin", "code2"));
+		origin2.setPreferredWeight(2);
+		origin2.setEventSource("source2");
+		origin2.setEventSourceCode("code2");
+		origin2.setEventLatitude(BigDecimal.valueOf(1.2));
+		origin2.setEventLongitude(BigDecimal.valueOf(2.3));
+		origin2.setEventTime(new Date());
+		event.addProduct(origin2);
+
+		Assert.assertSame("added origin is preferred",
+				origin2, event.getPreferredProducts().get("origin"));
+		Assert.assertSame(origin2, event.getPreferredOriginProduct());
+		Assert.assertSame(origin2, event.getProductWithOriginProperties());
+		Assert.assertEquals("source2code2", event.getEventSummary().getId());
+		Assert.assertEquals(2, event.getEventCodes().size());
+		Assert.assertEquals(2, event.getSubEvents().size());
+
+		event.removeProduct(origin2);
+		Assert.assertSame("removed origin no longer preferred",
+				origin1, event.getPreferredProducts().get("origin"));
+		Assert.assertEquals("source1code1", event.getEventSummary().getId());
+		Assert.assertEquals(1, event.getEventCodes().size());
+		Assert.assertEquals(1, event.getSubEvents().size());
+
+		event.setProducts(new HashMap<String, List<ProductSummary>>());
+		Assert.assertNull(event.getPreferredOriginProduct());
+		Assert.assertNull(event.getProductWithOriginProperties());
+		Assert.assertEquals(0, event.getPreferredProducts().size());
+		Assert.assertEquals(0, event.getEventCodes().size());
+		Assert.assertNull(event.getEventSummary().getId());
+	}
+
+	/**
+	 * Values returned from cached views may be modified by callers without
+	 * affecting the event.
+	 */
+	@Test
+	public void testCachedViewsCopied() {
+		Event event = new Event();
+
+		ProductSummary summary = new ProductSummary();
+		summary.setId(new ProductId("source1", "origin", "code1"));
+		summary.setEventSource("source1");
+		summary.setEventSourceCode("code1");
+		event.addProduct(summary);
+
+		event.getProducts().get("origin").clear();
+		event.getPreferredProducts().clear();
+		event.getEventCodes().clear();
+		event.getSubEvents().clear();
+
+		Assert.assertEquals(1, event.getProducts().get("origin").size());
+		Assert.assertEquals(1, event.getPreferredProducts().size());
+		Assert.assertEquals(1, event.getEventCodes().size());
+		Assert.assertEquals(1, event.getSubEvents().size());
+	}
+
+	/**
+	 * Cached views match views computed by a copy of the event, after the
+	 * preferred product changes.
+	 */
+	@Test
+	public void testCacheClearedOnChange() {
+		Event event = new Event();
+		Date now = new Date();
+		for (String source : new String[] { "us", "ci" }) {
+			for (int i = 0; i < 10; i++) {
+				ProductSummary summary = new ProductSummary();
+				summary.setId(new ProductId(source, "origin", source + "1234",
+						new Date(now.getTime() + i)));
+				summary.setEventSource(source);
+				summary.setEventSourceCode("1234");
+				summary.setEventTime(now);
+				summary.setEventLatitude(new BigDecimal("34.1"));
+				summary.setEventLongitude(new BigDecimal("-118.2"));
+				summary.setPreferredWeight(source.equals("us") ? 10 : 1);
+				event.addProduct(summary);
+			}
+		}
+		ProductSummary preferredOrigin = event.getPreferredProduct("origin");
+		Assert.assertEquals("us", preferredOrigin.getId().getSource());
+
+		// more preferred origin replaces cached preferred product
+		ProductSummary summary = new ProductSummary();
+		summary.setId(new ProductId("ak", "origin", "ak1234", new Date(
+				preferredOrigin.getUpdateTime().getTime() + 1000)));
+		summary.setEventSource("ak");
+		summary.setEventSourceCode("1234");
+		summary.setPreferredWeight(100);
+		event.addProduct(summary);
+		Assert.assertSame(summary, event.getPreferredProduct("origin"));
+		Assert.assertEquals(new Event(event).getEventSummary().getId(),
+				event.getEventSummary().getId());
+
+		event.removeProduct(summary);
+		Assert.assertEquals(preferredOrigin.getId(),
+				event.getPreferredProduct("origin").getId());
+		Assert.assertEquals(new Event(event).getEventSummary().getId(),
+				event.getEventSummary().getId());
+	}
 }
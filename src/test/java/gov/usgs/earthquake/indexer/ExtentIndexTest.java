@@ -43,4 +43,22 @@ public class ExtentIndexTest {
 
     index.close();
   }
-}
\ No newline at end of file
+
+  @Test
+  public void checkpointTest() throws Exception {
+    ExtentIndex index = new ExtentIndex();
+    index.configure(new Config());
+    index.startup();
+    try {
+      index.setExtentCheckpoint(5);
+      index.setExtentCheckpoint(7);
+      Assert.assertEquals(Long.valueOf(7), index.getExtentCheckpoint());
+    } finally {
+      //clean up checkpoint
+      Connection conn = index.connect();
+      PreparedStatement stmnt = conn.prepareStatement("DROP TABLE " + ExtentIndex.EXTENT_CHECKPOINT_TABLE);
+      stmnt.executeUpdate();
+      index.close();
+    }
+  }
+}
@@ -8,8 +8,12 @@ import gov.usgs.earthquake.product.ProductTest;
 
 import java.io.File;
 import java.math.BigDecimal;
+import java.sql.Statement;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.After;
@@ -168,6 +172,87 @@ public class JDBCProductIndexTest {
 		Assert.assertTrue(products.contains(summary));
 	}
 
+	/**
+	 * Maintain the eventSummary table and search it by any event code.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void eventSummaryTest() throws Exception {
+		File dbFile = new File("eventSummaryIndex.db");
+		Config config = new Config();
+		config.setProperty("indexfile", dbFile.getName());
+		config.setProperty(JDBCProductIndex.EVENT_SUMMARY_PROPERTY, "true");
+		JDBCProductIndex summaryIndex = new JDBCProductIndex();
+		summaryIndex.configure(config);
+		Assert.assertFalse("not used until populated",
+				summaryIndex.isEventSummaryQuery(new ProductIndexQuery()));
+		summaryIndex.startup();
+		try {
+			summary = new ProductSummary(productFactory.getProduct());
+			summary.setEventSource("us");
+			summary.setEventSourceCode("test1234");
+			summary.setEventTime(new Date());
+			summary.setEventLatitude(TEST_SUMMARY_LATITUDE);
+			summary.setEventLongitude(TEST_SUMMARY_LONGITUDE);
+
+			summaryIndex.beginTransaction();
+			event = summaryIndex.addEvent(new Event());
+			summary = summaryIndex.addProductSummary(summary);
+			event = summaryIndex.addAssociation(event, summary);
+			summaryIndex.eventsUpdated(Arrays.asList(event));
+			summaryIndex.commitTransaction();
+
+			query = new ProductIndexQuery();
+			query.setEventSource("us");
+			query.setEventSourceCode("test1234");
+			Assert.assertTrue(summaryIndex.isEventSummaryQuery(query));
+			List<EventSummary> summaries = summaryIndex.getEventSummaries(query);
+			Assert.assertEquals(1, summaries.size());
+			Assert.assertEquals(event.getIndexId(), summaries.get(0).getIndexId());
+			Assert.assertEquals("test1234",
+					summaries.get(0).getEventCodes().get("us"));
+
+			// product properties are not in the summary table
+			query.setProductSource("us");
+			Assert.assertFalse(summaryIndex.isEventSummaryQuery(query));
+
+			// interrupted backfill is repeated at next startup
+			try (Statement statement = summaryIndex.getConnection()
+					.createStatement()) {
+				statement.executeUpdate("DELETE FROM eventSummary");
+				statement.executeUpdate("DELETE FROM eventSummaryBackfill");
+			}
+			summaryIndex.shutdown();
+			summaryIndex.startup();
+			query = new ProductIndexQuery();
+			query.setEventSourceCode("test1234");
+			Assert.assertEquals(1, summaryIndex.getEventSummaries(query).size());
+
+			summaryIndex.beginTransaction();
+			summaryIndex.removeEvent(event);
+			summaryIndex.commitTransaction();
+			query = new ProductIndexQuery();
+			query.setEventSourceCode("test1234");
+			Assert.assertTrue(summaryIndex.getEventSummaries(query).isEmpty());
+		} finally {
+			summaryIndex.shutdown();
+			dbFile.delete();
+		}
+	}
+
+	@Test
+	public void formatEventCodesTest() throws Exception {
+		Map<String, String> codes = new HashMap<String, String>();
+		codes.put("us", "us1000abcd");
+		codes.put("ci", "ci12345");
+		String formatted = JDBCProductIndex.formatEventCodes(codes);
+		Assert.assertEquals("ci:ci12345,us:us1000abcd", formatted);
+		Assert.assertEquals(codes, JDBCProductIndex.parseEventCodes(formatted));
+		Assert.assertEquals(",origin,shakemap,", JDBCProductIndex
+				.formatProductTypes(Arrays.asList("shakemap", "origin")));
+	}
+
 	/**
 	 * Adds a single, unassociatable product to the index and then checks that
 	 * we can pull it back out.
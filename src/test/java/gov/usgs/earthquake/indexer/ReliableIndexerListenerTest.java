@@ -4,7 +4,13 @@
 package gov.usgs.earthquake.indexer;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 import org.junit.Assert;
@@ -149,6 +155,90 @@ public class ReliableIndexerListenerTest {
     listener.shutdown();
   }
 
+  @Test
+  public void parallelTest() throws Exception {
+    final int count = 50;
+    final List<ProductSummary> all = new ArrayList<ProductSummary>();
+    for (int i = 1; i <= count; i++) {
+      ProductSummary product = new ProductSummary();
+      product.setIndexId((long) i);
+      product.setId(new ProductId("test", "test", "code" + i));
+      product.setEventSource("us");
+      product.setEventSourceCode("event" + (i % 5));
+      all.add(product);
+    }
+    final Set<Long> completed = Collections.synchronizedSet(new HashSet<Long>());
+    final Map<String, Long> lastByEvent = new HashMap<String, Long>();
+    final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+    final AtomicBoolean failed = new AtomicBoolean(false);
+
+    ReliableIndexerListener listener = new ReliableIndexerListener() {
+      @Override
+      public void processProduct(ProductSummary product) throws Exception {
+        Thread.sleep(product.getIndexId() % 3);
+        long indexId = product.getIndexId();
+        if (indexId == 17 && failed.compareAndSet(false, true)) {
+          throw new Exception("first attempt fails");
+        }
+        synchronized (lastByEvent) {
+          Long last = lastByEvent.put(product.getEventId(), indexId);
+          // products are only reprocessed after the failed product
+          if (last != null && last >= indexId && indexId < 17) {
+            errors.add("out of order " + indexId + " after " + last);
+          }
+        }
+        completed.add(indexId);
+      }
+
+      @Override
+      protected void onProcessException(ProductSummary product, Exception e)
+          throws Exception {
+        throw e;
+      }
+
+      @Override
+      public void setLastIndexId(long lastIndexId) {
+        if (lastIndexId < getLastIndexId()) {
+          errors.add("checkpoint moved back to " + lastIndexId);
+        }
+        for (long i = 1; i <= lastIndexId; i++) {
+          if (!completed.contains(i)) {
+            errors.add("checkpoint " + lastIndexId + " before " + i + " completed");
+          }
+        }
+        super.setLastIndexId(lastIndexId);
+      }
+    };
+    listener.setProductIndex(new JDBCProductIndex() {
+      @Override
+      public List<ProductSummary> getProducts(ProductIndexQuery query) {
+        List<ProductSummary> ret = new ArrayList<ProductSummary>();
+        for (ProductSummary product : all) {
+          if (product.getIndexId() >= query.getMinProductIndexId()
+              && ret.size() < query.getLimit()) {
+            ret.add(product);
+          }
+        }
+        return ret;
+      }
+    });
+    listener.setProcessThreads(4);
+    listener.setProductsPerQuery(7);
+    listener.startup();
+
+    long start = System.currentTimeMillis();
+    while (listener.getLastIndexId() < count
+        && System.currentTimeMillis() - start < 10000) {
+      listener.onIndexerEvent(new IndexerEvent(new Indexer()));
+      Thread.sleep(10);
+    }
+    listener.shutdown();
+
+    Assert.assertEquals(count, listener.getLastIndexId());
+    Assert.assertEquals(count, completed.size());
+    Assert.assertTrue(errors.toString(), errors.isEmpty());
+  }
+
   public class TestIndexerListener extends ReliableIndexerListener {
 
     @Override
@@ -296,6 +296,154 @@ public class SearchXMLTest {
 				receivedResponse.equals(PRODUCT_SUMMARY_SEARCH_RESPONSE));
 	}
 
+	/**
+	 * Limit, cursor, and nextCursor are preserved in xml.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testPagingAttributes() throws Exception {
+		SearchRequest request = getSearchRequest(SearchMethod.EVENTS_SUMMARY);
+		SearchQuery query = request.getQueries().get(0);
+		query.getProductIndexQuery().setLimit(10);
+		query.setCursor(42L);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		SearchXML.toXML(request, baos);
+		SearchQuery parsedQuery = SearchXML.parseRequest(
+				new ByteArrayInputStream(baos.toByteArray())).getQueries()
+				.get(0);
+		Assert.assertEquals(Integer.valueOf(10), parsedQuery
+				.getProductIndexQuery().getLimit());
+		Assert.assertEquals("event cursor", Long.valueOf(42L), parsedQuery
+				.getProductIndexQuery().getMinEventIndexId());
+
+		SearchResponse response = new SearchResponse();
+		query.setNextCursor(52L);
+		((EventsSummaryQuery) query).setResult(new ArrayList<EventSummary>());
+		response.addResult(query);
+		baos = new ByteArrayOutputStream();
+		SearchXML.toXML(response, baos);
+		SearchQuery parsedResult = SearchXML.parseResponse(
+				new ByteArrayInputStream(baos.toByteArray()), null)
+				.getResults().get(0);
+		Assert.assertEquals(Long.valueOf(52L), parsedResult.getNextCursor());
+		Assert.assertEquals(Long.valueOf(42L), parsedResult.getCursor());
+	}
+
+	/**
+	 * Results are streamed in pages by the server, or requested in pages by
+	 * the client, and passed to a listener.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSearchSocketPages() throws Exception {
+		PagingSearchServerSocket server = new PagingSearchServerSocket(5);
+		server.setPort(12346);
+		server.setPageSize(2);
+		server.startup();
+		try {
+			SearchSocket client = new SearchSocket(InetAddress.getLocalHost(),
+					12346);
+			CountingListener listener = new CountingListener();
+
+			// server streams all results in pages
+			SearchRequest request = new SearchRequest();
+			request.addQuery(new ProductsSummaryQuery(new ProductIndexQuery()));
+			SearchResponse response = client.search(request, null, listener);
+			Assert.assertEquals(5, listener.summaries.size());
+			Assert.assertEquals("three pages searched", 3, server.searches);
+			Assert.assertEquals(0, ((ProductsSummaryQuery) response
+					.getResults().get(0)).getResult().size());
+			Assert.assertNull(response.getResults().get(0).getNextCursor());
+
+			// client requests each page
+			listener.summaries.clear();
+			listener.results = 0;
+			server.searches = 0;
+			client.searchPages(request, null, 2, listener);
+			Assert.assertEquals(5, listener.summaries.size());
+			Assert.assertEquals(3, server.searches);
+			Assert.assertEquals("one result per page", 3, listener.results);
+			for (int i = 0; i < 5; i++) {
+				Assert.assertEquals("summaries in order", "code" + (i + 1),
+						listener.summaries.get(i).getCode());
+			}
+		} finally {
+			server.shutdown();
+		}
+	}
+
+	/**
+	 * Listener that collects product summaries.
+	 */
+	private static class CountingListener implements SearchResponseListener {
+		public List<ProductSummary> summaries = new ArrayList<ProductSummary>();
+		public int results = 0;
+
+		public void onEvent(SearchQuery query, Event event) {
+		}
+
+		public void onEventSummary(SearchQuery query, EventSummary summary) {
+		}
+
+		public void onProductSummary(SearchQuery query, ProductSummary summary) {
+			summaries.add(summary);
+		}
+
+		public void onProduct(SearchQuery query, Product product) {
+		}
+
+		public void onResult(SearchQuery query) {
+			results++;
+		}
+	}
+
+	/**
+	 * A SearchServerSocket that pages through a fixed list of summaries,
+	 * similar to Indexer.search.
+	 */
+	private static class PagingSearchServerSocket extends SearchServerSocket {
+		public List<ProductSummary> summaries = new ArrayList<ProductSummary>();
+		public int searches = 0;
+
+		public PagingSearchServerSocket(final int count) {
+			for (int i = 1; i <= count; i++) {
+				ProductSummary summary = new ProductSummary();
+				summary.setId(new ProductId("us", "test", "code" + i,
+						new Date()));
+				summary.setIndexId(Long.valueOf(i));
+				summaries.add(summary);
+			}
+		}
+
+		public SearchResponse search(final SearchRequest request) {
+			searches++;
+			SearchResponse response = new SearchResponse();
+			for (SearchQuery query : request.getQueries()) {
+				ProductIndexQuery piQuery = query.getProductIndexQuery();
+				Long min = piQuery.getMinProductIndexId();
+				Integer limit = piQuery.getLimit();
+				List<ProductSummary> result = new ArrayList<ProductSummary>();
+				for (ProductSummary summary : summaries) {
+					if ((min == null || summary.getIndexId() >= min)
+							&& (limit == null || result.size() < limit)) {
+						result.add(summary);
+					}
+				}
+				((ProductsSummaryQuery) query).setResult(result);
+				query.setNextCursor(null);
+				if (limit != null && result.size() == limit) {
+					query.setNextCursor(result.get(result.size() - 1)
+							.getIndexId() + 1);
+				}
+				response.addResult(query);
+			}
+			return response;
+		}
+	}
+
 	/**
 	 * A Testing version of the SearchServerSocket.
 	 * 
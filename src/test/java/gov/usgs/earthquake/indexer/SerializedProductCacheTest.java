@@ -0,0 +1,84 @@
+/*
+ * SerializedProductCacheTest
+ */
+package gov.usgs.earthquake.indexer;
+
+import gov.usgs.earthquake.product.ProductId;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the SerializedProductCache class.
+ */
+public class SerializedProductCacheTest {
+
+	private final AtomicInteger serializeCount = new AtomicInteger();
+
+	private byte[] serialize(final ProductId id) {
+		serializeCount.incrementAndGet();
+		if (id.getCode().equals("missing")) {
+			return null;
+		}
+		// payload size from code length
+		return new byte[id.getCode().length()];
+	}
+
+	private static ProductId id(final String code) {
+		return new ProductId("us", "origin", code, new Date(1000L));
+	}
+
+	@Test
+	public void testCachedUntilRemoved() throws Exception {
+		SerializedProductCache cache = new SerializedProductCache(100L, 10L);
+		byte[] payload = cache.getPayload(id("abc"), this::serialize);
+		Assert.assertSame(payload, cache.getPayload(id("abc"), this::serialize));
+		Assert.assertEquals(1, serializeCount.get());
+		Assert.assertEquals(3L, cache.getBytes());
+		Assert.assertEquals(1L, cache.getHits());
+
+		cache.remove(id("abc"));
+		Assert.assertEquals(0L, cache.getBytes());
+		cache.getPayload(id("abc"), this::serialize);
+		Assert.assertEquals(2, serializeCount.get());
+
+		// not found is not cached
+		Assert.assertNull(cache.getPayload(id("missing"), this::serialize));
+		Assert.assertNull(cache.getPayload(id("missing"), this::serialize));
+		Assert.assertEquals(4, serializeCount.get());
+	}
+
+	@Test
+	public void testSizeBounded() throws Exception {
+		SerializedProductCache cache = new SerializedProductCache(10L, 6L);
+		// too large to cache
+		cache.getPayload(id("1234567"), this::serialize);
+		Assert.assertEquals(0, cache.size());
+
+		cache.getPayload(id("12345"), this::serialize);
+		cache.getPayload(id("abcd"), this::serialize);
+		// use first, so second is least recently used
+		cache.getPayload(id("12345"), this::serialize);
+		cache.getPayload(id("xy"), this::serialize);
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(7L, cache.getBytes());
+		int count = serializeCount.get();
+		cache.getPayload(id("12345"), this::serialize);
+		Assert.assertEquals(count, serializeCount.get());
+	}
+
+	@Test
+	public void testRemovedWhileSerializing() throws Exception {
+		SerializedProductCache cache = new SerializedProductCache(100L, 10L);
+		cache.getPayload(id("abc"), productId -> {
+			// removed from storage before serialized payload is cached
+			cache.remove(productId);
+			return serialize(productId);
+		});
+		Assert.assertEquals(0, cache.size());
+	}
+
+}
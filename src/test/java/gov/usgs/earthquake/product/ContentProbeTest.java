@@ -0,0 +1,52 @@
+/*
+ * ContentProbeTest
+ */
+package gov.usgs.earthquake.product;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the ContentProbe class.
+ */
+public class ContentProbeTest {
+
+	private Content getImage(final String format) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(123, 45, BufferedImage.TYPE_INT_RGB),
+				format, out);
+		return new ByteContent(out.toByteArray());
+	}
+
+	@Test
+	public void testImageHeaders() throws Exception {
+		Assert.assertEquals(new Dimension(123, 45),
+				ContentProbe.getImageSize(getImage("png")));
+		Assert.assertEquals(new Dimension(123, 45),
+				ContentProbe.getImageSize(getImage("gif")));
+		Assert.assertEquals(new Dimension(123, 45),
+				ContentProbe.getImageSize(getImage("jpg")));
+	}
+
+	@Test
+	public void testJpegFile() throws Exception {
+		File file = new File("etc/test_products/usc0001xgp/usc0001xgp_ciim.jpg");
+		BufferedImage image = ImageIO.read(file);
+		Assert.assertEquals(new Dimension(image.getWidth(), image.getHeight()),
+				ContentProbe.getImageSize(new FileContent(file)));
+	}
+
+	@Test
+	public void testNotImage() throws Exception {
+		Assert.assertNull(ContentProbe.getImageSize(new ByteContent(
+				"not an image".getBytes())));
+	}
+
+}
@@ -0,0 +1,169 @@
+/*
+ * ContentCodecsTest
+ */
+package gov.usgs.earthquake.product.io;
+
+import gov.usgs.earthquake.product.ByteContent;
+import gov.usgs.earthquake.product.Product;
+import gov.usgs.earthquake.product.ProductTest;
+import gov.usgs.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test content codecs and the binary CODEDCONTENT record.
+ */
+public class ContentCodecsTest {
+
+	private ProductTest productTest = new ProductTest();
+
+	/**
+	 * Encode then decode bytes.
+	 *
+	 * @param codec codec to test.
+	 * @param bytes bytes to encode.
+	 * @return decoded bytes.
+	 * @throws Exception if error occurs
+	 */
+	public static byte[] roundTrip(final ContentCodec codec, final byte[] bytes)
+			throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		OutputStream out = codec.getEncodingStream(baos);
+		out.write(bytes);
+		out.close();
+		InputStream in = codec.getDecodingStream(new ByteArrayInputStream(
+				baos.toByteArray()));
+		return StreamUtils.readStream(in);
+	}
+
+	/**
+	 * Write then read a product using a codec.
+	 *
+	 * @param product product to write.
+	 * @param codec codec to use.
+	 * @return serialized product.
+	 * @throws Exception if error occurs
+	 */
+	public byte[] binaryWriteThenRead(final Product product,
+			final ContentCodec codec) throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		new ObjectProductSource(product).streamTo(new BinaryProductHandler(
+				baos, codec));
+		byte[] bytes = baos.toByteArray();
+		Product loaded = ObjectProductHandler.getProduct(
+				new BinaryProductSource(new ByteArrayInputStream(bytes)));
+		productTest.compareProducts(product, loaded);
+		return bytes;
+	}
+
+	@Test
+	public void testLz4() throws Exception {
+		// repetitive text, with matches longer than 15 bytes
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			text.append("<event id=\"").append(i % 100).append("\"/>\n");
+		}
+		byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+		byte[] encoded = encode(ContentCodecs.LZ4, bytes);
+		Assert.assertTrue("compresses repetitive text",
+				encoded.length < bytes.length / 4);
+		Assert.assertArrayEquals(bytes, roundTrip(ContentCodecs.LZ4, bytes));
+
+		// random data is stored
+		byte[] random = new byte[200000];
+		new Random(1234L).nextBytes(random);
+		Assert.assertArrayEquals(random, roundTrip(ContentCodecs.LZ4, random));
+
+		// short and empty blocks
+		Assert.assertArrayEquals(new byte[] { 1, 2, 3 },
+				roundTrip(ContentCodecs.LZ4, new byte[] { 1, 2, 3 }));
+		Assert.assertArrayEquals(new byte[0],
+				roundTrip(ContentCodecs.LZ4, new byte[0]));
+	}
+
+	@Test
+	public void testLz4Corrupt() throws Exception {
+		byte[] bytes = new byte[10000];
+		byte[] encoded = encode(ContentCodecs.LZ4, bytes);
+		// truncate compressed block
+		encoded[7] = (byte) (encoded[7] - 1);
+		try {
+			StreamUtils.readStream(ContentCodecs.LZ4.getDecodingStream(
+					new ByteArrayInputStream(encoded)));
+			Assert.fail("expected exception");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testBinaryRoundTrip() throws Exception {
+		Product product = productTest.getProduct();
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			text.append("line ").append(i).append('\n');
+		}
+		product.getContents().put("text.txt", new ByteContent(
+				text.toString().getBytes(StandardCharsets.UTF_8)));
+		ByteContent image = new ByteContent(new byte[4096]);
+		image.setContentType("image/png");
+		product.getContents().put("image.png", image);
+
+		byte[] raw = binaryWriteThenRead(product, null);
+		byte[] lz4 = binaryWriteThenRead(product, ContentCodecs.LZ4);
+		byte[] deflate = binaryWriteThenRead(product, ContentCodecs.DEFLATE);
+		Assert.assertTrue(lz4.length < raw.length);
+		Assert.assertTrue(deflate.length < raw.length);
+		// image content is not encoded
+		Assert.assertTrue(lz4.length > 4096);
+	}
+
+	@Test
+	public void testShakemapRoundTrip() throws Exception {
+		Product product = ObjectProductHandler.getProduct(
+				new BinaryProductSource(new ByteArrayInputStream(
+						StreamUtils.readStream(new File(
+								"etc/test_products/usa00040xz/us_shakemap_usa00040xz_1287260900624.bin")))));
+		binaryWriteThenRead(product, ContentCodecs.LZ4);
+	}
+
+	@Test
+	public void testChooseCodec() throws Exception {
+		ContentCodec codec = ContentCodecs.LZ4;
+		Assert.assertNull(ContentCodecs.chooseCodec(codec, "a.png", "", 10000));
+		Assert.assertNull(ContentCodecs.chooseCodec(codec, "a",
+				"application/zip", 10000));
+		Assert.assertNull(ContentCodecs.chooseCodec(codec, "a.xml",
+				"application/xml", 10));
+		Assert.assertSame(codec, ContentCodecs.chooseCodec(codec, "a.xml",
+				"application/xml", 10000));
+
+		Assert.assertEquals("deflate", ContentCodecs.negotiate("zstd, deflate"));
+		Assert.assertEquals(ContentCodecs.RAW, ContentCodecs.negotiate("zstd"));
+		// framing is not the standard lz4 frame format
+		Assert.assertEquals(ContentCodecs.RAW, ContentCodecs.negotiate("lz4"));
+		Assert.assertEquals(Lz4Codec.NAME,
+				ContentCodecs.negotiate("lz4," + Lz4Codec.NAME));
+		Assert.assertNull(ContentCodecs.getCodec(ContentCodecs.RAW));
+	}
+
+	private static byte[] encode(final ContentCodec codec, final byte[] bytes)
+			throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		OutputStream out = codec.getEncodingStream(baos);
+		out.write(bytes);
+		out.close();
+		return baos.toByteArray();
+	}
+
+}
@@ -6,13 +6,18 @@ package gov.usgs.earthquake.product.io;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
 
 import gov.usgs.util.FileUtils;
 import gov.usgs.util.StreamUtils;
 
+import gov.usgs.earthquake.product.ByteContent;
+import gov.usgs.earthquake.product.Content;
 import gov.usgs.earthquake.product.Product;
 import gov.usgs.earthquake.product.ProductTest;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 /**
@@ -68,6 +73,36 @@ public class IOTest {
 	 * @return the product that was read.
 	 * @throws Exception
 	 */
+	/**
+	 * Write contents as references, then resolve using known contents.
+	 */
+	@Test
+	public void binaryContentReferences() throws Exception {
+		Product product = getProduct();
+		Map<String, Content> known = new HashMap<String, Content>();
+		for (Content content : product.getContents().values()) {
+			known.put(content.getSha256(), new ByteContent(content));
+		}
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BinaryProductHandler binaryOutput = new BinaryProductHandler(baos);
+		binaryOutput.setKnownContents(known.keySet());
+		new ObjectProductSource(product).streamTo(binaryOutput);
+
+		Product loadedProduct = ObjectProductHandler.getProduct(
+				new BinaryProductSource(new ByteArrayInputStream(
+						baos.toByteArray()), known));
+		productTest.compareProducts(product, loadedProduct);
+
+		try {
+			ObjectProductHandler.getProduct(new BinaryProductSource(
+					new ByteArrayInputStream(baos.toByteArray())));
+			Assert.fail("expected unknown reference exception");
+		} catch (Exception e) {
+			// expected
+		}
+	}
+
 	@Test
 	public void xmlWriteThenRead() throws Exception {
 		Product product = getProduct();
@@ -0,0 +1,95 @@
+package gov.usgs.earthquake.util;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JDBCConnectionTest {
+
+	/**
+	 * Connection that connects to in memory proxy connections.
+	 */
+	private static class TestJDBCConnection extends JDBCConnection {
+		@Override
+		protected Connection connect(final String url) throws Exception {
+			final boolean[] state = { true, false };
+			return (Connection) Proxy.newProxyInstance(
+					Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class },
+					(proxy, method, args) -> {
+						switch (method.getName()) {
+						case "getAutoCommit": return state[0];
+						case "setAutoCommit": state[0] = (Boolean) args[0]; return null;
+						case "isClosed": return state[1];
+						case "close": state[1] = true; return null;
+						case "hashCode": return System.identityHashCode(proxy);
+						case "equals": return proxy == args[0];
+						default: return null;
+						}
+					});
+		}
+	}
+
+	@Test
+	public void testReadWithoutPoolUsesWriter() throws Exception {
+		TestJDBCConnection jdbc = new TestJDBCConnection();
+		jdbc.startup();
+		final Connection writer = jdbc.getConnection();
+		Assert.assertSame(writer, jdbc.read(() -> jdbc.getConnection()));
+		jdbc.shutdown();
+	}
+
+	@Test
+	public void testConcurrentReaders() throws Exception {
+		TestJDBCConnection jdbc = new TestJDBCConnection();
+		jdbc.setReadPoolSize(2);
+		jdbc.startup();
+		final Connection writer = jdbc.getConnection();
+		final CountDownLatch bothReading = new CountDownLatch(2);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Connection> first = executor.submit(() -> jdbc.read(() -> {
+				bothReading.countDown();
+				Assert.assertTrue(bothReading.await(5, TimeUnit.SECONDS));
+				return jdbc.getConnection();
+			}));
+			Future<Connection> second = executor.submit(() -> jdbc.read(() -> {
+				bothReading.countDown();
+				Assert.assertTrue(bothReading.await(5, TimeUnit.SECONDS));
+				return jdbc.getConnection();
+			}));
+			Connection reader1 = first.get(5, TimeUnit.SECONDS);
+			Connection reader2 = second.get(5, TimeUnit.SECONDS);
+			Assert.assertNotSame("readers differ", reader1, reader2);
+			Assert.assertNotSame("reader is not writer", writer, reader1);
+			Assert.assertNotSame("reader is not writer", writer, reader2);
+			// reader connections are reused
+			Connection reader3 = jdbc.read(() -> jdbc.getConnection());
+			Assert.assertTrue(reader3 == reader1 || reader3 == reader2);
+		} finally {
+			executor.shutdown();
+			jdbc.shutdown();
+		}
+	}
+
+	@Test
+	public void testTransactionReadsFromWriter() throws Exception {
+		TestJDBCConnection jdbc = new TestJDBCConnection();
+		jdbc.setReadPoolSize(1);
+		jdbc.startup();
+		jdbc.beginTransaction();
+		final Connection writer = jdbc.getConnection();
+		Assert.assertSame(writer, jdbc.read(() -> jdbc.getConnection()));
+		jdbc.commitTransaction();
+		Assert.assertNotSame(writer, jdbc.read(() -> jdbc.getConnection()));
+		jdbc.shutdown();
+	}
+
+}
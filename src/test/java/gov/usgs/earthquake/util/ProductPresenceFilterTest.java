@@ -0,0 +1,82 @@
+package gov.usgs.earthquake.util;
+
+import gov.usgs.earthquake.product.ProductId;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProductPresenceFilterTest {
+
+	private static ProductId id(final int i) {
+		return new ProductId("us", "origin", "us" + i, new Date(1500000000000L + i));
+	}
+
+	@Test
+	public void testNotLoaded() {
+		ProductPresenceFilter filter = new ProductPresenceFilter();
+		filter.add(id(1));
+		Assert.assertFalse(filter.isLoaded());
+		Assert.assertFalse("not loaded filter contains nothing",
+				filter.contains(id(1)));
+	}
+
+	@Test
+	public void testAddRemove() {
+		ProductPresenceFilter filter = new ProductPresenceFilter();
+		filter.beginLoad();
+		filter.endLoad();
+		List<ProductId> ids = new ArrayList<ProductId>();
+		for (int i = 0; i < 10000; i++) {
+			ids.add(id(i));
+			filter.add(id(i));
+		}
+		Assert.assertEquals(10000, filter.size());
+		// remove every other, which exercises shifting probed entries
+		for (int i = 0; i < ids.size(); i += 2) {
+			filter.remove(ids.get(i));
+		}
+		for (int i = 0; i < ids.size(); i++) {
+			Assert.assertEquals(ids.get(i).toString(), i % 2 == 1,
+					filter.contains(ids.get(i)));
+		}
+		Assert.assertFalse(filter.contains(new ProductId("us", "origin",
+				"us1", new Date(0))));
+		Assert.assertEquals(5000, filter.size());
+	}
+
+	@Test
+	public void testChangesWhileLoading() {
+		ProductPresenceFilter filter = new ProductPresenceFilter();
+		filter.beginLoad();
+		// stored and removed while loading
+		filter.add(id(1));
+		filter.add(id(2));
+		filter.remove(id(3));
+		// loaded ids
+		filter.addLoaded(id(2));
+		filter.addLoaded(id(3));
+		filter.addLoaded(id(4));
+		Assert.assertFalse(filter.contains(id(4)));
+		filter.endLoad();
+
+		Assert.assertTrue(filter.isLoaded());
+		Assert.assertTrue(filter.contains(id(1)));
+		Assert.assertTrue(filter.contains(id(2)));
+		Assert.assertFalse("removed while loading", filter.contains(id(3)));
+		Assert.assertTrue(filter.contains(id(4)));
+		Assert.assertEquals(3, filter.size());
+	}
+
+	@Test
+	public void testFingerprintSeparatesFields() {
+		Date date = new Date();
+		Assert.assertNotEquals(
+				ProductPresenceFilter.fingerprint(new ProductId("a", "bc", "d", date)),
+				ProductPresenceFilter.fingerprint(new ProductId("ab", "c", "d", date)));
+	}
+
+}
@@ -0,0 +1,71 @@
+package gov.usgs.earthquake.util;
+
+import gov.usgs.util.FileUtils;
+import gov.usgs.util.JDBCUtils;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SQLiteProfileTest {
+
+	private File dbFile;
+
+	@Before
+	public void before() throws Exception {
+		dbFile = File.createTempFile("sqliteprofile", ".db");
+		dbFile.delete();
+	}
+
+	@After
+	public void after() throws Exception {
+		FileUtils.deleteTree(dbFile);
+		FileUtils.deleteTree(new File(dbFile.getPath() + "-wal"));
+		FileUtils.deleteTree(new File(dbFile.getPath() + "-shm"));
+	}
+
+	@Test
+	public void testApplyAndCheckpoint() throws Exception {
+		SQLiteProfile profile = new SQLiteProfile();
+		try (Connection conn = JDBCUtils.getSqliteConnection(dbFile)) {
+			profile.apply(conn);
+			Assert.assertEquals("wal", pragma(conn, "journal_mode").toLowerCase());
+			// NORMAL
+			Assert.assertEquals("1", pragma(conn, "synchronous"));
+			// INCREMENTAL
+			Assert.assertEquals("2", pragma(conn, "auto_vacuum"));
+			Assert.assertEquals(SQLiteProfile.DEFAULT_BUSY_TIMEOUT,
+					pragma(conn, "busy_timeout"));
+
+			try (Statement statement = conn.createStatement()) {
+				statement.executeUpdate("CREATE TABLE test (id INTEGER PRIMARY KEY, value TEXT)");
+				statement.executeUpdate("INSERT INTO test (value) VALUES ('test')");
+			}
+			SQLiteProfile.CheckpointStatus status = profile.checkpoint(conn);
+			Assert.assertFalse("not busy", status.busy);
+			Assert.assertEquals("no lag after checkpoint", 0L, status.getLag());
+			Assert.assertTrue("wal exists", status.walSize > 0);
+
+			profile.incrementalVacuum(conn);
+			profile.analyze(conn);
+		}
+	}
+
+	private static String pragma(final Connection conn, final String name)
+			throws Exception {
+		try (
+			Statement statement = conn.createStatement();
+			ResultSet rs = statement.executeQuery("PRAGMA " + name);
+		) {
+			rs.next();
+			return rs.getString(1);
+		}
+	}
+
+}
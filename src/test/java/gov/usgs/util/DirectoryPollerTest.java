@@ -0,0 +1,181 @@
+/*
+ * DirectoryPollerTest
+ */
+package gov.usgs.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the DirectoryPoller class.
+ */
+public class DirectoryPollerTest {
+
+	private File directory;
+	private File pollDirectory;
+	private File storageDirectory;
+	private DirectoryPoller poller;
+
+	/**
+	 * Listener that records processed files, and how many ran at once.
+	 */
+	private static class TestListener implements FileListenerInterface {
+		final List<String> names = Collections
+				.synchronizedList(new ArrayList<String>());
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		CountDownLatch latch;
+		long delay = 0L;
+		volatile boolean interrupted = false;
+
+		TestListener(final int count) {
+			latch = new CountDownLatch(count);
+		}
+
+		@Override
+		public void onFile(final File file) {
+			int now = running.incrementAndGet();
+			maxRunning.accumulateAndGet(now, Math::max);
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+			names.add(file.getName());
+			running.decrementAndGet();
+			latch.countDown();
+		}
+	}
+
+	@Before
+	public void setup() throws Exception {
+		directory = Files.createTempDirectory("poller").toFile();
+		pollDirectory = new File(directory, "poll");
+		storageDirectory = new File(directory, "storage");
+		poller = new DirectoryPoller(pollDirectory, storageDirectory);
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		poller.stop();
+		FileUtils.deleteTree(directory);
+	}
+
+	private void writeFile(final String name) throws Exception {
+		FileUtils.writeFile(new File(pollDirectory, name), name.getBytes());
+	}
+
+	@Test
+	public void testWatchFindsFilesBeforePoll() throws Exception {
+		TestListener listener = new TestListener(1);
+		poller.addFileListener(listener);
+		// initial poll happens immediately, next poll is much later
+		poller.start(60000L);
+		Thread.sleep(100L);
+
+		writeFile("watched");
+		Assert.assertTrue("file processed before next poll",
+				listener.latch.await(15, TimeUnit.SECONDS));
+		Assert.assertEquals("watched", listener.names.get(0));
+
+		// moved to storage after processing
+		File stored = new File(storageDirectory, "watched");
+		for (int i = 0; i < 50 && !stored.exists(); i++) {
+			Thread.sleep(20L);
+		}
+		Assert.assertTrue(stored.exists());
+	}
+
+	@Test
+	public void testConcurrentWithKeyOrder() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			writeFile("a" + i);
+			writeFile("b" + i);
+			writeFile("c" + i);
+		}
+		TestListener listener = new TestListener(15);
+		listener.delay = 50L;
+		poller.addFileListener(listener);
+		poller.setWatch(false);
+		poller.setThreads(3);
+		poller.setKeyFunction(file -> file.getName().substring(0, 1));
+		poller.start(1000L);
+		Assert.assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+
+		Assert.assertTrue("processed concurrently",
+				listener.maxRunning.get() > 1);
+		// files with the same key are processed in order
+		Map<String, List<String>> byKey = new HashMap<String, List<String>>();
+		for (String name : listener.names) {
+			String key = name.substring(0, 1);
+			if (!byKey.containsKey(key)) {
+				byKey.put(key, new ArrayList<String>());
+			}
+			byKey.get(key).add(name);
+		}
+		for (String key : byKey.keySet()) {
+			List<String> names = byKey.get(key);
+			List<String> sorted = new ArrayList<String>(names);
+			Collections.sort(sorted);
+			Assert.assertEquals(sorted, names);
+		}
+	}
+
+	@Test
+	public void testStopWaitsForProcessing() throws Exception {
+		writeFile("slow");
+		TestListener listener = new TestListener(1);
+		listener.delay = 500L;
+		poller.addFileListener(listener);
+		poller.setWatch(false);
+		poller.start(60000L);
+		for (int i = 0; i < 100 && listener.running.get() == 0; i++) {
+			Thread.sleep(10L);
+		}
+		Assert.assertEquals(1, listener.running.get());
+
+		poller.stop();
+		Assert.assertFalse("not interrupted", listener.interrupted);
+		Assert.assertEquals(0L, listener.latch.getCount());
+		Assert.assertTrue(new File(storageDirectory, "slow").exists());
+	}
+
+	@Test
+	public void testWaitsForStableFile() throws Exception {
+		TestListener listener = new TestListener(1);
+		poller.addFileListener(listener);
+		poller.setStableTime(500L);
+		poller.start(100L);
+
+		File file = new File(pollDirectory, "slow");
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			for (int i = 0; i < 4; i++) {
+				out.write(new byte[] { (byte) i });
+				out.flush();
+				Thread.sleep(200L);
+			}
+			Assert.assertEquals("not processed while being written", 0,
+					listener.names.size());
+		} finally {
+			out.close();
+		}
+		Assert.assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals("slow", listener.names.get(0));
+	}
+
+}
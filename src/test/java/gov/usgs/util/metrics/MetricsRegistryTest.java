@@ -0,0 +1,91 @@
+/*
+ * MetricsRegistryTest
+ */
+package gov.usgs.util.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test MetricsRegistry and LatencyHistogram.
+ */
+public class MetricsRegistryTest {
+
+	@Test
+	public void testDisabledRecordsNothing() {
+		MetricsRegistry metrics = new MetricsRegistry();
+		long start = metrics.startTimer();
+		Assert.assertEquals("disabled timer not started", 0L, start);
+		metrics.recordSince("test", "latency", start);
+		metrics.increment("test", "count");
+		Assert.assertEquals(0, metrics.getHistograms().size());
+		Assert.assertEquals(0, metrics.getCounterValues().size());
+	}
+
+	@Test
+	public void testEnabled() {
+		MetricsRegistry metrics = new MetricsRegistry();
+		metrics.setEnabled(true);
+		metrics.recordSince("test", "latency", metrics.startTimer());
+		metrics.increment("test", "count");
+		metrics.add("test", "count", 2L);
+		metrics.setGauge("test.gauge", () -> 42L);
+
+		Assert.assertEquals(1L,
+				metrics.getHistograms().get("test.latency").getCount());
+		Assert.assertEquals(Long.valueOf(3L),
+				metrics.getCounterValues().get("test.count"));
+		Assert.assertEquals(Long.valueOf(42L),
+				metrics.getGaugeValues().get("test.gauge"));
+
+		String summary = metrics.getSummary();
+		Assert.assertTrue(summary.contains("test.count = 3"));
+		Assert.assertTrue(summary.contains("test.gauge = 42"));
+		Assert.assertTrue(summary.contains("test.latency count=1"));
+
+		metrics.reset();
+		Assert.assertEquals(0L,
+				metrics.getHistograms().get("test.latency").getCount());
+		Assert.assertEquals(Long.valueOf(0L),
+				metrics.getCounterValues().get("test.count"));
+	}
+
+	@Test
+	public void testBuckets() {
+		long[] values = new long[] { 0L, 1L, 31L, 32L, 63L, 64L, 1000L,
+				123456789L, Long.MAX_VALUE };
+		for (long value : values) {
+			int bucket = LatencyHistogram.getBucket(value);
+			long lower = LatencyHistogram.getBucketLowerBound(bucket);
+			long width = LatencyHistogram.getBucketWidth(bucket);
+			Assert.assertTrue("value " + value + " >= lower bound",
+					value >= lower);
+			Assert.assertTrue("value " + value + " within bucket",
+					value - lower < width);
+			Assert.assertTrue("bucket accurate within ~3%",
+					width <= Math.max(1L, lower / 32));
+		}
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		// 1ms to 100ms
+		for (long i = 1; i <= 100; i++) {
+			histogram.record(i * 1000000L);
+		}
+		Assert.assertEquals(100L, histogram.getCount());
+		Assert.assertEquals(50500000.0, histogram.getMean(), 0.1);
+		Assert.assertEquals(100000000L, histogram.getMax());
+		assertWithin(50000000L, histogram.getPercentile(50), 0.035);
+		assertWithin(90000000L, histogram.getPercentile(90), 0.035);
+		assertWithin(99000000L, histogram.getPercentile(99), 0.035);
+		Assert.assertEquals(100000000L, histogram.getPercentile(100));
+	}
+
+	private static void assertWithin(final long expected, final long actual,
+			final double relativeError) {
+		Assert.assertEquals(expected, actual, expected * relativeError);
+	}
+
+}